@@ -6,6 +6,9 @@ import com.oceanprotocol.squid.models.DID;
 import com.oceanprotocol.squid.models.service.AgreementStatus;
 import org.web3j.tuples.generated.Tuple2;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Exposes the Public API related with the management of Agreements
  */
@@ -42,4 +45,13 @@ public interface AgreementsAPI {
      * @throws ServiceAgreementException Exception
      */
     public AgreementStatus status(String agreementId) throws ServiceAgreementException;
+
+    /**
+     * Get the status of several service agreements. The agreements are read concurrently.
+     *
+     * @param agreementIds ids of the agreements
+     * @return a Map with the AgreementStatus of every agreement id
+     * @throws ServiceAgreementException Exception
+     */
+    public Map<String, AgreementStatus> statuses(List<String> agreementIds) throws ServiceAgreementException;
 }
@@ -8,14 +8,17 @@ package com.oceanprotocol.squid.api;
 import com.oceanprotocol.squid.exceptions.*;
 import com.oceanprotocol.squid.models.DDO;
 import com.oceanprotocol.squid.models.DID;
+import com.oceanprotocol.squid.models.DIDResolution;
 import com.oceanprotocol.squid.models.aquarius.SearchResult;
 import com.oceanprotocol.squid.models.asset.AssetMetadata;
+import com.oceanprotocol.squid.models.asset.ConsumeResult;
 import com.oceanprotocol.squid.models.asset.OrderResult;
 import com.oceanprotocol.squid.models.service.ProviderConfig;
 import com.oceanprotocol.squid.models.service.types.ComputingService;
 import io.reactivex.Flowable;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -81,6 +84,14 @@ public interface AssetsAPI {
      */
     public DDO resolve(DID did) throws EthereumException, DDOException;
 
+    /**
+     * Gets the DDOs of a list of DIDs, resolving them concurrently
+     *
+     * @param dids the DIDs to resolve
+     * @return a DIDResolution for every DID, in the same order, including the DDO or the error found
+     */
+    public List<DIDResolution> resolveAll(List<DID> dids);
+
     /**
      * Gets the list of the files that belongs to a DDO
      * @param did the DID to resolve
@@ -130,6 +141,29 @@ public interface AssetsAPI {
      */
     public SearchResult query(Map<String, Object> params) throws DDOException;
 
+    /**
+     * Gets all the DDOs that match the search criteria, going through all the pages of results.
+     * The following pages are requested in advance while the DDOs of the current page are consumed
+     *
+     * @param text     the criteria
+     * @param offset   number of DDOs per page
+     * @param prefetch number of pages requested in advance
+     * @return a Flowable with all the DDOs found
+     */
+    public Flowable<DDO> searchFlowable(String text, int offset, int prefetch);
+
+    /**
+     * Gets all the DDOs that match the parameters of the query, going through all the pages of results.
+     * The following pages are requested in advance while the DDOs of the current page are consumed
+     *
+     * @param params   the criteria
+     * @param offset   number of DDOs per page
+     * @param sort     parameter to sort
+     * @param prefetch number of pages requested in advance
+     * @return a Flowable with all the DDOs found
+     */
+    public Flowable<DDO> queryFlowable(Map<String, Object> params, int offset, int sort, int prefetch);
+
     /**
      *  Downloads a single file of an Asset previously ordered through a Service Agreement
      * @param serviceAgreementId the service agreement id of the asset
@@ -180,6 +214,44 @@ public interface AssetsAPI {
      */
     public Boolean consume(String serviceAgreementId, DID did, int serviceDefinitionId, String basePath) throws ConsumeServiceException;
 
+    /**
+     * Downloads an Asset previously ordered through a Service Agreement, downloading several files at the same time.
+     * The files that can't be downloaded are reported in the result, and can be downloaded again with retryConsume
+     *
+     * @param serviceAgreementId  the service agreement id of the asset
+     * @param did                 the did
+     * @param serviceDefinitionId the service definition id
+     * @param basePath            the path where the asset will be downloaded
+     * @param parallelism         number of files downloaded at the same time
+     * @return the result of every file of the asset
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public ConsumeResult consumeParallel(String serviceAgreementId, DID did, int serviceDefinitionId, String basePath, int parallelism) throws ConsumeServiceException;
+
+    /**
+     * Downloads a single file of an Asset previously ordered through a Service Agreement, requesting several ranges of bytes at the same time
+     *
+     * @param serviceAgreementId  the service agreement id of the asset
+     * @param did                 the did
+     * @param serviceDefinitionId the service definition id
+     * @param index               of the file inside the files definition in metadata
+     * @param basePath            the path where the file will be downloaded
+     * @param segments            number of ranges downloaded at the same time
+     * @return a flag that indicates if the consume flow was executed correctly
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public Boolean consumeSegmented(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index, String basePath, int segments) throws ConsumeServiceException;
+
+    /**
+     * Downloads again only the files that failed in a previous consume of an Asset
+     *
+     * @param previous    the result of the previous consume
+     * @param parallelism number of files downloaded at the same time
+     * @return the result of every file of the asset
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public ConsumeResult retryConsume(ConsumeResult previous, int parallelism) throws ConsumeServiceException;
+
 
     /**
      * Gets the input stream of one file of the asset
@@ -234,6 +306,32 @@ public interface AssetsAPI {
     public InputStream consumeBinary(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index, Integer rangeStart, Integer rangeEnd, int threshold) throws ConsumeServiceException;
 
 
+    /**
+     * Gets the content of one file of the asset as a Flowable of chunks of bytes.
+     * The file is only read as the chunks are requested, and cancelling the subscription aborts the download
+     * @param serviceAgreementId  the service agreement id of the asset
+     * @param did                 the did
+     * @param serviceDefinitionId the service definition id
+     * @param index               the index of the file
+     * @return a Flowable over the chunks of the file
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public Flowable<ByteBuffer> consumeStream(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index) throws ConsumeServiceException;
+
+    /**
+     * Gets the content of one file of the asset as a Flowable of chunks of bytes.
+     * The file is only read as the chunks are requested, and cancelling the subscription aborts the download
+     * @param serviceAgreementId  the service agreement id of the asset
+     * @param did                 the did
+     * @param serviceDefinitionId the service definition id
+     * @param index               the index of the file
+     * @param threshold           secret store threshold to decrypt the urls of the asset
+     * @return a Flowable over the chunks of the file
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public Flowable<ByteBuffer> consumeStream(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index, int threshold) throws ConsumeServiceException;
+
+
     /**
      * Purchases an Asset represented by a DID. It implies to initialize a Service Agreement between publisher and consumer
      *
@@ -273,6 +371,14 @@ public interface AssetsAPI {
      */
     public List<DID> ownerAssets(String ownerAddress) throws ServiceException;
 
+    /**
+     * Asset objects published by ownerAddress, emitted while the chain is scanned
+     *
+     * @param ownerAddress ethereum address of owner/publisher
+     * @return a Flowable with the dids
+     */
+    public Flowable<DID> ownerAssetsFlowable(String ownerAddress);
+
     /**
      * List of Asset objects purchased by consumerAddress
      *
@@ -282,6 +388,14 @@ public interface AssetsAPI {
      */
     public List<DID> consumerAssets(String consumerAddress) throws ServiceException;
 
+    /**
+     * Asset objects purchased by consumerAddress, emitted while the chain is scanned
+     *
+     * @param consumerAddress ethereum address of consumer
+     * @return a Flowable with the dids
+     */
+    public Flowable<DID> consumerAssetsFlowable(String consumerAddress);
+
     /**
      * Retire this did of Aquarius
      *
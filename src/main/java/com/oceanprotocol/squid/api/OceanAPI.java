@@ -13,12 +13,20 @@ import com.oceanprotocol.squid.api.config.OceanConfig;
 import com.oceanprotocol.squid.api.config.OceanConfigFactory;
 import com.oceanprotocol.squid.api.helper.OceanInitializationHelper;
 import com.oceanprotocol.squid.api.impl.*;
+import com.oceanprotocol.squid.core.cache.AgreementStateCache;
+import com.oceanprotocol.squid.core.cache.DDOCache;
+import com.oceanprotocol.squid.core.cache.SearchResultCache;
+import com.oceanprotocol.squid.core.events.DIDRegistryIndex;
+import com.oceanprotocol.squid.core.orders.OrderJournal;
+import com.oceanprotocol.squid.core.tx.RemoteCalls;
+import com.oceanprotocol.squid.core.tx.TokenAllowance;
 import com.oceanprotocol.squid.exceptions.InitializationException;
 import com.oceanprotocol.squid.exceptions.InvalidConfiguration;
 import com.oceanprotocol.squid.external.AquariusService;
 import com.oceanprotocol.squid.manager.*;
 import com.oceanprotocol.squid.models.Account;
 import com.typesafe.config.Config;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.exceptions.UndeliverableException;
 import io.reactivex.plugins.RxJavaPlugins;
 import org.apache.logging.log4j.LogManager;
@@ -27,6 +35,7 @@ import org.web3j.crypto.Keys;
 
 import java.io.IOException;
 import java.net.SocketException;
+import java.nio.file.Paths;
 import java.util.Properties;
 
 /**
@@ -75,6 +84,18 @@ public class OceanAPI {
 
     private Account mainAccount;
 
+    private DDOCache ddoCache;
+    private Disposable ddoCacheListener;
+
+    private AgreementStateCache agreementStateCache;
+    private Disposable agreementStateCacheListener;
+
+    private DIDRegistryIndex didRegistryIndex;
+    private Disposable didRegistryIndexFollower;
+
+    private OrderJournal orderJournal;
+    private Disposable orderRecovery;
+
     private static OceanAPI oceanAPI = null;
 
 
@@ -155,6 +176,22 @@ public class OceanAPI {
             throw new InvalidConfiguration(msg);
         }
 
+        if (oceanAPI != null && oceanAPI.ddoCacheListener != null)
+            oceanAPI.ddoCacheListener.dispose();
+        if (oceanAPI != null && oceanAPI.didRegistryIndexFollower != null)
+            oceanAPI.didRegistryIndexFollower.dispose();
+        if (oceanAPI != null && oceanAPI.agreementStateCacheListener != null)
+            oceanAPI.agreementStateCacheListener.dispose();
+        if (oceanAPI != null && oceanAPI.orderRecovery != null)
+            oceanAPI.orderRecovery.dispose();
+        if (oceanAPI != null && oceanAPI.orderJournal != null) {
+            try {
+                oceanAPI.orderJournal.close();
+            } catch (IOException e) {
+                log.warn("Error closing the order journal: " + e.getMessage());
+            }
+        }
+
         oceanAPI = new OceanAPI(oceanConfig);
 
         oceanAPI.mainAccount = new Account(Keys.toChecksumAddress(oceanConfig.getMainAccountAddress()), oceanConfig.getMainAccountPassword());
@@ -239,6 +276,68 @@ public class OceanAPI {
                     .setMainAccount(oceanAPI.mainAccount)
                     .setDidRegistryContract(oceanAPI.didRegistryContract);
 
+            if (oceanConfig.isTokenAllowanceEnabled()) {
+                // The allowance is shared by the managers that approve tokens of the main account to the LockRewardCondition
+                OceanToken tokenContract = oceanAPI.tokenContract;
+                OceanManager oceanManager = oceanAPI.oceanManager;
+                String ownerAddress = oceanAPI.mainAccount.address;
+                String lockRewardAddress = Keys.toChecksumAddress(oceanAPI.lockRewardCondition.getContractAddress());
+                TokenAllowance tokenAllowance = TokenAllowance.getInstance(
+                        () -> RemoteCalls.toSingle(tokenContract.allowance(ownerAddress, lockRewardAddress)),
+                        value -> oceanManager.tokenApproveAsync(tokenContract, lockRewardAddress, value.toString()),
+                        oceanConfig.getTokenApprovalChunk());
+                oceanAPI.oceanManager.setTokenAllowance(tokenAllowance);
+                oceanAPI.conditionsManager.setTokenAllowance(tokenAllowance);
+            }
+
+            if (oceanConfig.getDdoCacheMaxSize() > 0) {
+                oceanAPI.ddoCache = DDOCache.getInstance(oceanConfig.getDdoCacheMaxSize(), oceanConfig.getDdoCacheTtl());
+                oceanAPI.ddoCacheListener = oceanAPI.ddoCache.listenForUpdates(oceanAPI.keeperService, oceanAPI.didRegistryContract);
+                oceanAPI.oceanManager.setDDOCache(oceanAPI.ddoCache);
+                oceanAPI.agreementsManager.setDDOCache(oceanAPI.ddoCache);
+                oceanAPI.conditionsManager.setDDOCache(oceanAPI.ddoCache);
+                oceanAPI.assetsManager.setDDOCache(oceanAPI.ddoCache);
+            }
+
+            if (oceanConfig.getAgreementCacheMaxSize() > 0) {
+                oceanAPI.agreementStateCache = AgreementStateCache.getInstance(oceanConfig.getAgreementCacheMaxSize(), oceanConfig.getAgreementCacheTtl());
+                oceanAPI.agreementStateCacheListener = oceanAPI.agreementStateCache.listenForEvents(oceanAPI.keeperService,
+                        oceanAPI.escrowAccessSecretStoreTemplate,
+                        oceanAPI.escrowComputeExecutionTemplate,
+                        oceanAPI.lockRewardCondition,
+                        oceanAPI.accessSecretStoreCondition,
+                        oceanAPI.computeExecutionCondition,
+                        oceanAPI.escrowReward);
+                oceanAPI.agreementsManager.setAgreementStateCache(oceanAPI.agreementStateCache);
+            }
+
+            if (oceanConfig.getSearchCacheTtl() > 0) {
+                // Shared with the OceanManager, as it stores the DDOs of the assets registered
+                SearchResultCache searchResultCache = SearchResultCache.getInstance(oceanConfig.getSearchCacheTtl(), oceanConfig.getSearchCacheMaxWeight());
+                oceanAPI.assetsManager.setSearchResultCache(searchResultCache);
+                oceanAPI.oceanManager.setSearchResultCache(searchResultCache);
+            }
+
+            if (oceanConfig.isDidIndexEnabled()) {
+                oceanAPI.didRegistryIndex = DIDRegistryIndex.getInstance(oceanAPI.keeperService, oceanAPI.didRegistryContract,
+                        oceanConfig.getDidIndexFile().isEmpty() ? null : Paths.get(oceanConfig.getDidIndexFile()));
+                oceanAPI.didRegistryIndexFollower = oceanAPI.didRegistryIndex.follow(oceanConfig.getDidIndexPollingInterval());
+                oceanAPI.oceanManager.setDIDRegistryIndex(oceanAPI.didRegistryIndex);
+                oceanAPI.agreementsManager.setDIDRegistryIndex(oceanAPI.didRegistryIndex);
+                oceanAPI.conditionsManager.setDIDRegistryIndex(oceanAPI.didRegistryIndex);
+                oceanAPI.assetsManager.setDIDRegistryIndex(oceanAPI.didRegistryIndex);
+            }
+
+            if (!oceanConfig.getOrderJournalFile().isEmpty()) {
+                oceanAPI.orderJournal = new OrderJournal(Paths.get(oceanConfig.getOrderJournalFile()),
+                        oceanConfig.getOrderJournalFlushInterval(), OrderJournal.DEFAULT_COMPACT_SIZE);
+                oceanAPI.oceanManager.setOrderJournal(oceanAPI.orderJournal);
+                oceanAPI.orderRecovery = oceanAPI.oceanManager.recoverOrders().subscribe(
+                        result -> log.info("Order " + result.getServiceAgreementId() + " recovered. Access granted: "
+                                + result.isAccessGranted() + ", refund: " + result.isRefund()),
+                        throwable -> log.error("Error recovering the orders: " + throwable.getMessage()));
+            }
+
             oceanAPI.accountsAPI = new AccountsImpl(oceanAPI.accountsManager);
             oceanAPI.agreementsAPI = new AgreementsImpl(oceanAPI.agreementsManager, oceanAPI.oceanManager);
             oceanAPI.conditionsAPI = new ConditionsImpl(oceanAPI.conditionsManager);
@@ -20,7 +20,11 @@ public class OceanConfig {
     public static final String KEEPER_GAS_PRICE = "keeper.gasPrice";
     public static final String KEEPER_TX_ATTEMPTS = "keeper.tx.attempts";
     public static final String KEEPER_TX_SLEEPDURATION = "keeper.tx.sleepDuration";
+    public static final String KEEPER_TX_NONCE_TRACKING = "keeper.tx.nonceTracking";
+    public static final String KEEPER_TX_CHAIN_ID = "keeper.tx.chainId";
     public static final String AQUARIUS_URL = "aquarius.url";
+    public static final String AQUARIUS_MAX_CONNECTIONS = "aquarius.http.maxConnectionsPerRoute";
+    public static final String AQUARIUS_IDLE_TIMEOUT = "aquarius.http.idleTimeout";
     public static final String SECRETSTORE_URL = "secretstore.url";
     public static final String PROVIDER_ADDRESS = "provider.address";
     public static final String MAIN_ACCOUNT_ADDRESS = "account.main.address";
@@ -39,13 +43,42 @@ public class OceanConfig {
     public static final String COMPUTE_EXECUTION_CONDITION_ADDRESS = "contract.ComputeExecutionCondition.address";
     public static final String ESCROW_COMPUTE_EXECUTION_CONDITION_ADDRESS = "contract.EscrowComputeExecutionTemplate.address";
     public static final String CONSUME_BASE_PATH = "consume.basePath";
+    public static final String CONSUME_PARALLELISM = "consume.parallelism";
+    public static final String CONSUME_MAX_CONCURRENT_DOWNLOADS = "consume.maxConcurrentDownloads";
+    public static final String CONSUME_SEGMENTS = "consume.segments";
+    public static final String CONSUME_SEGMENT_MIN_SIZE = "consume.segmentMinSize";
+    public static final String CONSUME_RESUMABLE = "consume.resumable";
+    public static final String CONSUME_BUFFER_SIZE = "consume.bufferSize";
+    public static final String CONSUME_VERIFY_CHECKSUM = "consume.verifyChecksum";
+    public static final String CONSUME_CACHE_DIRECTORY = "consume.cache.directory";
+    public static final String CONSUME_CACHE_MAX_SIZE = "consume.cache.maxSize";
+    public static final String DOWNLOAD_SCHEDULER_MAX_CONCURRENT = "download.scheduler.maxConcurrent";
+    public static final String DOWNLOAD_SCHEDULER_MAX_CONCURRENT_PER_ENDPOINT = "download.scheduler.maxConcurrentPerEndpoint";
+    public static final String DOWNLOAD_SCHEDULER_MAX_BYTES_PER_SECOND = "download.scheduler.maxBytesPerSecond";
+    public static final String DDO_CACHE_MAX_SIZE = "ddo.cache.maxSize";
+    public static final String DDO_CACHE_TTL = "ddo.cache.ttl";
+    public static final String AGREEMENT_CACHE_MAX_SIZE = "agreement.cache.maxSize";
+    public static final String AGREEMENT_CACHE_TTL = "agreement.cache.ttl";
+    public static final String SEARCH_CACHE_TTL = "search.cache.ttl";
+    public static final String SEARCH_CACHE_MAX_WEIGHT = "search.cache.maxWeight";
+    public static final String DID_INDEX_ENABLED = "did.index.enabled";
+    public static final String DID_INDEX_FILE = "did.index.file";
+    public static final String DID_INDEX_POLLING_INTERVAL = "did.index.pollingInterval";
+    public static final String ORDER_JOURNAL_FILE = "order.journal.file";
+    public static final String ORDER_JOURNAL_FLUSH_INTERVAL = "order.journal.flushInterval";
+    public static final String TOKEN_ALLOWANCE_ENABLED = "token.allowance.enabled";
+    public static final String TOKEN_APPROVAL_CHUNK = "token.approval.chunk";
 
     private String keeperUrl;
     private BigInteger keeperGasLimit;
     private BigInteger keeperGasPrice;
     private int keeperTxAttempts;
     private long keeperTxSleepDuration;
+    private boolean keeperTxNonceTracking;
+    private Long keeperTxChainId;
     private String aquariusUrl;
+    private int aquariusMaxConnections;
+    private long aquariusIdleTimeout;
     private String secretStoreUrl;
     private String providerAddress;
     private String mainAccountAddress;
@@ -64,6 +97,31 @@ public class OceanConfig {
     private String computeExecutionConditionAddress;
     private String escrowComputeExecutionTemplateAddress;
     private String consumeBasePath;
+    private int ddoCacheMaxSize;
+    private long ddoCacheTtl;
+    private int agreementCacheMaxSize;
+    private long agreementCacheTtl;
+    private long searchCacheTtl;
+    private long searchCacheMaxWeight;
+    private boolean didIndexEnabled;
+    private String didIndexFile;
+    private long didIndexPollingInterval;
+    private String orderJournalFile;
+    private long orderJournalFlushInterval;
+    private boolean tokenAllowanceEnabled;
+    private BigInteger tokenApprovalChunk;
+    private int consumeParallelism;
+    private int consumeMaxConcurrentDownloads;
+    private int consumeSegments;
+    private long consumeSegmentMinSize;
+    private boolean consumeResumable;
+    private int consumeBufferSize;
+    private boolean consumeVerifyChecksum;
+    private String consumeCacheDirectory;
+    private long consumeCacheMaxSize;
+    private int downloadSchedulerMaxConcurrent;
+    private int downloadSchedulerMaxConcurrentPerEndpoint;
+    private long downloadSchedulerMaxBytesPerSecond;
 
     /**
      * Class to hold the result of a Configuration's validation
@@ -238,6 +296,24 @@ public class OceanConfig {
         return this;
     }
 
+    public boolean isKeeperTxNonceTracking() {
+        return keeperTxNonceTracking;
+    }
+
+    public OceanConfig setKeeperTxNonceTracking(boolean keeperTxNonceTracking) {
+        this.keeperTxNonceTracking = keeperTxNonceTracking;
+        return this;
+    }
+
+    public Long getKeeperTxChainId() {
+        return keeperTxChainId;
+    }
+
+    public OceanConfig setKeeperTxChainId(Long keeperTxChainId) {
+        this.keeperTxChainId = keeperTxChainId;
+        return this;
+    }
+
     public String getAquariusUrl() {
         return aquariusUrl;
     }
@@ -247,6 +323,24 @@ public class OceanConfig {
         return this;
     }
 
+    public int getAquariusMaxConnections() {
+        return aquariusMaxConnections;
+    }
+
+    public OceanConfig setAquariusMaxConnections(int aquariusMaxConnections) {
+        this.aquariusMaxConnections = aquariusMaxConnections;
+        return this;
+    }
+
+    public long getAquariusIdleTimeout() {
+        return aquariusIdleTimeout;
+    }
+
+    public OceanConfig setAquariusIdleTimeout(long aquariusIdleTimeout) {
+        this.aquariusIdleTimeout = aquariusIdleTimeout;
+        return this;
+    }
+
     public String getSecretStoreUrl() {
         return secretStoreUrl;
     }
@@ -405,4 +499,229 @@ public class OceanConfig {
     public void setEscrowComputeExecutionTemplateAddress(String escrowComputeExecutionTemplate) {
         this.escrowComputeExecutionTemplateAddress = escrowComputeExecutionTemplate;
     }
+
+    public int getDdoCacheMaxSize() {
+        return ddoCacheMaxSize;
+    }
+
+    public OceanConfig setDdoCacheMaxSize(int ddoCacheMaxSize) {
+        this.ddoCacheMaxSize = ddoCacheMaxSize;
+        return this;
+    }
+
+    public long getDdoCacheTtl() {
+        return ddoCacheTtl;
+    }
+
+    public OceanConfig setDdoCacheTtl(long ddoCacheTtl) {
+        this.ddoCacheTtl = ddoCacheTtl;
+        return this;
+    }
+
+    public int getAgreementCacheMaxSize() {
+        return agreementCacheMaxSize;
+    }
+
+    public OceanConfig setAgreementCacheMaxSize(int agreementCacheMaxSize) {
+        this.agreementCacheMaxSize = agreementCacheMaxSize;
+        return this;
+    }
+
+    public long getAgreementCacheTtl() {
+        return agreementCacheTtl;
+    }
+
+    public OceanConfig setAgreementCacheTtl(long agreementCacheTtl) {
+        this.agreementCacheTtl = agreementCacheTtl;
+        return this;
+    }
+
+    public boolean isDidIndexEnabled() {
+        return didIndexEnabled;
+    }
+
+    public OceanConfig setDidIndexEnabled(boolean didIndexEnabled) {
+        this.didIndexEnabled = didIndexEnabled;
+        return this;
+    }
+
+    public String getDidIndexFile() {
+        return didIndexFile;
+    }
+
+    public OceanConfig setDidIndexFile(String didIndexFile) {
+        this.didIndexFile = didIndexFile;
+        return this;
+    }
+
+    public long getDidIndexPollingInterval() {
+        return didIndexPollingInterval;
+    }
+
+    public OceanConfig setDidIndexPollingInterval(long didIndexPollingInterval) {
+        this.didIndexPollingInterval = didIndexPollingInterval;
+        return this;
+    }
+
+    public long getSearchCacheTtl() {
+        return searchCacheTtl;
+    }
+
+    public OceanConfig setSearchCacheTtl(long searchCacheTtl) {
+        this.searchCacheTtl = searchCacheTtl;
+        return this;
+    }
+
+    public long getSearchCacheMaxWeight() {
+        return searchCacheMaxWeight;
+    }
+
+    public OceanConfig setSearchCacheMaxWeight(long searchCacheMaxWeight) {
+        this.searchCacheMaxWeight = searchCacheMaxWeight;
+        return this;
+    }
+
+    public int getConsumeParallelism() {
+        return consumeParallelism;
+    }
+
+    public OceanConfig setConsumeParallelism(int consumeParallelism) {
+        this.consumeParallelism = consumeParallelism;
+        return this;
+    }
+
+    public int getConsumeMaxConcurrentDownloads() {
+        return consumeMaxConcurrentDownloads;
+    }
+
+    public OceanConfig setConsumeMaxConcurrentDownloads(int consumeMaxConcurrentDownloads) {
+        this.consumeMaxConcurrentDownloads = consumeMaxConcurrentDownloads;
+        return this;
+    }
+
+    public int getConsumeSegments() {
+        return consumeSegments;
+    }
+
+    public OceanConfig setConsumeSegments(int consumeSegments) {
+        this.consumeSegments = consumeSegments;
+        return this;
+    }
+
+    public long getConsumeSegmentMinSize() {
+        return consumeSegmentMinSize;
+    }
+
+    public OceanConfig setConsumeSegmentMinSize(long consumeSegmentMinSize) {
+        this.consumeSegmentMinSize = consumeSegmentMinSize;
+        return this;
+    }
+
+    public boolean isConsumeResumable() {
+        return consumeResumable;
+    }
+
+    public OceanConfig setConsumeResumable(boolean consumeResumable) {
+        this.consumeResumable = consumeResumable;
+        return this;
+    }
+
+    public int getConsumeBufferSize() {
+        return consumeBufferSize;
+    }
+
+    public OceanConfig setConsumeBufferSize(int consumeBufferSize) {
+        this.consumeBufferSize = consumeBufferSize;
+        return this;
+    }
+
+    public boolean isConsumeVerifyChecksum() {
+        return consumeVerifyChecksum;
+    }
+
+    public OceanConfig setConsumeVerifyChecksum(boolean consumeVerifyChecksum) {
+        this.consumeVerifyChecksum = consumeVerifyChecksum;
+        return this;
+    }
+
+    public String getConsumeCacheDirectory() {
+        return consumeCacheDirectory;
+    }
+
+    public OceanConfig setConsumeCacheDirectory(String consumeCacheDirectory) {
+        this.consumeCacheDirectory = consumeCacheDirectory;
+        return this;
+    }
+
+    public long getConsumeCacheMaxSize() {
+        return consumeCacheMaxSize;
+    }
+
+    public OceanConfig setConsumeCacheMaxSize(long consumeCacheMaxSize) {
+        this.consumeCacheMaxSize = consumeCacheMaxSize;
+        return this;
+    }
+
+    public int getDownloadSchedulerMaxConcurrent() {
+        return downloadSchedulerMaxConcurrent;
+    }
+
+    public OceanConfig setDownloadSchedulerMaxConcurrent(int downloadSchedulerMaxConcurrent) {
+        this.downloadSchedulerMaxConcurrent = downloadSchedulerMaxConcurrent;
+        return this;
+    }
+
+    public int getDownloadSchedulerMaxConcurrentPerEndpoint() {
+        return downloadSchedulerMaxConcurrentPerEndpoint;
+    }
+
+    public OceanConfig setDownloadSchedulerMaxConcurrentPerEndpoint(int downloadSchedulerMaxConcurrentPerEndpoint) {
+        this.downloadSchedulerMaxConcurrentPerEndpoint = downloadSchedulerMaxConcurrentPerEndpoint;
+        return this;
+    }
+
+    public long getDownloadSchedulerMaxBytesPerSecond() {
+        return downloadSchedulerMaxBytesPerSecond;
+    }
+
+    public OceanConfig setDownloadSchedulerMaxBytesPerSecond(long downloadSchedulerMaxBytesPerSecond) {
+        this.downloadSchedulerMaxBytesPerSecond = downloadSchedulerMaxBytesPerSecond;
+        return this;
+    }
+
+    public String getOrderJournalFile() {
+        return orderJournalFile;
+    }
+
+    public OceanConfig setOrderJournalFile(String orderJournalFile) {
+        this.orderJournalFile = orderJournalFile;
+        return this;
+    }
+
+    public long getOrderJournalFlushInterval() {
+        return orderJournalFlushInterval;
+    }
+
+    public OceanConfig setOrderJournalFlushInterval(long orderJournalFlushInterval) {
+        this.orderJournalFlushInterval = orderJournalFlushInterval;
+        return this;
+    }
+
+    public BigInteger getTokenApprovalChunk() {
+        return tokenApprovalChunk;
+    }
+
+    public boolean isTokenAllowanceEnabled() {
+        return tokenAllowanceEnabled;
+    }
+
+    public OceanConfig setTokenAllowanceEnabled(boolean tokenAllowanceEnabled) {
+        this.tokenAllowanceEnabled = tokenAllowanceEnabled;
+        return this;
+    }
+
+    public OceanConfig setTokenApprovalChunk(BigInteger tokenApprovalChunk) {
+        this.tokenApprovalChunk = tokenApprovalChunk;
+        return this;
+    }
 }
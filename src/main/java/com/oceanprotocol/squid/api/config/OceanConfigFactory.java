@@ -6,6 +6,16 @@
 package com.oceanprotocol.squid.api.config;
 
 
+import com.oceanprotocol.squid.core.cache.AgreementStateCache;
+import com.oceanprotocol.squid.core.cache.ContentCache;
+import com.oceanprotocol.squid.core.cache.DDOCache;
+import com.oceanprotocol.squid.core.cache.SearchResultCache;
+import com.oceanprotocol.squid.core.download.FileChannelDownloader;
+import com.oceanprotocol.squid.core.download.SegmentedDownloader;
+import com.oceanprotocol.squid.core.events.DIDRegistryIndex;
+import com.oceanprotocol.squid.core.orders.OrderJournal;
+import com.oceanprotocol.squid.external.PooledHttpClient;
+import com.oceanprotocol.squid.manager.OceanManager;
 import org.web3j.tx.TransactionManager;
 
 import java.math.BigInteger;
@@ -49,8 +59,19 @@ public class OceanConfigFactory {
                 Long.parseLong(
                         (String) properties.getOrDefault(OceanConfig.KEEPER_TX_SLEEPDURATION, String.valueOf(TransactionManager.DEFAULT_POLLING_FREQUENCY))
                 ));
+        oceanConfig.setKeeperTxNonceTracking(Boolean.parseBoolean(
+                (String) properties.getOrDefault(OceanConfig.KEEPER_TX_NONCE_TRACKING, "false")
+        ));
+        String keeperTxChainId = ((String) properties.getOrDefault(OceanConfig.KEEPER_TX_CHAIN_ID, "")).trim();
+        oceanConfig.setKeeperTxChainId(keeperTxChainId.isEmpty() ? null : Long.parseLong(keeperTxChainId));
 
         oceanConfig.setAquariusUrl((String) properties.getOrDefault(OceanConfig.AQUARIUS_URL, DEFAULT_AQUARIUS_URL));
+        oceanConfig.setAquariusMaxConnections(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.AQUARIUS_MAX_CONNECTIONS, String.valueOf(PooledHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE))
+        ));
+        oceanConfig.setAquariusIdleTimeout(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.AQUARIUS_IDLE_TIMEOUT, String.valueOf(PooledHttpClient.DEFAULT_IDLE_TIMEOUT))
+        ));
         oceanConfig.setSecretStoreUrl((String) properties.getOrDefault(OceanConfig.SECRETSTORE_URL, DEFAULT_SECRET_STORE_URL));
         oceanConfig.setProviderAddress((String) properties.getOrDefault(OceanConfig.PROVIDER_ADDRESS, ""));
         oceanConfig.setDidRegistryAddress((String) properties.getOrDefault(OceanConfig.DID_REGISTRY_ADDRESS, ""));
@@ -64,6 +85,40 @@ public class OceanConfigFactory {
         oceanConfig.setTemplateStoreManagerAddress((String) properties.getOrDefault(OceanConfig.TEMPLATE_STORE_MANAGER_ADDRESS, ""));
         oceanConfig.setDispenserAddress((String) properties.getOrDefault(OceanConfig.DISPENSER_ADDRESS, ""));
         oceanConfig.setConsumeBasePath((String) properties.getOrDefault(OceanConfig.CONSUME_BASE_PATH, DEFAULT_CONSUME_PATH));
+        oceanConfig.setConsumeParallelism(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.CONSUME_PARALLELISM, String.valueOf(OceanManager.DEFAULT_CONSUME_PARALLELISM))
+        ));
+        oceanConfig.setConsumeMaxConcurrentDownloads(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.CONSUME_MAX_CONCURRENT_DOWNLOADS, String.valueOf(OceanManager.DEFAULT_MAX_CONCURRENT_DOWNLOADS))
+        ));
+        oceanConfig.setConsumeSegments(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.CONSUME_SEGMENTS, "1")
+        ));
+        oceanConfig.setConsumeSegmentMinSize(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.CONSUME_SEGMENT_MIN_SIZE, String.valueOf(SegmentedDownloader.DEFAULT_MIN_SEGMENT_SIZE))
+        ));
+        oceanConfig.setConsumeResumable(Boolean.parseBoolean(
+                (String) properties.getOrDefault(OceanConfig.CONSUME_RESUMABLE, "false")
+        ));
+        oceanConfig.setConsumeBufferSize(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.CONSUME_BUFFER_SIZE, String.valueOf(FileChannelDownloader.DEFAULT_BUFFER_SIZE))
+        ));
+        oceanConfig.setConsumeVerifyChecksum(Boolean.parseBoolean(
+                (String) properties.getOrDefault(OceanConfig.CONSUME_VERIFY_CHECKSUM, "false")
+        ));
+        oceanConfig.setConsumeCacheDirectory((String) properties.getOrDefault(OceanConfig.CONSUME_CACHE_DIRECTORY, ""));
+        oceanConfig.setConsumeCacheMaxSize(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.CONSUME_CACHE_MAX_SIZE, String.valueOf(ContentCache.DEFAULT_MAX_SIZE))
+        ));
+        oceanConfig.setDownloadSchedulerMaxConcurrent(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.DOWNLOAD_SCHEDULER_MAX_CONCURRENT, "0")
+        ));
+        oceanConfig.setDownloadSchedulerMaxConcurrentPerEndpoint(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.DOWNLOAD_SCHEDULER_MAX_CONCURRENT_PER_ENDPOINT, "0")
+        ));
+        oceanConfig.setDownloadSchedulerMaxBytesPerSecond(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.DOWNLOAD_SCHEDULER_MAX_BYTES_PER_SECOND, "0")
+        ));
         oceanConfig.setMainAccountAddress((String) properties.getOrDefault(OceanConfig.MAIN_ACCOUNT_ADDRESS, ""));
         oceanConfig.setMainAccountPassword((String) properties.getOrDefault(OceanConfig.MAIN_ACCOUNT_PASSWORD, ""));
         oceanConfig.setMainAccountCredentialsFile((String) properties.getOrDefault(OceanConfig.MAIN_ACCOUNT_CREDENTIALS_FILE, ""));
@@ -71,6 +126,45 @@ public class OceanConfigFactory {
         oceanConfig.setEscrowComputeExecutionTemplateAddress((String) properties.getOrDefault(OceanConfig.ESCROW_COMPUTE_EXECUTION_CONDITION_ADDRESS, ""));
         oceanConfig.setComputeExecutionConditionAddress((String) properties.getOrDefault(OceanConfig.COMPUTE_EXECUTION_CONDITION_ADDRESS, ""));
 
+        oceanConfig.setDdoCacheMaxSize(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.DDO_CACHE_MAX_SIZE, String.valueOf(DDOCache.DEFAULT_MAX_SIZE))
+        ));
+        oceanConfig.setDdoCacheTtl(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.DDO_CACHE_TTL, String.valueOf(DDOCache.DEFAULT_TTL))
+        ));
+
+        oceanConfig.setAgreementCacheMaxSize(Integer.parseInt(
+                (String) properties.getOrDefault(OceanConfig.AGREEMENT_CACHE_MAX_SIZE, "0")
+        ));
+        oceanConfig.setAgreementCacheTtl(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.AGREEMENT_CACHE_TTL, String.valueOf(AgreementStateCache.DEFAULT_TTL))
+        ));
+
+        oceanConfig.setSearchCacheTtl(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.SEARCH_CACHE_TTL, "0")
+        ));
+        oceanConfig.setSearchCacheMaxWeight(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.SEARCH_CACHE_MAX_WEIGHT, String.valueOf(SearchResultCache.DEFAULT_MAX_WEIGHT))
+        ));
+
+        oceanConfig.setDidIndexEnabled(Boolean.parseBoolean(
+                (String) properties.getOrDefault(OceanConfig.DID_INDEX_ENABLED, "false")
+        ));
+        oceanConfig.setDidIndexFile((String) properties.getOrDefault(OceanConfig.DID_INDEX_FILE, ""));
+        oceanConfig.setDidIndexPollingInterval(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.DID_INDEX_POLLING_INTERVAL, String.valueOf(DIDRegistryIndex.DEFAULT_POLLING_INTERVAL))
+        ));
+
+        oceanConfig.setOrderJournalFile((String) properties.getOrDefault(OceanConfig.ORDER_JOURNAL_FILE, ""));
+        oceanConfig.setOrderJournalFlushInterval(Long.parseLong(
+                (String) properties.getOrDefault(OceanConfig.ORDER_JOURNAL_FLUSH_INTERVAL, String.valueOf(OrderJournal.DEFAULT_FLUSH_INTERVAL))
+        ));
+
+        oceanConfig.setTokenAllowanceEnabled(Boolean.parseBoolean(
+                (String) properties.getOrDefault(OceanConfig.TOKEN_ALLOWANCE_ENABLED, "false")
+        ));
+        oceanConfig.setTokenApprovalChunk(new BigInteger((String) properties.getOrDefault(OceanConfig.TOKEN_APPROVAL_CHUNK, "0")));
+
         return oceanConfig;
 
     }
@@ -10,11 +10,18 @@ import com.oceanprotocol.keeper.contracts.*;
 import com.oceanprotocol.secretstore.core.EvmDto;
 import com.oceanprotocol.secretstore.core.SecretStoreDto;
 import com.oceanprotocol.squid.api.config.OceanConfig;
+import com.oceanprotocol.squid.core.cache.ContentCache;
+import com.oceanprotocol.squid.core.download.DownloadScheduler;
+import com.oceanprotocol.squid.core.tx.NonceTrackingTransactionManager;
 import com.oceanprotocol.squid.external.AquariusService;
+import com.oceanprotocol.squid.external.BrizoService;
+import com.oceanprotocol.squid.external.PooledHttpClient;
 import com.oceanprotocol.squid.manager.*;
 import org.web3j.crypto.CipherException;
+import org.web3j.tx.TransactionManager;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Helper to initialize all the managers, services and contracts needed for the API
@@ -22,6 +29,7 @@ import java.io.IOException;
 public class OceanInitializationHelper {
 
     private OceanConfig oceanConfig;
+    private TransactionManager txManager;
 
     /**
      * Constructor
@@ -56,12 +64,43 @@ public class OceanInitializationHelper {
         return keeper;
     }
 
+    /**
+     * Gets the TransactionManager used by all the contracts to send the transactions of the main account.
+     * If the nonce tracking is enabled, the same NonceTrackingTransactionManager is shared by all the contracts.
+     * It signs the transactions with the chain id configured, or with the network id of the node if there isn't one
+     *
+     * @param keeper the keeper Service
+     * @return the TransactionManager
+     * @throws IOException     IOException
+     * @throws CipherException CipherException
+     */
+    public synchronized TransactionManager getTxManager(KeeperService keeper) throws IOException, CipherException {
+
+        if (!oceanConfig.isKeeperTxNonceTracking())
+            return keeper.getTxManager();
+
+        if (txManager == null) {
+            Long chainId = oceanConfig.getKeeperTxChainId();
+            if (chainId == null)
+                chainId = Long.parseLong(keeper.getWeb3().netVersion().send().getNetVersion());
+
+            txManager = NonceTrackingTransactionManager.getInstance(
+                    keeper.getWeb3(),
+                    keeper.getCredentials(),
+                    chainId,
+                    oceanConfig.getKeeperTxAttempts(),
+                    oceanConfig.getKeeperTxSleepDuration());
+        }
+        return txManager;
+    }
+
     /**
      * Initialize an instance of AquariusService
      *
      * @return an initialized AquariusService object
      */
     public AquariusService getAquarius() {
+        AquariusService.setConnectionPoolConfig(oceanConfig.getAquariusMaxConnections(), oceanConfig.getAquariusIdleTimeout());
         return AquariusService.getInstance(oceanConfig.getAquariusUrl());
     }
 
@@ -108,7 +147,29 @@ public class OceanInitializationHelper {
      * @throws CipherException CipherException
      */
     public OceanManager getOceanManager(KeeperService keeperService, AquariusService aquariusService) throws IOException, CipherException {
-        return OceanManager.getInstance(keeperService, aquariusService);
+        BrizoService.setDownloadPoolConfig(
+                Math.max(PooledHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                        oceanConfig.getConsumeMaxConcurrentDownloads() * oceanConfig.getConsumeSegments()));
+        if (oceanConfig.getDownloadSchedulerMaxConcurrent() > 0
+                || oceanConfig.getDownloadSchedulerMaxConcurrentPerEndpoint() > 0
+                || oceanConfig.getDownloadSchedulerMaxBytesPerSecond() > 0)
+            BrizoService.setDownloadScheduler(DownloadScheduler.getInstance(
+                    oceanConfig.getDownloadSchedulerMaxConcurrent(),
+                    oceanConfig.getDownloadSchedulerMaxConcurrentPerEndpoint(),
+                    oceanConfig.getDownloadSchedulerMaxBytesPerSecond()));
+
+        ContentCache contentCache = null;
+        if (oceanConfig.getConsumeCacheDirectory() != null && !oceanConfig.getConsumeCacheDirectory().isBlank())
+            contentCache = ContentCache.getInstance(Paths.get(oceanConfig.getConsumeCacheDirectory()), oceanConfig.getConsumeCacheMaxSize());
+
+        return OceanManager.getInstance(keeperService, aquariusService)
+                .setConsumeParallelism(oceanConfig.getConsumeParallelism())
+                .setMaxConcurrentDownloads(oceanConfig.getConsumeMaxConcurrentDownloads())
+                .setConsumeSegments(oceanConfig.getConsumeSegments(), oceanConfig.getConsumeSegmentMinSize())
+                .setConsumeResumable(oceanConfig.isConsumeResumable())
+                .setConsumeBufferSize(oceanConfig.getConsumeBufferSize())
+                .setConsumeVerifyChecksum(oceanConfig.isConsumeVerifyChecksum())
+                .setContentCache(contentCache);
     }
 
     /**
@@ -190,7 +251,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getTokenAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider());
     }
 
@@ -207,7 +268,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getTemplateStoreManagerAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider());
     }
 
@@ -225,7 +286,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getDispenserAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider()
         );
     }
@@ -245,7 +306,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getDidRegistryAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider()
         );
     }
@@ -263,7 +324,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getEscrowAccessSecretStoreTemplateAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider());
     }
 
@@ -280,7 +341,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getLockrewardConditionsAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider()
         );
     }
@@ -298,7 +359,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getEscrowRewardConditionsAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider()
         );
     }
@@ -316,7 +377,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getAgreementStoreManagerAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider()
         );
     }
@@ -335,7 +396,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getConditionStoreManagerAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider()
         );
     }
@@ -353,7 +414,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getAccessSsConditionsAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider()
         );
     }
@@ -371,7 +432,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getEscrowComputeExecutionTemplateAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider());
     }
 
@@ -388,7 +449,7 @@ public class OceanInitializationHelper {
                 oceanConfig.getComputeExecutionConditionAddress(),
                 keeper.getWeb3(),
 //                keeper.getCredentials(),
-                keeper.getTxManager(),
+                getTxManager(keeper),
                 keeper.getContractGasProvider()
         );
     }
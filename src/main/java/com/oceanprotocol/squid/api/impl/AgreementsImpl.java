@@ -92,6 +92,15 @@ public class AgreementsImpl implements AgreementsAPI {
         }
     }
 
+    @Override
+    public Map<String, AgreementStatus> statuses(List<String> agreementIds) throws ServiceAgreementException {
+        try {
+            return agreementsManager.getStatuses(agreementIds);
+        }catch (Exception e) {
+            throw new ServiceAgreementException(String.join(",", agreementIds), "There was a problem getting the status of the agreements", e);
+        }
+    }
+
     public String sign(String agreementId, DID did, int serviceDefinitionId, Account consumerAccount) throws Exception {
 
         DDO ddo = oceanManager.resolveDID(did);
@@ -9,17 +9,21 @@ import com.oceanprotocol.squid.api.AssetsAPI;
 import com.oceanprotocol.squid.exceptions.*;
 import com.oceanprotocol.squid.manager.AgreementsManager;
 import com.oceanprotocol.squid.manager.AssetsManager;
+import com.oceanprotocol.squid.manager.BaseManager;
 import com.oceanprotocol.squid.manager.OceanManager;
 import com.oceanprotocol.squid.models.DDO;
 import com.oceanprotocol.squid.models.DID;
+import com.oceanprotocol.squid.models.DIDResolution;
 import com.oceanprotocol.squid.models.aquarius.SearchResult;
 import com.oceanprotocol.squid.models.asset.AssetMetadata;
+import com.oceanprotocol.squid.models.asset.ConsumeResult;
 import com.oceanprotocol.squid.models.asset.OrderResult;
 import com.oceanprotocol.squid.models.service.ProviderConfig;
 import com.oceanprotocol.squid.models.service.types.ComputingService;
 import io.reactivex.Flowable;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -75,6 +79,11 @@ public class AssetsImpl implements AssetsAPI {
         return oceanManager.resolveDID(did);
     }
 
+    @Override
+    public List<DIDResolution> resolveAll(List<DID> dids) {
+        return oceanManager.resolveDIDs(dids, BaseManager.DEFAULT_RESOLVE_PARALLELISM);
+    }
+
     @Override
     public List<AssetMetadata.File> getMetadataFiles(DID did) throws DDOException {
 
@@ -109,6 +118,16 @@ public class AssetsImpl implements AssetsAPI {
         return this.query(params, DEFAULT_OFFSET, DEFAULT_PAGE, 1);
     }
 
+    @Override
+    public Flowable<DDO> searchFlowable(String text, int offset, int prefetch) {
+        return assetsManager.searchAssetsFlowable(text, offset, prefetch);
+    }
+
+    @Override
+    public Flowable<DDO> queryFlowable(Map<String, Object> params, int offset, int sort, int prefetch) {
+        return assetsManager.searchAssetsFlowable(params, offset, sort, prefetch);
+    }
+
 
     @Override
     public Boolean consume(String serviceAgreementId, DID did, int serviceDefinitionId, String basePath, int threshold) throws ConsumeServiceException {
@@ -130,6 +149,21 @@ public class AssetsImpl implements AssetsAPI {
         return oceanManager.consume(serviceAgreementId, did, serviceDefinitionId, true, index, basePath, threshold);
     }
 
+    @Override
+    public ConsumeResult consumeParallel(String serviceAgreementId, DID did, int serviceDefinitionId, String basePath, int parallelism) throws ConsumeServiceException {
+        return oceanManager.consumeParallel(serviceAgreementId, did, serviceDefinitionId, basePath, parallelism);
+    }
+
+    @Override
+    public Boolean consumeSegmented(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index, String basePath, int segments) throws ConsumeServiceException {
+        return oceanManager.consumeSegmented(serviceAgreementId, did, serviceDefinitionId, index, basePath, segments);
+    }
+
+    @Override
+    public ConsumeResult retryConsume(ConsumeResult previous, int parallelism) throws ConsumeServiceException {
+        return oceanManager.retryConsume(previous, parallelism);
+    }
+
 
     @Override
     public InputStream consumeBinary(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index) throws ConsumeServiceException{
@@ -151,6 +185,16 @@ public class AssetsImpl implements AssetsAPI {
         return oceanManager.consumeBinary(serviceAgreementId, did, serviceDefinitionId, index, true, rangeStart, rangeEnd, threshold);
     }
 
+    @Override
+    public Flowable<ByteBuffer> consumeStream(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index) throws ConsumeServiceException {
+        return this.consumeStream(serviceAgreementId, did, serviceDefinitionId, index, 0);
+    }
+
+    @Override
+    public Flowable<ByteBuffer> consumeStream(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index, int threshold) throws ConsumeServiceException {
+        return oceanManager.consumeStream(serviceAgreementId, did, serviceDefinitionId, index, threshold);
+    }
+
     @Override
     public Flowable<OrderResult> order(DID did, int serviceDefinitionId) throws OrderException{
         return oceanManager.purchaseAsset(did, serviceDefinitionId);
@@ -171,6 +215,16 @@ public class AssetsImpl implements AssetsAPI {
         return agreementsManager.getConsumerAssets(consumerAddress);
     }
 
+    @Override
+    public Flowable<DID> ownerAssetsFlowable(String ownerAddress) {
+        return assetsManager.getOwnerAssetsFlowable(ownerAddress);
+    }
+
+    @Override
+    public Flowable<DID> consumerAssetsFlowable(String consumerAddress) {
+        return agreementsManager.getConsumerAssetsFlowable(consumerAddress);
+    }
+
     @Override
     public String execute(String agreementId, DID did, int index, String workflowDID) throws ServiceException {
         return oceanManager.executeComputeService(agreementId, did, index, workflowDID);
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.cache;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.keeper.contracts.AccessSecretStoreCondition;
+import com.oceanprotocol.keeper.contracts.ComputeExecutionCondition;
+import com.oceanprotocol.keeper.contracts.EscrowAccessSecretStoreTemplate;
+import com.oceanprotocol.keeper.contracts.EscrowComputeExecutionTemplate;
+import com.oceanprotocol.keeper.contracts.EscrowReward;
+import com.oceanprotocol.keeper.contracts.LockRewardCondition;
+import com.oceanprotocol.squid.models.service.AgreementStatus;
+import io.reactivex.disposables.Disposable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of the status of the agreements, kept up to date with the events of the agreement templates and conditions,
+ * so the status of an agreement can be polled without reading the chain every time.
+ * An agreement is added when its AgreementCreated event is received or when its status is read from the chain,
+ * and the state of its conditions is updated with the Fulfilled events. The entry is removed when the escrow
+ * reward is fulfilled, and the final status read after that is kept until its TTL expires.
+ * Every status expires after the TTL, even if it's not final, so an event missed doesn't keep a stale status
+ * for longer than that. If the subscription to the events stops, the cache is cleared and it doesn't answer anymore.
+ */
+public class AgreementStateCache {
+
+    private static final Logger log = LogManager.getLogger(AgreementStateCache.class);
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TTL = 300;
+
+    public static final String LOCK_REWARD = "lockReward";
+    public static final String ACCESS_SECRET_STORE = "accessSecretStore";
+    public static final String COMPUTE_EXECUTION = "computeExecution";
+    public static final String ESCROW_REWARD = "escrowReward";
+
+    private static final BigInteger UNFULFILLED = BigInteger.ONE;
+    private static final BigInteger FULFILLED = BigInteger.valueOf(2);
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+    private final Set<String> finished;
+    private boolean listening = false;
+
+    private static class Entry {
+
+        private final Map<String, BigInteger> conditions;
+        private final long expiresAt;
+
+        private Entry(Map<String, BigInteger> conditions, long expiresAt) {
+            this.conditions = conditions;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Source of the events listened: the event expected from a contract and the conditions it changes
+     */
+    private static class EventSource {
+
+        private final String eventSignature;
+        private final List<String> conditions;
+        private final boolean created;
+
+        private EventSource(String eventSignature, List<String> conditions, boolean created) {
+            this.eventSignature = eventSignature;
+            this.conditions = conditions;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxSize    maximum number of agreements kept in the cache
+     * @param ttlSeconds seconds the status of an agreement is kept in the cache
+     */
+    public AgreementStateCache(int maxSize, long ttlSeconds) {
+        this(maxSize, ttlSeconds, System::currentTimeMillis);
+    }
+
+    AgreementStateCache(int maxSize, long ttlSeconds, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > AgreementStateCache.this.maxSize;
+            }
+        };
+        this.finished = Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > AgreementStateCache.this.maxSize;
+            }
+        });
+    }
+
+    /**
+     * Builds an instance of AgreementStateCache
+     *
+     * @param maxSize    maximum number of agreements kept in the cache
+     * @param ttlSeconds seconds the status of an agreement is kept in the cache
+     * @return AgreementStateCache instance
+     */
+    public static AgreementStateCache getInstance(int maxSize, long ttlSeconds) {
+        return new AgreementStateCache(maxSize, ttlSeconds);
+    }
+
+    /**
+     * Gets the status cached for an agreement
+     *
+     * @param agreementId the agreement id
+     * @return a copy of the status, or null if it is not cached, it has expired or the cache is not listening for events
+     */
+    public synchronized AgreementStatus get(String agreementId) {
+        if (!listening)
+            return null;
+
+        String key = key(agreementId);
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+
+        if (entry.expiresAt <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        return toStatus(agreementId, entry);
+    }
+
+    /**
+     * Stores the status of an agreement read from the chain. A condition keeps its cached state if it's more advanced,
+     * as an event can be received while the status is read. For the same reason, the status of an agreement
+     * whose escrow reward was fulfilled is only stored if it's final
+     *
+     * @param status the status
+     */
+    public synchronized void put(AgreementStatus status) {
+        if (!listening || status.conditions.isEmpty() || status.conditions.get(0).conditions.isEmpty())
+            return;
+
+        String key = key(status.agreementId);
+        Map<String, BigInteger> conditions = new HashMap<>(status.conditions.get(0).conditions);
+        if (finished.contains(key) && !FULFILLED.equals(conditions.get(ESCROW_REWARD)))
+            return;
+
+        Entry cached = entries.get(key);
+        if (cached != null)
+            cached.conditions.forEach((name, state) -> conditions.merge(name, state, BigInteger::max));
+
+        entries.put(key, new Entry(conditions, expiresAt()));
+    }
+
+    /**
+     * Removes the status cached for an agreement
+     *
+     * @param agreementId the agreement id
+     */
+    public synchronized void invalidate(String agreementId) {
+        entries.remove(key(agreementId));
+    }
+
+    /**
+     * Gets the number of agreements currently cached
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Listens for the AgreementCreated events of the templates and the Fulfilled events of the conditions,
+     * updating the status of the agreements cached. All the events are received through the same filter.
+     *
+     * @param keeperService                   the keeperService
+     * @param escrowAccessSecretStoreTemplate the EscrowAccessSecretStoreTemplate contract
+     * @param escrowComputeExecutionTemplate  the EscrowComputeExecutionTemplate contract
+     * @param lockRewardCondition             the LockRewardCondition contract
+     * @param accessSecretStoreCondition      the AccessSecretStoreCondition contract
+     * @param computeExecutionCondition       the ComputeExecutionCondition contract
+     * @param escrowReward                    the EscrowReward contract
+     * @return a Disposable to stop listening
+     */
+    public Disposable listenForEvents(KeeperService keeperService,
+                                      EscrowAccessSecretStoreTemplate escrowAccessSecretStoreTemplate,
+                                      EscrowComputeExecutionTemplate escrowComputeExecutionTemplate,
+                                      LockRewardCondition lockRewardCondition,
+                                      AccessSecretStoreCondition accessSecretStoreCondition,
+                                      ComputeExecutionCondition computeExecutionCondition,
+                                      EscrowReward escrowReward) {
+
+        Map<String, EventSource> sources = new HashMap<>();
+        sources.put(key(escrowAccessSecretStoreTemplate.getContractAddress()),
+                new EventSource(EventEncoder.encode(EscrowAccessSecretStoreTemplate.AGREEMENTCREATED_EVENT),
+                        Arrays.asList(LOCK_REWARD, ACCESS_SECRET_STORE, ESCROW_REWARD), true));
+        sources.put(key(escrowComputeExecutionTemplate.getContractAddress()),
+                new EventSource(EventEncoder.encode(EscrowComputeExecutionTemplate.AGREEMENTCREATED_EVENT),
+                        Arrays.asList(LOCK_REWARD, COMPUTE_EXECUTION, ESCROW_REWARD), true));
+        sources.put(key(lockRewardCondition.getContractAddress()),
+                new EventSource(EventEncoder.encode(LockRewardCondition.FULFILLED_EVENT), Collections.singletonList(LOCK_REWARD), false));
+        sources.put(key(accessSecretStoreCondition.getContractAddress()),
+                new EventSource(EventEncoder.encode(AccessSecretStoreCondition.FULFILLED_EVENT), Collections.singletonList(ACCESS_SECRET_STORE), false));
+        sources.put(key(computeExecutionCondition.getContractAddress()),
+                new EventSource(EventEncoder.encode(ComputeExecutionCondition.FULFILLED_EVENT), Collections.singletonList(COMPUTE_EXECUTION), false));
+        sources.put(key(escrowReward.getContractAddress()),
+                new EventSource(EventEncoder.encode(EscrowReward.FULFILLED_EVENT), Collections.singletonList(ESCROW_REWARD), false));
+
+        EthFilter filter = new EthFilter(
+                DefaultBlockParameterName.LATEST,
+                DefaultBlockParameterName.LATEST,
+                Arrays.asList(
+                        escrowAccessSecretStoreTemplate.getContractAddress(),
+                        escrowComputeExecutionTemplate.getContractAddress(),
+                        lockRewardCondition.getContractAddress(),
+                        accessSecretStoreCondition.getContractAddress(),
+                        computeExecutionCondition.getContractAddress(),
+                        escrowReward.getContractAddress())
+        );
+        filter.addOptionalTopics(sources.values().stream()
+                .map(source -> source.eventSignature)
+                .distinct()
+                .toArray(String[]::new));
+
+        setListening(true);
+        return keeperService.getWeb3().ethLogFlowable(filter)
+                .doOnCancel(() -> setListening(false))
+                .subscribe(eventLog -> onEvent(sources, eventLog),
+                        e -> {
+                            log.warn("Stopped listening for agreement events: " + e.getMessage());
+                            setListening(false);
+                        });
+    }
+
+    private void onEvent(Map<String, EventSource> sources, Log eventLog) {
+        EventSource source = sources.get(key(eventLog.getAddress()));
+        if (source == null || eventLog.getTopics().size() < 2 || !source.eventSignature.equals(eventLog.getTopics().get(0)))
+            return;
+
+        String agreementId = eventLog.getTopics().get(1);
+        if (source.created)
+            onAgreementCreated(agreementId, source.conditions);
+        else
+            onConditionFulfilled(agreementId, source.conditions.get(0));
+    }
+
+    /**
+     * Adds an agreement created, with all its conditions unfulfilled
+     */
+    synchronized void onAgreementCreated(String agreementId, List<String> conditionNames) {
+        String key = key(agreementId);
+        if (entries.containsKey(key))
+            return;
+
+        Map<String, BigInteger> conditions = new HashMap<>();
+        conditionNames.forEach(name -> conditions.put(name, UNFULFILLED));
+        entries.put(key, new Entry(conditions, expiresAt()));
+    }
+
+    /**
+     * Updates the state of a condition fulfilled. When the escrow reward is fulfilled the entry is removed,
+     * as the rest of the conditions can be aborted without an event
+     */
+    synchronized void onConditionFulfilled(String agreementId, String conditionName) {
+        String key = key(agreementId);
+        if (ESCROW_REWARD.equals(conditionName)) {
+            finished.add(key);
+            if (entries.remove(key) != null)
+                log.debug("Escrow reward of the agreement " + agreementId + " fulfilled, removed from the cache");
+            return;
+        }
+
+        Entry entry = entries.get(key);
+        if (entry != null)
+            entry.conditions.put(conditionName, FULFILLED);
+    }
+
+    synchronized void setListening(boolean listening) {
+        this.listening = listening;
+        if (!listening) {
+            entries.clear();
+            finished.clear();
+        }
+    }
+
+    private long expiresAt() {
+        return clock.getAsLong() + ttlMillis;
+    }
+
+    private static AgreementStatus toStatus(String agreementId, Entry entry) {
+        AgreementStatus status = new AgreementStatus();
+        status.agreementId = agreementId;
+        AgreementStatus.ConditionStatusMap conditions = new AgreementStatus.ConditionStatusMap();
+        conditions.conditions.putAll(entry.conditions);
+        status.conditions.add(conditions);
+        return status;
+    }
+
+    private static String key(String id) {
+        return Numeric.cleanHexPrefix(id).toLowerCase();
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.cache;
+
+import com.oceanprotocol.squid.models.DID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local cache of the files consumed, stored in a directory and addressed by the checksum declared in the metadata,
+ * so a file consumed again under a new service agreement is not downloaded again.
+ * Files are published with an atomic rename of a temporary file, so an entry is never read while it's written.
+ * The least recently used files are removed when the size of the files cached exceeds the maximum size.
+ * Files are copied to the destination by default. When linking is enabled, a cached file is hard-linked to the
+ * destination instead, so the consumed file shares its content with the entry and must never be modified in place.
+ * The files stored are always copied, as the cache doesn't own them. An entry whose size changed is discarded.
+ */
+public class ContentCache {
+
+    private static final Logger log = LogManager.getLogger(ContentCache.class);
+
+    public static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024 * 1024;
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxSize;
+    private boolean linkFiles = false;
+
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor. The files already stored in the directory are added to the cache
+     *
+     * @param directory the directory where the files are cached
+     * @param maxSize   maximum number of bytes of the files kept in the cache
+     * @throws IOException IOException
+     */
+    public ContentCache(Path directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory);
+        load();
+    }
+
+    /**
+     * Builds an instance of ContentCache
+     *
+     * @param directory the directory where the files are cached
+     * @param maxSize   maximum number of bytes of the files kept in the cache
+     * @return ContentCache instance
+     * @throws IOException IOException
+     */
+    public static ContentCache getInstance(Path directory, long maxSize) throws IOException {
+        return new ContentCache(directory, maxSize);
+    }
+
+    /**
+     * Sets if the cached files are hard-linked to the destination instead of copied when the file system allows it.
+     * The files linked must be replaced and never written in place, or the cached entry is modified with them
+     *
+     * @param linkFiles true to hard-link the files
+     * @return this
+     */
+    public ContentCache setLinkFiles(boolean linkFiles) {
+        this.linkFiles = linkFiles;
+        return this;
+    }
+
+    /**
+     * Gets the key of a file addressed only by its checksum.
+     * Only checksums verified against the content should be used, as different files could declare the same value
+     *
+     * @param checksum the checksum declared in the metadata
+     * @return the key, or null if the file doesn't declare a checksum
+     */
+    public static String key(String checksum) {
+        if (checksum == null || checksum.isBlank())
+            return null;
+        return hash(checksum.trim().toLowerCase());
+    }
+
+    /**
+     * Gets the key of a file of an asset
+     *
+     * @param did      the did of the asset
+     * @param index    the index of the file
+     * @param checksum the checksum declared in the metadata
+     * @return the key, or null if the file doesn't declare a checksum
+     */
+    public static String key(DID did, int index, String checksum) {
+        if (checksum == null || checksum.isBlank())
+            return null;
+        return hash(did.getDid() + "/" + index + "/" + checksum.trim().toLowerCase());
+    }
+
+    private static String hash(String value) {
+        return Numeric.toHexStringNoPrefix(Hash.sha3(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes the file cached for a key to a destination
+     *
+     * @param key         the key of the file
+     * @param destination the path of the file
+     * @return true if the file was cached, false otherwise
+     * @throws IOException IOException
+     */
+    public boolean copyTo(String key, Path destination) throws IOException {
+        return copyTo(key, destination, -1);
+    }
+
+    /**
+     * Writes the file cached for a key to a destination, if it has the size expected
+     *
+     * @param key          the key of the file
+     * @param destination  the path of the file
+     * @param expectedSize the size declared for the file, or a negative value if it's unknown
+     * @return true if the file was cached, false otherwise
+     * @throws IOException IOException
+     */
+    public boolean copyTo(String key, Path destination, long expectedSize) throws IOException {
+
+        Path cached = directory.resolve(key);
+        Long size;
+        synchronized (this) {
+            size = entries.get(key);
+            if (size == null) {
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+
+        try {
+            // The entry was modified after it was stored, or it's not the content declared
+            long cachedSize = Files.size(cached);
+            if (cachedSize != size || (expectedSize >= 0 && cachedSize != expectedSize)) {
+                log.warn("Discarding cached file " + key + " of " + cachedSize + " bytes, expected "
+                        + (expectedSize >= 0 ? expectedSize : size));
+                remove(key);
+                misses.incrementAndGet();
+                return false;
+            }
+            Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+            transfer(cached, destination, linkFiles);
+        } catch (NoSuchFileException e) {
+            // The destination can't be written, the cached file is still valid
+            if (Files.exists(cached))
+                throw e;
+
+            // Evicted while it was read
+            remove(key);
+            misses.incrementAndGet();
+            return false;
+        }
+
+        hits.incrementAndGet();
+        log.debug("Copied cached file " + key + " to " + destination);
+        return true;
+    }
+
+    /**
+     * Stores a file in the cache. Files bigger than the maximum size are not cached
+     *
+     * @param key    the key of the file
+     * @param source the path of the file
+     * @throws IOException IOException
+     */
+    public void put(String key, Path source) throws IOException {
+
+        long size = Files.size(source);
+        if (size > maxSize)
+            return;
+
+        Path tmp = directory.resolve(key + "." + UUID.randomUUID() + TMP_SUFFIX);
+        try {
+            transfer(source, tmp, false);
+            synchronized (this) {
+                Files.move(tmp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Long previous = entries.put(key, size);
+                totalSize += size - (previous == null ? 0 : previous);
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        log.debug("Cached file " + key + " of " + size + " bytes");
+    }
+
+    /**
+     * Removes a file from the cache
+     *
+     * @param key the key of the file
+     * @throws IOException IOException
+     */
+    public synchronized void remove(String key) throws IOException {
+        Long size = entries.remove(key);
+        if (size != null)
+            totalSize -= size;
+        Files.deleteIfExists(directory.resolve(key));
+    }
+
+    /**
+     * Gets the number of files currently cached
+     *
+     * @return the number of files
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of bytes of the files currently cached
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void transfer(Path source, Path target, boolean link) throws IOException {
+        if (link) {
+            try {
+                Files.deleteIfExists(target);
+                Files.createLink(target, source);
+                return;
+            } catch (UnsupportedOperationException | IOException e) {
+                // e.g. the paths are in different file systems
+                log.debug("Unable to link " + source + ", copying it: " + e.getMessage());
+            }
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalSize > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalSize -= eldest.getValue();
+            Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            log.debug("Evicted cached file " + eldest.getKey());
+        }
+    }
+
+    private synchronized void load() throws IOException {
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(TMP_SUFFIX))
+                    // Left by an interrupted put
+                    Files.deleteIfExists(file);
+                else if (Files.isRegularFile(file))
+                    files.add(file);
+            }
+        }
+
+        // The last modified time is updated on every hit, so the least recently used files are added first
+        files.sort(Comparator.comparingLong(file -> {
+            try {
+                return Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException e) {
+                return 0L;
+            }
+        }));
+
+        for (Path file : files) {
+            long size = Files.size(file);
+            entries.put(file.getFileName().toString(), size);
+            totalSize += size;
+        }
+        evict();
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.cache;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.oceanprotocol.keeper.contracts.DIDRegistry;
+import com.oceanprotocol.squid.models.AbstractModel;
+import com.oceanprotocol.squid.models.DDO;
+import com.oceanprotocol.squid.models.DID;
+import io.reactivex.disposables.Disposable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of resolved DDOs, shared by the managers to avoid resolving the same DID several times
+ * during the same flow.
+ * Entries expire after a TTL and the least recently used ones are evicted when the cache is full.
+ * An entry is invalidated as soon as a new DIDAttributeRegistered event is received for its DID.
+ * The DDOs are kept as JSON, so every caller gets its own copy and can't modify the cached one.
+ */
+public class DDOCache {
+
+    private static final Logger log = LogManager.getLogger(DDOCache.class);
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL = 300;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    private static class Entry {
+
+        private final String json;
+        private final long expiresAt;
+
+        private Entry(String json, long expiresAt) {
+            this.json = json;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxSize    maximum number of DDOs kept in the cache
+     * @param ttlSeconds seconds a DDO is kept in the cache
+     */
+    public DDOCache(int maxSize, long ttlSeconds) {
+        this(maxSize, ttlSeconds, System::currentTimeMillis);
+    }
+
+    DDOCache(int maxSize, long ttlSeconds, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DDOCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Builds an instance of DDOCache
+     *
+     * @param maxSize    maximum number of DDOs kept in the cache
+     * @param ttlSeconds seconds a DDO is kept in the cache
+     * @return DDOCache instance
+     */
+    public static DDOCache getInstance(int maxSize, long ttlSeconds) {
+        return new DDOCache(maxSize, ttlSeconds);
+    }
+
+    /**
+     * Gets the DDO cached for a DID
+     *
+     * @param did the did
+     * @return a copy of the DDO, or null if it is not cached or it has expired
+     */
+    public synchronized DDO get(DID did) {
+        String key = key(did.getHash());
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+
+        if (entry.expiresAt <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        try {
+            return AbstractModel.getMapperInstance().readValue(entry.json, DDO.class);
+        } catch (IOException e) {
+            log.warn("Unable to read the cached DDO for DID " + did + ": " + e.getMessage());
+            entries.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a copy of the DDO resolved for a DID
+     *
+     * @param did the did
+     * @param ddo the ddo
+     */
+    public synchronized void put(DID did, DDO ddo) {
+        try {
+            entries.put(key(did.getHash()), new Entry(ddo.toJson(), clock.getAsLong() + ttlMillis));
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to cache the DDO for DID " + did + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the DDO cached for a DID
+     *
+     * @param did the did
+     */
+    public void invalidate(DID did) {
+        invalidate(did.getHash());
+    }
+
+    private synchronized void invalidate(String didHash) {
+        if (entries.remove(key(didHash)) != null)
+            log.debug("Invalidated cached DDO for DID " + didHash);
+    }
+
+    /**
+     * Removes all the cached DDOs
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the number of DDOs currently cached
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Listens for new DIDAttributeRegistered events emitted by the DIDRegistry contract,
+     * invalidating the cached DDO of the DIDs updated.
+     *
+     * @param keeperService the keeperService
+     * @param didRegistry   the DIDRegistry contract
+     * @return a Disposable to stop listening
+     */
+    public Disposable listenForUpdates(KeeperService keeperService, DIDRegistry didRegistry) {
+
+        EthFilter didFilter = new EthFilter(
+                DefaultBlockParameterName.LATEST,
+                DefaultBlockParameterName.LATEST,
+                didRegistry.getContractAddress()
+        );
+        didFilter.addSingleTopic(EventEncoder.encode(DIDRegistry.DIDATTRIBUTEREGISTERED_EVENT));
+
+        return keeperService.getWeb3().ethLogFlowable(didFilter)
+                .subscribe(this::onAttributeRegistered,
+                        e -> log.warn("Stopped listening for DIDRegistry updates: " + e.getMessage()));
+    }
+
+    private void onAttributeRegistered(Log eventLog) {
+        invalidate(Numeric.cleanHexPrefix(eventLog.getTopics().get(1)));
+    }
+
+    private static String key(String didHash) {
+        return didHash.toLowerCase();
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.oceanprotocol.squid.exceptions.DDOException;
+import com.oceanprotocol.squid.models.AbstractModel;
+import com.oceanprotocol.squid.models.aquarius.SearchQuery;
+import com.oceanprotocol.squid.models.aquarius.SearchResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache of the results of the searches sent to Aquarius.
+ * Entries expire after a TTL and the least recently used ones are evicted when the size of the results cached
+ * exceeds the maximum weight. Concurrent requests of the same search wait for a single request to Aquarius.
+ * The SearchResult instances returned are shared, so they shouldn't be modified.
+ */
+public class SearchResultCache {
+
+    private static final Logger log = LogManager.getLogger(SearchResultCache.class);
+
+    public static final long DEFAULT_TTL = 60;
+    public static final long DEFAULT_MAX_WEIGHT = 50 * 1024 * 1024;
+
+    private final long ttlMillis;
+    private final long maxWeight;
+    private final LongSupplier clock;
+    private final ToLongFunction<SearchResult> weigher;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<SearchResult>> inFlight = new ConcurrentHashMap<>();
+    private long totalWeight = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static class Entry {
+
+        private final SearchResult result;
+        private final long weight;
+        private final long expiresAt;
+
+        private Entry(SearchResult result, long weight, long expiresAt) {
+            this.result = result;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Function that requests a search to Aquarius
+     */
+    @FunctionalInterface
+    public interface Loader {
+        SearchResult load() throws DDOException;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param ttlSeconds seconds a result is kept in the cache
+     * @param maxWeight  maximum number of bytes of the results kept in the cache
+     */
+    public SearchResultCache(long ttlSeconds, long maxWeight) {
+        this(ttlSeconds, maxWeight, System::currentTimeMillis, SearchResultCache::weigh);
+    }
+
+    SearchResultCache(long ttlSeconds, long maxWeight, LongSupplier clock, ToLongFunction<SearchResult> weigher) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxWeight = maxWeight;
+        this.clock = clock;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Builds an instance of SearchResultCache
+     *
+     * @param ttlSeconds seconds a result is kept in the cache
+     * @param maxWeight  maximum number of bytes of the results kept in the cache
+     * @return SearchResultCache instance
+     */
+    public static SearchResultCache getInstance(long ttlSeconds, long maxWeight) {
+        return new SearchResultCache(ttlSeconds, maxWeight);
+    }
+
+    /**
+     * Gets the key of a text search
+     *
+     * @param text   the criteria
+     * @param offset parameter to paginate
+     * @param page   parameter to paginate
+     * @return the key
+     */
+    public static String key(String text, int offset, int page) {
+        return "text:" + offset + ":" + page + ":" + text;
+    }
+
+    /**
+     * Gets the key of a query, using its JSON representation with the keys sorted
+     *
+     * @param searchQuery the query
+     * @return the key
+     * @throws DDOException DDOException
+     */
+    public static String key(SearchQuery searchQuery) throws DDOException {
+        try {
+            return "query:" + AbstractModel.getMapperInstance()
+                    .writer()
+                    .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsString(searchQuery);
+        } catch (JsonProcessingException e) {
+            throw new DDOException("Unable to serialize the search query", e);
+        }
+    }
+
+    /**
+     * Gets the result cached for a key, or loads it if it is not cached.
+     * If the same key is being loaded by another thread, waits for its result
+     *
+     * @param key    the key of the search
+     * @param loader function that requests the search to Aquarius
+     * @return the SearchResult
+     * @throws DDOException DDOException
+     */
+    public SearchResult get(String key, Loader loader) throws DDOException {
+
+        SearchResult cached = getIfPresent(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<SearchResult> future = new CompletableFuture<>();
+        CompletableFuture<SearchResult> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            hits.incrementAndGet();
+            return await(running);
+        }
+
+        misses.incrementAndGet();
+        try {
+            SearchResult result = loader.load();
+            put(key, result);
+            future.complete(result);
+            return result;
+        } catch (DDOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private static SearchResult await(CompletableFuture<SearchResult> future) throws DDOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DDOException("Interrupted waiting for the search result", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DDOException)
+                throw (DDOException) e.getCause();
+            throw new DDOException("Unable to search for DDO's", e.getCause());
+        }
+    }
+
+    private synchronized SearchResult getIfPresent(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+
+        if (entry.expiresAt <= clock.getAsLong()) {
+            remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+
+    private synchronized void put(String key, SearchResult result) {
+
+        long weight = weigher.applyAsLong(result);
+        if (weight > maxWeight) {
+            log.debug("Search result of " + weight + " bytes is too big to be cached");
+            return;
+        }
+
+        remove(key);
+        entries.put(key, new Entry(result, weight, clock.getAsLong() + ttlMillis));
+        totalWeight += weight;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            totalWeight -= iterator.next().getValue().weight;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null)
+            totalWeight -= removed.weight;
+    }
+
+    /**
+     * Removes all the cached results
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return totalWeight;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private static long weigh(SearchResult result) {
+        try {
+            return AbstractModel.getMapperInstance().writeValueAsBytes(result).length;
+        } catch (JsonProcessingException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when the content downloaded doesn't match the checksum or the length declared in the metadata
+ */
+public class ChecksumMismatchException extends IOException {
+
+    public ChecksumMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Verifies the checksums declared in the metadata of the files of an asset
+ */
+public class Checksums {
+
+    private static final Logger log = LogManager.getLogger(Checksums.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Checksums() {
+    }
+
+    /**
+     * Gets the MessageDigest algorithm of a checksum.
+     * If the type of checksum is not declared, it's taken from the prefix of the checksum (e.g. sha256:...)
+     * or guessed from its length
+     *
+     * @param checksumType the type of checksum declared in the metadata
+     * @param checksum     the checksum declared in the metadata
+     * @return the name of the algorithm, or null if it can't be known
+     */
+    public static String getAlgorithm(String checksumType, String checksum) {
+
+        if ((checksumType == null || checksumType.isBlank()) && checksum != null && checksum.contains(":"))
+            checksumType = checksum.substring(0, checksum.indexOf(':'));
+
+        if (checksumType != null && !checksumType.isBlank()) {
+            String type = checksumType.trim().toUpperCase().replace("_", "-");
+            switch (type) {
+                case "MD5":
+                    return "MD5";
+                case "SHA1":
+                case "SHA-1":
+                    return "SHA-1";
+                case "SHA256":
+                case "SHA-256":
+                    return "SHA-256";
+                case "SHA512":
+                case "SHA-512":
+                    return "SHA-512";
+                default:
+                    return null;
+            }
+        }
+
+        if (checksum == null)
+            return null;
+
+        switch (getHexValue(checksum).length()) {
+            case 32:
+                return "MD5";
+            case 40:
+                return "SHA-1";
+            case 64:
+                return "SHA-256";
+            case 128:
+                return "SHA-512";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets a MessageDigest to verify a checksum
+     *
+     * @param checksumType the type of checksum declared in the metadata
+     * @param checksum     the checksum declared in the metadata
+     * @return the MessageDigest, or null if the checksum can't be verified
+     */
+    public static MessageDigest getMessageDigest(String checksumType, String checksum) {
+
+        if (checksum == null || checksum.isBlank())
+            return null;
+
+        String algorithm = getAlgorithm(checksumType, checksum);
+        if (algorithm == null) {
+            log.warn("Unable to verify checksums of type " + checksumType);
+            return null;
+        }
+
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("Unable to verify checksums of type " + checksumType + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks if a digest matches the checksum declared
+     *
+     * @param digest   the digest calculated
+     * @param checksum the checksum declared in the metadata
+     * @return true if they match
+     */
+    public static boolean matches(byte[] digest, String checksum) {
+        return Numeric.toHexStringNoPrefix(digest).equalsIgnoreCase(getHexValue(checksum));
+    }
+
+    private static String getHexValue(String checksum) {
+        String value = checksum.trim();
+        return Numeric.cleanHexPrefix(value.substring(value.indexOf(':') + 1));
+    }
+
+    /**
+     * Verifies the checksum of a file
+     *
+     * @param file         the file
+     * @param checksum     the checksum declared in the metadata
+     * @param checksumType the type of checksum declared in the metadata
+     * @throws ChecksumMismatchException if the checksum of the file doesn't match
+     * @throws IOException               IOException
+     */
+    public static void verify(Path file, String checksum, String checksumType) throws IOException {
+
+        MessageDigest messageDigest = getMessageDigest(checksumType, checksum);
+        if (messageDigest == null)
+            return;
+
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+
+        if (!matches(messageDigest.digest(), checksum))
+            throw new ChecksumMismatchException("The checksum of " + file + " doesn't match the checksum " + checksum);
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import com.oceanprotocol.squid.models.AbstractModel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Ranges of bytes of a file already downloaded, persisted in a file next to it, so an interrupted download
+ * can be resumed requesting only the ranges missing.
+ * The progress belongs to a file of a service agreement, and it's discarded if the download doesn't match it.
+ */
+public class DownloadProgress {
+
+    private static final Logger log = LogManager.getLogger(DownloadProgress.class);
+
+    public static final long DEFAULT_SAVE_INTERVAL = 4 * 1024 * 1024;
+
+    private final Path progressFile;
+    private final String serviceAgreementId;
+    private final Integer index;
+    private final long contentLength;
+
+    // start of every range downloaded -> end of the range, excluded
+    private final TreeMap<Long, Long> completed = new TreeMap<>();
+    private long unsavedBytes = 0;
+
+    /**
+     * Content of the progress file
+     */
+    static class Snapshot {
+        public String serviceAgreementId;
+        public Integer index;
+        public long contentLength;
+        public List<long[]> ranges = new ArrayList<>();
+    }
+
+    private DownloadProgress(Path progressFile, String serviceAgreementId, Integer index, long contentLength) {
+        this.progressFile = progressFile;
+        this.serviceAgreementId = serviceAgreementId;
+        this.index = index;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Gets the progress of the download of a file, loading it from the progress file if it was interrupted before
+     *
+     * @param destination        the path of the file downloaded
+     * @param serviceAgreementId the service agreement id
+     * @param index              the index of the file in the asset
+     * @param contentLength      the size of the file
+     * @return the DownloadProgress
+     */
+    public static DownloadProgress getInstance(Path destination, String serviceAgreementId, Integer index, long contentLength) {
+
+        Path progressFile = getProgressFile(destination, serviceAgreementId, index);
+        DownloadProgress progress = new DownloadProgress(progressFile, serviceAgreementId, index, contentLength);
+
+        if (Files.exists(progressFile) && Files.exists(destination))
+            progress.load();
+
+        return progress;
+    }
+
+    /**
+     * Gets the path of the file where the progress of a download is persisted
+     *
+     * @param destination        the path of the file downloaded
+     * @param serviceAgreementId the service agreement id
+     * @param index              the index of the file in the asset
+     * @return the path of the progress file
+     */
+    public static Path getProgressFile(Path destination, String serviceAgreementId, Integer index) {
+        return destination.resolveSibling("." + destination.getFileName() + "." + serviceAgreementId + "-" + index + ".progress");
+    }
+
+    private void load() {
+        try {
+            Snapshot snapshot = AbstractModel.getMapperInstance().readValue(progressFile.toFile(), Snapshot.class);
+            if (!Objects.equals(serviceAgreementId, snapshot.serviceAgreementId) || !Objects.equals(index, snapshot.index)
+                    || contentLength != snapshot.contentLength) {
+                log.warn("Ignoring the progress " + progressFile + ", it belongs to another download");
+                return;
+            }
+            snapshot.ranges.forEach(range -> markCompleted(range[0], range[1]));
+            unsavedBytes = 0;
+            log.debug("Resuming download from " + progressFile + ": " + getCompletedBytes() + " of " + contentLength + " bytes downloaded");
+        } catch (IOException e) {
+            log.warn("Unable to load the progress " + progressFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records a range of bytes as downloaded
+     *
+     * @param start the first byte of the range
+     * @param end   the end of the range, excluded
+     * @return true if the bytes downloaded since the last save exceed the save interval
+     */
+    public synchronized boolean markCompleted(long start, long end) {
+
+        if (end <= start)
+            return false;
+
+        unsavedBytes += end - start;
+
+        // Merges the range with the ranges overlapping or adjacent
+        Map.Entry<Long, Long> previous = completed.floorEntry(start);
+        if (previous != null && previous.getValue() >= start) {
+            start = previous.getKey();
+            end = Math.max(end, previous.getValue());
+        }
+        Map.Entry<Long, Long> next = completed.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            completed.remove(next.getKey());
+            next = completed.ceilingEntry(start);
+        }
+        completed.put(start, end);
+
+        return unsavedBytes >= DEFAULT_SAVE_INTERVAL;
+    }
+
+    /**
+     * Gets the ranges of bytes not downloaded yet
+     *
+     * @return the ranges, as pairs of first and last byte included
+     */
+    public synchronized List<long[]> getMissingRanges() {
+
+        List<long[]> missing = new ArrayList<>();
+        long position = 0;
+        for (Map.Entry<Long, Long> range : completed.entrySet()) {
+            if (range.getKey() > position)
+                missing.add(new long[]{position, range.getKey() - 1});
+            position = Math.max(position, range.getValue());
+        }
+        if (position < contentLength)
+            missing.add(new long[]{position, contentLength - 1});
+        return missing;
+    }
+
+    public synchronized long getCompletedBytes() {
+        return completed.entrySet().stream()
+                .mapToLong(range -> range.getValue() - range.getKey())
+                .sum();
+    }
+
+    public synchronized boolean isCompleted() {
+        return getMissingRanges().isEmpty();
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public Path getProgressFile() {
+        return progressFile;
+    }
+
+    /**
+     * Takes a copy of the ranges downloaded, to be persisted once their data is written to disk
+     *
+     * @return the snapshot of the progress
+     */
+    synchronized Snapshot snapshot() {
+
+        Snapshot snapshot = new Snapshot();
+        snapshot.serviceAgreementId = serviceAgreementId;
+        snapshot.index = index;
+        snapshot.contentLength = contentLength;
+        completed.forEach((start, end) -> snapshot.ranges.add(new long[]{start, end}));
+        unsavedBytes = 0;
+        return snapshot;
+    }
+
+    /**
+     * Persists the progress. The data of the ranges must be written to disk before
+     *
+     * @throws IOException IOException
+     */
+    public void save() throws IOException {
+        save(snapshot());
+    }
+
+    /**
+     * Persists a snapshot of the progress. The snapshot must be taken before the data is written to disk,
+     * so the ranges completed by other workers meanwhile are not persisted before their data
+     *
+     * @param snapshot the snapshot of the progress
+     * @throws IOException IOException
+     */
+    synchronized void save(Snapshot snapshot) throws IOException {
+        Path tmpFile = progressFile.resolveSibling(progressFile.getFileName() + ".tmp");
+        AbstractModel.getMapperInstance().writeValue(tmpFile.toFile(), snapshot);
+        Files.move(tmpFile, progressFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Removes the progress, so the next download starts from the beginning
+     */
+    public synchronized void delete() {
+        completed.clear();
+        unsavedBytes = 0;
+        try {
+            Files.deleteIfExists(progressFile);
+        } catch (IOException e) {
+            log.warn("Unable to delete the progress " + progressFile + ": " + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide scheduler of the downloads sent to the providers.
+ * It limits the number of downloads running at the same time, in total and against the same provider endpoint,
+ * and optionally the bytes per second read by all of them.
+ * The downloads waiting are queued by service agreement and the queues are served in turns, so an agreement
+ * with many big files doesn't delay the files of the rest of the agreements.
+ */
+public class DownloadScheduler {
+
+    private static final Logger log = LogManager.getLogger(DownloadScheduler.class);
+
+    private final int maxConcurrent;
+    private final int maxConcurrentPerEndpoint;
+    private final TokenBucket tokenBucket;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+    private final Map<String, Integer> activePerEndpoint = new HashMap<>();
+    private int active = 0;
+
+    private class Waiter {
+
+        private final String endpoint;
+        private final Condition granted = lock.newCondition();
+        private boolean isGranted = false;
+
+        private Waiter(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxConcurrent            maximum number of downloads at the same time, or 0 for no limit
+     * @param maxConcurrentPerEndpoint maximum number of downloads at the same time from the same endpoint, or 0 for no limit
+     * @param maxBytesPerSecond        maximum number of bytes per second read by all the downloads, or 0 for no limit
+     */
+    public DownloadScheduler(int maxConcurrent, int maxConcurrentPerEndpoint, long maxBytesPerSecond) {
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Integer.MAX_VALUE;
+        this.maxConcurrentPerEndpoint = maxConcurrentPerEndpoint > 0 ? maxConcurrentPerEndpoint : Integer.MAX_VALUE;
+        this.tokenBucket = maxBytesPerSecond > 0 ? new TokenBucket(maxBytesPerSecond) : null;
+    }
+
+    /**
+     * Builds an instance of DownloadScheduler
+     *
+     * @param maxConcurrent            maximum number of downloads at the same time, or 0 for no limit
+     * @param maxConcurrentPerEndpoint maximum number of downloads at the same time from the same endpoint, or 0 for no limit
+     * @param maxBytesPerSecond        maximum number of bytes per second read by all the downloads, or 0 for no limit
+     * @return DownloadScheduler instance
+     */
+    public static DownloadScheduler getInstance(int maxConcurrent, int maxConcurrentPerEndpoint, long maxBytesPerSecond) {
+        return new DownloadScheduler(maxConcurrent, maxConcurrentPerEndpoint, maxBytesPerSecond);
+    }
+
+    /**
+     * Permission to run a download. It must be closed when the download finishes
+     */
+    public class Permit implements Closeable {
+
+        private final String endpoint;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * Wraps the body of the download, limiting the bytes per second read.
+         * The permit is released when the body is closed or read to the end
+         *
+         * @param inputStream the body
+         * @return the body wrapped
+         */
+        public InputStream wrap(InputStream inputStream) {
+            return new ScheduledInputStream(inputStream, this);
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true))
+                release(endpoint);
+        }
+    }
+
+    /**
+     * Waits until a download can be started
+     *
+     * @param endpoint the endpoint of the provider
+     * @param queue    the queue of the download, usually the service agreement id
+     * @return the Permit
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Permit acquire(String endpoint, String queue) throws InterruptedException {
+
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(endpoint);
+            queues.computeIfAbsent(queue, k -> new ArrayDeque<>()).add(waiter);
+            dispatch();
+
+            try {
+                while (!waiter.isGranted)
+                    waiter.granted.await();
+            } catch (InterruptedException e) {
+                if (waiter.isGranted)
+                    release(endpoint);
+                else
+                    remove(queue, waiter);
+                throw e;
+            }
+            return new Permit(endpoint);
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of downloads running
+     *
+     * @return the number of downloads
+     */
+    public int getActive() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of downloads waiting
+     *
+     * @return the number of downloads
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return queues.values().stream().mapToInt(ArrayDeque::size).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(String endpoint) {
+        lock.lock();
+        try {
+            active--;
+            activePerEndpoint.computeIfPresent(endpoint, (k, count) -> count > 1 ? count - 1 : null);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(String queue, Waiter waiter) {
+        ArrayDeque<Waiter> waiters = queues.get(queue);
+        if (waiters != null) {
+            waiters.remove(waiter);
+            if (waiters.isEmpty())
+                queues.remove(queue);
+        }
+    }
+
+    /**
+     * Grants the permits available, taking the first download of every queue in turns.
+     * A download is skipped while its endpoint is at its limit, so a busy provider doesn't block the rest
+     */
+    private void dispatch() {
+
+        while (active < maxConcurrent) {
+            Waiter next = null;
+            String nextQueue = null;
+
+            for (Map.Entry<String, ArrayDeque<Waiter>> entry : queues.entrySet()) {
+                for (Waiter waiter : entry.getValue()) {
+                    if (activePerEndpoint.getOrDefault(waiter.endpoint, 0) < maxConcurrentPerEndpoint) {
+                        next = waiter;
+                        break;
+                    }
+                }
+                if (next != null) {
+                    nextQueue = entry.getKey();
+                    break;
+                }
+            }
+
+            if (next == null)
+                return;
+
+            // The queue served moves to the end, so the rest of the queues are served before it again
+            ArrayDeque<Waiter> waiters = queues.remove(nextQueue);
+            waiters.remove(next);
+            if (!waiters.isEmpty())
+                queues.put(nextQueue, waiters);
+
+            active++;
+            activePerEndpoint.merge(next.endpoint, 1, Integer::sum);
+            next.isGranted = true;
+            next.granted.signal();
+            log.debug("Download from " + next.endpoint + " started for " + nextQueue + ". Running: " + active);
+        }
+    }
+
+    private class ScheduledInputStream extends FilterInputStream {
+
+        private final Permit permit;
+
+        private ScheduledInputStream(InputStream inputStream, Permit permit) {
+            super(inputStream);
+            this.permit = permit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1)
+                permit.close();
+            else
+                throttle(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1)
+                permit.close();
+            else
+                throttle(read);
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                permit.close();
+            }
+        }
+
+        private void throttle(int bytes) throws InterruptedIOException {
+            if (tokenBucket == null)
+                return;
+            try {
+                tokenBucket.acquire(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling the download");
+            }
+        }
+    }
+
+}
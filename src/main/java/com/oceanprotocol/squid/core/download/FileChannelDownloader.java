@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import com.oceanprotocol.squid.external.PooledHttpClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the body of a download in a FileChannel using transferFrom, so the bytes are not copied through
+ * intermediate buffers allocated for every chunk. If the size of the file is known, the file is extended to its
+ * final size before writing it.
+ */
+public class FileChannelDownloader {
+
+    private static final Logger log = LogManager.getLogger(FileChannelDownloader.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private static final int HTTP_OK = 200;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean verify = false;
+    private String checksum;
+    private String checksumType;
+
+    /**
+     * Builds an instance of FileChannelDownloader
+     *
+     * @return FileChannelDownloader instance
+     */
+    public static FileChannelDownloader getInstance() {
+        return new FileChannelDownloader();
+    }
+
+    /**
+     * Sets the maximum number of bytes transferred to the file in every write
+     *
+     * @param bufferSize number of bytes
+     * @return this
+     */
+    public FileChannelDownloader setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(1, bufferSize);
+        return this;
+    }
+
+    /**
+     * Verifies the content downloaded while it's written, against its length and the checksum declared
+     *
+     * @param checksum     the checksum declared, or null to only verify the length
+     * @param checksumType the type of checksum declared
+     * @return this
+     */
+    public FileChannelDownloader verify(String checksum, String checksumType) {
+        this.verify = true;
+        this.checksum = checksum;
+        this.checksumType = checksumType;
+        return this;
+    }
+
+    /**
+     * Downloads the body of a response to a file
+     *
+     * @param response      the response
+     * @param destination   the path of the file downloaded
+     * @param contentLength the size of the file, or a negative value if it's unknown
+     * @return the number of bytes downloaded
+     * @throws ChecksumMismatchException if the content doesn't match the length or checksum declared
+     * @throws IOException               IOException
+     */
+    public long download(PooledHttpClient.StreamResponse response, Path destination, long contentLength) throws IOException {
+
+        InputStream body = getBody(response, destination.getFileName().toString(), contentLength);
+
+        try (FileChannel channel = FileChannel.open(destination,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            if (contentLength > 0)
+                preallocate(channel, contentLength);
+
+            long transferred;
+            try {
+                transferred = transfer(body, channel, 0, Long.MAX_VALUE, bufferSize);
+            } catch (IOException e) {
+                // Closes the connection instead of reading the rest of the body
+                response.abort();
+                throw e;
+            }
+            channel.truncate(transferred);
+
+            log.debug("Downloaded " + transferred + " bytes to " + destination);
+            return transferred;
+        }
+    }
+
+    /**
+     * Gets the body of a download, verifying it if verification is enabled
+     *
+     * @param response      the response
+     * @param name          name of the content used in the errors
+     * @param contentLength the size of the content, or a negative value if it's unknown
+     * @return the body
+     * @throws ChecksumMismatchException if the Content-Length doesn't match the length declared
+     * @throws IOException               if the response is not successful
+     */
+    InputStream getBody(PooledHttpClient.StreamResponse response, String name, long contentLength) throws IOException {
+
+        if (response.getStatusCode() != HTTP_OK)
+            throw new IOException("Unable to download " + name + ". Status code: " + response.getStatusCode());
+
+        if (!verify)
+            return response.getBody();
+
+        if (contentLength >= 0 && response.getContentLength() >= 0 && response.getContentLength() != contentLength)
+            throw new ChecksumMismatchException("The content of " + name + " has " + response.getContentLength()
+                    + " bytes instead of the " + contentLength + " bytes declared");
+        return new VerifyingInputStream(response.getBody(), name, contentLength, checksum, checksumType);
+    }
+
+    /**
+     * Transfers the bytes of a stream to a position of a file
+     *
+     * @param inputStream the stream
+     * @param channel     the channel of the file
+     * @param position    the position of the file where the first byte is written
+     * @param count       the maximum number of bytes transferred
+     * @param bufferSize  the maximum number of bytes transferred in every write
+     * @return the number of bytes transferred
+     * @throws IOException IOException
+     */
+    public static long transfer(InputStream inputStream, FileChannel channel, long position, long count, int bufferSize) throws IOException {
+
+        ReadableByteChannel source = Channels.newChannel(inputStream);
+        long transferred = 0;
+        while (transferred < count) {
+            long written = channel.transferFrom(source, position + transferred, Math.min(bufferSize, count - transferred));
+            // The source blocks until some bytes are available, so nothing transferred means the end of the stream
+            if (written == 0)
+                break;
+            transferred += written;
+        }
+        return transferred;
+    }
+
+    static void preallocate(FileChannel channel, long contentLength) throws IOException {
+        // Writing the last byte extends the file to its final size, so the file system doesn't grow it on every write
+        if (channel.size() < contentLength)
+            channel.write(ByteBuffer.wrap(new byte[1]), contentLength - 1);
+    }
+
+}
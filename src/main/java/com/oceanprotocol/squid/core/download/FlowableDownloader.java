@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import com.oceanprotocol.squid.external.PooledHttpClient;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+
+/**
+ * Gives access to the body of a download as a Flowable of chunks of bytes.
+ * A chunk is only read from the connection when the subscriber requests it, so a slow subscriber doesn't buffer
+ * the content in memory. The request is sent when the Flowable is subscribed, and cancelling the subscription
+ * aborts it, closing the connection instead of reading the rest of the body.
+ */
+public class FlowableDownloader {
+
+    private static final Logger log = LogManager.getLogger(FlowableDownloader.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private final FileChannelDownloader bodyReader = FileChannelDownloader.getInstance();
+
+    /**
+     * Builds an instance of FlowableDownloader
+     *
+     * @return FlowableDownloader instance
+     */
+    public static FlowableDownloader getInstance() {
+        return new FlowableDownloader();
+    }
+
+    /**
+     * Sets the maximum number of bytes of every chunk emitted
+     *
+     * @param chunkSize number of bytes
+     * @return this
+     */
+    public FlowableDownloader setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+        return this;
+    }
+
+    /**
+     * Verifies the content downloaded while it's emitted, against its length and the checksum declared.
+     * The Flowable fails after the last chunk if the content doesn't match
+     *
+     * @param checksum     the checksum declared, or null to only verify the length
+     * @param checksumType the type of checksum declared
+     * @return this
+     */
+    public FlowableDownloader verify(String checksum, String checksumType) {
+        bodyReader.verify(checksum, checksumType);
+        return this;
+    }
+
+    /**
+     * Function that sends the request of a download
+     */
+    @FunctionalInterface
+    public interface ResponseOpener extends Callable<PooledHttpClient.StreamResponse> {
+    }
+
+    /**
+     * Gets the body of a download as a Flowable.
+     * The connection is read in the threads of the io Scheduler, so the subscriber is never blocked by the download
+     *
+     * @param opener        the function that sends the request, called for every subscription
+     * @param name          name of the content used in the errors
+     * @param contentLength the size of the content, or a negative value if it's unknown
+     * @return a Flowable over the chunks of the body
+     */
+    public Flowable<ByteBuffer> download(ResponseOpener opener, String name, long contentLength) {
+
+        return Flowable.using(
+                () -> new BodySource(opener.call(), name, contentLength),
+                source -> Flowable.generate(source::next),
+                BodySource::close)
+                .subscribeOn(Schedulers.io());
+    }
+
+    private class BodySource {
+
+        private final PooledHttpClient.StreamResponse response;
+        private final String name;
+        private final long contentLength;
+
+        private InputStream body;
+        private volatile boolean completed = false;
+        private volatile boolean closed = false;
+
+        private BodySource(PooledHttpClient.StreamResponse response, String name, long contentLength) {
+            this.response = response;
+            this.name = name;
+            this.contentLength = contentLength;
+        }
+
+        private void next(Emitter<ByteBuffer> emitter) {
+            try {
+                if (body == null)
+                    body = bodyReader.getBody(response, name, contentLength);
+
+                byte[] chunk = new byte[chunkSize];
+                int read = body.read(chunk, 0, chunk.length);
+                if (read == -1) {
+                    completed = true;
+                    emitter.onComplete();
+                    return;
+                }
+                // Fills the chunk with the bytes already received, without waiting for more
+                while (read < chunk.length && body.available() > 0) {
+                    int more = body.read(chunk, read, chunk.length - read);
+                    if (more == -1)
+                        break;
+                    read += more;
+                }
+                emitter.onNext(ByteBuffer.wrap(chunk, 0, read));
+
+            } catch (IOException e) {
+                // A read interrupted by the cancellation of the subscription is not an error
+                if (closed)
+                    emitter.onComplete();
+                else
+                    emitter.onError(e);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            if (!completed) {
+                log.debug("Aborting the download of " + name);
+                response.abort();
+            }
+            response.close();
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when the server doesn't return the range of bytes requested
+ */
+public class RangeNotSupportedException extends IOException {
+
+    public RangeNotSupportedException(String message) {
+        super(message);
+    }
+}
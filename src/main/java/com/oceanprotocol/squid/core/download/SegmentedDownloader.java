@@ -0,0 +1,278 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import com.oceanprotocol.squid.external.PooledHttpClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads a file splitting it in ranges of bytes that are requested at the same time.
+ * Every range is written in its position of the destination file, so the ranges don't need to be joined.
+ * With a DownloadProgress, only the ranges not downloaded before are requested.
+ */
+public class SegmentedDownloader {
+
+    private static final Logger log = LogManager.getLogger(SegmentedDownloader.class);
+
+    public static final int DEFAULT_SEGMENTS = 4;
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+
+    private static final Executor DEFAULT_SEGMENT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "squid-download-segment");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int segments = DEFAULT_SEGMENTS;
+    private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+    private Executor executor = DEFAULT_SEGMENT_EXECUTOR;
+    private int bufferSize = FileChannelDownloader.DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Function that requests a range of bytes of the file
+     */
+    @FunctionalInterface
+    public interface RangeFetcher {
+        PooledHttpClient.StreamResponse open(long start, long end) throws IOException;
+    }
+
+    /**
+     * Builds an instance of SegmentedDownloader
+     *
+     * @return SegmentedDownloader instance
+     */
+    public static SegmentedDownloader getInstance() {
+        return new SegmentedDownloader();
+    }
+
+    /**
+     * Sets the maximum number of ranges requested at the same time
+     *
+     * @param segments number of ranges
+     * @return this
+     */
+    public SegmentedDownloader setSegments(int segments) {
+        this.segments = Math.max(1, segments);
+        return this;
+    }
+
+    /**
+     * Sets the minimum size of a range, so small files are not split in too many requests
+     *
+     * @param minSegmentSize number of bytes
+     * @return this
+     */
+    public SegmentedDownloader setMinSegmentSize(long minSegmentSize) {
+        this.minSegmentSize = Math.max(1, minSegmentSize);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes transferred to the file in every write
+     *
+     * @param bufferSize number of bytes
+     * @return this
+     */
+    public SegmentedDownloader setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(1, bufferSize);
+        return this;
+    }
+
+    /**
+     * Sets the Executor used to download the ranges
+     *
+     * @param executor the executor
+     * @return this
+     */
+    public SegmentedDownloader setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Gets the number of ranges used to download a file
+     *
+     * @param contentLength the size of the file
+     * @return the number of ranges
+     */
+    public int getSegmentsFor(long contentLength) {
+        long bySize = (contentLength + minSegmentSize - 1) / minSegmentSize;
+        return (int) Math.max(1, Math.min(segments, bySize));
+    }
+
+    /**
+     * Downloads a file
+     *
+     * @param fetcher       function that requests a range of bytes of the file
+     * @param contentLength the size of the file
+     * @param destination   the path of the file downloaded
+     * @throws RangeNotSupportedException if the server doesn't support range requests
+     * @throws IOException                IOException
+     */
+    public void download(RangeFetcher fetcher, long contentLength, Path destination) throws IOException {
+        download(fetcher, contentLength, destination, null);
+    }
+
+    /**
+     * Downloads the ranges of a file not downloaded yet, recording the progress of the download.
+     * If the download fails, the progress is saved so a new download only requests the ranges missing
+     *
+     * @param fetcher       function that requests a range of bytes of the file
+     * @param contentLength the size of the file
+     * @param destination   the path of the file downloaded
+     * @param progress      the progress of the download, or null to download the whole file
+     * @throws RangeNotSupportedException if the server doesn't support range requests
+     * @throws IOException                IOException
+     */
+    public void download(RangeFetcher fetcher, long contentLength, Path destination, DownloadProgress progress) throws IOException {
+
+        List<long[]> missing = progress == null
+                ? (contentLength > 0 ? Collections.singletonList(new long[]{0, contentLength - 1}) : Collections.emptyList())
+                : progress.getMissingRanges();
+        long missingBytes = missing.stream().mapToLong(range -> range[1] - range[0] + 1).sum();
+
+        int count = getSegmentsFor(missingBytes);
+        List<long[]> ranges = split(missing, Math.max(minSegmentSize, (missingBytes + count - 1) / count));
+        int workers = Math.max(1, Math.min(count, ranges.size()));
+        boolean wholeFile = ranges.size() == 1 && missingBytes == contentLength;
+
+        AtomicBoolean failed = new AtomicBoolean(false);
+        AtomicInteger next = new AtomicInteger();
+
+        log.debug("Downloading " + missingBytes + " of " + contentLength + " bytes to " + destination + " in " + ranges.size()
+                + " ranges, " + workers + " at the same time");
+
+        boolean resume = progress != null && progress.getCompletedBytes() > 0;
+        Set<StandardOpenOption> options = resume
+                ? EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+                : EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try (FileChannel channel = FileChannel.open(destination, options)) {
+
+            // The ranges can only be transferred to positions inside the file
+            FileChannelDownloader.preallocate(channel, contentLength);
+
+            // Every worker takes the next range pending
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+            for (int i = 0; i < workers; i++) {
+                futures[i] = CompletableFuture.runAsync(() -> {
+                    try {
+                        int position;
+                        while (!failed.get() && (position = next.getAndIncrement()) < ranges.size()) {
+                            long[] range = ranges.get(position);
+                            downloadSegment(fetcher, channel, range[0], range[1], wholeFile, failed, progress);
+                        }
+                    } catch (IOException e) {
+                        failed.set(true);
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+            }
+
+            try {
+                CompletableFuture.allOf(futures).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException("Error downloading " + destination, e.getCause());
+            } finally {
+                if (progress != null)
+                    saveProgress(channel, progress);
+            }
+
+            channel.truncate(contentLength);
+        }
+    }
+
+    private static List<long[]> split(List<long[]> ranges, long size) {
+        List<long[]> segments = new ArrayList<>();
+        for (long[] range : ranges) {
+            for (long start = range[0]; start <= range[1]; start += size) {
+                segments.add(new long[]{start, Math.min(range[1], start + size - 1)});
+            }
+        }
+        return segments;
+    }
+
+    private static void saveProgress(FileChannel channel, DownloadProgress progress) {
+        try {
+            // The ranges are taken before the data is written to disk, so the progress never includes bytes lost,
+            // even if other workers complete ranges meanwhile
+            DownloadProgress.Snapshot snapshot = progress.snapshot();
+            channel.force(false);
+            progress.save(snapshot);
+        } catch (IOException e) {
+            log.warn("Unable to save the progress " + progress.getProgressFile() + ": " + e.getMessage());
+        }
+    }
+
+    private void downloadSegment(RangeFetcher fetcher, FileChannel channel, long start, long end,
+                                 boolean wholeFile, AtomicBoolean failed, DownloadProgress progress) throws IOException {
+
+        try (PooledHttpClient.StreamResponse response = fetcher.open(start, end)) {
+            try {
+                readSegment(response, channel, start, end, wholeFile, failed, progress);
+            } catch (IOException e) {
+                // Closes the connection instead of reading the rest of the body
+                response.abort();
+                throw e;
+            }
+        }
+    }
+
+    private void readSegment(PooledHttpClient.StreamResponse response, FileChannel channel, long start, long end,
+                             boolean wholeFile, AtomicBoolean failed, DownloadProgress progress) throws IOException {
+
+        int status = response.getStatusCode();
+        if (status == HTTP_OK && !wholeFile)
+            throw new RangeNotSupportedException("The server returned the whole file instead of the bytes " + start + "-" + end);
+        if (status != HTTP_OK && status != HTTP_PARTIAL_CONTENT)
+            throw new IOException("Unable to download the bytes " + start + "-" + end + ". Status code: " + status);
+
+        long expected = end - start + 1;
+        long position = start;
+        ReadableByteChannel source = Channels.newChannel(response.getBody());
+
+        while (position <= end) {
+            if (failed.get())
+                throw new IOException("Download of the bytes " + start + "-" + end + " cancelled");
+
+            long written = channel.transferFrom(source, position, Math.min(bufferSize, end - position + 1));
+            if (written == 0)
+                break;
+
+            if (progress != null && progress.markCompleted(position, position + written))
+                saveProgress(channel, progress);
+            position += written;
+        }
+
+        if (position - start != expected)
+            throw new IOException("Incomplete download of the bytes " + start + "-" + end + ": received " + (position - start) + " bytes");
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that limits the number of bytes per second read by several downloads.
+ * The bucket holds up to one second of tokens, so short bursts are allowed after an idle period.
+ * A caller takes the tokens it needs in advance and waits until they are refilled, so the waits of
+ * concurrent callers are ordered and none of them starves.
+ */
+public class TokenBucket {
+
+    private final long bytesPerSecond;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Constructor
+     *
+     * @param bytesPerSecond maximum number of bytes per second
+     */
+    public TokenBucket(long bytesPerSecond) {
+        this(bytesPerSecond, System::nanoTime);
+    }
+
+    TokenBucket(long bytesPerSecond, LongSupplier nanoClock) {
+        this.bytesPerSecond = Math.max(1, bytesPerSecond);
+        this.nanoClock = nanoClock;
+        this.tokens = this.bytesPerSecond;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Takes tokens for a number of bytes, waiting until they are available
+     *
+     * @param bytes number of bytes
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        long waitNanos = reserve(bytes);
+        if (waitNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    /**
+     * Takes tokens for a number of bytes, even if they are not available yet
+     *
+     * @param bytes number of bytes
+     * @return the nanoseconds to wait until the tokens taken are refilled
+     */
+    synchronized long reserve(long bytes) {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(bytesPerSecond, tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+        lastRefill = now;
+
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / bytesPerSecond);
+    }
+
+}
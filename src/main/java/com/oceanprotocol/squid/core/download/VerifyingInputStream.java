@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * InputStream that verifies the length and the checksum of the content declared in the metadata while it's read,
+ * so the content doesn't need to be read again to validate it.
+ * Reading more bytes than the length declared fails immediately. The checksum is verified at the end of the stream.
+ */
+public class VerifyingInputStream extends FilterInputStream {
+
+    private final String name;
+    private final long expectedLength;
+    private final String checksum;
+    private final MessageDigest messageDigest;
+
+    private long count = 0;
+    private boolean verified = false;
+    private ChecksumMismatchException mismatch;
+
+    /**
+     * Constructor
+     *
+     * @param inputStream    the stream of the content
+     * @param name           name of the content used in the errors
+     * @param expectedLength the length declared, or a negative value if it's unknown
+     * @param checksum       the checksum declared, or null to only verify the length
+     * @param checksumType   the type of checksum declared
+     */
+    public VerifyingInputStream(InputStream inputStream, String name, long expectedLength, String checksum, String checksumType) {
+        super(inputStream);
+        this.name = name;
+        this.expectedLength = expectedLength;
+        this.checksum = checksum;
+        this.messageDigest = Checksums.getMessageDigest(checksumType, checksum);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (mismatch != null)
+            throw mismatch;
+        int b = super.read();
+        if (b == -1)
+            verify();
+        else {
+            if (messageDigest != null)
+                messageDigest.update((byte) b);
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (mismatch != null)
+            throw mismatch;
+        int read = super.read(buffer, offset, length);
+        if (read == -1)
+            verify();
+        else {
+            if (messageDigest != null)
+                messageDigest.update(buffer, offset, read);
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // The bytes skipped are read, so they are included in the checksum
+        byte[] buffer = new byte[(int) Math.min(8192, Math.max(0, n))];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1)
+                break;
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private void count(int read) throws ChecksumMismatchException {
+        count += read;
+        if (expectedLength >= 0 && count > expectedLength)
+            fail("The content of " + name + " is longer than the " + expectedLength + " bytes declared");
+    }
+
+    private void verify() throws ChecksumMismatchException {
+
+        if (mismatch != null)
+            throw mismatch;
+        if (verified)
+            return;
+        verified = true;
+
+        if (expectedLength >= 0 && count != expectedLength)
+            fail("The content of " + name + " has " + count + " bytes instead of the " + expectedLength + " bytes declared");
+
+        if (messageDigest != null && !Checksums.matches(messageDigest.digest(), checksum))
+            fail("The checksum of " + name + " doesn't match the checksum " + checksum);
+    }
+
+    private void fail(String message) throws ChecksumMismatchException {
+        // Every read after a mismatch fails again, as some readers (e.g. FileChannel.transferFrom) drop
+        // the exceptions thrown after reading some bytes
+        mismatch = new ChecksumMismatchException(message);
+        throw mismatch;
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.events;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.disposables.Disposable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Shares one subscription to an event of a contract between all the agreements waiting for it.
+ * The subscription starts at the current block and every event received is dispatched to the listeners of its
+ * agreement, so the node only keeps one filter per contract and event no matter how many orders are running,
+ * and the history of the chain is not replayed for every order.
+ * The ids of the last events received are kept, so a listener registered just after its event was received
+ * still gets it.
+ * If the subscription fails, it's subscribed again from the last block seen, so the events emitted meanwhile
+ * are not lost. The events of that block are received again, but every listener is notified only once.
+ */
+public class AgreementEventHub {
+
+    private static final Logger log = LogManager.getLogger(AgreementEventHub.class);
+
+    public static final int DEFAULT_RECENT_EVENTS = 1024;
+    public static final long DEFAULT_RESUBSCRIBE_DELAY = 1000;
+
+    private final String name;
+    private final Function<BigInteger, Flowable<AgreementEvent>> source;
+    private final Callable<BigInteger> blockNumber;
+    private final int recentEvents;
+
+    private final Map<String, Set<FlowableEmitter<String>>> listeners = new ConcurrentHashMap<>();
+    private final Map<String, String> recent;
+    private Disposable subscription;
+    private volatile BigInteger lastBlock;
+
+    /**
+     * Event of an agreement received from the chain
+     */
+    public static class AgreementEvent {
+
+        private final String agreementId;
+        private final BigInteger blockNumber;
+
+        /**
+         * Constructor
+         *
+         * @param agreementId the agreement id
+         * @param blockNumber the number of the block of the event, or null if it's unknown
+         */
+        public AgreementEvent(String agreementId, BigInteger blockNumber) {
+            this.agreementId = agreementId;
+            this.blockNumber = blockNumber;
+        }
+
+        public String getAgreementId() {
+            return agreementId;
+        }
+
+        public BigInteger getBlockNumber() {
+            return blockNumber;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param name         name of the event, used in the logs
+     * @param source       function that creates a Flowable with the events, starting at the block given
+     * @param blockNumber  reads the current block, where the first subscription starts
+     * @param recentEvents number of events received kept for the listeners registered late
+     */
+    public AgreementEventHub(String name, Function<BigInteger, Flowable<AgreementEvent>> source,
+                             Callable<BigInteger> blockNumber, int recentEvents) {
+        this.name = name;
+        this.source = source;
+        this.blockNumber = blockNumber;
+        this.recentEvents = recentEvents;
+        this.recent = new LinkedHashMap<String, String>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > AgreementEventHub.this.recentEvents;
+            }
+        };
+    }
+
+    /**
+     * Builds an instance of AgreementEventHub
+     *
+     * @param name        name of the event, used in the logs
+     * @param source      function that creates a Flowable with the events, starting at the block given
+     * @param blockNumber reads the current block, where the first subscription starts
+     * @return AgreementEventHub instance
+     */
+    public static AgreementEventHub getInstance(String name, Function<BigInteger, Flowable<AgreementEvent>> source,
+                                                Callable<BigInteger> blockNumber) {
+        return new AgreementEventHub(name, source, blockNumber, DEFAULT_RECENT_EVENTS);
+    }
+
+    /**
+     * Starts the shared subscription if it is not running
+     *
+     * @return this
+     */
+    public synchronized AgreementEventHub start() {
+        if (subscription != null && !subscription.isDisposed())
+            return this;
+
+        subscription = Flowable.defer(() -> {
+                    if (lastBlock == null)
+                        lastBlock = blockNumber.call();
+                    log.debug("Subscribing to the " + name + " events from the block " + lastBlock);
+                    return source.apply(lastBlock);
+                })
+                .doOnError(e -> log.warn("Error listening for " + name + " events, subscribing again from the block "
+                        + lastBlock + ": " + e.getMessage()))
+                .retryWhen(errors -> errors.flatMap(e -> Flowable.timer(DEFAULT_RESUBSCRIBE_DELAY, TimeUnit.MILLISECONDS)))
+                .subscribe(this::dispatch);
+        return this;
+    }
+
+    /**
+     * Stops the shared subscription
+     */
+    public synchronized void stop() {
+        if (subscription != null)
+            subscription.dispose();
+        subscription = null;
+    }
+
+    /**
+     * Listens for the event of an agreement. The shared subscription is started when this method is called,
+     * so the event is not missed if it's emitted before the Flowable returned is subscribed
+     *
+     * @param agreementId the agreement id
+     * @return a Flowable that emits the agreement id of the event once and completes
+     */
+    public Flowable<String> listen(String agreementId) {
+        start();
+        String key = key(agreementId);
+
+        return Flowable.create(emitter -> {
+            listeners.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(emitter);
+            emitter.setCancellable(() -> removeListener(key, emitter));
+
+            String received;
+            synchronized (recent) {
+                received = recent.get(key);
+            }
+            if (received != null)
+                notifyListeners(key, received);
+        }, BackpressureStrategy.BUFFER);
+    }
+
+    /**
+     * Gets the number of agreements with listeners waiting for their event
+     *
+     * @return the number of agreements
+     */
+    public int getListeners() {
+        return listeners.size();
+    }
+
+    /**
+     * Gets the last block seen by the subscription, where it's subscribed again if it fails
+     *
+     * @return the block number, or null if the subscription was not started yet
+     */
+    public BigInteger getLastBlock() {
+        return lastBlock;
+    }
+
+    private void dispatch(AgreementEvent event) {
+        BigInteger eventBlock = event.getBlockNumber();
+        if (eventBlock != null && (lastBlock == null || eventBlock.compareTo(lastBlock) > 0))
+            lastBlock = eventBlock;
+
+        String agreementId = event.getAgreementId();
+        String key = key(agreementId);
+        synchronized (recent) {
+            recent.put(key, agreementId);
+        }
+        notifyListeners(key, agreementId);
+    }
+
+    /**
+     * Removing the listeners of the agreement is atomic, so every listener is notified only once
+     * even if the event is received while it is being registered
+     */
+    private void notifyListeners(String key, String agreementId) {
+        Set<FlowableEmitter<String>> emitters = listeners.remove(key);
+        if (emitters == null)
+            return;
+
+        log.debug("Received " + name + " event of the agreement " + agreementId);
+        for (FlowableEmitter<String> emitter : emitters) {
+            emitter.onNext(agreementId);
+            emitter.onComplete();
+        }
+    }
+
+    private void removeListener(String key, FlowableEmitter<String> emitter) {
+        listeners.computeIfPresent(key, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private static String key(String agreementId) {
+        return Numeric.cleanHexPrefix(agreementId).toLowerCase();
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.events;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.squid.exceptions.EthereumException;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Scans the logs of a contract from the first to the latest block in windows of blocks, emitting them as a Flowable.
+ * The size of the window adapts to the density of the logs: it shrinks when the node rejects a query
+ * (i.e. too many results) or returns too many logs, and grows when the results are sparse.
+ * A new window is only requested when the logs of the previous one have been consumed, so the memory used is bounded.
+ */
+public class ChunkedLogScanner {
+
+    private static final Logger log = LogManager.getLogger(ChunkedLogScanner.class);
+
+    public static final long DEFAULT_INITIAL_RANGE = 10000;
+    public static final long DEFAULT_MAX_RANGE = 1000000;
+    public static final int DEFAULT_TARGET_RESULTS = 1000;
+
+    private final KeeperService keeperService;
+    private long initialRange = DEFAULT_INITIAL_RANGE;
+    private long maxRange = DEFAULT_MAX_RANGE;
+    private int targetResults = DEFAULT_TARGET_RESULTS;
+
+    /**
+     * Status of a scan
+     */
+    private static class ScanState {
+        private BigInteger from;
+        private BigInteger head;
+        private long range;
+        private final Deque<Log> logs = new ArrayDeque<>();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param keeperService the keeperService
+     */
+    public ChunkedLogScanner(KeeperService keeperService) {
+        this.keeperService = keeperService;
+    }
+
+    /**
+     * Builds an instance of ChunkedLogScanner
+     *
+     * @param keeperService the keeperService
+     * @return ChunkedLogScanner instance
+     */
+    public static ChunkedLogScanner getInstance(KeeperService keeperService) {
+        return new ChunkedLogScanner(keeperService);
+    }
+
+    /**
+     * Sets the number of blocks of the first window
+     *
+     * @param initialRange number of blocks
+     * @return this
+     */
+    public ChunkedLogScanner setInitialRange(long initialRange) {
+        this.initialRange = initialRange;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of blocks of a window
+     *
+     * @param maxRange number of blocks
+     * @return this
+     */
+    public ChunkedLogScanner setMaxRange(long maxRange) {
+        this.maxRange = maxRange;
+        return this;
+    }
+
+    /**
+     * Sets the number of logs per window the scanner tries to get
+     *
+     * @param targetResults number of logs
+     * @return this
+     */
+    public ChunkedLogScanner setTargetResults(int targetResults) {
+        this.targetResults = targetResults;
+        return this;
+    }
+
+    /**
+     * Scans the logs of a contract
+     *
+     * @param contractAddress the address of the contract
+     * @param topics          function that adds the topics to the filter of every window
+     * @return a Flowable with the logs found, sorted by block
+     */
+    public Flowable<Log> scan(String contractAddress, Consumer<EthFilter> topics) {
+
+        return Flowable.generate(
+                () -> {
+                    ScanState state = new ScanState();
+                    state.from = BigInteger.ZERO;
+                    state.head = keeperService.getWeb3().ethBlockNumber().send().getBlockNumber();
+                    state.range = initialRange;
+                    return state;
+                },
+                (ScanState state, Emitter<Log> emitter) -> {
+                    try {
+                        while (state.logs.isEmpty() && state.from.compareTo(state.head) <= 0) {
+                            fetchWindow(state, contractAddress, topics);
+                        }
+                    } catch (EthereumException e) {
+                        emitter.onError(e);
+                        return;
+                    }
+
+                    if (state.logs.isEmpty())
+                        emitter.onComplete();
+                    else
+                        emitter.onNext(state.logs.poll());
+                })
+                .subscribeOn(Schedulers.io());
+    }
+
+    private void fetchWindow(ScanState state, String contractAddress, Consumer<EthFilter> topics) throws EthereumException {
+
+        BigInteger to = state.from.add(BigInteger.valueOf(state.range - 1)).min(state.head);
+
+        EthFilter filter = new EthFilter(
+                DefaultBlockParameter.valueOf(state.from),
+                DefaultBlockParameter.valueOf(to),
+                contractAddress
+        );
+        topics.accept(filter);
+
+        String error;
+        try {
+            EthLog ethLog = keeperService.getWeb3().ethGetLogs(filter).send();
+            if (!ethLog.hasError()) {
+                for (EthLog.LogResult logResult : ethLog.getLogs()) {
+                    state.logs.add((Log) logResult.get());
+                }
+                adaptRange(state, ethLog.getLogs().size());
+                state.from = to.add(BigInteger.ONE);
+                return;
+            }
+            error = ethLog.getError().getMessage();
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+
+        long window = to.subtract(state.from).longValue() + 1;
+        if (window <= 1)
+            throw new EthereumException("Error getting logs of block " + state.from + ": " + error);
+
+        state.range = window / 2;
+        log.debug("Error getting logs from block " + state.from + " (" + error + "), reducing the window to " + state.range + " blocks");
+    }
+
+    private void adaptRange(ScanState state, int results) {
+        if (results > targetResults)
+            state.range = Math.max(1, state.range / 2);
+        else if (results < targetResults / 2)
+            state.range = Math.min(maxRange, state.range * 2);
+    }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.events;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.keeper.contracts.DIDRegistry;
+import com.oceanprotocol.squid.exceptions.DIDFormatException;
+import com.oceanprotocol.squid.exceptions.EthereumException;
+import com.oceanprotocol.squid.models.AbstractModel;
+import com.oceanprotocol.squid.models.DID;
+import com.oceanprotocol.squid.models.DIDAttribute;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.crypto.Keys;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local index of the DIDAttributeRegistered events emitted by the DIDRegistry contract.
+ * The index does a first backfill of the events and after that only requests the blocks mined after the last
+ * block indexed, so the cost of resolving a DID or listing the assets of an owner doesn't grow with the chain.
+ * Optionally the index and its block cursor are persisted in a local file, so a new instance
+ * continues from the last block indexed.
+ */
+public class DIDRegistryIndex {
+
+    private static final Logger log = LogManager.getLogger(DIDRegistryIndex.class);
+
+    public static final long DEFAULT_BLOCK_RANGE = 10000;
+    public static final long DEFAULT_POLLING_INTERVAL = 5000;
+
+    private final KeeperService keeperService;
+    private final DIDRegistry didRegistry;
+    private final Path indexFile;
+    private long blockRange = DEFAULT_BLOCK_RANGE;
+
+    private final Object syncLock = new Object();
+    private final Map<String, DIDAttribute> attributes = new HashMap<>();
+    private final Map<String, Set<String>> ownerDids = new HashMap<>();
+    private BigInteger lastBlock;
+    private boolean synced = false;
+
+    /**
+     * Content of the file where the index is persisted
+     */
+    private static class Snapshot {
+        public String contractAddress;
+        public BigInteger lastBlock;
+        public List<DIDAttribute> attributes = new ArrayList<>();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param keeperService the keeperService
+     * @param didRegistry   the DIDRegistry contract
+     * @param indexFile     file where the index is persisted, or null to keep the index only in memory
+     */
+    public DIDRegistryIndex(KeeperService keeperService, DIDRegistry didRegistry, Path indexFile) {
+        this.keeperService = keeperService;
+        this.didRegistry = didRegistry;
+        this.indexFile = indexFile;
+        load();
+    }
+
+    /**
+     * Builds an instance of DIDRegistryIndex
+     *
+     * @param keeperService the keeperService
+     * @param didRegistry   the DIDRegistry contract
+     * @param indexFile     file where the index is persisted, or null to keep the index only in memory
+     * @return DIDRegistryIndex instance
+     */
+    public static DIDRegistryIndex getInstance(KeeperService keeperService, DIDRegistry didRegistry, Path indexFile) {
+        return new DIDRegistryIndex(keeperService, didRegistry, indexFile);
+    }
+
+    /**
+     * Sets the maximum number of blocks requested in every eth_getLogs call
+     *
+     * @param blockRange number of blocks
+     * @return this
+     */
+    public DIDRegistryIndex setBlockRange(long blockRange) {
+        this.blockRange = blockRange;
+        return this;
+    }
+
+    /**
+     * Indexes the events emitted between the last block indexed and the latest block of the chain
+     *
+     * @throws EthereumException EthereumException
+     */
+    public void sync() throws EthereumException {
+
+        synchronized (syncLock) {
+
+            BigInteger head;
+            try {
+                head = keeperService.getWeb3().ethBlockNumber().send().getBlockNumber();
+            } catch (IOException e) {
+                throw new EthereumException("Error getting the latest block number: " + e.getMessage(), e);
+            }
+
+            final Event event = DIDRegistry.DIDATTRIBUTEREGISTERED_EVENT;
+            final String eventSignature = EventEncoder.encode(event);
+            BigInteger range = BigInteger.valueOf(blockRange);
+
+            BigInteger from = getLastBlock() == null ? BigInteger.ZERO : getLastBlock().add(BigInteger.ONE);
+            boolean changed = false;
+
+            while (from.compareTo(head) <= 0) {
+
+                BigInteger to = from.add(range).subtract(BigInteger.ONE).min(head);
+
+                EthFilter didFilter = new EthFilter(
+                        DefaultBlockParameter.valueOf(from),
+                        DefaultBlockParameter.valueOf(to),
+                        didRegistry.getContractAddress()
+                );
+                didFilter.addSingleTopic(eventSignature);
+
+                EthLog ethLog;
+                try {
+                    ethLog = keeperService.getWeb3().ethGetLogs(didFilter).send();
+                } catch (IOException e) {
+                    throw new EthereumException("Error indexing DIDRegistry events from block " + from + ": " + e.getMessage(), e);
+                }
+                if (ethLog.hasError())
+                    throw new EthereumException("Error indexing DIDRegistry events from block " + from + ": " + ethLog.getError().getMessage());
+
+                List<EthLog.LogResult> logs = ethLog.getLogs();
+                synchronized (this) {
+                    for (EthLog.LogResult logResult : logs) {
+                        index((Log) logResult.get(), event);
+                    }
+                    lastBlock = to;
+                }
+                changed = true;
+
+                if (!logs.isEmpty())
+                    persist();
+
+                from = to.add(BigInteger.ONE);
+            }
+
+            synchronized (this) {
+                synced = true;
+            }
+
+            if (changed)
+                persist();
+        }
+    }
+
+    /**
+     * Keeps the index updated, checking for new blocks periodically
+     *
+     * @param pollingInterval milliseconds between checks
+     * @return a Disposable to stop following the chain
+     */
+    public Disposable follow(long pollingInterval) {
+        return Observable.interval(0, pollingInterval, TimeUnit.MILLISECONDS, Schedulers.io())
+                .subscribe(tick -> {
+                    try {
+                        sync();
+                    } catch (EthereumException e) {
+                        log.warn("Unable to update the DIDRegistry index: " + e.getMessage());
+                    }
+                });
+    }
+
+    private void index(Log eventLog, Event event) {
+
+        List<String> topics = eventLog.getTopics();
+        String didHash = key(topics.get(1));
+        String owner = Keys.toChecksumAddress(Numeric.toHexStringWithPrefixZeroPadded(Numeric.toBigInt(topics.get(2)), 40));
+        String checksum = topics.size() > 3 ? topics.get(3) : null;
+
+        List<Type> nonIndexed = FunctionReturnDecoder.decode(eventLog.getData(), event.getNonIndexedParameters());
+        String url = nonIndexed.get(0).getValue().toString();
+
+        put(new DIDAttribute(didHash, owner, checksum, url, eventLog.getBlockNumber()));
+    }
+
+    private void put(DIDAttribute attribute) {
+        DIDAttribute previous = attributes.put(attribute.did, attribute);
+        if (previous != null && ownerDids.containsKey(key(previous.owner)))
+            ownerDids.get(key(previous.owner)).remove(attribute.did);
+
+        ownerDids.computeIfAbsent(key(attribute.owner), k -> new LinkedHashSet<>()).add(attribute.did);
+    }
+
+    /**
+     * Indicates if the index has been synchronized with the chain at least once
+     *
+     * @return true if the index can be used
+     */
+    public synchronized boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * Gets the last block indexed
+     *
+     * @return the block number, or null if nothing has been indexed yet
+     */
+    public synchronized BigInteger getLastBlock() {
+        return lastBlock;
+    }
+
+    /**
+     * Gets the latest attribute registered for a DID
+     *
+     * @param did the did
+     * @return the DIDAttribute or null if the DID is not indexed
+     */
+    public synchronized DIDAttribute getAttribute(DID did) {
+        return attributes.get(key(did.getHash()));
+    }
+
+    /**
+     * Gets the latest url registered for a DID
+     *
+     * @param did the did
+     * @return the url or null if the DID is not indexed
+     */
+    public synchronized String getUrl(DID did) {
+        DIDAttribute attribute = getAttribute(did);
+        return attribute == null ? null : attribute.url;
+    }
+
+    /**
+     * Gets the latest checksum registered for a DID
+     *
+     * @param did the did
+     * @return the checksum or null if the DID is not indexed
+     */
+    public synchronized String getChecksum(DID did) {
+        DIDAttribute attribute = getAttribute(did);
+        return attribute == null ? null : attribute.checksum;
+    }
+
+    /**
+     * Gets the DIDs whose latest attribute was registered by an owner
+     *
+     * @param ownerAddress ethereum address of the owner
+     * @return list of dids
+     */
+    public synchronized List<DID> getOwnerAssets(String ownerAddress) {
+        List<DID> dids = new ArrayList<>();
+        for (String didHash : ownerDids.getOrDefault(key(ownerAddress), Collections.emptySet())) {
+            try {
+                dids.add(DID.getFromHash(didHash));
+            } catch (DIDFormatException e) {
+                log.warn("Invalid DID indexed " + didHash);
+            }
+        }
+        return dids;
+    }
+
+    private synchronized void load() {
+
+        if (indexFile == null || !Files.exists(indexFile))
+            return;
+
+        try {
+            Snapshot snapshot = AbstractModel.getMapperInstance().readValue(indexFile.toFile(), Snapshot.class);
+            if (!didRegistry.getContractAddress().equalsIgnoreCase(snapshot.contractAddress)) {
+                log.warn("Ignoring DIDRegistry index " + indexFile + ", it belongs to the contract " + snapshot.contractAddress);
+                return;
+            }
+            snapshot.attributes.forEach(this::put);
+            lastBlock = snapshot.lastBlock;
+            log.debug("Loaded DIDRegistry index " + indexFile + " until block " + lastBlock);
+        } catch (IOException e) {
+            log.warn("Unable to load the DIDRegistry index " + indexFile + ": " + e.getMessage());
+        }
+    }
+
+    private void persist() {
+
+        if (indexFile == null)
+            return;
+
+        Snapshot snapshot = new Snapshot();
+        synchronized (this) {
+            snapshot.contractAddress = didRegistry.getContractAddress();
+            snapshot.lastBlock = lastBlock;
+            snapshot.attributes.addAll(attributes.values());
+        }
+        snapshot.attributes.sort(Comparator.comparing(attribute -> attribute.blockNumber));
+
+        try {
+            Path tmpFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            AbstractModel.getMapperInstance().writeValue(tmpFile.toFile(), snapshot);
+            Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to persist the DIDRegistry index " + indexFile + ": " + e.getMessage());
+        }
+    }
+
+    private static String key(String value) {
+        return Numeric.cleanHexPrefix(value).toLowerCase();
+    }
+
+}
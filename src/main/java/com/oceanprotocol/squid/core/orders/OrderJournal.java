@@ -0,0 +1,278 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.orders;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.oceanprotocol.squid.models.AbstractModel;
+import io.reactivex.Completable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local journal of the state of the orders, so the orders interrupted by a restart can be resumed or refunded.
+ * Every transition is appended to a log file as a line of JSON. The lines recorded by all the orders are
+ * written and synced to disk together every few milliseconds, so recording a transition doesn't wait for a
+ * disk sync of its own. The log is compacted when it's opened and when it grows, keeping only the orders
+ * that are not finished.
+ */
+public class OrderJournal implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(OrderJournal.class);
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 20;
+    public static final long DEFAULT_COMPACT_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_PENDING_BYTES = 1024 * 1024;
+
+    private final Path file;
+    private final long compactSize;
+    private final ScheduledExecutorService flusher;
+
+    private final Object lock = new Object();
+    private final Map<String, Entry> openOrders = new LinkedHashMap<>();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    private long size;
+
+    /**
+     * Transition of an order recorded in the journal
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entry {
+        public String agreementId;
+        public String did;
+        public int serviceIndex;
+        public OrderState state;
+        public long timestamp;
+
+        public Entry() {
+        }
+
+        public Entry(String agreementId, String did, int serviceIndex, OrderState state) {
+            this.agreementId = agreementId;
+            this.did = did;
+            this.serviceIndex = serviceIndex;
+            this.state = state;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Constructor. Loads the orders not finished recorded in the file
+     *
+     * @param file          the log file
+     * @param flushInterval milliseconds between the writes of the transitions recorded
+     * @param compactSize   size in bytes of the file that triggers a compaction
+     * @throws IOException IOException
+     */
+    public OrderJournal(Path file, long flushInterval, long compactSize) throws IOException {
+        this.file = file;
+        this.compactSize = compactSize;
+
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        load();
+        compact();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "squid-order-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds an instance of OrderJournal
+     *
+     * @param file the log file
+     * @return OrderJournal instance
+     * @throws IOException IOException
+     */
+    public static OrderJournal getInstance(Path file) throws IOException {
+        return new OrderJournal(file, DEFAULT_FLUSH_INTERVAL, DEFAULT_COMPACT_SIZE);
+    }
+
+    /**
+     * Records a transition of an order. The transition is written with the next batch
+     *
+     * @param agreementId  the service agreement id of the order
+     * @param did          the did of the asset
+     * @param serviceIndex the index of the service
+     * @param state        the new state of the order
+     * @return a Completable that completes when the transition is synced to disk
+     */
+    public Completable record(String agreementId, String did, int serviceIndex, OrderState state) {
+
+        Entry entry = new Entry(agreementId, did, serviceIndex, state);
+        byte[] line;
+        try {
+            line = (AbstractModel.getMapperInstance().writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return Completable.error(e);
+        }
+
+        CompletableFuture<Void> synced = new CompletableFuture<>();
+        boolean flushNow;
+        synchronized (lock) {
+            apply(entry);
+            pending.write(line, 0, line.length);
+            waiting.add(synced);
+            flushNow = pending.size() >= MAX_PENDING_BYTES;
+        }
+        if (flushNow)
+            flusher.execute(this::flushQuietly);
+
+        return Completable.create(emitter -> synced.whenComplete((result, error) -> {
+            if (error != null)
+                emitter.tryOnError(error);
+            else
+                emitter.onComplete();
+        }));
+    }
+
+    /**
+     * Gets the last transition of the orders that are not finished
+     *
+     * @return the list of entries
+     */
+    public List<Entry> getOpenOrders() {
+        synchronized (lock) {
+            return new ArrayList<>(openOrders.values());
+        }
+    }
+
+    /**
+     * Writes and syncs to disk the transitions recorded
+     *
+     * @throws IOException IOException
+     */
+    public void flush() throws IOException {
+
+        synchronized (writeLock) {
+            byte[] bytes;
+            List<CompletableFuture<Void>> synced;
+            synchronized (lock) {
+                if (waiting.isEmpty())
+                    return;
+                bytes = pending.toByteArray();
+                synced = waiting;
+                pending = new ByteArrayOutputStream();
+                waiting = new ArrayList<>();
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(false);
+                size += bytes.length;
+            } catch (IOException e) {
+                synced.forEach(future -> future.completeExceptionally(e));
+                throw e;
+            }
+            synced.forEach(future -> future.complete(null));
+
+            if (size > compactSize)
+                compact();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        synchronized (writeLock) {
+            flush();
+            channel.close();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            log.error("Error writing the order journal " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void apply(Entry entry) {
+        if (entry.state.isFinal())
+            openOrders.remove(entry.agreementId);
+        else
+            openOrders.put(entry.agreementId, entry);
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file))
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                try {
+                    apply(AbstractModel.getMapperInstance().readValue(line, Entry.class));
+                } catch (IOException e) {
+                    // The last line can be incomplete if the process stopped while it was written
+                    log.warn("Ignoring an invalid line of the order journal " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        log.debug("Loaded " + openOrders.size() + " open orders from " + file);
+    }
+
+    /**
+     * Rewrites the log with the last transition of the open orders. The transitions not written yet are
+     * appended to the new file with the next batch
+     */
+    private void compact() throws IOException {
+
+        synchronized (writeLock) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (Entry entry : getOpenOrders())
+                content.write((AbstractModel.getMapperInstance().writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+
+            Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel tmpChannel = FileChannel.open(tmpFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content.toByteArray());
+                while (buffer.hasRemaining())
+                    tmpChannel.write(buffer);
+                tmpChannel.force(false);
+            }
+
+            if (channel != null)
+                channel.close();
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            size = content.size();
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.orders;
+
+/**
+ * States of an order, from the request of the agreement until the access is granted or the tokens are refunded
+ */
+public enum OrderState {
+
+    STARTED,
+    AGREEMENT_CREATED,
+    // Recorded before the fulfill of the LockRewardCondition is sent, as the tokens can be locked from then on
+    LOCK_REWARD_PENDING,
+    LOCK_REWARD_FULFILLED,
+    REFUND_PENDING,
+    COMPLETED,
+    REFUNDED,
+    FAILED;
+
+    /**
+     * Checks if an order in this state doesn't need any other transaction
+     *
+     * @return true if the order is finished
+     */
+    public boolean isFinal() {
+        return this == COMPLETED || this == REFUNDED || this == FAILED;
+    }
+
+}
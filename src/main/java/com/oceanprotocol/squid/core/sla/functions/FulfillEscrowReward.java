@@ -7,7 +7,9 @@ package com.oceanprotocol.squid.core.sla.functions;
 
 import com.oceanprotocol.common.helpers.EncodingHelper;
 import com.oceanprotocol.keeper.contracts.EscrowReward;
+import com.oceanprotocol.squid.core.tx.RemoteCalls;
 import com.oceanprotocol.squid.exceptions.EscrowRewardException;
+import io.reactivex.Single;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.web3j.crypto.Keys;
@@ -78,4 +80,49 @@ public class FulfillEscrowReward {
         }
 
     }
+
+    /**
+     * Executes a fulfill function of a EscrowReward Condition without blocking the caller until the transaction is mined
+     *
+     * @param escrowReward       the EscrowReward contract
+     * @param serviceAgreementId the service agreement id
+     * @param lockRewardAddress  the address of the lockReward contract
+     * @param price              price of the asset
+     * @param consumerAddress    the Address of the consumer
+     * @param lockConditionId    the id of the lock condition
+     * @param releaseConditionId the id of the release condition
+     * @return a Single that emits true when the transaction is mined successfully
+     */
+    public static Single<Boolean> executeFulfillAsync(EscrowReward escrowReward,
+                                                      String serviceAgreementId,
+                                                      String lockRewardAddress,
+                                                      String price,
+                                                      String consumerAddress,
+                                                      String lockConditionId,
+                                                      String releaseConditionId) {
+
+        return Single.defer(() -> RemoteCalls.toSingle(escrowReward.fulfill(
+                EncodingHelper.hexStringToBytes(serviceAgreementId),
+                new BigInteger(price),
+                Keys.toChecksumAddress(lockRewardAddress),
+                consumerAddress,
+                EncodingHelper.hexStringToBytes(lockConditionId),
+                EncodingHelper.hexStringToBytes(releaseConditionId))))
+                .map(receipt -> {
+                    if (!RemoteCalls.isStatusOk(receipt)) {
+                        String msg = "The Status received is not valid executing EscrowReward.Fulfill: " + receipt.getStatus() + " for serviceAgreement " + serviceAgreementId;
+                        log.error(msg);
+                        throw new EscrowRewardException(msg);
+                    }
+                    log.debug("EscrowReward.Fulfill transactionReceipt OK for serviceAgreement " + serviceAgreementId);
+                    return true;
+                })
+                .onErrorResumeNext(e -> {
+                    if (e instanceof EscrowRewardException)
+                        return Single.error(e);
+                    String msg = "Error executing EscrowReward.Fulfill for serviceAgreement " + serviceAgreementId;
+                    log.error(msg + ": " + e.getMessage());
+                    return Single.error(new EscrowRewardException(msg, e));
+                });
+    }
 }
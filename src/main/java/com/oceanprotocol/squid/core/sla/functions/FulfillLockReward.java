@@ -7,7 +7,9 @@ package com.oceanprotocol.squid.core.sla.functions;
 
 import com.oceanprotocol.common.helpers.EncodingHelper;
 import com.oceanprotocol.keeper.contracts.LockRewardCondition;
+import com.oceanprotocol.squid.core.tx.RemoteCalls;
 import com.oceanprotocol.squid.exceptions.LockRewardFulfillException;
+import io.reactivex.Single;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.web3j.crypto.Keys;
@@ -69,4 +71,40 @@ public class FulfillLockReward {
         }
 
     }
+
+    /**
+     * Executes a fulfill function of a LockReward Condition without blocking the caller until the transaction is mined
+     *
+     * @param lockRewardCondition LockRewardCondition contract
+     * @param serviceAgreementId  the service agreement id
+     * @param escrowRewardAddress the address of the EscrowReward Contract
+     * @param price               price of the asset
+     * @return a Single that emits true when the transaction is mined successfully
+     */
+    public static Single<Boolean> executeFulfillAsync(final LockRewardCondition lockRewardCondition,
+                                                      final String serviceAgreementId,
+                                                      final String escrowRewardAddress,
+                                                      final String price) {
+
+        return Single.defer(() -> RemoteCalls.toSingle(lockRewardCondition.fulfill(
+                EncodingHelper.hexStringToBytes(serviceAgreementId),
+                Keys.toChecksumAddress(escrowRewardAddress),
+                new BigInteger(price))))
+                .map(receipt -> {
+                    if (!RemoteCalls.isStatusOk(receipt)) {
+                        String msg = "The Status received is not valid executing LockRewardCondition.Fulfill: " + receipt.getStatus() + " for serviceAgreement " + serviceAgreementId;
+                        log.error(msg);
+                        throw new LockRewardFulfillException(msg);
+                    }
+                    log.debug("LockRewardCondition.Fulfill transactionReceipt OK for serviceAgreement " + serviceAgreementId);
+                    return true;
+                })
+                .onErrorResumeNext(e -> {
+                    if (e instanceof LockRewardFulfillException)
+                        return Single.error(e);
+                    String msg = "Error executing LockRewardCondition.Fulfill for serviceAgreement " + serviceAgreementId;
+                    log.error(msg + ": " + e.getMessage());
+                    return Single.error(new LockRewardFulfillException(msg, e));
+                });
+    }
 }
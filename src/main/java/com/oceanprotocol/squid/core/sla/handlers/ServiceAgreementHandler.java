@@ -12,6 +12,8 @@ import com.oceanprotocol.keeper.contracts.AccessSecretStoreCondition;
 import com.oceanprotocol.keeper.contracts.ComputeExecutionCondition;
 import com.oceanprotocol.keeper.contracts.EscrowAccessSecretStoreTemplate;
 import com.oceanprotocol.keeper.contracts.EscrowComputeExecutionTemplate;
+import com.oceanprotocol.keeper.contracts.LockRewardCondition;
+import com.oceanprotocol.squid.core.events.AgreementEventHub;
 import com.oceanprotocol.squid.exceptions.InitializeConditionsException;
 import com.oceanprotocol.squid.models.AbstractModel;
 import com.oceanprotocol.squid.models.service.Condition;
@@ -21,8 +23,11 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.web3j.abi.EventEncoder;
 import org.web3j.abi.datatypes.Event;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.Log;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -31,6 +36,8 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 
 /**
@@ -40,6 +47,8 @@ public abstract class ServiceAgreementHandler {
 
     private static final Logger log = LogManager.getLogger(ServiceAgreementHandler.class);
 
+    private static final Map<String, AgreementEventHub> eventHubs = new ConcurrentHashMap<>();
+
     private String conditionsTemplate = null;
 
 
@@ -53,6 +62,36 @@ public abstract class ServiceAgreementHandler {
         return token.replaceAll("-", "");
     }
 
+    /**
+     * Gets the hub shared by all the agreements listening for an event of a contract
+     *
+     * @param web3j           the web3j client, used to read the current block
+     * @param contractAddress the address of the contract
+     * @param event           the event
+     * @param source          function that creates the Flowable over the events of a filter
+     * @return the hub
+     */
+    private static AgreementEventHub getEventHub(Web3j web3j, String contractAddress, Event event,
+                                                 Function<EthFilter, Flowable<AgreementEventHub.AgreementEvent>> source) {
+
+        final String eventSignature = EventEncoder.encode(event);
+        return eventHubs.computeIfAbsent(contractAddress.toLowerCase() + eventSignature, k ->
+                AgreementEventHub.getInstance(event.getName() + "@" + contractAddress, fromBlock -> {
+                    EthFilter filter = new EthFilter(
+                            DefaultBlockParameter.valueOf(fromBlock),
+                            DefaultBlockParameterName.LATEST,
+                            contractAddress
+                    );
+                    filter.addSingleTopic(eventSignature);
+                    return source.apply(filter);
+                }, () -> web3j.ethBlockNumber().send().getBlockNumber()));
+    }
+
+    private static AgreementEventHub.AgreementEvent agreementEvent(byte[] agreementId, Log log) {
+        return new AgreementEventHub.AgreementEvent(EncodingHelper.toHexString(agreementId),
+                log == null ? null : log.getBlockNumber());
+    }
+
     /**
      * Define and execute a Filter over the Service Agreement Contract to listen for an AgreementInitialized event
      *
@@ -77,7 +116,22 @@ public abstract class ServiceAgreementHandler {
                 .map(eventResponse -> EncodingHelper.toHexString(eventResponse._agreementId));
     }
 
+    /**
+     * Listen for the AgreementCreated event of an agreement over the Service Agreement Contract.
+     * All the agreements share one filter over the contract, starting at the current block
+     *
+     * @param web3j              the web3j client
+     * @param slaContract        the address of the service agreement contract
+     * @param serviceAgreementId the service agreement Id
+     * @return a Flowable to handle the in an asynchronous fashion
+     */
+    public static Flowable<String> listenExecuteAgreement(Web3j web3j, EscrowAccessSecretStoreTemplate slaContract, String serviceAgreementId) {
 
+        return getEventHub(web3j, slaContract.getContractAddress(), EscrowAccessSecretStoreTemplate.AGREEMENTCREATED_EVENT,
+                filter -> slaContract.agreementCreatedEventFlowable(filter)
+                        .map(eventResponse -> agreementEvent(eventResponse._agreementId, eventResponse.log)))
+                .listen(serviceAgreementId);
+    }
 
     /**
      * Define and execute a Filter over the Service Agreement Contract to listen for an AgreementInitialized event
@@ -103,6 +157,23 @@ public abstract class ServiceAgreementHandler {
                 .map(eventResponse -> EncodingHelper.toHexString(eventResponse._agreementId));
     }
 
+    /**
+     * Listen for the AgreementCreated event of an agreement over the Service Agreement Contract.
+     * All the agreements share one filter over the contract, starting at the current block
+     *
+     * @param web3j              the web3j client
+     * @param slaContract        the address of the service agreement contract
+     * @param serviceAgreementId the service agreement Id
+     * @return a Flowable to handle the event in an asynchronous fashion
+     */
+    public static Flowable<String> listenExecuteAgreement(Web3j web3j, EscrowComputeExecutionTemplate slaContract, String serviceAgreementId) {
+
+        return getEventHub(web3j, slaContract.getContractAddress(), EscrowComputeExecutionTemplate.AGREEMENTCREATED_EVENT,
+                filter -> slaContract.agreementCreatedEventFlowable(filter)
+                        .map(eventResponse -> agreementEvent(eventResponse._agreementId, eventResponse.log)))
+                .listen(serviceAgreementId);
+    }
+
 
     /**
      * Define and execute a Filter over the AccessSecretStoreCondition Contract to listen for an Fulfilled event
@@ -131,6 +202,23 @@ public abstract class ServiceAgreementHandler {
                 .map(eventResponse ->  EncodingHelper.toHexString(eventResponse._agreementId));
     }
 
+    /**
+     * Listen for the Fulfilled event of an agreement over the AccessSecretStoreCondition Contract.
+     * All the agreements share one filter over the contract, starting at the current block
+     *
+     * @param web3j              the web3j client
+     * @param accessCondition     the AccessSecretStoreCondition contract
+     * @param serviceAgreementId the serviceAgreement Id
+     * @return a Flowable to handle the event in an asynchronous fashion
+     */
+    public static Flowable<String> listenForFulfilledEvent(Web3j web3j, AccessSecretStoreCondition accessCondition, String serviceAgreementId) {
+
+        return getEventHub(web3j, accessCondition.getContractAddress(), AccessSecretStoreCondition.FULFILLED_EVENT,
+                filter -> accessCondition.fulfilledEventFlowable(filter)
+                        .map(eventResponse -> agreementEvent(eventResponse._agreementId, eventResponse.log)))
+                .listen(serviceAgreementId);
+    }
+
     /**
      * Define and execute a Filter over the ComputeExecutionCondition Contract to listen for an Fulfilled event
      *
@@ -158,6 +246,40 @@ public abstract class ServiceAgreementHandler {
                 .map(eventResponse ->  EncodingHelper.toHexString(eventResponse._agreementId));
     }
 
+    /**
+     * Listen for the Fulfilled event of an agreement over the ComputeExecutionCondition Contract.
+     * All the agreements share one filter over the contract, starting at the current block
+     *
+     * @param web3j              the web3j client
+     * @param computeCondition    the ComputeExecutionCondition contract
+     * @param serviceAgreementId the serviceAgreement Id
+     * @return a Flowable to handle the event in an asynchronous fashion
+     */
+    public static Flowable<String> listenForFulfilledEvent(Web3j web3j, ComputeExecutionCondition computeCondition, String serviceAgreementId) {
+
+        return getEventHub(web3j, computeCondition.getContractAddress(), ComputeExecutionCondition.FULFILLED_EVENT,
+                filter -> computeCondition.fulfilledEventFlowable(filter)
+                        .map(eventResponse -> agreementEvent(eventResponse._agreementId, eventResponse.log)))
+                .listen(serviceAgreementId);
+    }
+
+    /**
+     * Listen for the Fulfilled event of an agreement over the LockRewardCondition Contract.
+     * All the agreements share one filter over the contract, starting at the current block
+     *
+     * @param web3j              the web3j client
+     * @param lockRewardCondition the LockRewardCondition contract
+     * @param serviceAgreementId the serviceAgreement Id
+     * @return a Flowable to handle the event in an asynchronous fashion
+     */
+    public static Flowable<String> listenForFulfilledEvent(Web3j web3j, LockRewardCondition lockRewardCondition, String serviceAgreementId) {
+
+        return getEventHub(web3j, lockRewardCondition.getContractAddress(), LockRewardCondition.FULFILLED_EVENT,
+                filter -> lockRewardCondition.fulfilledEventFlowable(filter)
+                        .map(eventResponse -> agreementEvent(eventResponse._agreementId, eventResponse.log)))
+                .listen(serviceAgreementId);
+    }
+
 
     /**
      * gets the name of the file that contains a template for the conditions
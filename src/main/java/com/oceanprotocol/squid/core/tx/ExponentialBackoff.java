@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.tx;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between the attempts of a request polled against the chain.
+ * The delay doubles after every attempt up to a maximum, and a random jitter of up to half of the delay is
+ * subtracted, so the requests of many flows started at the same time don't hit the node at the same moment.
+ */
+public class ExponentialBackoff {
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final int maxAttempts;
+
+    /**
+     * Constructor
+     *
+     * @param initialDelay milliseconds to wait after the first attempt
+     * @param maxDelay     maximum number of milliseconds to wait between attempts
+     * @param maxAttempts  maximum number of attempts
+     */
+    public ExponentialBackoff(long initialDelay, long maxDelay, int maxAttempts) {
+        this.initialDelay = Math.max(1, initialDelay);
+        this.maxDelay = Math.max(this.initialDelay, maxDelay);
+        this.maxAttempts = maxAttempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Checks if there are attempts left after an attempt
+     *
+     * @param attempt the attempt, starting at 0
+     * @return true if another attempt can be done
+     */
+    public boolean canRetry(int attempt) {
+        return attempt + 1 < maxAttempts;
+    }
+
+    /**
+     * Gets the milliseconds to wait after an attempt
+     *
+     * @param attempt the attempt, starting at 0
+     * @return the milliseconds to wait
+     */
+    public long getDelay(int attempt) {
+        long delay = (long) Math.min(maxDelay, initialDelay * Math.pow(2, attempt));
+        long half = delay / 2;
+        return delay - ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.tx;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.protocol.exceptions.TransactionException;
+import org.web3j.tx.ChainId;
+import org.web3j.tx.RawTransactionManager;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * TransactionManager that assigns the nonces of the transactions sent from an account locally,
+ * so several transactions of the same account can be sent at the same time without waiting for the previous ones
+ * to be mined. The nonces are taken in order from a counter, and the counter is synchronized again with the
+ * pending transaction count of the account when the node rejects a nonce, i.e. if another process sent a
+ * transaction from the same account or a transaction was not accepted and left a gap.
+ * The same instance must be used by all the contracts that send transactions from the account.
+ */
+public class NonceTrackingTransactionManager extends RawTransactionManager {
+
+    private static final Logger log = LogManager.getLogger(NonceTrackingTransactionManager.class);
+
+    public static final int DEFAULT_SEND_ATTEMPTS = 3;
+
+    private static final String[] NONCE_ERRORS = {
+            "nonce", "replacement transaction underpriced", "already known", "known transaction",
+            "same hash", "already imported"
+    };
+
+    private final Web3j web3j;
+    private final String address;
+    private int sendAttempts = DEFAULT_SEND_ATTEMPTS;
+
+    private final Object lock = new Object();
+    private BigInteger nextNonce;
+    private final TreeMap<BigInteger, String> pendingTransactions = new TreeMap<>();
+
+    /**
+     * Constructor. The transactions are signed without replay protection
+     *
+     * @param web3j         the web3j client
+     * @param credentials   the credentials of the account
+     * @param attempts      number of attempts to get the receipt of a transaction
+     * @param sleepDuration milliseconds between the attempts to get the receipt of a transaction
+     */
+    public NonceTrackingTransactionManager(Web3j web3j, Credentials credentials, int attempts, long sleepDuration) {
+        this(web3j, credentials, ChainId.NONE, attempts, sleepDuration);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param web3j         the web3j client
+     * @param credentials   the credentials of the account
+     * @param chainId       id of the chain included in the signature of the transactions (EIP-155),
+     *                      or ChainId.NONE to sign them without replay protection
+     * @param attempts      number of attempts to get the receipt of a transaction
+     * @param sleepDuration milliseconds between the attempts to get the receipt of a transaction
+     */
+    public NonceTrackingTransactionManager(Web3j web3j, Credentials credentials, long chainId, int attempts, long sleepDuration) {
+        super(web3j, credentials, toChainId(chainId), attempts, sleepDuration);
+        this.web3j = web3j;
+        this.address = credentials.getAddress();
+    }
+
+    /**
+     * Builds an instance of NonceTrackingTransactionManager that signs the transactions without replay protection
+     *
+     * @param web3j         the web3j client
+     * @param credentials   the credentials of the account
+     * @param attempts      number of attempts to get the receipt of a transaction
+     * @param sleepDuration milliseconds between the attempts to get the receipt of a transaction
+     * @return NonceTrackingTransactionManager instance
+     */
+    public static NonceTrackingTransactionManager getInstance(Web3j web3j, Credentials credentials, int attempts, long sleepDuration) {
+        return new NonceTrackingTransactionManager(web3j, credentials, attempts, sleepDuration);
+    }
+
+    /**
+     * Builds an instance of NonceTrackingTransactionManager
+     *
+     * @param web3j         the web3j client
+     * @param credentials   the credentials of the account
+     * @param chainId       id of the chain included in the signature of the transactions (EIP-155),
+     *                      or ChainId.NONE to sign them without replay protection
+     * @param attempts      number of attempts to get the receipt of a transaction
+     * @param sleepDuration milliseconds between the attempts to get the receipt of a transaction
+     * @return NonceTrackingTransactionManager instance
+     */
+    public static NonceTrackingTransactionManager getInstance(Web3j web3j, Credentials credentials, long chainId, int attempts, long sleepDuration) {
+        return new NonceTrackingTransactionManager(web3j, credentials, chainId, attempts, sleepDuration);
+    }
+
+    /**
+     * The signer of web3j only supports the chain ids that fit in a byte
+     */
+    private static byte toChainId(long chainId) {
+        if (chainId == ChainId.NONE || (chainId > 0 && chainId <= Byte.MAX_VALUE))
+            return (byte) chainId;
+        throw new IllegalArgumentException("The transactions can't be signed with the chain id " + chainId
+                + ", configure the chain id " + ChainId.NONE + " to sign them without replay protection");
+    }
+
+    /**
+     * Sets the number of times a transaction is sent with a new nonce when the node rejects its nonce
+     *
+     * @param sendAttempts number of attempts
+     * @return this
+     */
+    public NonceTrackingTransactionManager setSendAttempts(int sendAttempts) {
+        this.sendAttempts = Math.max(1, sendAttempts);
+        return this;
+    }
+
+    @Override
+    public EthSendTransaction sendTransaction(BigInteger gasPrice, BigInteger gasLimit, String to,
+                                             String data, BigInteger value) throws IOException {
+
+        EthSendTransaction response = null;
+        for (int attempt = 1; attempt <= sendAttempts; attempt++) {
+
+            BigInteger nonce = getNonce();
+            RawTransaction rawTransaction = RawTransaction.createTransaction(nonce, gasPrice, gasLimit, to, value, data);
+            try {
+                response = signAndSend(rawTransaction);
+            } catch (IOException e) {
+                // It's unknown if the node received the transaction, so the counter is read again
+                invalidate();
+                throw e;
+            }
+
+            if (!response.hasError()) {
+                synchronized (lock) {
+                    pendingTransactions.put(nonce, response.getTransactionHash());
+                }
+                return response;
+            }
+
+            String error = response.getError().getMessage();
+            invalidate();
+            if (!isNonceError(error))
+                return response;
+            log.debug("Nonce " + nonce + " rejected (" + error + "), attempt " + attempt + " of " + sendAttempts);
+        }
+        return response;
+    }
+
+    @Override
+    protected TransactionReceipt executeTransaction(BigInteger gasPrice, BigInteger gasLimit, String to,
+                                                    String data, BigInteger value) throws IOException, TransactionException {
+        TransactionReceipt receipt = super.executeTransaction(gasPrice, gasLimit, to, data, value);
+        synchronized (lock) {
+            pendingTransactions.values().remove(receipt.getTransactionHash());
+        }
+        return receipt;
+    }
+
+    /**
+     * Takes the next nonce of the account, reading the pending transaction count if the counter is not synchronized
+     *
+     * @return the nonce
+     * @throws IOException IOException
+     */
+    @Override
+    protected BigInteger getNonce() throws IOException {
+        synchronized (lock) {
+            if (nextNonce == null)
+                resync();
+            BigInteger nonce = nextNonce;
+            nextNonce = nextNonce.add(BigInteger.ONE);
+            return nonce;
+        }
+    }
+
+    /**
+     * Gets the transactions sent whose receipt has not been received yet
+     *
+     * @return a Map with the hash of the transactions by nonce
+     */
+    public Map<BigInteger, String> getPendingTransactions() {
+        synchronized (lock) {
+            return new TreeMap<>(pendingTransactions);
+        }
+    }
+
+    /**
+     * Forces the counter to be synchronized with the node before the next transaction
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            nextNonce = null;
+        }
+    }
+
+    private void resync() throws IOException {
+        EthGetTransactionCount pendingCount = web3j.ethGetTransactionCount(address, DefaultBlockParameterName.PENDING).send();
+        if (pendingCount.hasError())
+            throw new IOException("Error getting the transaction count of " + address + ": " + pendingCount.getError().getMessage());
+
+        nextNonce = pendingCount.getTransactionCount();
+
+        // The transactions already mined whose receipt was not requested are not pending anymore
+        EthGetTransactionCount minedCount = web3j.ethGetTransactionCount(address, DefaultBlockParameterName.LATEST).send();
+        if (!minedCount.hasError())
+            pendingTransactions.headMap(minedCount.getTransactionCount()).clear();
+        log.debug("Nonce of " + address + " synchronized to " + nextNonce);
+    }
+
+    private static boolean isNonceError(String error) {
+        if (error == null)
+            return false;
+        String message = error.toLowerCase();
+        for (String nonceError : NONCE_ERRORS) {
+            if (message.contains(nonceError))
+                return true;
+        }
+        return false;
+    }
+
+}
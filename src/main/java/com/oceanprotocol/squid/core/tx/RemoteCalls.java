@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.tx;
+
+import io.reactivex.Single;
+import org.web3j.protocol.core.RemoteCall;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Adapts the calls to the contracts to RxJava, so the flows that send several transactions are composed
+ * without blocking the threads of the schedulers waiting for every response
+ */
+public class RemoteCalls {
+
+    public static final String RECEIPT_STATUS_OK = "0x1";
+
+    private RemoteCalls() {
+    }
+
+    /**
+     * Gets a Single that sends a call when it's subscribed, using sendAsync.
+     * Disposing the Single before the response is received cancels the future of the call
+     *
+     * @param remoteCall the call
+     * @param <T>        the type of the response
+     * @return a Single over the response of the call
+     */
+    public static <T> Single<T> toSingle(RemoteCall<T> remoteCall) {
+        return Single.create(emitter -> {
+            CompletableFuture<T> future = remoteCall.sendAsync();
+            emitter.setCancellable(() -> future.cancel(false));
+            future.whenComplete((result, error) -> {
+                if (error != null)
+                    emitter.tryOnError(unwrap(error));
+                else if (result == null)
+                    emitter.tryOnError(new NullPointerException("Null response received"));
+                else
+                    emitter.onSuccess(result);
+            });
+        });
+    }
+
+    /**
+     * Checks if a transaction was executed successfully
+     *
+     * @param receipt the receipt of the transaction
+     * @return true if the status of the receipt is OK
+     */
+    public static boolean isStatusOk(TransactionReceipt receipt) {
+        return RECEIPT_STATUS_OK.equals(receipt.getStatus());
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null)
+            return error.getCause();
+        return error;
+    }
+
+}
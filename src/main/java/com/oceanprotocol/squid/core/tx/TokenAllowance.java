@@ -0,0 +1,262 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.tx;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Local view of the tokens an account has approved to a spender, so the orders only send an approval when the
+ * allowance left is not enough for them. The allowance is read from the chain once, and every order reserves
+ * the tokens it's going to transfer. When the allowance left is not enough, a single approval is sent for the
+ * tokens reserved by the transfers not mined yet plus at least one approval chunk, and the orders waiting
+ * reserve their tokens from it.
+ * The same instance must be used by every component that approves tokens of the account to the spender,
+ * because an approval replaces the allowance.
+ */
+public class TokenAllowance {
+
+    private static final Logger log = LogManager.getLogger(TokenAllowance.class);
+
+    public static final BigInteger MAX_ALLOWANCE = BigInteger.TWO.pow(256).subtract(BigInteger.ONE);
+
+    private final Supplier<Single<BigInteger>> allowanceReader;
+    private final Function<BigInteger, Single<Boolean>> approver;
+    private final BigInteger approvalChunk;
+
+    private final Object lock = new Object();
+    private BigInteger available;
+    private BigInteger reserved = BigInteger.ZERO;
+    private Completable pendingUpdate;
+
+    /**
+     * Constructor
+     *
+     * @param allowanceReader reads the allowance of the account from the chain
+     * @param approver        sends an approval of an amount of tokens
+     * @param approvalChunk   minimum amount of tokens approved when the allowance is not enough
+     */
+    public TokenAllowance(Supplier<Single<BigInteger>> allowanceReader, Function<BigInteger, Single<Boolean>> approver,
+                          BigInteger approvalChunk) {
+        this.allowanceReader = allowanceReader;
+        this.approver = approver;
+        this.approvalChunk = approvalChunk.max(BigInteger.ZERO);
+    }
+
+    /**
+     * Builds an instance of TokenAllowance
+     *
+     * @param allowanceReader reads the allowance of the account from the chain
+     * @param approver        sends an approval of an amount of tokens
+     * @param approvalChunk   minimum amount of tokens approved when the allowance is not enough
+     * @return TokenAllowance instance
+     */
+    public static TokenAllowance getInstance(Supplier<Single<BigInteger>> allowanceReader,
+                                             Function<BigInteger, Single<Boolean>> approver,
+                                             BigInteger approvalChunk) {
+        return new TokenAllowance(allowanceReader, approver, approvalChunk);
+    }
+
+    /**
+     * Reserves an amount of tokens of the allowance for a transfer, approving more tokens if needed.
+     * The amount must be given back with consumed or release when the transfer is executed or not
+     *
+     * @param amount the amount of tokens
+     * @return a Completable that completes when the tokens are reserved
+     */
+    public Completable reserve(BigInteger amount) {
+
+        return Completable.defer(() -> {
+            synchronized (lock) {
+                if (pendingUpdate != null)
+                    return pendingUpdate.andThen(reserve(amount));
+
+                if (available == null) {
+                    pendingUpdate = update(allowanceReader.get()
+                            .doOnSuccess(allowance -> {
+                                synchronized (lock) {
+                                    available = allowance.subtract(reserved).max(BigInteger.ZERO);
+                                    pendingUpdate = null;
+                                }
+                                log.debug("Token allowance read: " + allowance);
+                            }));
+                    return pendingUpdate.andThen(reserve(amount));
+                }
+
+                if (available.compareTo(amount) >= 0) {
+                    available = available.subtract(amount);
+                    reserved = reserved.add(amount);
+                    return Completable.complete();
+                }
+
+                // The approval replaces the allowance left, so it includes the tokens of the transfers not mined yet
+                BigInteger topUp = amount.max(approvalChunk);
+                BigInteger value = reserved.add(topUp).min(MAX_ALLOWANCE);
+                available = BigInteger.ZERO;
+                log.debug("Approving " + value + " tokens, " + reserved + " reserved by transfers not mined yet");
+                pendingUpdate = update(approver.apply(value)
+                        .doOnSuccess(approved -> {
+                            synchronized (lock) {
+                                available = available.add(topUp);
+                                pendingUpdate = null;
+                            }
+                        }));
+                return pendingUpdate.andThen(reserve(amount));
+            }
+        });
+    }
+
+    /**
+     * Creates a reservation of an amount of tokens for a transfer, given back exactly once
+     *
+     * @param amount the amount of tokens
+     * @return the Reservation
+     */
+    public Reservation newReservation(BigInteger amount) {
+        return new Reservation(amount);
+    }
+
+    /**
+     * Gives back the tokens reserved by a transfer that was executed
+     *
+     * @param amount the amount of tokens
+     */
+    public void consumed(BigInteger amount) {
+        synchronized (lock) {
+            reserved = reserved.subtract(amount).max(BigInteger.ZERO);
+        }
+    }
+
+    /**
+     * Gives back the tokens reserved by a transfer that was not executed, so they can be used by another one
+     *
+     * @param amount the amount of tokens
+     */
+    public void release(BigInteger amount) {
+        synchronized (lock) {
+            reserved = reserved.subtract(amount).max(BigInteger.ZERO);
+            if (available != null)
+                available = available.add(amount);
+        }
+    }
+
+    /**
+     * Forces the allowance to be read again from the chain, i.e. if it's unknown if a transfer was executed
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            available = null;
+        }
+    }
+
+    /**
+     * Gets the tokens of the allowance that are not reserved
+     *
+     * @return the amount of tokens, or null if the allowance was not read yet
+     */
+    public BigInteger getAvailable() {
+        synchronized (lock) {
+            return available;
+        }
+    }
+
+    /**
+     * Gets the tokens reserved by the transfers not executed yet
+     *
+     * @return the amount of tokens
+     */
+    public BigInteger getReserved() {
+        synchronized (lock) {
+            return reserved;
+        }
+    }
+
+    /**
+     * Tokens reserved for a single transfer. The reservation is settled only once, so it can be given back from
+     * every terminal callback of a flow (success, error and dispose) without counting the tokens twice
+     */
+    public class Reservation {
+
+        private final BigInteger amount;
+        private boolean taken = false;
+        private boolean settled = false;
+
+        private Reservation(BigInteger amount) {
+            this.amount = amount;
+        }
+
+        /**
+         * Reserves the tokens, approving more tokens if needed
+         *
+         * @return a Completable that completes when the tokens are reserved
+         */
+        public Completable reserve() {
+            return TokenAllowance.this.reserve(amount)
+                    .doOnComplete(() -> {
+                        synchronized (this) {
+                            taken = true;
+                            // Settled before the tokens were reserved, i.e. the flow was disposed meanwhile
+                            if (settled)
+                                TokenAllowance.this.release(amount);
+                        }
+                    });
+        }
+
+        /**
+         * Gives back the tokens when the transfer was executed
+         */
+        public synchronized void consumed() {
+            if (settled)
+                return;
+            settled = true;
+            if (taken)
+                TokenAllowance.this.consumed(amount);
+        }
+
+        /**
+         * Gives back the tokens when the transfer was not executed
+         *
+         * @param invalidate true if it's unknown if the transfer was executed, so the allowance is read again
+         */
+        public synchronized void release(boolean invalidate) {
+            if (settled)
+                return;
+            settled = true;
+            if (!taken)
+                return;
+            TokenAllowance.this.release(amount);
+            if (invalidate)
+                invalidate();
+        }
+
+        public synchronized boolean isSettled() {
+            return settled;
+        }
+    }
+
+    /**
+     * The update is shared by all the reservations waiting for it, and it's not cancelled if they are disposed.
+     * The state is updated before the reservations waiting are notified
+     */
+    private Completable update(Single<?> request) {
+        return request
+                .ignoreElement()
+                .doOnError(throwable -> {
+                    synchronized (lock) {
+                        available = null;
+                        pendingUpdate = null;
+                    }
+                })
+                .cache();
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.external;
+
+import com.oceanprotocol.squid.exceptions.DDOException;
+import com.oceanprotocol.squid.models.DDO;
+import com.oceanprotocol.squid.models.aquarius.SearchResult;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Cursor over all the pages of an Aquarius search.
+ * While the caller consumes the DDOs of a page, the following pages are requested in the background,
+ * up to the prefetch depth. The pages pending are not requested if the caller cancels the subscription.
+ */
+public class AquariusSearchCursor {
+
+    public static final int DEFAULT_PREFETCH = 2;
+
+    /**
+     * Function that requests a page of the search
+     */
+    @FunctionalInterface
+    public interface PageFetcher {
+        SearchResult fetch(int page) throws DDOException;
+    }
+
+    private final PageFetcher pageFetcher;
+    private final int firstPage;
+    private final int prefetch;
+
+    /**
+     * Constructor
+     *
+     * @param pageFetcher function that requests a page of the search
+     * @param firstPage   the first page to request
+     * @param prefetch    number of pages requested in advance
+     */
+    public AquariusSearchCursor(PageFetcher pageFetcher, int firstPage, int prefetch) {
+        this.pageFetcher = pageFetcher;
+        this.firstPage = firstPage;
+        this.prefetch = Math.max(1, prefetch);
+    }
+
+    /**
+     * Gets the pages of the search, in order
+     *
+     * @return a Flowable with the SearchResult of every page
+     */
+    public Flowable<SearchResult> pages() {
+
+        return fetch(firstPage)
+                .concatMap(first -> {
+                    int remaining = Math.max(0, first.total_pages - firstPage);
+                    return Flowable.just(first).concatWith(
+                            Flowable.range(firstPage + 1, remaining)
+                                    .concatMapEager(this::fetch, prefetch, 1));
+                });
+    }
+
+    /**
+     * Gets the DDOs found in all the pages of the search, in order.
+     * Use blockingIterable() to consume them as an Iterable
+     *
+     * @return a Flowable with the DDOs
+     */
+    public Flowable<DDO> results() {
+        return pages().concatMapIterable(SearchResult::getResults, 1);
+    }
+
+    private Flowable<SearchResult> fetch(int page) {
+        return Flowable.fromCallable(() -> pageFetcher.fetch(page))
+                .subscribeOn(Schedulers.io());
+    }
+
+}
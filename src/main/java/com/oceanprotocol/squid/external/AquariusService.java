@@ -5,21 +5,25 @@
 
 package com.oceanprotocol.squid.external;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.oceanprotocol.common.helpers.HttpHelper;
-import com.oceanprotocol.common.models.HttpResponse;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.oceanprotocol.squid.exceptions.DDOException;
 import com.oceanprotocol.squid.models.AbstractModel;
 import com.oceanprotocol.squid.models.DDO;
+import com.oceanprotocol.squid.models.HttpResponse;
 import com.oceanprotocol.squid.models.aquarius.SearchQuery;
 import com.oceanprotocol.squid.models.aquarius.SearchResult;
 import com.oceanprotocol.squid.models.asset.AssetMetadata;
-import org.apache.commons.httpclient.HttpException;
+import io.reactivex.Flowable;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Service for Aquarius's Integration
@@ -29,17 +33,47 @@ public class AquariusService {
     private static final Logger log = LogManager.getLogger(AquariusService.class);
 
     private static final String DDO_URI = "/api/v1/aquarius/assets/ddo";
+
+    private static final Map<String, AquariusService> instances = new ConcurrentHashMap<>();
+    private static int maxConnectionsPerRoute = PooledHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private static long idleConnectionTimeout = PooledHttpClient.DEFAULT_IDLE_TIMEOUT;
+
     private String ddoEndpoint;
+    private PooledHttpClient httpClient;
 
     /**
-     * Builds an instance of AquariusService
+     * Gets the instance of AquariusService of an url.
+     * The instances are reused, so all the requests sent to the same Aquarius share a pool of connections
      *
      * @param url url of aquarius
      * @return AquariusService instance
      */
-    public static AquariusService getInstance(String url) {
-        log.debug("Getting Aquarius instance: " + url);
-        return new AquariusService(url);
+    public static synchronized AquariusService getInstance(String url) {
+        return instances.computeIfAbsent(url.replaceAll("/$", ""), baseUrl -> {
+            log.debug("Creating Aquarius instance: " + baseUrl);
+            return new AquariusService(baseUrl);
+        });
+    }
+
+    /**
+     * Configures the pool of connections of the AquariusService instances, the ones already created
+     * and the ones created from now on
+     *
+     * @param maxConnections maximum number of connections opened against every Aquarius
+     * @param idleTimeout    milliseconds an idle connection is kept open
+     */
+    public static synchronized void setConnectionPoolConfig(int maxConnections, long idleTimeout) {
+        maxConnectionsPerRoute = maxConnections;
+        idleConnectionTimeout = idleTimeout;
+        instances.values().forEach(aquarius -> aquarius.httpClient.setConnectionPoolConfig(maxConnections, idleTimeout));
+    }
+
+    /**
+     * Closes the connections of all the AquariusService instances and removes them
+     */
+    public static synchronized void closeAll() {
+        instances.values().forEach(aquarius -> aquarius.httpClient.close());
+        instances.clear();
     }
 
     /**
@@ -50,12 +84,17 @@ public class AquariusService {
     private AquariusService(String url) {
         String url1 = url.replaceAll("/$", "");
         this.ddoEndpoint = url1 + DDO_URI;
+        this.httpClient = new PooledHttpClient(maxConnectionsPerRoute, idleConnectionTimeout);
     }
 
     public String getDdoEndpoint() {
         return ddoEndpoint;
     }
 
+    PooledHttpClient getHttpClient() {
+        return httpClient;
+    }
+
     /**
      * Registers a new DDO in Aquarius
      *
@@ -67,18 +106,16 @@ public class AquariusService {
 
         log.debug("Creating DDO: " + ddo.id);
 
-        try {
-
-            HttpResponse response = HttpHelper.httpClientPost(
-                    this.ddoEndpoint, new ArrayList<>(), DDO.cleanFileUrls(ddo).toJson());
+        try (PooledHttpClient.StreamResponse response = httpClient.openPost(this.ddoEndpoint, DDO.cleanFileUrls(ddo).toJson())) {
 
             if (response.getStatusCode() != 201) {
-                throw new DDOException("Unable to create DDO: " + response.toString());
+                throw new DDOException("Unable to create DDO: " + describe(response));
             }
 
-            return DDO.fromJSON(new TypeReference<DDO>() {
-            }, response.getBody());
+            return AbstractModel.getMapperInstance().readValue(response.getBody(), DDO.class);
 
+        } catch (DDOException e) {
+            throw e;
         } catch (Exception e) {
             throw new DDOException("Error building DDO from JSON", e);
         }
@@ -95,22 +132,20 @@ public class AquariusService {
     public DDO getDDO(String url) throws DDOException {
 
         log.debug("Getting DDO: " + url);
-        HttpResponse response;
 
-        try {
-            response = HttpHelper.httpClientGet(url);
-        } catch (HttpException e) {
-            throw new DDOException("Unable to get DDO", e);
-        }
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(url)) {
 
-        if (response.getStatusCode() != 200) {
-            throw new DDOException("Unable to get DDO: " + response.toString());
-        }
-        try {
-            return DDO.fromJSON(new TypeReference<DDO>() {
-            }, response.getBody());
-        } catch (Exception e) {
-            throw new DDOException("Error building DDO from JSON", e);
+            if (response.getStatusCode() != 200) {
+                throw new DDOException("Unable to get DDO: " + describe(response));
+            }
+            try {
+                return AbstractModel.getMapperInstance().readValue(response.getBody(), DDO.class);
+            } catch (IOException e) {
+                throw new DDOException("Error building DDO from JSON", e);
+            }
+
+        } catch (IOException e) {
+            throw new DDOException("Unable to get DDO", e);
         }
     }
 
@@ -136,8 +171,7 @@ public class AquariusService {
      * @throws Exception Exception
      */
     public boolean updateDDO(String id, DDO ddo) throws Exception {
-        HttpResponse response = HttpHelper.httpClientPut(
-                this.ddoEndpoint + "/" + id, new ArrayList<>(), ddo.toJson());
+        HttpResponse response = httpClient.put(this.ddoEndpoint + "/" + id, ddo.toJson());
 
         if (response.getStatusCode() == 200 || response.getStatusCode() == 201) {
             return true;
@@ -157,23 +191,15 @@ public class AquariusService {
     public SearchResult searchDDO(String param, int offset, int page) throws DDOException {
 
         String url = this.ddoEndpoint + "/query?text=" + param + "&page=" + page + "&offset=" + offset;
-        HttpResponse response;
 
-        try {
-            response = HttpHelper.httpClientGet(url);
-        } catch (HttpException e) {
-            throw new DDOException("Unable to get DDO: ", e);
-        }
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(url)) {
 
-        if (response.getStatusCode() != 200) {
-            throw new DDOException("Unable to search for DDO's: " + response.toString());
-        }
+            if (response.getStatusCode() != 200) {
+                throw new DDOException("Unable to search for DDO's: " + describe(response));
+            }
+
+            return parseSearchResult(response.getBody(), null);
 
-        try {
-            return AbstractModel
-                    .getMapperInstance()
-                    .readValue(response.getBody(), new TypeReference<SearchResult>() {
-                    });
         } catch (IOException e) {
             throw new DDOException("Unable to search for DDO's: ", e);
         }
@@ -188,29 +214,120 @@ public class AquariusService {
      * @throws DDOException DDOException
      */
     public SearchResult searchDDO(SearchQuery searchQuery) throws DDOException {
+        return searchDDO(searchQuery, null);
+    }
 
-        HttpResponse response;
+    /**
+     * Search all the DDOs that match the query passed as a parameter.
+     * The DDOs are parsed from the response one by one and passed to a consumer as soon as they are read,
+     * so the whole page doesn't need to be kept in memory
+     *
+     * @param searchQuery the query
+     * @param onResult    consumer of every DDO found, or null to include them in the SearchResult
+     * @return the SearchResult, without the DDOs if a consumer is used
+     * @throws DDOException DDOException
+     */
+    public SearchResult searchDDO(SearchQuery searchQuery, Consumer<DDO> onResult) throws DDOException {
 
+        String payload;
         try {
-            response = HttpHelper.httpClientPost(
-                    this.ddoEndpoint + "/query", new ArrayList<>(), searchQuery.toJson());
-        } catch (Exception e) {
+            payload = searchQuery.toJson();
+        } catch (IOException e) {
             throw new DDOException("Unable to get DDO", e);
         }
 
-        if (response.getStatusCode() != 200) {
-            throw new DDOException("Unable to search for DDO's: " + response.toString());
+        try (PooledHttpClient.StreamResponse response = httpClient.openPost(this.ddoEndpoint + "/query", payload)) {
+
+            if (response.getStatusCode() != 200) {
+                throw new DDOException("Unable to search for DDO's: " + describe(response));
+            }
+
+            return parseSearchResult(response.getBody(), onResult);
+
+        } catch (IOException e) {
+            throw new DDOException("Unable to search for DDO's", e);
         }
 
+    }
+
+    /**
+     * Parses a page of search results from a stream, reading the DDOs one by one
+     *
+     * @param inputStream the body of the response
+     * @param onResult    consumer of every DDO read, or null to include them in the SearchResult
+     * @return the SearchResult
+     * @throws IOException IOException
+     */
+    static SearchResult parseSearchResult(InputStream inputStream, Consumer<DDO> onResult) throws IOException {
+
+        ObjectMapper mapper = AbstractModel.getMapperInstance();
+        SearchResult searchResult = new SearchResult();
+        Consumer<DDO> consumer = onResult != null ? onResult : searchResult.results::add;
+
+        try (JsonParser parser = mapper.getFactory().createParser(inputStream)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new IOException("Invalid search result, expected a JSON object");
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName().toLowerCase();
+                JsonToken token = parser.nextToken();
+
+                if (field.equals("page"))
+                    searchResult.page = parser.getValueAsInt();
+                else if (field.equals("total_pages"))
+                    searchResult.total_pages = parser.getValueAsInt();
+                else if (field.equals("total_results"))
+                    searchResult.total_results = parser.getValueAsInt();
+                else if (field.equals("results") && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        consumer.accept(mapper.readValue(parser, DDO.class));
+                    }
+                } else
+                    parser.skipChildren();
+            }
+        }
+
+        return searchResult;
+    }
+
+    private static String describe(PooledHttpClient.StreamResponse response) {
         try {
-            return AbstractModel
-                    .getMapperInstance()
-                    .readValue(response.getBody(), new TypeReference<SearchResult>() {
-                    });
+            return "HttpResponse{statusCode=" + response.getStatusCode() + ", body='" + response.readBodyAsString() + "'}";
         } catch (IOException e) {
-            throw new DDOException("Unable to search for DDO's", e);
+            return "HttpResponse{statusCode=" + response.getStatusCode() + "}";
         }
+    }
 
+    /**
+     * Search all the DDOs that match the text passed as a parameter, going through all the pages of results.
+     * The following pages are requested while the DDOs of the current one are consumed
+     *
+     * @param param    the criteria
+     * @param offset   number of DDOs per page
+     * @param prefetch number of pages requested in advance
+     * @return a Flowable with all the DDOs found
+     */
+    public Flowable<DDO> searchDDOFlowable(String param, int offset, int prefetch) {
+        return new AquariusSearchCursor(page -> searchDDO(param, offset, page), 1, prefetch)
+                .results();
+    }
+
+    /**
+     * Search all the DDOs that match the query passed as a parameter, going through all the pages of results
+     * starting from the page of the query.
+     * The following pages are requested while the DDOs of the current one are consumed
+     *
+     * @param searchQuery the query
+     * @param prefetch    number of pages requested in advance
+     * @return a Flowable with all the DDOs found
+     */
+    public Flowable<DDO> searchDDOFlowable(SearchQuery searchQuery, int prefetch) {
+        return new AquariusSearchCursor(
+                page -> searchDDO(new SearchQuery(searchQuery.query, searchQuery.offset, page, searchQuery.sort.value)),
+                searchQuery.page,
+                prefetch)
+                .results();
     }
 
     /**
@@ -223,7 +340,7 @@ public class AquariusService {
     public boolean retireAssetDDO(String id) throws DDOException {
         HttpResponse response;
         try {
-            response = HttpHelper.httpClientDelete(this.ddoEndpoint + "/" + id);
+            response = httpClient.delete(this.ddoEndpoint + "/" + id);
         } catch (Exception e) {
             throw new DDOException("Unable to retire DDO with DID: " + id, e);
         }
@@ -244,8 +361,7 @@ public class AquariusService {
     public boolean validateMetadata(AssetMetadata metadata) throws DDOException {
         HttpResponse response;
         try {
-            response = HttpHelper.httpClientPost(
-                    this.ddoEndpoint + "/validate", new ArrayList<>(), metadata.toJson());
+            response = httpClient.post(this.ddoEndpoint + "/validate", metadata.toJson());
         } catch (Exception e) {
             throw new DDOException("Unable to call the validate endpoint", e);
         }
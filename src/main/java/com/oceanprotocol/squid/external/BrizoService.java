@@ -11,6 +11,7 @@ import com.oceanprotocol.common.helpers.HttpHelper;
 import com.oceanprotocol.common.helpers.HttpHelper.DownloadResult;
 import com.oceanprotocol.common.helpers.StringsHelper;
 import com.oceanprotocol.common.models.HttpResponse;
+import com.oceanprotocol.squid.core.download.DownloadScheduler;
 import com.oceanprotocol.squid.models.brizo.ExecuteService;
 import com.oceanprotocol.squid.models.brizo.InitializeAccessSLA;
 import com.oceanprotocol.squid.models.service.Service;
@@ -19,6 +20,8 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,6 +34,10 @@ public class BrizoService {
 
     private static final Logger log = LogManager.getLogger(BrizoService.class);
 
+    private static PooledHttpClient downloadClient = null;
+    private static int maxDownloadConnections = PooledHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private static DownloadScheduler downloadScheduler = null;
+
     public static class ServiceAgreementResult {
 
         private Boolean ok;
@@ -148,7 +155,13 @@ public class BrizoService {
 
         log.debug("Consuming URL[" + url + "]: for service Agreement " + serviceAgreementId);
 
-        return HttpHelper.downloadResource(endpoint, destinationPath);
+        DownloadScheduler scheduler = getDownloadScheduler();
+        if (scheduler == null)
+            return HttpHelper.downloadResource(endpoint, destinationPath);
+
+        try (DownloadScheduler.Permit permit = acquirePermit(scheduler, serviceEndpoint, serviceAgreementId)) {
+            return HttpHelper.downloadResource(endpoint, destinationPath);
+        }
 
     }
 
@@ -173,7 +186,16 @@ public class BrizoService {
 
         log.debug("Consuming URL[" + url + "]: for service Agreement " + serviceAgreementId);
 
-        HttpHelper.download(endpoint, destinationPath);
+        DownloadScheduler scheduler = getDownloadScheduler();
+        if (scheduler == null) {
+            HttpHelper.download(endpoint, destinationPath);
+            return;
+        }
+
+        // The whole file is written before returning, so the permit is held until then
+        try (DownloadScheduler.Permit permit = acquirePermit(scheduler, serviceEndpoint, serviceAgreementId)) {
+            HttpHelper.download(endpoint, destinationPath);
+        }
 
     }
 
@@ -200,8 +222,148 @@ public class BrizoService {
 
         log.debug("Consuming URL[" + url + "]: for service Agreement " + serviceAgreementId);
 
-        return HttpHelper.download(endpoint, isRangeRequest, startRange, endRange);
+        DownloadScheduler scheduler = getDownloadScheduler();
+        if (scheduler == null)
+            return HttpHelper.download(endpoint, isRangeRequest, startRange, endRange);
+
+        DownloadScheduler.Permit permit = acquirePermit(scheduler, serviceEndpoint, serviceAgreementId);
+        try {
+            return permit.wrap(HttpHelper.download(endpoint, isRangeRequest, startRange, endRange));
+        } catch (IOException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+
+    }
+
+    /**
+     * Configures the pool of connections used to download assets. If the pool is already created it's resized,
+     * and the downloads waiting for a connection use the new size
+     *
+     * @param maxConnections maximum number of connections opened to download assets
+     */
+    public static synchronized void setDownloadPoolConfig(int maxConnections) {
+        maxDownloadConnections = maxConnections;
+        if (downloadClient != null)
+            downloadClient.setConnectionPoolConfig(maxConnections, downloadClient.getIdleTimeout());
+    }
+
+    /**
+     * Sets the scheduler that coordinates all the downloads of the process. If it's null the downloads are not limited
+     *
+     * @param scheduler the scheduler
+     */
+    public static synchronized void setDownloadScheduler(DownloadScheduler scheduler) {
+        downloadScheduler = scheduler;
+    }
+
+    private static synchronized DownloadScheduler getDownloadScheduler() {
+        return downloadScheduler;
+    }
+
+    private static DownloadScheduler.Permit acquirePermit(DownloadScheduler scheduler, String serviceEndpoint, String serviceAgreementId) throws IOException {
+        try {
+            return scheduler.acquire(getEndpointKey(serviceEndpoint), serviceAgreementId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to download from " + serviceEndpoint);
+        }
+    }
+
+    private static String getEndpointKey(String serviceEndpoint) {
+        try {
+            URI uri = new URI(serviceEndpoint);
+            if (uri.getHost() != null)
+                return uri.getHost() + ":" + uri.getPort();
+        } catch (URISyntaxException e) {
+            log.debug("Invalid service endpoint " + serviceEndpoint);
+        }
+        return serviceEndpoint;
+    }
+
+    @FunctionalInterface
+    private interface ResponseOpener {
+        PooledHttpClient.StreamResponse open() throws IOException;
+    }
+
+    /**
+     * Opens a download once the scheduler allows it. The permit is released when the body is read or the response closed
+     */
+    private static PooledHttpClient.StreamResponse openScheduled(String serviceEndpoint, String serviceAgreementId, ResponseOpener opener) throws IOException {
+
+        DownloadScheduler scheduler = getDownloadScheduler();
+        if (scheduler == null)
+            return opener.open();
+
+        DownloadScheduler.Permit permit = acquirePermit(scheduler, serviceEndpoint, serviceAgreementId);
+        try {
+            PooledHttpClient.StreamResponse response = opener.open();
+            response.setBodyFilter(permit::wrap);
+            response.addCloseListener(permit::close);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    private static synchronized PooledHttpClient getDownloadClient() {
+        if (downloadClient == null)
+            downloadClient = new PooledHttpClient(maxDownloadConnections, PooledHttpClient.DEFAULT_IDLE_TIMEOUT);
+        return downloadClient;
+    }
+
+    /**
+     * Calls a Brizo´s endpoint to download an asset, giving access to the content as a stream.
+     * The connections are taken from a pool, so the response must be closed
+     *
+     * @param serviceEndpoint    the service endpoint
+     * @param consumerAddress    the address of the consumer
+     * @param serviceAgreementId the serviceAgreement Id
+     * @param url                the url
+     * @return the StreamResponse
+     * @throws IOException Exception during the download process
+     */
+    public static PooledHttpClient.StreamResponse openDownload(String serviceEndpoint, String consumerAddress, String serviceAgreementId, String url) throws IOException {
+
+        log.debug("Consuming URL[" + url + "]: for service Agreement " + serviceAgreementId);
+
+        String endpoint = getDownloadEndpoint(serviceEndpoint, consumerAddress, serviceAgreementId, url);
+        return openScheduled(serviceEndpoint, serviceAgreementId, () -> getDownloadClient().openGet(endpoint));
+    }
+
+    /**
+     * Calls a Brizo´s endpoint to download a range of bytes of an asset, giving access to the content as a stream.
+     * The connections are taken from a pool, so the response must be closed
+     *
+     * @param serviceEndpoint    the service endpoint
+     * @param consumerAddress    the address of the consumer
+     * @param serviceAgreementId the serviceAgreement Id
+     * @param url                the url
+     * @param startRange         the first byte of the range
+     * @param endRange           the last byte of the range, included. If it's negative the range includes the rest of the asset
+     * @return the StreamResponse
+     * @throws IOException Exception during the download process
+     */
+    public static PooledHttpClient.StreamResponse openDownload(String serviceEndpoint, String consumerAddress, String serviceAgreementId, String url, long startRange, long endRange) throws IOException {
+
+        String endpoint = getDownloadEndpoint(serviceEndpoint, consumerAddress, serviceAgreementId, url);
+
+        log.debug("Consuming URL[" + url + "], bytes " + startRange + "-" + (endRange < 0 ? "" : endRange) + ": for service Agreement " + serviceAgreementId);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=" + startRange + "-" + (endRange < 0 ? "" : String.valueOf(endRange)));
+        return openScheduled(serviceEndpoint, serviceAgreementId, () -> getDownloadClient().openGet(endpoint, headers));
+    }
+
+    private static String getDownloadEndpoint(String serviceEndpoint, String consumerAddress, String serviceAgreementId, String url) {
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(Service.CONSUMER_ADDRESS_PARAM, consumerAddress);
+        parameters.put(Service.SERVICE_AGREEMENT_PARAM, serviceAgreementId);
+        parameters.put(Service.URL_PARAM, url);
 
+        return StringsHelper.formUrl(serviceEndpoint, parameters);
     }
 
     /**
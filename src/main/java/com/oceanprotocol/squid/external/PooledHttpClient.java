@@ -0,0 +1,325 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.external;
+
+import com.oceanprotocol.squid.models.HttpResponse;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.*;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * HTTP client that keeps a pool of keep-alive connections, so the TCP/TLS connections are reused between requests.
+ * The connections idle for longer than the idle timeout of their pool are closed by a shared background thread.
+ * The size of the pool and the idle timeout can be changed while the client is used.
+ */
+public class PooledHttpClient {
+
+    private static final Logger log = LogManager.getLogger(PooledHttpClient.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String DEFAULT_CHARSET = "UTF-8";
+    private static final long IDLE_CHECK_INTERVAL = 5000;
+
+    private static final Set<PooledHttpClient> pools = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService idleConnectionsCloser = null;
+
+    private final MultiThreadedHttpConnectionManager connectionManager;
+    private final HttpClient httpClient;
+    private volatile long idleTimeout;
+
+    /**
+     * Constructor
+     *
+     * @param maxConnectionsPerRoute maximum number of connections opened against the same host
+     * @param idleTimeout            milliseconds a connection can be idle before being closed
+     */
+    public PooledHttpClient(int maxConnectionsPerRoute, long idleTimeout) {
+
+        connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.getParams().setStaleCheckingEnabled(true);
+        setConnectionPoolConfig(maxConnectionsPerRoute, idleTimeout);
+
+        httpClient = new HttpClient(connectionManager);
+
+        registerPool(this);
+    }
+
+    /**
+     * Changes the configuration of the pool. The requests waiting for a connection use the new size
+     * from the next connection released, and the idle connections are closed with the new timeout from the next check
+     *
+     * @param maxConnectionsPerRoute maximum number of connections opened against the same host
+     * @param idleTimeout            milliseconds a connection can be idle before being closed
+     * @return this
+     */
+    public PooledHttpClient setConnectionPoolConfig(int maxConnectionsPerRoute, long idleTimeout) {
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(maxConnectionsPerRoute);
+        params.setMaxTotalConnections(maxConnectionsPerRoute);
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return connectionManager.getParams().getDefaultMaxConnectionsPerHost();
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    private static synchronized void registerPool(PooledHttpClient pool) {
+        if (idleConnectionsCloser == null) {
+            idleConnectionsCloser = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "squid-idle-http-connections");
+                thread.setDaemon(true);
+                return thread;
+            });
+            idleConnectionsCloser.scheduleWithFixedDelay(PooledHttpClient::closeIdleConnections,
+                    IDLE_CHECK_INTERVAL, IDLE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        pools.add(pool);
+    }
+
+    private static void closeIdleConnections() {
+        for (PooledHttpClient pool : pools) {
+            try {
+                pool.connectionManager.closeIdleConnections(pool.idleTimeout);
+            } catch (RuntimeException e) {
+                log.warn("Unable to close the idle http connections: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Response of a request whose body is read as a stream.
+     * It must be closed to return the connection to the pool
+     */
+    public static class StreamResponse implements Closeable {
+
+        private final HttpMethodBase method;
+        private final int statusCode;
+        private final List<Runnable> closeListeners = new ArrayList<>();
+        private UnaryOperator<InputStream> bodyFilter = UnaryOperator.identity();
+        private InputStream body;
+
+        private StreamResponse(HttpMethodBase method, int statusCode) {
+            this.method = method;
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getCharset() {
+            return method.getResponseCharSet();
+        }
+
+        public long getContentLength() {
+            return method.getResponseContentLength();
+        }
+
+        public Header[] getHeaders() {
+            return method.getResponseHeaders();
+        }
+
+        public synchronized InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream inputStream = method.getResponseBodyAsStream();
+                body = bodyFilter.apply(inputStream == null ? new ByteArrayInputStream(new byte[0]) : inputStream);
+            }
+            return body;
+        }
+
+        /**
+         * Sets a function applied to the body before it's read
+         *
+         * @param bodyFilter the function
+         */
+        synchronized void setBodyFilter(UnaryOperator<InputStream> bodyFilter) {
+            this.bodyFilter = bodyFilter;
+        }
+
+        /**
+         * Adds an action executed when the response is closed
+         *
+         * @param listener the action
+         */
+        synchronized void addCloseListener(Runnable listener) {
+            closeListeners.add(listener);
+        }
+
+        public String readBodyAsString() throws IOException {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            InputStream inputStream = getBody();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toString(getCharset());
+        }
+
+        /**
+         * Aborts the request, closing the connection instead of reading the rest of the body
+         */
+        public void abort() {
+            method.abort();
+        }
+
+        @Override
+        public void close() {
+            try {
+                // Returns the connection to the pool
+                method.releaseConnection();
+            } finally {
+                List<Runnable> listeners;
+                synchronized (this) {
+                    listeners = new ArrayList<>(closeListeners);
+                    closeListeners.clear();
+                }
+                listeners.forEach(Runnable::run);
+            }
+        }
+    }
+
+    /**
+     * Sends a GET request
+     *
+     * @param url the url
+     * @return the HttpResponse
+     * @throws IOException IOException
+     */
+    public HttpResponse get(String url) throws IOException {
+        return toHttpResponse(openGet(url));
+    }
+
+    /**
+     * Sends a POST request with a JSON payload
+     *
+     * @param url     the url
+     * @param payload the JSON payload
+     * @return the HttpResponse
+     * @throws IOException IOException
+     */
+    public HttpResponse post(String url, String payload) throws IOException {
+        return toHttpResponse(openPost(url, payload));
+    }
+
+    /**
+     * Sends a PUT request with a JSON payload
+     *
+     * @param url     the url
+     * @param payload the JSON payload
+     * @return the HttpResponse
+     * @throws IOException IOException
+     */
+    public HttpResponse put(String url, String payload) throws IOException {
+        PutMethod put = new PutMethod(url);
+        put.setRequestEntity(new StringRequestEntity(payload, JSON_CONTENT_TYPE, DEFAULT_CHARSET));
+        return toHttpResponse(execute(put));
+    }
+
+    /**
+     * Sends a DELETE request
+     *
+     * @param url the url
+     * @return the HttpResponse
+     * @throws IOException IOException
+     */
+    public HttpResponse delete(String url) throws IOException {
+        return toHttpResponse(execute(new DeleteMethod(url)));
+    }
+
+    /**
+     * Sends a GET request, giving access to the body of the response as a stream
+     *
+     * @param url the url
+     * @return the StreamResponse, that must be closed
+     * @throws IOException IOException
+     */
+    public StreamResponse openGet(String url) throws IOException {
+        return execute(new GetMethod(url));
+    }
+
+    /**
+     * Sends a GET request with some headers, giving access to the body of the response as a stream
+     *
+     * @param url     the url
+     * @param headers the headers of the request
+     * @return the StreamResponse, that must be closed
+     * @throws IOException IOException
+     */
+    public StreamResponse openGet(String url, Map<String, String> headers) throws IOException {
+        GetMethod get = new GetMethod(url);
+        headers.forEach(get::setRequestHeader);
+        return execute(get);
+    }
+
+    /**
+     * Sends a POST request with a JSON payload, giving access to the body of the response as a stream
+     *
+     * @param url     the url
+     * @param payload the JSON payload
+     * @return the StreamResponse, that must be closed
+     * @throws IOException IOException
+     */
+    public StreamResponse openPost(String url, String payload) throws IOException {
+        PostMethod post = new PostMethod(url);
+        post.setRequestEntity(new StringRequestEntity(payload, JSON_CONTENT_TYPE, DEFAULT_CHARSET));
+        return execute(post);
+    }
+
+    private StreamResponse execute(HttpMethodBase method) throws IOException {
+        try {
+            return new StreamResponse(method, httpClient.executeMethod(method));
+        } catch (IOException | RuntimeException e) {
+            // httpclient can also fail with a RuntimeException, i.e. redirected to an unsupported protocol
+            method.releaseConnection();
+            throw e;
+        }
+    }
+
+    private static HttpResponse toHttpResponse(StreamResponse streamResponse) throws IOException {
+
+        try (StreamResponse stream = streamResponse) {
+            HttpResponse response = new HttpResponse(stream.getStatusCode(), stream.readBodyAsString(),
+                    stream.getCharset(), stream.getContentLength());
+            response.setHeaders(stream.getHeaders());
+            return response;
+        }
+    }
+
+    /**
+     * Closes all the connections of the pool
+     */
+    public void close() {
+        pools.remove(this);
+        connectionManager.shutdown();
+        log.debug("Closed pooled http connections");
+    }
+
+}
@@ -2,6 +2,11 @@ package com.oceanprotocol.squid.manager;
 
 import com.oceanprotocol.common.helpers.EncodingHelper;
 import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.keeper.contracts.AgreementStoreManager;
+import com.oceanprotocol.keeper.contracts.ConditionStoreManager;
+import com.oceanprotocol.squid.core.cache.AgreementStateCache;
+import com.oceanprotocol.squid.core.events.ChunkedLogScanner;
+import com.oceanprotocol.squid.core.tx.RemoteCalls;
 import com.oceanprotocol.squid.exceptions.ConditionNotFoundException;
 import com.oceanprotocol.squid.exceptions.EthereumException;
 import com.oceanprotocol.squid.exceptions.ServiceException;
@@ -11,29 +16,45 @@ import com.oceanprotocol.squid.models.DID;
 import com.oceanprotocol.squid.models.service.Agreement;
 import com.oceanprotocol.squid.models.service.AgreementStatus;
 import com.oceanprotocol.squid.models.service.Service;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.web3j.abi.EventEncoder;
 import org.web3j.abi.datatypes.Event;
+import org.web3j.crypto.CipherException;
 import org.web3j.crypto.Keys;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.request.EthFilter;
 import org.web3j.protocol.core.methods.response.EthLog;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.web3j.tuples.generated.Tuple7;
+import org.web3j.tx.Contract;
 import org.web3j.utils.Numeric;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class AgreementsManager extends BaseManager {
 
     private static final Logger log = LogManager.getLogger(AgreementsManager.class);
 
+    public static final int DEFAULT_STATUS_CONCURRENCY = 32;
+
+    private static final Executor DEFAULT_QUERY_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "squid-agreements-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Executor queryExecutor = DEFAULT_QUERY_EXECUTOR;
+    private int statusConcurrency = DEFAULT_STATUS_CONCURRENCY;
+    private AgreementStateCache agreementStateCache;
+
     public AgreementsManager(KeeperService keeperService, AquariusService aquariusService) {
         super(keeperService, aquariusService);
     }
@@ -100,6 +121,67 @@ public class AgreementsManager extends BaseManager {
         return txReceipt.isStatusOK();
     }
 
+    /**
+     * Create an agreement using the escrowAccessSecretStoreTemplate, without blocking the caller until the transaction is mined
+     *
+     * @param agreementId    the agreement id
+     * @param ddo            the ddo
+     * @param conditionIds   list with the conditions ids
+     * @param accessConsumer eth address of the consumer of the agreement.
+     * @param service        an instance of Service
+     * @return a Single that emits true if the agreement was successfully created.
+     */
+    public Single<Boolean> createAccessAgreementAsync(String agreementId, DDO ddo, List<byte[]> conditionIds,
+                                                      String accessConsumer, Service service) {
+
+        return Single.defer(() -> {
+            log.debug("Creating agreement with id: " + agreementId);
+            return RemoteCalls.toSingle(escrowAccessSecretStoreTemplate.createAgreement(
+                    EncodingHelper.hexStringToBytes("0x" + agreementId),
+                    EncodingHelper.hexStringToBytes("0x" + ddo.getDid().getHash()),
+                    conditionIds,
+                    service.retrieveTimeOuts(),
+                    service.retrieveTimeLocks(),
+                    accessConsumer));
+        }).map(TransactionReceipt::isStatusOK);
+    }
+
+    /**
+     * Create an agreement using the escrowComputeExecutionTemplate, without blocking the caller until the transaction is mined
+     *
+     * @param agreementId    the agreement id
+     * @param ddo            the ddo
+     * @param conditionIds   list with the conditions ids
+     * @param accessConsumer eth address of the consumer of the agreement.
+     * @param service        an instance of Service
+     * @return a Single that emits true if the agreement was successfully created.
+     */
+    public Single<Boolean> createComputeAgreementAsync(String agreementId, DDO ddo, List<byte[]> conditionIds,
+                                                       String accessConsumer, Service service) {
+
+        return Single.defer(() -> {
+            log.debug("Creating agreement with id: " + agreementId);
+            return RemoteCalls.toSingle(escrowComputeExecutionTemplate.createAgreement(
+                    EncodingHelper.hexStringToBytes("0x" + agreementId),
+                    EncodingHelper.hexStringToBytes("0x" + ddo.getDid().getHash()),
+                    conditionIds,
+                    service.retrieveTimeOuts(),
+                    service.retrieveTimeLocks(),
+                    accessConsumer));
+        }).map(TransactionReceipt::isStatusOK);
+    }
+
+    /**
+     * Retrieve the agreement for a agreement_id, without blocking the caller
+     *
+     * @param agreementId id of the agreement
+     * @return a Single over the Agreement
+     */
+    public Single<Agreement> getAgreementAsync(String agreementId) {
+        return Single.defer(() -> RemoteCalls.toSingle(agreementStoreManager.getAgreement(EncodingHelper.hexStringToBytes(agreementId))))
+                .map(Agreement::new);
+    }
+
     /**
      * Retrieve the agreement for a agreement_id.
      *
@@ -120,6 +202,12 @@ public class AgreementsManager extends BaseManager {
      */
     public AgreementStatus getStatus(String agreementId) throws Exception {
 
+        if (agreementStateCache != null) {
+            AgreementStatus cached = agreementStateCache.get(agreementId);
+            if (cached != null)
+                return cached;
+        }
+
         List<byte[]> condition_ids = agreementStoreManager.getAgreement(EncodingHelper.hexStringToBytes(agreementId)).send().getValue4();
         AgreementStatus agreementStatus = new AgreementStatus();
         agreementStatus.agreementId = agreementId;
@@ -137,9 +225,140 @@ public class AgreementsManager extends BaseManager {
 
         }
         agreementStatus.conditions.add(condition);
+
+        if (agreementStateCache != null)
+            agreementStateCache.put(agreementStatus);
         return agreementStatus;
     }
 
+    /**
+     * Set the cache of the status of the agreements. If it's null the status is always read from the chain
+     *
+     * @param agreementStateCache the cache
+     * @return this
+     */
+    public AgreementsManager setAgreementStateCache(AgreementStateCache agreementStateCache) {
+        this.agreementStateCache = agreementStateCache;
+        return this;
+    }
+
+    /**
+     * Get the status of several service agreements, reading the latest block.
+     *
+     * @param agreementIds ids of the agreements
+     * @return a Map with the AgreementStatus of every agreement id that could be read, in the order given
+     * @throws Exception Exception
+     */
+    public Map<String, AgreementStatus> getStatuses(List<String> agreementIds) throws Exception {
+        return getStatuses(agreementIds, null);
+    }
+
+    /**
+     * Get the status of several service agreements.
+     * The agreements and their conditions are read concurrently instead of one call after the other.
+     * If a block number is given, all the calls read the state of that block, so the statuses are consistent
+     * between them even if new blocks are mined meanwhile. Otherwise the statuses cached are not read again.
+     * An agreement that can't be read is logged and left out of the result, so it doesn't fail the rest
+     *
+     * @param agreementIds ids of the agreements
+     * @param blockNumber  the block to read, or null to read the latest block
+     * @return a Map with the AgreementStatus of every agreement id that could be read, in the order given
+     * @throws Exception Exception
+     */
+    public Map<String, AgreementStatus> getStatuses(List<String> agreementIds, BigInteger blockNumber) throws Exception {
+
+        AgreementStoreManager agreementStore = agreementStoreManager;
+        ConditionStoreManager conditionStore = conditionStoreManager;
+
+        // The contracts used by the rest of the calls are not modified, a copy is pinned to the block
+        if (blockNumber != null) {
+            agreementStore = loadAgreementStoreManager(blockNumber);
+            conditionStore = loadConditionStoreManager(blockNumber);
+        }
+
+        final AgreementStoreManager agreements = agreementStore;
+        final ConditionStoreManager conditions = conditionStore;
+
+        final AgreementStateCache cache = blockNumber == null ? agreementStateCache : null;
+
+        // The agreements are read concurrently, and their statuses are emitted in the order of the ids
+        return Flowable.fromIterable(new LinkedHashSet<>(agreementIds))
+                .concatMapEager(agreementId -> {
+                    AgreementStatus cached = cache != null ? cache.get(agreementId) : null;
+                    if (cached != null)
+                        return Flowable.just(cached);
+                    return getStatusAsync(agreements, conditions, agreementId)
+                            .doOnSuccess(status -> {
+                                if (cache != null)
+                                    cache.put(status);
+                            })
+                            .toFlowable()
+                            .onErrorResumeNext((Throwable e) -> {
+                                log.warn("Unable to get the status of the agreement " + agreementId + ": " + e.getMessage());
+                                return Flowable.empty();
+                            });
+                }, statusConcurrency, 1)
+                .toMap(status -> status.agreementId, status -> status, LinkedHashMap::new)
+                .blockingGet();
+    }
+
+    /**
+     * Loads a copy of the AgreementStoreManager contract that reads the state of a block
+     *
+     * @param blockNumber the block to read
+     * @return the contract
+     * @throws IOException     IOException
+     * @throws CipherException CipherException
+     */
+    AgreementStoreManager loadAgreementStoreManager(BigInteger blockNumber) throws IOException, CipherException {
+        AgreementStoreManager contract = AgreementStoreManager.load(agreementStoreManager.getContractAddress(),
+                getKeeperService().getWeb3(), getKeeperService().getTxManager(), getKeeperService().getContractGasProvider());
+        contract.setDefaultBlockParameter(DefaultBlockParameter.valueOf(blockNumber));
+        return contract;
+    }
+
+    /**
+     * Loads a copy of the ConditionStoreManager contract that reads the state of a block
+     *
+     * @param blockNumber the block to read
+     * @return the contract
+     * @throws IOException     IOException
+     * @throws CipherException CipherException
+     */
+    ConditionStoreManager loadConditionStoreManager(BigInteger blockNumber) throws IOException, CipherException {
+        ConditionStoreManager contract = ConditionStoreManager.load(conditionStoreManager.getContractAddress(),
+                getKeeperService().getWeb3(), getKeeperService().getTxManager(), getKeeperService().getContractGasProvider());
+        contract.setDefaultBlockParameter(DefaultBlockParameter.valueOf(blockNumber));
+        return contract;
+    }
+
+    private Single<AgreementStatus> getStatusAsync(AgreementStoreManager agreements, ConditionStoreManager conditions, String agreementId) {
+
+        return Single.defer(() -> RemoteCalls.toSingle(agreements.getAgreement(EncodingHelper.hexStringToBytes(agreementId))))
+                .flatMap(agreement -> Flowable.fromIterable(agreement.getValue4())
+                        .flatMapSingle(conditionId -> RemoteCalls.toSingle(conditions.getCondition(conditionId)))
+                        .collect(AgreementStatus.ConditionStatusMap::new, (statusMap, condition) -> statusMap.conditions.put(
+                                getConditionNameByAddress(Keys.toChecksumAddress(condition.getValue1())),
+                                condition.getValue2())))
+                .map(statusMap -> {
+                    AgreementStatus agreementStatus = new AgreementStatus();
+                    agreementStatus.agreementId = agreementId;
+                    agreementStatus.conditions.add(statusMap);
+                    return agreementStatus;
+                });
+    }
+
+    /**
+     * Set the maximum number of agreements read at the same time by getStatuses
+     *
+     * @param statusConcurrency number of agreements
+     * @return this
+     */
+    public AgreementsManager setStatusConcurrency(int statusConcurrency) {
+        this.statusConcurrency = Math.max(1, statusConcurrency);
+        return this;
+    }
+
     /**
      * Auxiliar method to get the name of the different conditions address.
      *
@@ -244,9 +463,74 @@ public class AgreementsManager extends BaseManager {
      */
     public List<DID> getConsumerAssets(String consumerAddress) throws ServiceException {
 
-        return Stream.concat(getAccessAgreementsFulfilledByConsumer(consumerAddress).stream(),
-                             getComputeAgreementsFulfilledByConsumer(consumerAddress).stream())
+        List<Callable<List<DID>>> lookups = Arrays.asList(
+                () -> getAccessAgreementsFulfilledByConsumer(consumerAddress),
+                () -> getComputeAgreementsFulfilledByConsumer(consumerAddress)
+        );
+
+        List<CompletableFuture<List<DID>>> futures = lookups.stream()
+                .map(lookup -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return lookup.call();
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, queryExecutor))
                 .collect(Collectors.toList());
+
+        Map<String, DID> dids = new LinkedHashMap<>();
+        try {
+            for (CompletableFuture<List<DID>> future : futures) {
+                for (DID did : future.join())
+                    dids.putIfAbsent(did.getHash().toLowerCase(), did);
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ServiceException)
+                throw (ServiceException) e.getCause();
+            throw new ServiceException("Unable to retrieve assets purchased by " + consumerAddress + " " + e.getCause().getMessage(), e.getCause());
+        }
+
+        return new ArrayList<>(dids.values());
+    }
+
+    /**
+     * Set the Executor used to run the queries of getConsumerAssets concurrently
+     *
+     * @param queryExecutor the executor
+     * @return this
+     */
+    public AgreementsManager setQueryExecutor(Executor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+        return this;
+    }
+
+    /**
+     * Asset objects purchased by consumerAddress, scanning the chain in windows of blocks.
+     * The DIDs are emitted as they are found, so the first results are available before the scan finishes
+     *
+     * @param consumerAddress ethereum address of consumer
+     * @return a Flowable with the dids
+     */
+    public Flowable<DID> getConsumerAssetsFlowable(String consumerAddress) {
+
+        return Flowable.concat(
+                getFulfilledByConsumerFlowable(accessSecretStoreCondition, accessSecretStoreCondition.FULFILLED_EVENT, consumerAddress),
+                getFulfilledByConsumerFlowable(computeExecutionCondition, computeExecutionCondition.FULFILLED_EVENT, consumerAddress));
+    }
+
+    private Flowable<DID> getFulfilledByConsumerFlowable(Contract condition, Event event, String consumerAddress) {
+
+        final String eventSignature = EventEncoder.encode(event);
+        final String consumerTopic = Numeric.toHexStringWithPrefixZeroPadded(Numeric.toBigInt(consumerAddress), 64);
+
+        return ChunkedLogScanner.getInstance(getKeeperService())
+                .scan(condition.getContractAddress(), filter -> {
+                    filter.addSingleTopic(eventSignature);
+                    filter.addNullTopic();
+                    filter.addNullTopic();
+                    filter.addOptionalTopics(consumerTopic);
+                })
+                .map(eventLog -> DID.getFromHash(Numeric.cleanHexPrefix(eventLog.getTopics().get(2))));
     }
 
 
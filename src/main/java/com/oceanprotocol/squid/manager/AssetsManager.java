@@ -7,6 +7,8 @@ package com.oceanprotocol.squid.manager;
 
 import com.oceanprotocol.common.helpers.EncodingHelper;
 import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.squid.core.cache.SearchResultCache;
+import com.oceanprotocol.squid.core.events.ChunkedLogScanner;
 import com.oceanprotocol.squid.exceptions.DDOException;
 import com.oceanprotocol.squid.exceptions.EthereumException;
 import com.oceanprotocol.squid.exceptions.ServiceException;
@@ -16,6 +18,7 @@ import com.oceanprotocol.squid.models.DID;
 import com.oceanprotocol.squid.models.aquarius.SearchQuery;
 import com.oceanprotocol.squid.models.aquarius.SearchResult;
 import com.oceanprotocol.squid.models.asset.AssetMetadata;
+import io.reactivex.Flowable;
 import org.web3j.abi.EventEncoder;
 import org.web3j.abi.datatypes.Event;
 import org.web3j.crypto.Keys;
@@ -58,7 +61,7 @@ public class AssetsManager extends BaseManager {
      * @throws Exception if Aquarius service fails publishing the DDO
      */
     public DDO publishMetadata(DDO ddo) throws Exception {
-        return getAquariusService().createDDO(ddo);
+        return storeDDO(ddo);
     }
 
 
@@ -82,7 +85,14 @@ public class AssetsManager extends BaseManager {
      * @throws Exception if Aquarius service fails updating the metadata
      */
     public boolean updateMetadata(String id, DDO ddo) throws Exception {
-        return getAquariusService().updateDDO(id, ddo);
+        boolean updated = getAquariusService().updateDDO(id, ddo);
+
+        if (getDDOCache() != null)
+            getDDOCache().invalidate(new DID(id));
+        if (getSearchResultCache() != null)
+            getSearchResultCache().invalidateAll();
+
+        return updated;
     }
 
     /**
@@ -95,6 +105,10 @@ public class AssetsManager extends BaseManager {
      * @throws DDOException if Aquairus fails searching the assets
      */
     public SearchResult searchAssets(String text, int offset, int page) throws DDOException {
+        if (getSearchResultCache() != null)
+            return getSearchResultCache().get(SearchResultCache.key(text, offset, page),
+                    () -> getAquariusService().searchDDO(text, offset, page));
+
         return getAquariusService().searchDDO(text, offset, page);
     }
 
@@ -110,9 +124,39 @@ public class AssetsManager extends BaseManager {
      */
     public SearchResult searchAssets(Map<String, Object> params, int offset, int page, int sort) throws DDOException {
         SearchQuery searchQuery = new SearchQuery(params, offset, page, sort);
+        if (getSearchResultCache() != null)
+            return getSearchResultCache().get(SearchResultCache.key(searchQuery),
+                    () -> getAquariusService().searchDDO(searchQuery));
+
         return getAquariusService().searchDDO(searchQuery);
     }
 
+    /**
+     * Gets all the DDOs that match the search criteria, going through all the pages of results
+     *
+     * @param text     contains the criteria
+     * @param offset   number of DDOs per page
+     * @param prefetch number of pages requested in advance
+     * @return a Flowable with all the DDOs found
+     */
+    public Flowable<DDO> searchAssetsFlowable(String text, int offset, int prefetch) {
+        return getAquariusService().searchDDOFlowable(text, offset, prefetch);
+    }
+
+    /**
+     * Gets all the DDOs that match the parameters of the query, going through all the pages of results
+     *
+     * @param params   contains the criteria
+     * @param offset   number of DDOs per page
+     * @param sort     parameter to sort the results
+     * @param prefetch number of pages requested in advance
+     * @return a Flowable with all the DDOs found
+     */
+    public Flowable<DDO> searchAssetsFlowable(Map<String, Object> params, int offset, int sort, int prefetch) {
+        SearchQuery searchQuery = new SearchQuery(params, offset, 1, sort);
+        return getAquariusService().searchDDOFlowable(searchQuery, prefetch);
+    }
+
     /**
      * Retire the asset ddo from Aquarius.
      *
@@ -121,7 +165,14 @@ public class AssetsManager extends BaseManager {
      * @throws DDOException DDOException
      */
     public Boolean deleteAsset(DID did) throws DDOException {
-        return getAquariusService().retireAssetDDO(did.getDid());
+        boolean retired = getAquariusService().retireAssetDDO(did.getDid());
+
+        if (getDDOCache() != null)
+            getDDOCache().invalidate(did);
+        if (getSearchResultCache() != null)
+            getSearchResultCache().invalidateAll();
+
+        return retired;
 
     }
 
@@ -157,6 +208,10 @@ public class AssetsManager extends BaseManager {
      * @throws ServiceException ServiceException
      */
     public List<DID> getOwnerAssets(String ownerAddress) throws ServiceException {
+
+        if (getDIDRegistryIndex() != null && getDIDRegistryIndex().isSynced())
+            return getDIDRegistryIndex().getOwnerAssets(ownerAddress);
+
         EthFilter didFilter = new EthFilter(
                 DefaultBlockParameterName.EARLIEST,
                 DefaultBlockParameterName.LATEST,
@@ -191,6 +246,27 @@ public class AssetsManager extends BaseManager {
         }
     }
 
+    /**
+     * Asset objects published by ownerAddress, scanning the chain in windows of blocks.
+     * The DIDs are emitted as they are found, so the first results are available before the scan finishes
+     *
+     * @param ownerAddress ethereum address of owner/publisher
+     * @return a Flowable with the dids
+     */
+    public Flowable<DID> getOwnerAssetsFlowable(String ownerAddress) {
+
+        final String eventSignature = EventEncoder.encode(didRegistry.DIDATTRIBUTEREGISTERED_EVENT);
+        final String ownerTopic = Numeric.toHexStringWithPrefixZeroPadded(Numeric.toBigInt(ownerAddress), 64);
+
+        return ChunkedLogScanner.getInstance(getKeeperService())
+                .scan(didRegistry.getContractAddress(), filter -> {
+                    filter.addSingleTopic(eventSignature);
+                    filter.addNullTopic();
+                    filter.addOptionalTopics(ownerTopic);
+                })
+                .map(eventLog -> DID.getFromHash(Numeric.cleanHexPrefix(eventLog.getTopics().get(1))));
+    }
+
     /**
      * Transfer the ownsership of a DID
      * @param did the did
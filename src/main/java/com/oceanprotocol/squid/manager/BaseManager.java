@@ -11,15 +11,22 @@ import com.oceanprotocol.common.web3.KeeperService;
 import com.oceanprotocol.keeper.contracts.*;
 import com.oceanprotocol.secretstore.core.EvmDto;
 import com.oceanprotocol.secretstore.core.SecretStoreDto;
+import com.oceanprotocol.squid.core.cache.DDOCache;
+import com.oceanprotocol.squid.core.cache.SearchResultCache;
+import com.oceanprotocol.squid.core.events.DIDRegistryIndex;
+import com.oceanprotocol.squid.core.tx.RemoteCalls;
+import com.oceanprotocol.squid.core.tx.TokenAllowance;
 import com.oceanprotocol.squid.external.AquariusService;
 import com.oceanprotocol.squid.models.Account;
 import com.oceanprotocol.squid.models.DDO;
 import com.oceanprotocol.squid.models.DID;
+import com.oceanprotocol.squid.models.DIDResolution;
 import com.oceanprotocol.squid.models.asset.AssetMetadata;
 import com.oceanprotocol.squid.models.service.types.AuthorizationService;
 import com.oceanprotocol.squid.models.service.types.MetadataService;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import io.reactivex.Single;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.web3j.abi.EventEncoder;
@@ -31,6 +38,7 @@ import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.request.EthFilter;
 import org.web3j.protocol.core.methods.response.EthLog;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
 import com.oceanprotocol.squid.exceptions.DDOException;
 import com.oceanprotocol.squid.exceptions.DIDFormatException;
 import com.oceanprotocol.squid.exceptions.EncryptionException;
@@ -39,8 +47,13 @@ import com.oceanprotocol.squid.exceptions.EthereumException;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Abstract class for the Managers
@@ -49,11 +62,32 @@ public abstract class BaseManager {
 
     protected static final Logger log = LogManager.getLogger(BaseManager.class);
 
+    public static final int DEFAULT_RESOLVE_PARALLELISM = 10;
+    private static final int RESOLVE_LOGS_BATCH_SIZE = 100;
+    private static final int RESOLVE_MAX_THREADS = 32;
+
+    // Shared by all the managers, the threads not used for a minute are stopped
+    private static final ThreadPoolExecutor DEFAULT_RESOLVE_EXECUTOR = new ThreadPoolExecutor(
+            RESOLVE_MAX_THREADS, RESOLVE_MAX_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "squid-resolve-ddo");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        DEFAULT_RESOLVE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     private KeeperService keeperService;
     private AquariusService aquariusService;
     private SecretStoreDto secretStoreDto;
     private EvmDto evmDto;
     private SecretStoreManager secretStoreManager;
+    private DDOCache ddoCache;
+    private SearchResultCache searchResultCache;
+    private DIDRegistryIndex didRegistryIndex;
+    private TokenAllowance tokenAllowance;
+    private Executor resolveExecutor = DEFAULT_RESOLVE_EXECUTOR;
     protected OceanToken tokenContract;
     protected Dispenser dispenser;
     protected DIDRegistry didRegistry;
@@ -172,10 +206,58 @@ public abstract class BaseManager {
 
     }
 
+    /**
+     * Approves the transfer of tokens without blocking the caller until the transaction is mined
+     *
+     * @param tokenContract  the token contract
+     * @param spenderAddress the address of the spender
+     * @param price          the amount of tokens approved
+     * @return a Single that emits true when the transaction is mined successfully
+     */
+    public Single<Boolean> tokenApproveAsync(OceanToken tokenContract, String spenderAddress, String price) {
+
+        String checksumAddress = Keys.toChecksumAddress(spenderAddress);
+
+        return RemoteCalls.toSingle(tokenContract.approve(checksumAddress, new BigInteger(price)))
+                .map(receipt -> {
+                    if (!RemoteCalls.isStatusOk(receipt)) {
+                        String msg = "The Status received is not valid executing Token Approve: " + receipt.getStatus();
+                        log.error(msg);
+                        throw new TokenApproveException(msg);
+                    }
+                    log.debug("Token Approve transactionReceipt OK ");
+                    return true;
+                })
+                .onErrorResumeNext(e -> {
+                    if (e instanceof TokenApproveException)
+                        return Single.error(e);
+                    String msg = "Error executing Token Approve ";
+                    log.error(msg + ": " + e.getMessage());
+                    return Single.error(new TokenApproveException(msg, e));
+                });
+    }
+
+
+    /**
+     * Stores a DDO in Aquarius. The search results cached are discarded, so the new asset can be found
+     *
+     * @param ddo the DDO
+     * @return the DDO stored
+     * @throws DDOException DDOException
+     */
+    protected DDO storeDDO(DDO ddo) throws DDOException {
+        DDO created = getAquariusService().createDDO(ddo);
+
+        if (searchResultCache != null)
+            searchResultCache.invalidateAll();
+
+        return created;
+    }
 
     /**
      * Given a DID, scans the DIDRegistry events on-chain to resolve the
-     * Metadata API url and return the DDO found
+     * Metadata API url and return the DDO found.
+     * If a DDOCache is set, the DDO is returned from the cache when possible
      *
      * @param did the did
      * @return DDO
@@ -183,49 +265,238 @@ public abstract class BaseManager {
      */
     public DDO resolveDID(DID did) throws DDOException {
 
+        if (ddoCache != null) {
+            DDO cached = ddoCache.get(did);
+            if (cached != null) {
+                log.debug("DDO for DID " + did.toString() + " found in cache");
+                return cached;
+            }
+        }
+
+        DDO ddo = resolveDIDOnChain(did);
+
+        if (ddoCache != null)
+            ddoCache.put(did, ddo);
+
+        return ddo;
+    }
+
+    private DDO resolveDIDOnChain(DID did) throws DDOException {
+
+        try {
+            String ddoUrl = null;
+            if (didRegistryIndex != null && didRegistryIndex.isSynced())
+                ddoUrl = didRegistryIndex.getUrl(did);
+            if (ddoUrl == null)
+                ddoUrl = getDDOUrlFromEvents(did);
+
+            String didUrl = UrlHelper.parseDDOUrl(ddoUrl, did.toString());
+
+            AquariusService ddoAquariosDto = AquariusService.getInstance(UrlHelper.getBaseUrl(didUrl));
+            return ddoAquariosDto.getDDO(didUrl);
+
+        } catch (Exception ex) {
+            log.error("Unable to retrieve DDO " + ex.getMessage());
+            throw new DDOException("Unable to retrieve DDO " + ex.getMessage());
+        }
+    }
+
+    private String getDDOUrlFromEvents(DID did) throws DDOException, EthereumException {
+
         EthFilter didFilter = new EthFilter(
                 DefaultBlockParameterName.EARLIEST,
                 DefaultBlockParameterName.LATEST,
                 didRegistry.getContractAddress()
         );
 
+        final Event event = didRegistry.DIDATTRIBUTEREGISTERED_EVENT;
+        final String eventSignature = EventEncoder.encode(event);
+        didFilter.addSingleTopic(eventSignature);
+
+        String didTopic = "0x" + did.getHash();
+        didFilter.addOptionalTopics(didTopic);
+
+        EthLog ethLog;
+
         try {
+            ethLog = getKeeperService().getWeb3().ethGetLogs(didFilter).send();
+        } catch (IOException e) {
+            throw new EthereumException("Error searching DID " + did.toString() + " onchain: " + e.getMessage());
+        }
+
+        List<EthLog.LogResult> logs = ethLog.getLogs();
+
+        int numLogs = logs.size();
+        if (numLogs < 1)
+            throw new DDOException("No events found for " + did.toString());
+
+        EthLog.LogResult logResult = logs.get(numLogs - 1);
+        List<Type> nonIndexed = FunctionReturnDecoder.decode(((EthLog.LogObject) logResult).getData(), event.getNonIndexedParameters());
+        return nonIndexed.get(0).getValue().toString();
+    }
+
+
+    /**
+     * Resolves a list of DIDs. The DIDRegistry events of all the DIDs are requested in a few eth_getLogs calls
+     * and the DDOs are fetched concurrently from the Metadata APIs, grouped by base url.
+     *
+     * @param dids        the dids to resolve
+     * @param parallelism maximum number of DDOs fetched at the same time
+     * @return a DIDResolution for every DID, in the same order as the input
+     */
+    public List<DIDResolution> resolveDIDs(List<DID> dids, int parallelism) {
+
+        Map<String, DIDResolution> resolutions = new HashMap<>();
+        Map<String, DID> pending = new LinkedHashMap<>();
 
-            final Event event = didRegistry.DIDATTRIBUTEREGISTERED_EVENT;
-            final String eventSignature = EventEncoder.encode(event);
-            didFilter.addSingleTopic(eventSignature);
+        for (DID did : dids) {
+            String key = did.getHash().toLowerCase();
+            if (resolutions.containsKey(key) || pending.containsKey(key))
+                continue;
 
-            String didTopic = "0x" + did.getHash();
-            didFilter.addOptionalTopics(didTopic);
+            DDO cached = ddoCache != null ? ddoCache.get(did) : null;
+            if (cached != null)
+                resolutions.put(key, DIDResolution.resolved(did, cached));
+            else
+                pending.put(key, did);
+        }
 
-            EthLog ethLog;
+        Map<String, String> ddoUrls = new HashMap<>();
+        if (didRegistryIndex != null && didRegistryIndex.isSynced()) {
+            pending.forEach((key, did) -> {
+                String url = didRegistryIndex.getUrl(did);
+                if (url != null)
+                    ddoUrls.put(key, url);
+            });
+        }
 
+        List<String> notIndexed = new ArrayList<>(pending.keySet());
+        notIndexed.removeAll(ddoUrls.keySet());
+        for (int i = 0; i < notIndexed.size(); i += RESOLVE_LOGS_BATCH_SIZE) {
+            List<String> batch = notIndexed.subList(i, Math.min(i + RESOLVE_LOGS_BATCH_SIZE, notIndexed.size()));
             try {
-                ethLog = getKeeperService().getWeb3().ethGetLogs(didFilter).send();
-            } catch (IOException e) {
-                throw new EthereumException("Error searching DID " + did.toString() + " onchain: " + e.getMessage());
+                ddoUrls.putAll(getDDOUrlsFromEvents(batch));
+            } catch (EthereumException e) {
+                for (String key : batch)
+                    resolutions.put(key, DIDResolution.failed(pending.get(key),
+                            new DDOException("Unable to retrieve DDO " + e.getMessage(), e)));
             }
+        }
 
-            List<EthLog.LogResult> logs = ethLog.getLogs();
+        Map<String, List<DID>> didsByAquarius = new LinkedHashMap<>();
+        Map<DID, String> didUrls = new HashMap<>();
+        for (Map.Entry<String, DID> entry : pending.entrySet()) {
+            DID did = entry.getValue();
+            if (resolutions.containsKey(entry.getKey()))
+                continue;
+
+            String ddoUrl = ddoUrls.get(entry.getKey());
+            if (ddoUrl == null) {
+                resolutions.put(entry.getKey(), DIDResolution.failed(did, new DDOException("No events found for " + did.toString())));
+                continue;
+            }
+            try {
+                String didUrl = UrlHelper.parseDDOUrl(ddoUrl, did.toString());
+                didUrls.put(did, didUrl);
+                didsByAquarius.computeIfAbsent(UrlHelper.getBaseUrl(didUrl), k -> new ArrayList<>()).add(did);
+            } catch (Exception e) {
+                resolutions.put(entry.getKey(), DIDResolution.failed(did, new DDOException("Unable to retrieve DDO " + e.getMessage(), e)));
+            }
+        }
 
-            int numLogs = logs.size();
-            if (numLogs < 1)
-                throw new DDOException("No events found for " + did.toString());
+        if (!didsByAquarius.isEmpty()) {
+            List<DID> toFetch = new ArrayList<>();
+            List<AquariusService> aquariusServices = new ArrayList<>();
+            didsByAquarius.forEach((baseUrl, aquariusDids) -> {
+                AquariusService aquarius = AquariusService.getInstance(baseUrl);
+                for (DID did : aquariusDids) {
+                    toFetch.add(did);
+                    aquariusServices.add(aquarius);
+                }
+            });
+
+            // Every worker takes the next DID pending, so no more than parallelism DDOs are fetched at the same time
+            DIDResolution[] fetched = new DIDResolution[toFetch.size()];
+            AtomicInteger next = new AtomicInteger();
+            int workers = Math.max(1, Math.min(parallelism, toFetch.size()));
+
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+            for (int i = 0; i < workers; i++) {
+                futures[i] = CompletableFuture.runAsync(() -> {
+                    int position;
+                    while ((position = next.getAndIncrement()) < toFetch.size()) {
+                        DID did = toFetch.get(position);
+                        fetched[position] = fetchDDO(aquariusServices.get(position), did, didUrls.get(did));
+                    }
+                }, resolveExecutor);
+            }
+            CompletableFuture.allOf(futures).join();
 
-            EthLog.LogResult logResult = logs.get(numLogs - 1);
-            List<Type> nonIndexed = FunctionReturnDecoder.decode(((EthLog.LogObject) logResult).getData(), event.getNonIndexedParameters());
-            String ddoUrl = nonIndexed.get(0).getValue().toString();
-            String didUrl = UrlHelper.parseDDOUrl(ddoUrl, did.toString());
+            for (DIDResolution resolution : fetched) {
+                if (resolution.isResolved() && ddoCache != null)
+                    ddoCache.put(resolution.getDid(), resolution.getDdo());
+                resolutions.put(resolution.getDid().getHash().toLowerCase(), resolution);
+            }
+        }
 
-            AquariusService ddoAquariosDto = AquariusService.getInstance(UrlHelper.getBaseUrl(didUrl));
-            return ddoAquariosDto.getDDO(didUrl);
+        List<DIDResolution> results = new ArrayList<>(dids.size());
+        for (DID did : dids) {
+            DIDResolution resolution = resolutions.get(did.getHash().toLowerCase());
+            results.add(resolution.getDid() == did ? resolution :
+                    resolution.isResolved() ? DIDResolution.resolved(did, resolution.getDdo()) : DIDResolution.failed(did, resolution.getError()));
+        }
+        return results;
+    }
 
-        } catch (Exception ex) {
-            log.error("Unable to retrieve DDO " + ex.getMessage());
-            throw new DDOException("Unable to retrieve DDO " + ex.getMessage());
+    private DIDResolution fetchDDO(AquariusService aquarius, DID did, String didUrl) {
+        try {
+            return DIDResolution.resolved(did, getDDO(aquarius, didUrl));
+        } catch (DDOException e) {
+            return DIDResolution.failed(did, e);
+        } catch (RuntimeException e) {
+            return DIDResolution.failed(did, new DDOException("Unable to retrieve DDO " + e.getMessage(), e));
         }
     }
 
+    /**
+     * Fetches a DDO from the Metadata API that stores it
+     */
+    DDO getDDO(AquariusService aquarius, String didUrl) throws DDOException {
+        return aquarius.getDDO(didUrl);
+    }
+
+    private Map<String, String> getDDOUrlsFromEvents(List<String> didHashes) throws EthereumException {
+
+        EthFilter didFilter = new EthFilter(
+                DefaultBlockParameterName.EARLIEST,
+                DefaultBlockParameterName.LATEST,
+                didRegistry.getContractAddress()
+        );
+
+        final Event event = didRegistry.DIDATTRIBUTEREGISTERED_EVENT;
+        final String eventSignature = EventEncoder.encode(event);
+        didFilter.addSingleTopic(eventSignature);
+        didFilter.addOptionalTopics(didHashes.stream().map(hash -> "0x" + hash).toArray(String[]::new));
+
+        EthLog ethLog;
+
+        try {
+            ethLog = getKeeperService().getWeb3().ethGetLogs(didFilter).send();
+        } catch (IOException e) {
+            throw new EthereumException("Error searching DIDs onchain: " + e.getMessage(), e);
+        }
+        if (ethLog.hasError())
+            throw new EthereumException("Error searching DIDs onchain: " + ethLog.getError().getMessage());
+
+        // The logs are sorted by block, so the last url found for every DID is the latest one
+        Map<String, String> ddoUrls = new HashMap<>();
+        for (EthLog.LogResult logResult : ethLog.getLogs()) {
+            EthLog.LogObject logObject = (EthLog.LogObject) logResult;
+            List<Type> nonIndexed = FunctionReturnDecoder.decode(logObject.getData(), event.getNonIndexedParameters());
+            ddoUrls.put(Numeric.cleanHexPrefix(logObject.getTopics().get(1)).toLowerCase(), nonIndexed.get(0).getValue().toString());
+        }
+        return ddoUrls;
+    }
 
     public ContractAddresses getContractAddresses() {
         return contractAddresses;
@@ -271,6 +542,98 @@ public abstract class BaseManager {
         return this;
     }
 
+    /**
+     * Get the DDOCache
+     *
+     * @return DDOCache
+     */
+    public DDOCache getDDOCache() {
+        return ddoCache;
+    }
+
+    /**
+     * Set the Executor used to fetch the DDOs of resolveDIDs concurrently
+     *
+     * @param resolveExecutor the executor
+     * @return this
+     */
+    public BaseManager setResolveExecutor(Executor resolveExecutor) {
+        this.resolveExecutor = resolveExecutor;
+        return this;
+    }
+
+    /**
+     * Set the DDOCache used to avoid resolving the same DID several times
+     *
+     * @param ddoCache DDOCache
+     * @return this
+     */
+    public BaseManager setDDOCache(DDOCache ddoCache) {
+        this.ddoCache = ddoCache;
+        return this;
+    }
+
+    /**
+     * Get the SearchResultCache
+     *
+     * @return SearchResultCache
+     */
+    public SearchResultCache getSearchResultCache() {
+        return searchResultCache;
+    }
+
+    /**
+     * Set the cache used to keep the results of the searches
+     *
+     * @param searchResultCache SearchResultCache
+     * @return this
+     */
+    public BaseManager setSearchResultCache(SearchResultCache searchResultCache) {
+        this.searchResultCache = searchResultCache;
+        return this;
+    }
+
+    /**
+     * Get the DIDRegistryIndex
+     *
+     * @return DIDRegistryIndex
+     */
+    public DIDRegistryIndex getDIDRegistryIndex() {
+        return didRegistryIndex;
+    }
+
+    /**
+     * Set the local index of DIDRegistry events used to resolve DIDs without scanning the chain
+     *
+     * @param didRegistryIndex DIDRegistryIndex
+     * @return this
+     */
+    public BaseManager setDIDRegistryIndex(DIDRegistryIndex didRegistryIndex) {
+        this.didRegistryIndex = didRegistryIndex;
+        return this;
+    }
+
+    /**
+     * Get the TokenAllowance
+     *
+     * @return TokenAllowance
+     */
+    public TokenAllowance getTokenAllowance() {
+        return tokenAllowance;
+    }
+
+    /**
+     * Set the TokenAllowance of the main account to the LockRewardCondition, used to skip the approvals
+     * of the tokens when the allowance left is enough
+     *
+     * @param tokenAllowance TokenAllowance
+     * @return this
+     */
+    public BaseManager setTokenAllowance(TokenAllowance tokenAllowance) {
+        this.tokenAllowance = tokenAllowance;
+        return this;
+    }
+
     /**
      * Get the SecretStoreDto
      *
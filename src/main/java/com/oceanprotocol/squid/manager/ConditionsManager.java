@@ -2,6 +2,7 @@ package com.oceanprotocol.squid.manager;
 
 import com.oceanprotocol.common.helpers.EncodingHelper;
 import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.squid.core.tx.TokenAllowance;
 import com.oceanprotocol.squid.external.AquariusService;
 import com.oceanprotocol.squid.models.DDO;
 import com.oceanprotocol.squid.models.DID;
@@ -45,13 +46,33 @@ public class ConditionsManager extends BaseManager {
      * @throws Exception exception
      */
     public Boolean lockReward(String agreementId, BigInteger amount) throws Exception {
-        try {
+        TokenAllowance tokenAllowance = getTokenAllowance();
+        if (tokenAllowance == null)
             tokenApprove(tokenContract, lockRewardCondition.getContractAddress(), amount.toString());
+        else {
+            Throwable error = tokenAllowance.reserve(amount).blockingGet();
+            if (error != null)
+                throw error instanceof Exception ? (Exception) error : new Exception(error);
+        }
+
+        try {
             TransactionReceipt txReceipt = lockRewardCondition.fulfill(EncodingHelper.hexStringToBytes(agreementId),
                     Keys.toChecksumAddress(escrowReward.getContractAddress()),
                     amount).send();
+            if (tokenAllowance != null) {
+                if (txReceipt.isStatusOK())
+                    tokenAllowance.consumed(amount);
+                else
+                    tokenAllowance.release(amount);
+            }
             return txReceipt.isStatusOK();
-        } catch (TransactionException e) {
+        } catch (Exception e) {
+            if (tokenAllowance != null) {
+                tokenAllowance.release(amount);
+                tokenAllowance.invalidate();
+            }
+            if (!(e instanceof TransactionException))
+                throw e;
             log.error("Error looking reward for the agreement" + agreementId + e.getMessage());
             return false;
         }
@@ -8,11 +8,25 @@ package com.oceanprotocol.squid.manager;
 import com.oceanprotocol.common.helpers.EncodingHelper;
 import com.oceanprotocol.common.helpers.EthereumHelper;
 import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.squid.core.cache.ContentCache;
+import com.oceanprotocol.squid.core.download.ChecksumMismatchException;
+import com.oceanprotocol.squid.core.download.Checksums;
+import com.oceanprotocol.squid.core.download.DownloadProgress;
+import com.oceanprotocol.squid.core.download.FileChannelDownloader;
+import com.oceanprotocol.squid.core.download.FlowableDownloader;
+import com.oceanprotocol.squid.core.download.RangeNotSupportedException;
+import com.oceanprotocol.squid.core.download.SegmentedDownloader;
+import com.oceanprotocol.squid.core.download.VerifyingInputStream;
+import com.oceanprotocol.squid.core.orders.OrderJournal;
+import com.oceanprotocol.squid.core.orders.OrderState;
 import com.oceanprotocol.squid.core.sla.functions.FulfillEscrowReward;
 import com.oceanprotocol.squid.core.sla.functions.FulfillLockReward;
 import com.oceanprotocol.squid.core.sla.handlers.ServiceAccessAgreementHandler;
 import com.oceanprotocol.squid.core.sla.handlers.ServiceAgreementHandler;
 import com.oceanprotocol.squid.core.sla.handlers.ServiceComputingAgreementHandler;
+import com.oceanprotocol.squid.core.tx.ExponentialBackoff;
+import com.oceanprotocol.squid.core.tx.RemoteCalls;
+import com.oceanprotocol.squid.core.tx.TokenAllowance;
 import com.oceanprotocol.squid.exceptions.DIDFormatException;
 import com.oceanprotocol.squid.exceptions.DIDRegisterException;
 import com.oceanprotocol.squid.exceptions.DDOException;
@@ -21,29 +35,34 @@ import com.oceanprotocol.squid.exceptions.InitializeConditionsException;
 import com.oceanprotocol.squid.exceptions.OrderException;
 import com.oceanprotocol.squid.exceptions.ServiceAgreementException;
 import com.oceanprotocol.squid.exceptions.EthereumException;
-import com.oceanprotocol.squid.exceptions.LockRewardFulfillException;
 import com.oceanprotocol.squid.exceptions.EscrowRewardException;
 import com.oceanprotocol.squid.exceptions.ConsumeServiceException;
 import com.oceanprotocol.squid.exceptions.EncryptionException;
 import com.oceanprotocol.squid.external.AquariusService;
 import com.oceanprotocol.squid.external.BrizoService;
+import com.oceanprotocol.squid.external.PooledHttpClient;
 import com.oceanprotocol.squid.models.DDO;
 import com.oceanprotocol.squid.models.DID;
 import com.oceanprotocol.squid.models.Order;
 import com.oceanprotocol.squid.models.asset.AssetMetadata;
+import com.oceanprotocol.squid.models.asset.ConsumeResult;
 import com.oceanprotocol.squid.models.asset.OrderResult;
 import com.oceanprotocol.squid.models.brizo.ExecuteService;
 import com.oceanprotocol.squid.models.service.ProviderConfig;
 import com.oceanprotocol.squid.models.service.Service;
 import com.oceanprotocol.squid.models.service.ServiceBuilder;
 import com.oceanprotocol.squid.models.service.Condition;
-import com.oceanprotocol.squid.models.service.Agreement;
 import com.oceanprotocol.squid.models.service.types.ComputingService;
 import com.oceanprotocol.squid.models.service.types.MetadataService;
 import com.oceanprotocol.squid.models.service.types.ProvenanceService;
 import com.oceanprotocol.squid.models.service.types.AuthorizationService;
 import com.oceanprotocol.squid.models.service.types.AccessService;
+import io.reactivex.Completable;
 import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.flowables.ConnectableFlowable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.web3j.crypto.CipherException;
@@ -56,9 +75,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Handles several operations related with Ocean's flow
@@ -66,9 +96,34 @@ import java.util.concurrent.TimeoutException;
 public class OceanManager extends BaseManager {
 
     private static final Logger log = LogManager.getLogger(OceanManager.class);
+
+    public static final int DEFAULT_CONSUME_PARALLELISM = 1;
+    public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 10;
+
+    private static final ExponentialBackoff AGREEMENT_STATUS_BACKOFF = new ExponentialBackoff(250, 4000, 7);
+    private static final long ORDER_TIMEOUT = 120;
+    private static final BigInteger CONDITION_FULFILLED = BigInteger.valueOf(2);
+
+    private static final Executor DEFAULT_CONSUME_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "squid-consume");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private AgreementsManager agreementsManager;
     private TemplatesManager templatesManager;
 
+    private int consumeParallelism = DEFAULT_CONSUME_PARALLELISM;
+    private Semaphore downloadPermits = new Semaphore(DEFAULT_MAX_CONCURRENT_DOWNLOADS, true);
+    private Executor consumeExecutor = DEFAULT_CONSUME_EXECUTOR;
+    private int consumeSegments = 1;
+    private long consumeSegmentMinSize = SegmentedDownloader.DEFAULT_MIN_SEGMENT_SIZE;
+    private boolean consumeResumable = false;
+    private int consumeBufferSize = FileChannelDownloader.DEFAULT_BUFFER_SIZE;
+    private boolean consumeVerifyChecksum = false;
+    private ContentCache contentCache;
+    private OrderJournal orderJournal;
+
     protected OceanManager(KeeperService keeperService, AquariusService aquariusService) {
         super(keeperService, aquariusService);
     }
@@ -95,6 +150,110 @@ public class OceanManager extends BaseManager {
         return this;
     }
 
+    /**
+     * Set the number of files of an Asset downloaded at the same time by consume
+     *
+     * @param consumeParallelism number of files
+     * @return this
+     */
+    public OceanManager setConsumeParallelism(int consumeParallelism) {
+        this.consumeParallelism = Math.max(1, consumeParallelism);
+        return this;
+    }
+
+    /**
+     * Set the maximum number of files downloaded at the same time by all the consume operations
+     *
+     * @param maxConcurrentDownloads number of files
+     * @return this
+     */
+    public OceanManager setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+        this.downloadPermits = new Semaphore(Math.max(1, maxConcurrentDownloads), true);
+        return this;
+    }
+
+    /**
+     * Set the number of ranges of bytes of a file downloaded at the same time by consume.
+     * Only the files whose contentLength is known and bigger than the minimum size of a segment are split
+     *
+     * @param consumeSegments number of ranges
+     * @param segmentMinSize  minimum number of bytes of a range
+     * @return this
+     */
+    public OceanManager setConsumeSegments(int consumeSegments, long segmentMinSize) {
+        this.consumeSegments = Math.max(1, consumeSegments);
+        this.consumeSegmentMinSize = segmentMinSize;
+        return this;
+    }
+
+    /**
+     * Set if consume records the progress of the downloads, so an interrupted download is resumed
+     * requesting only the bytes missing. Only the files whose contentLength is known can be resumed
+     *
+     * @param consumeResumable true to resume the downloads
+     * @return this
+     */
+    public OceanManager setConsumeResumable(boolean consumeResumable) {
+        this.consumeResumable = consumeResumable;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of bytes transferred to disk in every write when consume downloads a file
+     *
+     * @param consumeBufferSize number of bytes
+     * @return this
+     */
+    public OceanManager setConsumeBufferSize(int consumeBufferSize) {
+        this.consumeBufferSize = consumeBufferSize;
+        return this;
+    }
+
+    /**
+     * Set if consume verifies the length and the checksum of the files declared in the metadata.
+     * The content is verified while it's downloaded, and a file that doesn't match is removed
+     *
+     * @param consumeVerifyChecksum true to verify the files
+     * @return this
+     */
+    public OceanManager setConsumeVerifyChecksum(boolean consumeVerifyChecksum) {
+        this.consumeVerifyChecksum = consumeVerifyChecksum;
+        return this;
+    }
+
+    /**
+     * Set the local cache of the files consumed. If it's null the files are always downloaded
+     *
+     * @param contentCache the cache
+     * @return this
+     */
+    public OceanManager setContentCache(ContentCache contentCache) {
+        this.contentCache = contentCache;
+        return this;
+    }
+
+    /**
+     * Set the journal where the transitions of the orders are recorded. If it's null the orders are only kept in memory
+     *
+     * @param orderJournal the journal
+     * @return this
+     */
+    public OceanManager setOrderJournal(OrderJournal orderJournal) {
+        this.orderJournal = orderJournal;
+        return this;
+    }
+
+    /**
+     * Set the Executor used to download the files of an Asset in parallel
+     *
+     * @param consumeExecutor the executor
+     * @return this
+     */
+    public OceanManager setConsumeExecutor(Executor consumeExecutor) {
+        this.consumeExecutor = consumeExecutor;
+        return this;
+    }
+
     /**
      * Given a DDO, returns a DID created using the ddo
      *
@@ -133,6 +292,9 @@ public class OceanManager extends BaseManager {
                     url
             ).send();
 
+            if (getDDOCache() != null)
+                getDDOCache().invalidate(did);
+
             return receipt.getStatus().equals("0x1");
 
         } catch (Exception e) {
@@ -310,7 +472,7 @@ public class OceanManager extends BaseManager {
             registerDID(ddo.getDid(), metadataEndpoint, ddo.getDid().getHash(), providerConfig.getProviderAddresses());
 
             // Storing DDO
-            return getAquariusService().createDDO(ddo);
+            return storeDDO(ddo);
 
         } catch (DDOException | DIDRegisterException | IOException | CipherException | ServiceException e) {
             throw new DDOException("Error registering Asset.", e);
@@ -319,7 +481,10 @@ public class OceanManager extends BaseManager {
     }
 
     /**
-     * Purchases an Asset represented by a DID. It implies to initialize a Service Agreement between publisher and consumer
+     * Purchases an Asset represented by a DID. It implies to initialize a Service Agreement between publisher and consumer.
+     * The transactions of the order are sent one after the other without blocking any thread while they are mined,
+     * so many orders can be executed at the same time. The order starts when this method is called, and the Flowable
+     * returned replays its result to every subscriber
      *
      * @param did                 the did
      * @param serviceIndex the index of the service
@@ -344,52 +509,47 @@ public class OceanManager extends BaseManager {
         try {
 
             Service service = ddo.getService(serviceIndex);
+            Flowable<String> conditionFulfilledEvent = listenForConditionFulfilled(service, serviceAgreementId);
+            Flowable<String> agreementCreated = this.initializeServiceAgreement(ddo, serviceIndex, serviceAgreementId);
+            AtomicBoolean lockRewardSent = new AtomicBoolean(false);
 
-            return this.initializeServiceAgreement(ddo, serviceIndex, serviceAgreementId)
+            // The order is recorded before the agreement is requested, so it can be recovered after a restart
+            ConnectableFlowable<OrderResult> order = recordOrder(serviceAgreementId, did, serviceIndex, OrderState.STARTED)
+                    .andThen(agreementCreated)
                     .firstOrError()
                     .toFlowable()
                     .switchMap(eventServiceAgreementId -> {
                         if (eventServiceAgreementId.isEmpty())
                             return Flowable.empty();
-                        else {
-                            log.debug("Received AgreementCreated Event with Id: " + eventServiceAgreementId);
-                            String price = ddo.getMetadataService().attributes.main.price;
-                            tokenApprove(this.tokenContract, lockRewardCondition.getContractAddress(), price);
-                            BigInteger balance = this.tokenContract.balanceOf(getMainAccount().address).send();
-                            if (balance.compareTo(new BigInteger(price)) < 0) {
-                                log.warn("Consumer account does not have sufficient token balance to fulfill the " +
-                                        "LockRewardCondition. Do `requestTokens` using the `dispenser` contract then try this again.");
-                                log.info("token balance is: " + balance + " price is: " + price);
-                                throw new Exception("LockRewardCondition.fulfill will fail due to insufficient token balance in the consumer account.");
-                            }
-                            this.fulfillLockReward(ddo, serviceIndex, eventServiceAgreementId);
-                            Flowable<String> conditionFulilledEvent = null;
-
-                            if (service.type.equals(Service.ServiceTypes.access.name()))
-                                conditionFulilledEvent = ServiceAgreementHandler.listenForFulfilledEvent(accessSecretStoreCondition, serviceAgreementId);
-                            else if  (service.type.equals(Service.ServiceTypes.compute.name()))
-                                conditionFulilledEvent = ServiceAgreementHandler.listenForFulfilledEvent(computeExecutionCondition, serviceAgreementId);
-                            else
-                                throw new ServiceAgreementException(serviceAgreementId, "Service type not supported");
-
-                            return conditionFulilledEvent;
-                        }
+
+                        log.debug("Received AgreementCreated Event with Id: " + eventServiceAgreementId);
+                        Completable lockRewardPending = recordOrder(serviceAgreementId, did, serviceIndex, OrderState.LOCK_REWARD_PENDING)
+                                .doOnComplete(() -> lockRewardSent.set(true));
+                        return recordOrder(serviceAgreementId, did, serviceIndex, OrderState.AGREEMENT_CREATED)
+                                .andThen(this.lockReward(ddo, serviceIndex, eventServiceAgreementId, lockRewardPending))
+                                .flatMapPublisher(fulfilled -> recordOrder(serviceAgreementId, did, serviceIndex, OrderState.LOCK_REWARD_FULFILLED)
+                                        .andThen(conditionFulfilledEvent));
                     })
                     .map(event -> new OrderResult(serviceAgreementId, true, false))
                     // TODO timout of the condition
-                    .timeout(120, TimeUnit.SECONDS)
-                    .onErrorReturn(throwable -> {
-
-                        if (throwable instanceof TimeoutException) {
-                            // If we get a timeout listening for a Condition Fulfilled Event,
-                            // we must perform a refund executing escrowReward.fulfill
-                            this.fulfillEscrowReward(ddo, serviceIndex, serviceAgreementId);
-                            return new OrderResult(serviceAgreementId, false, true);
-                        }
+                    .timeout(ORDER_TIMEOUT, TimeUnit.SECONDS)
+                    .onErrorResumeNext(refundOnTimeout(ddo, serviceIndex, serviceAgreementId))
+                    .concatMap(result -> recordFinalState(serviceAgreementId, did, serviceIndex,
+                            result.isAccessGranted() ? OrderState.COMPLETED : OrderState.REFUNDED)
+                            .andThen(Flowable.just(result)))
+                    .onErrorResumeNext((Throwable throwable) -> {
+                        // Once the fulfill of the lockReward is sent the tokens could be locked, even if its receipt was not
+                        // received. The order is kept open in the journal, so it's checked and refunded when it's recovered
+                        if (lockRewardSent.get())
+                            return Flowable.error(throwable);
+                        return recordFinalState(serviceAgreementId, did, serviceIndex, OrderState.FAILED)
+                                .andThen(Flowable.error(throwable));
+                    })
+                    .replay();
 
-                        String msg = "There was a problem executing the Service Agreement " + serviceAgreementId;
-                        throw new ServiceAgreementException(serviceAgreementId, msg, throwable);
-                    });
+            // Starts the order without waiting for a subscriber, as the callers expect the agreement to be requested
+            order.connect();
+            return order;
 
         } catch ( ServiceException | ServiceAgreementException e) {
             String msg = "Error processing Order with DID " + did.getDid() + "and ServiceAgreementID " + serviceAgreementId;
@@ -400,6 +560,214 @@ public class OceanManager extends BaseManager {
     }
 
 
+    /**
+     * Approves the tokens of an order and fulfills the LockRewardCondition, after checking the balance of the consumer.
+     * If a TokenAllowance is set, the approval is only sent when the allowance left is not enough for the order,
+     * and the balance is read at the same time
+     *
+     * @param ddo                the ddo
+     * @param serviceIndex       the index of the service
+     * @param serviceAgreementId service agreement id
+     * @param beforeFulfill      Completable subscribed right before the fulfill is sent
+     * @return a Single that emits true when the fulfill is executed correctly
+     */
+    private Single<Boolean> lockReward(DDO ddo, int serviceIndex, String serviceAgreementId, Completable beforeFulfill) {
+
+        String price = ddo.getMetadataService().attributes.main.price;
+        BigInteger amount = new BigInteger(price);
+        Single<BigInteger> balanceOf = RemoteCalls.toSingle(this.tokenContract.balanceOf(getMainAccount().address));
+        TokenAllowance tokenAllowance = getTokenAllowance();
+
+        Single<BigInteger> approved;
+        TokenAllowance.Reservation reservation = tokenAllowance != null ? tokenAllowance.newReservation(amount) : null;
+        if (reservation == null)
+            approved = tokenApproveAsync(this.tokenContract, lockRewardCondition.getContractAddress(), price)
+                    .flatMap(result -> balanceOf);
+        else
+            approved = Single.zip(reservation.reserve().toSingleDefault(true), balanceOf, (result, balance) -> balance);
+
+        Single<Boolean> fulfilled = approved
+                .flatMap(balance -> {
+                    if (balance.compareTo(amount) < 0) {
+                        log.warn("Consumer account does not have sufficient token balance to fulfill the " +
+                                "LockRewardCondition. Do `requestTokens` using the `dispenser` contract then try this again.");
+                        log.info("token balance is: " + balance + " price is: " + price);
+                        return Single.error(new Exception("LockRewardCondition.fulfill will fail due to insufficient token balance in the consumer account."));
+                    }
+                    return beforeFulfill.andThen(Single.defer(() -> this.fulfillLockReward(ddo, serviceIndex, serviceAgreementId)));
+                });
+        if (reservation == null)
+            return fulfilled;
+
+        // The reservation is settled once, as the Single is also disposed after its success when the order finishes
+        return fulfilled
+                .doOnSuccess(result -> reservation.consumed())
+                // The fulfill could have been mined even if its receipt was not received, or it could have failed
+                // because the allowance was changed by another wallet, so the allowance is read again
+                .doOnError(throwable -> reservation.release(true))
+                .doOnDispose(() -> reservation.release(true));
+    }
+
+    /**
+     * Resumes the orders recorded in the journal that were not finished, i.e. because the process was restarted.
+     * The state of every agreement is read from the chain. The orders with the reward locked wait for the access
+     * and are refunded if it's not granted. The orders where the fulfill of the lockReward could have been sent wait
+     * for it to be mined, and are kept open for the next recovery if it's not seen in time. The rest are discarded
+     *
+     * @return a Flowable with the result of the orders recovered
+     */
+    public Flowable<OrderResult> recoverOrders() {
+
+        if (orderJournal == null)
+            return Flowable.empty();
+
+        List<OrderJournal.Entry> openOrders = orderJournal.getOpenOrders();
+        if (!openOrders.isEmpty())
+            log.info("Recovering " + openOrders.size() + " orders not finished");
+
+        return Flowable.fromIterable(openOrders)
+                .flatMap(entry -> recoverOrder(entry)
+                        .onErrorResumeNext(throwable -> {
+                            log.error("Error recovering the order " + entry.agreementId + ": " + throwable.getMessage());
+                            return Flowable.empty();
+                        }));
+    }
+
+    private Flowable<OrderResult> recoverOrder(OrderJournal.Entry entry) throws DIDFormatException, DDOException, ServiceException, ServiceAgreementException {
+
+        String serviceAgreementId = entry.agreementId;
+        DID did = new DID(entry.did);
+        DDO ddo = resolveDID(did);
+
+        // Listening before reading the status, so the event is not missed if the access is granted meanwhile
+        Flowable<String> conditionFulfilledEvent = listenForConditionFulfilled(ddo.getService(entry.serviceIndex), serviceAgreementId);
+        // The fulfill of the lockReward is never sent before the agreement is created
+        Flowable<String> lockRewardFulfilledEvent = entry.state == OrderState.STARTED
+                ? Flowable.empty()
+                : ServiceAgreementHandler.listenForFulfilledEvent(getKeeperService().getWeb3(), lockRewardCondition, serviceAgreementId);
+
+        return Single.fromCallable(() -> agreementsManager.getStatus(serviceAgreementId))
+                .subscribeOn(Schedulers.io())
+                .flatMapPublisher(status -> {
+                    Map<String, BigInteger> conditions = status.conditions.isEmpty()
+                            ? Collections.emptyMap()
+                            : status.conditions.get(0).conditions;
+
+                    if (isFulfilled(conditions, "accessSecretStore") || isFulfilled(conditions, "computeExecution"))
+                        return recordFinalState(serviceAgreementId, did, entry.serviceIndex, OrderState.COMPLETED)
+                                .andThen(Flowable.just(new OrderResult(serviceAgreementId, true, false)));
+                    if (isFulfilled(conditions, "escrowReward"))
+                        return recordFinalState(serviceAgreementId, did, entry.serviceIndex, OrderState.REFUNDED)
+                                .andThen(Flowable.just(new OrderResult(serviceAgreementId, false, true)));
+                    if (isFulfilled(conditions, "lockReward"))
+                        return awaitAccess(entry, ddo, conditionFulfilledEvent);
+
+                    if (entry.state == OrderState.STARTED) {
+                        log.info("Discarding the order " + serviceAgreementId + ", the agreement was not created");
+                        return recordFinalState(serviceAgreementId, did, entry.serviceIndex, OrderState.FAILED)
+                                .andThen(Flowable.<OrderResult>empty());
+                    }
+
+                    // The fulfill of the lockReward could be pending since before the restart
+                    log.info("Resuming the order " + serviceAgreementId + ", waiting for the reward to be locked");
+                    return lockRewardFulfilledEvent
+                            .firstElement()
+                            .timeout(ORDER_TIMEOUT, TimeUnit.SECONDS)
+                            .toFlowable()
+                            .concatMap(event -> awaitAccess(entry, ddo, conditionFulfilledEvent))
+                            .onErrorResumeNext((Throwable throwable) -> {
+                                if (!(throwable instanceof TimeoutException))
+                                    return Flowable.error(throwable);
+                                // The fulfill is only sent after the order is recorded as LOCK_REWARD_PENDING
+                                if (entry.state == OrderState.AGREEMENT_CREATED) {
+                                    log.info("Discarding the order " + serviceAgreementId + ", the reward was not locked");
+                                    return recordFinalState(serviceAgreementId, did, entry.serviceIndex, OrderState.FAILED)
+                                            .andThen(Flowable.<OrderResult>empty());
+                                }
+                                log.warn("The reward of the order " + serviceAgreementId + " was not locked yet, "
+                                        + "the order is kept open for the next recovery");
+                                return Flowable.empty();
+                            });
+                });
+    }
+
+    /**
+     * Waits for the access of an order recovered with the reward locked, and refunds it if the access is not granted in time
+     */
+    private Flowable<OrderResult> awaitAccess(OrderJournal.Entry entry, DDO ddo, Flowable<String> conditionFulfilledEvent) {
+
+        String serviceAgreementId = entry.agreementId;
+        log.info("Resuming the order " + serviceAgreementId + ", waiting for the access");
+        return conditionFulfilledEvent
+                .map(event -> new OrderResult(serviceAgreementId, true, false))
+                .timeout(ORDER_TIMEOUT, TimeUnit.SECONDS)
+                .onErrorResumeNext(refundOnTimeout(ddo, entry.serviceIndex, serviceAgreementId))
+                .concatMap(result -> recordFinalState(serviceAgreementId, ddo.getDid(), entry.serviceIndex,
+                        result.isAccessGranted() ? OrderState.COMPLETED : OrderState.REFUNDED)
+                        .andThen(Flowable.just(result)));
+    }
+
+    private static boolean isFulfilled(Map<String, BigInteger> conditions, String conditionName) {
+        return CONDITION_FULFILLED.equals(conditions.get(conditionName));
+    }
+
+    private Flowable<String> listenForConditionFulfilled(Service service, String serviceAgreementId) throws ServiceAgreementException {
+
+        if (service.type.equals(Service.ServiceTypes.access.name()))
+            return ServiceAgreementHandler.listenForFulfilledEvent(getKeeperService().getWeb3(), accessSecretStoreCondition, serviceAgreementId);
+        else if (service.type.equals(Service.ServiceTypes.compute.name()))
+            return ServiceAgreementHandler.listenForFulfilledEvent(getKeeperService().getWeb3(), computeExecutionCondition, serviceAgreementId);
+        else
+            throw new ServiceAgreementException(serviceAgreementId, "Service type not supported");
+    }
+
+    /**
+     * Gets the handler of the errors of an order. If the access is not granted in time,
+     * the tokens locked are refunded executing escrowReward.fulfill
+     */
+    private Function<Throwable, Flowable<OrderResult>> refundOnTimeout(DDO ddo, int serviceIndex, String serviceAgreementId) {
+
+        return throwable -> {
+
+            if (throwable instanceof TimeoutException) {
+                // If we get a timeout listening for a Condition Fulfilled Event,
+                // we must perform a refund executing escrowReward.fulfill
+                // The order is already recorded with the reward locked, so the refund is not blocked by the journal
+                return recordFinalState(serviceAgreementId, ddo.getDid(), serviceIndex, OrderState.REFUND_PENDING)
+                        .andThen(this.fulfillEscrowReward(ddo, serviceIndex, serviceAgreementId))
+                        .map(refunded -> new OrderResult(serviceAgreementId, false, true))
+                        .toFlowable();
+            }
+
+            String msg = "There was a problem executing the Service Agreement " + serviceAgreementId;
+            return Flowable.error(new ServiceAgreementException(serviceAgreementId, msg, throwable));
+        };
+    }
+
+    /**
+     * Records a transition of an order in the journal, if there is one
+     *
+     * @return a Completable that completes when the transition is synced to disk
+     */
+    private Completable recordOrder(String serviceAgreementId, DID did, int serviceIndex, OrderState state) {
+        if (orderJournal == null)
+            return Completable.complete();
+        return orderJournal.record(serviceAgreementId, did.getDid(), serviceIndex, state);
+    }
+
+    /**
+     * Records a transition of an order that doesn't need to be durable before the next step, because the order
+     * is resolved reading the chain when it's recovered. An error writing the journal is logged and not propagated
+     *
+     * @return a Completable that completes when the transition is synced to disk or fails
+     */
+    private Completable recordFinalState(String serviceAgreementId, DID did, int serviceIndex, OrderState state) {
+        return recordOrder(serviceAgreementId, did, serviceIndex, state)
+                .doOnError(throwable -> log.error("Error recording the order " + serviceAgreementId + " as " + state
+                        + " in the journal: " + throwable.getMessage()))
+                .onErrorComplete();
+    }
+
     public List<byte[]> generateServiceConditionsId(String serviceAgreementId, String consumerAddress, DDO ddo, int serviceIndex) throws ServiceAgreementException, ServiceException {
 
         Service service = ddo.getService(serviceIndex);
@@ -433,7 +801,8 @@ public class OceanManager extends BaseManager {
     }
 
     /**
-     * Initialize a new ServiceExecutionAgreement between a publisher and a consumer
+     * Initialize a new ServiceExecutionAgreement between a publisher and a consumer.
+     * The agreement is created when the Flowable returned is subscribed
      *
      * @param ddo                 the ddi
      * @param serviceIndex      the service index
@@ -459,77 +828,73 @@ public class OceanManager extends BaseManager {
         if (!isTemplateApproved)
             throw new ServiceAgreementException(serviceAgreementId, "The template " + service.templateId + " is not approved");
 
-        Boolean result = false;
-
-        try {
-
-            List<byte[]> conditionsId = generateServiceConditionsId(serviceAgreementId, Keys.toChecksumAddress(getMainAccount().getAddress()), ddo, serviceIndex);
-
-            if (service.type.equals(Service.ServiceTypes.access.name()))
-                result = this.agreementsManager.createAccessAgreement(serviceAgreementId,
-                        ddo,
-                        conditionsId,
-                        Keys.toChecksumAddress(getMainAccount().getAddress()),
-                        service
-                );
-            else if  (service.type.equals(Service.ServiceTypes.compute.name()))
-                result = this.agreementsManager.createComputeAgreement(serviceAgreementId,
-                        ddo,
-                        conditionsId,
-                        Keys.toChecksumAddress(getMainAccount().getAddress()),
-                        service
-                );
-            else
-                throw new ServiceAgreementException(serviceAgreementId, "Service type not supported");
-
-            if (!result)
-                checkAgreementStatus(serviceAgreementId);
+        String consumerAddress = Keys.toChecksumAddress(getMainAccount().getAddress());
+        List<byte[]> conditionsId = generateServiceConditionsId(serviceAgreementId, consumerAddress, ddo, serviceIndex);
 
-        } catch (Exception e) {
-            String msg = "Error creating Service Agreement: " + serviceAgreementId;
-            log.error(msg + ": " + e.getMessage());
-            throw new ServiceAgreementException(serviceAgreementId, msg, e);
-        }
-
-        // 4. Listening of events
-        Flowable<String> executeAgreementFlowable = null;
+        Single<Boolean> createAgreement;
+        Flowable<String> executeAgreementFlowable;
 
-        if (service.type.equals(Service.ServiceTypes.access.name()))
-            executeAgreementFlowable = ServiceAgreementHandler.listenExecuteAgreement(escrowAccessSecretStoreTemplate, serviceAgreementId);
-        else if  (service.type.equals(Service.ServiceTypes.compute.name()))
-            executeAgreementFlowable = ServiceAgreementHandler.listenExecuteAgreement(escrowComputeExecutionTemplate, serviceAgreementId);
-        else
+        if (service.type.equals(Service.ServiceTypes.access.name())) {
+            createAgreement = this.agreementsManager.createAccessAgreementAsync(serviceAgreementId, ddo, conditionsId, consumerAddress, service);
+            executeAgreementFlowable = ServiceAgreementHandler.listenExecuteAgreement(getKeeperService().getWeb3(), escrowAccessSecretStoreTemplate, serviceAgreementId);
+        } else if  (service.type.equals(Service.ServiceTypes.compute.name())) {
+            createAgreement = this.agreementsManager.createComputeAgreementAsync(serviceAgreementId, ddo, conditionsId, consumerAddress, service);
+            executeAgreementFlowable = ServiceAgreementHandler.listenExecuteAgreement(getKeeperService().getWeb3(), escrowComputeExecutionTemplate, serviceAgreementId);
+        } else
             throw new ServiceAgreementException(serviceAgreementId, "Service type not supported");
 
-        return executeAgreementFlowable;
+        return createAgreement
+                .onErrorResumeNext(e -> {
+                    String msg = "Error creating Service Agreement: " + serviceAgreementId;
+                    log.error(msg + ": " + e.getMessage());
+                    return Single.error(new ServiceAgreementException(serviceAgreementId, msg, e));
+                })
+                // 4. Listening of events
+                .flatMapPublisher(result -> result
+                        ? executeAgreementFlowable
+                        : confirmAgreement(serviceAgreementId, executeAgreementFlowable));
 
     }
 
-    private Boolean checkAgreementStatus(String serviceAgreementId) throws ServiceAgreementException{
-
-        Boolean result = false;
-        try {
-            if (!result) {
-                int retries = 5;
-                int sleepTime = 2000;
-                for (int i = 0; i < retries && !result; i++) {
-                    log.debug("Checking if the agreement is on-chain...");
-                    Agreement agreement = agreementsManager.getAgreement(serviceAgreementId);
-                    if (!agreement.templateId.equals("0x0000000000000000000000000000000000000000")) {
-                        result = true;
-                        break;
-                    }
-                    Thread.sleep(sleepTime);
-                }
-            }
-        } catch (Exception e){
-            throw new ServiceAgreementException(serviceAgreementId, "There was a problem checking the status", e);
-        }
-
-        if (!result)
-            throw new ServiceAgreementException(serviceAgreementId, "The create Agreement Transaction has failed");
+    /**
+     * Waits until an agreement whose creation receipt was not successful is found on-chain.
+     * The AgreementCreated event usually confirms it within a block, and the agreement is also polled
+     * in case the event is missed. The first of them that confirms the agreement is used
+     *
+     * @param serviceAgreementId the service agreement id
+     * @param agreementCreated   the AgreementCreated events of the agreement
+     * @return a Flowable that emits the agreement id, in the format of the event, when the agreement is confirmed
+     */
+    private Flowable<String> confirmAgreement(String serviceAgreementId, Flowable<String> agreementCreated) {
+
+        // The poller emits the agreement id itself, so a missed event doesn't leave the order waiting for it
+        return agreementCreated.publish(events -> Flowable.ambArray(
+                events,
+                checkAgreementStatus(serviceAgreementId, 0)
+                        .map(onChain -> EthereumHelper.add0x(serviceAgreementId))
+                        .toFlowable()));
+    }
 
-        return true;
+    /**
+     * Checks if an agreement is on-chain, retrying with an exponential backoff without blocking any thread
+     *
+     * @param serviceAgreementId the service agreement id
+     * @param attempt            number of checks done before
+     * @return a Single that emits true when the agreement is found
+     */
+    private Single<Boolean> checkAgreementStatus(String serviceAgreementId, int attempt) {
+
+        log.debug("Checking if the agreement is on-chain...");
+        return agreementsManager.getAgreementAsync(serviceAgreementId)
+                .onErrorResumeNext(e -> Single.error(new ServiceAgreementException(serviceAgreementId, "There was a problem checking the status", e)))
+                .flatMap(agreement -> {
+                    if (!agreement.templateId.equals("0x0000000000000000000000000000000000000000"))
+                        return Single.just(true);
+                    if (!AGREEMENT_STATUS_BACKOFF.canRetry(attempt))
+                        return Single.error(new ServiceAgreementException(serviceAgreementId, "The create Agreement Transaction has failed"));
+                    return Single.timer(AGREEMENT_STATUS_BACKOFF.getDelay(attempt), TimeUnit.MILLISECONDS)
+                            .flatMap(t -> checkAgreementStatus(serviceAgreementId, attempt + 1));
+                });
     }
 
     /**
@@ -538,16 +903,15 @@ public class OceanManager extends BaseManager {
      * @param ddo                 the ddo
      * @param serviceIndex the index of the service
      * @param serviceAgreementId  service agreement id
-     * @return a flag that indicates if the function was executed correctly
-     * @throws ServiceException           ServiceException
-     * @throws LockRewardFulfillException LockRewardFulfillException
+     * @return a Single that emits true when the fulfill is executed correctly
+     * @throws ServiceException ServiceException
      */
-    private boolean fulfillLockReward(DDO ddo, int serviceIndex, String serviceAgreementId) throws ServiceException, LockRewardFulfillException {
+    private Single<Boolean> fulfillLockReward(DDO ddo, int serviceIndex, String serviceAgreementId) throws ServiceException {
 
         Service service = ddo.getService(serviceIndex);
         String price = service.attributes.main.price;
 
-        return FulfillLockReward.executeFulfill(lockRewardCondition, serviceAgreementId, this.escrowReward.getContractAddress(), price);
+        return FulfillLockReward.executeFulfillAsync(lockRewardCondition, serviceAgreementId, this.escrowReward.getContractAddress(), price);
     }
 
     /**
@@ -556,11 +920,11 @@ public class OceanManager extends BaseManager {
      * @param ddo                 the ddo
      * @param serviceIndex the index of the service
      * @param serviceAgreementId  service agreement id
-     * @return a flag that indicates if the function was executed correctly
+     * @return a Single that emits true when the fulfill is executed correctly
      * @throws ServiceException      ServiceException
      * @throws EscrowRewardException EscrowRewardException
      */
-    private boolean fulfillEscrowReward(DDO ddo, int serviceIndex, String serviceAgreementId) throws ServiceException, EscrowRewardException {
+    private Single<Boolean> fulfillEscrowReward(DDO ddo, int serviceIndex, String serviceAgreementId) throws ServiceException, EscrowRewardException {
 
         Service service = ddo.getService(serviceIndex);
         String price = service.attributes.main.price;
@@ -591,7 +955,7 @@ public class OceanManager extends BaseManager {
             throw new EscrowRewardException("Error generating the condition Ids ", e);
         }
 
-        return FulfillEscrowReward.executeFulfill(escrowReward,
+        return FulfillEscrowReward.executeFulfillAsync(escrowReward,
                 serviceAgreementId,
                 this.lockRewardCondition.getContractAddress(),
                 price,
@@ -680,39 +1044,293 @@ public class OceanManager extends BaseManager {
      */
     public boolean consume(String serviceAgreementId, DID did, int serviceDefinitionId, Boolean isIndexDownload, Integer index, String basePath, int threshold) throws ConsumeServiceException {
 
+        if (!isIndexDownload && consumeParallelism > 1) {
+            ConsumeResult result = consumeParallel(serviceAgreementId, did, serviceDefinitionId, basePath, consumeParallelism);
+            if (!result.isSuccessful()) {
+                String msg = "Error consuming files " + result.getFailedIndexes() + " of asset with DID " + did.getDid()
+                        + " and Service Agreement " + serviceAgreementId;
+                log.error(msg);
+                throw new ConsumeServiceException(msg, result.getFailedFiles().get(0).getError());
+            }
+            return true;
+        }
 
         Map<String, Object> consumeData = getConsumeData(did, serviceDefinitionId, isIndexDownload, index);
         String serviceEndpoint = (String) consumeData.get("serviceEndpoint");
         List<AssetMetadata.File> files = (List<AssetMetadata.File>) consumeData.get("files");
 
         String checkConsumerAddress = Keys.toChecksumAddress(getMainAccount().address);
-        String agreementId = EthereumHelper.add0x(serviceAgreementId);
 
         for (AssetMetadata.File file : files) {
+            downloadFile(serviceEndpoint, checkConsumerAddress, serviceAgreementId, did, file, basePath, consumeSegments);
+        }
 
-            // For each url we call to consume Brizo endpoint that requires consumerAddress, serviceAgreementId and url as a parameters
-            try {
+        return true;
+    }
 
-                if (null == file.url) {
-                    String msg = "Error Decrypting URL for Asset: " + did.getDid() + " and Service Agreement " + agreementId
-                            + " URL received: " + file.url;
-                    log.error(msg);
-                    throw new ConsumeServiceException(msg);
+
+    /**
+     * Downloads the files of an Asset previously ordered through a Service Agreement, several of them at the same time.
+     * The files that can't be downloaded don't stop the download of the rest, and are reported in the result
+     *
+     * @param serviceAgreementId  the service agreement id
+     * @param did                 the did
+     * @param serviceDefinitionId the service definition id
+     * @param basePath            the path where the asset will be downloaded
+     * @param parallelism         number of files downloaded at the same time
+     * @return the result of every file
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public ConsumeResult consumeParallel(String serviceAgreementId, DID did, int serviceDefinitionId, String basePath, int parallelism) throws ConsumeServiceException {
+        return consumeFiles(serviceAgreementId, did, serviceDefinitionId, null, basePath, parallelism);
+    }
+
+
+    /**
+     * Downloads again the files that failed in a previous consume of an Asset
+     *
+     * @param previous    the result of the previous consume
+     * @param parallelism number of files downloaded at the same time
+     * @return the result of every file of the Asset, including the ones downloaded previously
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public ConsumeResult retryConsume(ConsumeResult previous, int parallelism) throws ConsumeServiceException {
+
+        if (previous.isSuccessful())
+            return previous;
+
+        ConsumeResult retry = consumeFiles(previous.getServiceAgreementId(), previous.getDid(), previous.getServiceDefinitionId(),
+                previous.getFailedIndexes(), previous.getBasePath(), parallelism);
+        return previous.merge(retry);
+    }
+
+
+    private ConsumeResult consumeFiles(String serviceAgreementId, DID did, int serviceDefinitionId, Set<Integer> indexes, String basePath, int parallelism) throws ConsumeServiceException {
+
+        Map<String, Object> consumeData = getConsumeData(did, serviceDefinitionId, false, -1);
+        String serviceEndpoint = (String) consumeData.get("serviceEndpoint");
+        List<AssetMetadata.File> files = (List<AssetMetadata.File>) consumeData.get("files");
+
+        if (indexes != null)
+            files = files.stream()
+                    .filter(f -> indexes.contains(f.index))
+                    .collect(Collectors.toList());
+
+        String checkConsumerAddress = Keys.toChecksumAddress(getMainAccount().address);
+        List<AssetMetadata.File> pending = files;
+
+        // Every worker takes the next file pending, so no more than parallelism files of this asset are downloaded at the same time
+        ConsumeResult.FileResult[] results = new ConsumeResult.FileResult[files.size()];
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(parallelism, files.size()));
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            futures[i] = CompletableFuture.runAsync(() -> {
+                int position;
+                while ((position = next.getAndIncrement()) < pending.size()) {
+                    results[position] = downloadFileResult(serviceEndpoint, checkConsumerAddress, serviceAgreementId, did, pending.get(position), basePath);
                 }
-                String fileName = file.url.substring(file.url.lastIndexOf("/") + 1);
-                String destinationPath = basePath + File.separator + fileName;
+            }, consumeExecutor);
+        }
+        CompletableFuture.allOf(futures).join();
+
+        return new ConsumeResult(serviceAgreementId, did, serviceDefinitionId, basePath, Arrays.asList(results));
+    }
+
+
+    private ConsumeResult.FileResult downloadFileResult(String serviceEndpoint, String consumerAddress, String serviceAgreementId,
+                                                           DID did, AssetMetadata.File file, String basePath) {
+
+        String destinationPath = getDestinationPath(file, basePath);
+
+        try {
+            downloadFile(serviceEndpoint, consumerAddress, serviceAgreementId, did, file, basePath, consumeSegments);
+            return ConsumeResult.FileResult.downloaded(file.index, destinationPath);
+        } catch (ConsumeServiceException e) {
+            return ConsumeResult.FileResult.failed(file.index, destinationPath, e);
+        } catch (RuntimeException e) {
+            log.error("Error downloading the file " + file.index + ": " + e.getMessage());
+            return ConsumeResult.FileResult.failed(file.index, destinationPath,
+                    new ConsumeServiceException("Error downloading the file " + file.index, e));
+        }
+    }
+
 
-                BrizoService.downloadUrl(serviceEndpoint, checkConsumerAddress, serviceAgreementId, file.url, destinationPath);
+    private static String getDestinationPath(AssetMetadata.File file, String basePath) {
+        if (null == file.url)
+            return null;
+        String fileName = file.url.substring(file.url.lastIndexOf("/") + 1);
+        return basePath + File.separator + fileName;
+    }
 
-            } catch (IOException e) {
-                String msg = "Error consuming asset with DID " + did.getDid() + " and Service Agreement " + serviceAgreementId;
 
-                log.error(msg + ": " + e.getMessage());
-                throw new ConsumeServiceException(msg, e);
+    private static long getContentLength(AssetMetadata.File file) {
+        try {
+            return file.contentLength == null ? -1 : Long.parseLong(file.contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    private String getCacheKey(DID did, AssetMetadata.File file) {
+        if (contentCache == null)
+            return null;
+        // The checksum only identifies the content when it's verified, otherwise it's scoped to the file of the asset
+        return consumeVerifyChecksum
+                ? ContentCache.key(file.checksum)
+                : ContentCache.key(did, file.index, file.checksum);
+    }
+
+    private void cacheFile(String cacheKey, Path file) {
+        if (cacheKey == null)
+            return;
+        try {
+            contentCache.put(cacheKey, file);
+        } catch (IOException e) {
+            log.warn("Unable to cache the file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the file left in the destination before it's downloaded again, so it's written in a new file.
+     * It could be linked to a file of the content cache, that would be truncated with it
+     */
+    private static void replaceDestination(Path destination) throws IOException {
+        Files.deleteIfExists(destination);
+    }
+
+    /**
+     * Downloads a file holding one of the permits shared by all the consume operations, so no more than
+     * maxConcurrentDownloads files are downloaded at the same time, whatever method started the download
+     */
+    private void downloadFile(String serviceEndpoint, String consumerAddress, String serviceAgreementId, DID did,
+                              AssetMetadata.File file, String basePath, int segments) throws ConsumeServiceException {
+
+        Semaphore permits = downloadPermits;
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConsumeServiceException("Interrupted waiting to download the file " + file.index, e);
+        }
+
+        try {
+            transferFile(serviceEndpoint, consumerAddress, serviceAgreementId, did, file, basePath, segments);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void transferFile(String serviceEndpoint, String consumerAddress, String serviceAgreementId, DID did,
+                              AssetMetadata.File file, String basePath, int segments) throws ConsumeServiceException {
+
+        String agreementId = EthereumHelper.add0x(serviceAgreementId);
+
+        // For each url we call to consume Brizo endpoint that requires consumerAddress, serviceAgreementId and url as a parameters
+        try {
+
+            if (null == file.url) {
+                String msg = "Error Decrypting URL for Asset: " + did.getDid() + " and Service Agreement " + agreementId
+                        + " URL received: " + file.url;
+                log.error(msg);
+                throw new ConsumeServiceException(msg);
+            }
+            Path destination = Paths.get(getDestinationPath(file, basePath));
+
+            long contentLength = getContentLength(file);
+            String cacheKey = getCacheKey(did, file);
+            if (cacheKey != null && contentCache.copyTo(cacheKey, destination, contentLength)) {
+                log.debug("File " + file.index + " of " + did.getDid() + " taken from the local cache");
+                return;
+            }
+
+            SegmentedDownloader segmentedDownloader = SegmentedDownloader.getInstance()
+                    .setSegments(segments)
+                    .setMinSegmentSize(consumeSegmentMinSize)
+                    .setBufferSize(consumeBufferSize);
+
+            boolean resumable = consumeResumable && contentLength > 0;
+            if (resumable || segmentedDownloader.getSegmentsFor(contentLength) > 1) {
+                DownloadProgress progress = resumable
+                        ? DownloadProgress.getInstance(destination, serviceAgreementId, file.index, contentLength)
+                        : null;
+                if (progress == null || progress.getCompletedBytes() == 0)
+                    replaceDestination(destination);
+                try {
+                    segmentedDownloader.download(
+                            (start, end) -> BrizoService.openDownload(serviceEndpoint, consumerAddress, serviceAgreementId, file.url, start, end),
+                            contentLength,
+                            destination,
+                            progress);
+
+                    // The ranges are not received in order, so the content is verified once the file is completed
+                    if (resumable || consumeVerifyChecksum)
+                        Checksums.verify(destination, file.checksum, file.checksumType);
+                    if (progress != null)
+                        progress.delete();
+                    cacheFile(cacheKey, destination);
+                    return;
+                } catch (RangeNotSupportedException e) {
+                    log.warn("Range requests not supported downloading the file " + file.index + ", downloading it in one request");
+                    if (progress != null)
+                        progress.delete();
+                } catch (ChecksumMismatchException e) {
+                    if (progress != null)
+                        progress.delete();
+                    Files.deleteIfExists(destination);
+                    throw e;
+                }
             }
 
+            FileChannelDownloader channelDownloader = FileChannelDownloader.getInstance()
+                    .setBufferSize(consumeBufferSize);
+            if (consumeVerifyChecksum)
+                channelDownloader.verify(file.checksum, file.checksumType);
+
+            replaceDestination(destination);
+            try (PooledHttpClient.StreamResponse response = BrizoService.openDownload(serviceEndpoint, consumerAddress, serviceAgreementId, file.url)) {
+                channelDownloader.download(response, destination, contentLength);
+            } catch (ChecksumMismatchException e) {
+                Files.deleteIfExists(destination);
+                throw e;
+            }
+            cacheFile(cacheKey, destination);
+
+        } catch (IOException e) {
+            String msg = "Error consuming asset with DID " + did.getDid() + " and Service Agreement " + serviceAgreementId;
+
+            log.error(msg + ": " + e.getMessage());
+            throw new ConsumeServiceException(msg, e);
         }
+    }
+
+
+    /**
+     * Downloads a single file of an Asset previously ordered through a Service Agreement, requesting several
+     * ranges of bytes at the same time. Each range is written directly in its position of the destination file.
+     * If the size of the file is unknown or the provider doesn't support range requests, it's downloaded in one request
+     *
+     * @param serviceAgreementId  the service agreement id
+     * @param did                 the did
+     * @param serviceDefinitionId the service definition id
+     * @param index               of the file inside the files definition in metadata
+     * @param basePath            the path where the file will be downloaded
+     * @param segments            number of ranges downloaded at the same time
+     * @return a flag that indicates if the consume operation was executed correctly
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public boolean consumeSegmented(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index, String basePath, int segments) throws ConsumeServiceException {
 
+        Map<String, Object> consumeData = getConsumeData(did, serviceDefinitionId, true, index);
+        String serviceEndpoint = (String) consumeData.get("serviceEndpoint");
+        List<AssetMetadata.File> files = (List<AssetMetadata.File>) consumeData.get("files");
+
+        String checkConsumerAddress = Keys.toChecksumAddress(getMainAccount().address);
+
+        //  getConsumeData returns a list with only one file in case of consuming by index
+        downloadFile(serviceEndpoint, checkConsumerAddress, serviceAgreementId, did, files.get(0), basePath, segments);
         return true;
     }
 
@@ -732,6 +1350,47 @@ public class OceanManager extends BaseManager {
         return consumeBinary(serviceAgreementId, did, serviceDefinitionId, index, false, 0, 0, threshold);
     }
 
+    /**
+     * Gets the content of a single file of an Asset previously ordered through a Service Agreement as a Flowable of
+     * chunks of bytes. The file is requested when the Flowable is subscribed, and only read as the chunks are requested.
+     * Cancelling the subscription aborts the download
+     *
+     * @param serviceAgreementId  the service agreement id
+     * @param did                 the did
+     * @param serviceDefinitionId the service definition id
+     * @param index               of the file inside the files definition in metadata
+     * @param threshold           secret store threshold
+     * @return a Flowable over the chunks of the file
+     * @throws ConsumeServiceException ConsumeServiceException
+     */
+    public Flowable<ByteBuffer> consumeStream(String serviceAgreementId, DID did, int serviceDefinitionId, Integer index, int threshold) throws ConsumeServiceException {
+
+        Map<String, Object> consumeData = getConsumeData(did, serviceDefinitionId, true, index);
+        String serviceEndpoint = (String) consumeData.get("serviceEndpoint");
+        List<AssetMetadata.File> files = (List<AssetMetadata.File>) consumeData.get("files");
+
+        String checkConsumerAddress = Keys.toChecksumAddress(getMainAccount().address);
+
+        //  getConsumeData returns a list with only one file in case of consuming by index
+        AssetMetadata.File file = files.get(0);
+
+        if (null == file.url) {
+            String msg = "Error Decrypting URL for Asset: " + did.getDid() + " and Service Agreement " + EthereumHelper.add0x(serviceAgreementId)
+                    + " URL received: " + file.url;
+            log.error(msg);
+            throw new ConsumeServiceException(msg);
+        }
+
+        FlowableDownloader flowableDownloader = FlowableDownloader.getInstance();
+        if (consumeVerifyChecksum)
+            flowableDownloader.verify(file.checksum, file.checksumType);
+
+        return flowableDownloader.download(
+                () -> BrizoService.openDownload(serviceEndpoint, checkConsumerAddress, serviceAgreementId, file.url),
+                "file " + file.index + " of " + did.getDid(),
+                getContentLength(file));
+    }
+
     /**
      * Downloads a single file of an Asset previously ordered through a Service Agreement. It could be a request by range of bytes
      *
@@ -768,7 +1427,14 @@ public class OceanManager extends BaseManager {
                 throw new ConsumeServiceException(msg);
             }
 
-            return BrizoService.downloadUrl(serviceEndpoint, checkConsumerAddress, serviceAgreementId, file.url, isRangeRequest, rangeStart, rangeEnd);
+            InputStream inputStream = BrizoService.downloadUrl(serviceEndpoint, checkConsumerAddress, serviceAgreementId, file.url, isRangeRequest, rangeStart, rangeEnd);
+
+            // Only the whole file can be verified
+            if (consumeVerifyChecksum && !isRangeRequest)
+                return new VerifyingInputStream(inputStream, "file " + file.index + " of " + did.getDid(),
+                        getContentLength(file), file.checksum, file.checksumType);
+
+            return inputStream;
 
         } catch (IOException e) {
             String msg = "Error consuming asset with DID " + did.getDid() + " and Service Agreement " + serviceAgreementId;
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.math.BigInteger;
+
+/**
+ * Latest attribute registered in the DIDRegistry contract for a DID
+ */
+@JsonPropertyOrder(alphabetic = true)
+public class DIDAttribute extends AbstractModel {
+
+    public String did;
+
+    public String owner;
+
+    public String checksum;
+
+    public String url;
+
+    public BigInteger blockNumber;
+
+    public DIDAttribute() {
+    }
+
+    public DIDAttribute(String did, String owner, String checksum, String url, BigInteger blockNumber) {
+        this.did = did;
+        this.owner = owner;
+        this.checksum = checksum;
+        this.url = url;
+        this.blockNumber = blockNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "DIDAttribute{" +
+                "did='" + did + '\'' +
+                ", owner='" + owner + '\'' +
+                ", checksum='" + checksum + '\'' +
+                ", url='" + url + '\'' +
+                ", blockNumber=" + blockNumber +
+                '}';
+    }
+}
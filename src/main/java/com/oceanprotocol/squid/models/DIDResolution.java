@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.models;
+
+import com.oceanprotocol.squid.exceptions.DDOException;
+
+/**
+ * Result of resolving a DID as part of a batch. It includes the DDO resolved or the error found
+ */
+public class DIDResolution {
+
+    private final DID did;
+    private final DDO ddo;
+    private final DDOException error;
+
+    private DIDResolution(DID did, DDO ddo, DDOException error) {
+        this.did = did;
+        this.ddo = ddo;
+        this.error = error;
+    }
+
+    public static DIDResolution resolved(DID did, DDO ddo) {
+        return new DIDResolution(did, ddo, null);
+    }
+
+    public static DIDResolution failed(DID did, DDOException error) {
+        return new DIDResolution(did, null, error);
+    }
+
+    public DID getDid() {
+        return did;
+    }
+
+    public DDO getDdo() {
+        return ddo;
+    }
+
+    public DDOException getError() {
+        return error;
+    }
+
+    public boolean isResolved() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "DIDResolution{" +
+                "did=" + did +
+                ", resolved=" + isResolved() +
+                (error != null ? ", error='" + error.getMessage() + '\'' : "") +
+                '}';
+    }
+}
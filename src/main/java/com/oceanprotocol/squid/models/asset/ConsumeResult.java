@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.models.asset;
+
+import com.oceanprotocol.squid.exceptions.ConsumeServiceException;
+import com.oceanprotocol.squid.models.DID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Result of consuming the files of an Asset. It includes the result of every file, so the files that failed
+ * can be downloaded again without downloading the rest
+ */
+public class ConsumeResult {
+
+    private final String serviceAgreementId;
+    private final DID did;
+    private final int serviceDefinitionId;
+    private final String basePath;
+    private final List<FileResult> files;
+
+    /**
+     * Result of downloading one file of the Asset
+     */
+    public static class FileResult {
+
+        private final Integer index;
+        private final String destinationPath;
+        private final ConsumeServiceException error;
+
+        private FileResult(Integer index, String destinationPath, ConsumeServiceException error) {
+            this.index = index;
+            this.destinationPath = destinationPath;
+            this.error = error;
+        }
+
+        public static FileResult downloaded(Integer index, String destinationPath) {
+            return new FileResult(index, destinationPath, null);
+        }
+
+        public static FileResult failed(Integer index, String destinationPath, ConsumeServiceException error) {
+            return new FileResult(index, destinationPath, error);
+        }
+
+        public Integer getIndex() {
+            return index;
+        }
+
+        public String getDestinationPath() {
+            return destinationPath;
+        }
+
+        public ConsumeServiceException getError() {
+            return error;
+        }
+
+        public boolean isDownloaded() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return "FileResult{" +
+                    "index=" + index +
+                    ", destinationPath='" + destinationPath + '\'' +
+                    (error != null ? ", error='" + error.getMessage() + '\'' : "") +
+                    '}';
+        }
+    }
+
+    public ConsumeResult(String serviceAgreementId, DID did, int serviceDefinitionId, String basePath, List<FileResult> files) {
+        this.serviceAgreementId = serviceAgreementId;
+        this.did = did;
+        this.serviceDefinitionId = serviceDefinitionId;
+        this.basePath = basePath;
+        this.files = Collections.unmodifiableList(new ArrayList<>(files));
+    }
+
+    public String getServiceAgreementId() {
+        return serviceAgreementId;
+    }
+
+    public DID getDid() {
+        return did;
+    }
+
+    public int getServiceDefinitionId() {
+        return serviceDefinitionId;
+    }
+
+    public String getBasePath() {
+        return basePath;
+    }
+
+    public List<FileResult> getFiles() {
+        return files;
+    }
+
+    public List<FileResult> getFailedFiles() {
+        return files.stream()
+                .filter(f -> !f.isDownloaded())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the indexes of the files that couldn't be downloaded
+     *
+     * @return the indexes of the files
+     */
+    public Set<Integer> getFailedIndexes() {
+        return getFailedFiles().stream()
+                .map(FileResult::getIndex)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    public boolean isSuccessful() {
+        return files.stream().allMatch(FileResult::isDownloaded);
+    }
+
+    /**
+     * Merges the result of downloading again some files of this Asset, replacing the result of those files
+     *
+     * @param retry the result of the new download
+     * @return a ConsumeResult with the result of all the files
+     */
+    public ConsumeResult merge(ConsumeResult retry) {
+
+        List<FileResult> merged = new ArrayList<>();
+        for (FileResult file : files) {
+            FileResult retried = retry.getFiles().stream()
+                    .filter(f -> f.getIndex() != null && f.getIndex().equals(file.getIndex()))
+                    .findFirst()
+                    .orElse(file);
+            merged.add(retried);
+        }
+        return new ConsumeResult(serviceAgreementId, did, serviceDefinitionId, basePath, merged);
+    }
+
+    @Override
+    public String toString() {
+        return "ConsumeResult{" +
+                "serviceAgreementId='" + serviceAgreementId + '\'' +
+                ", did=" + did +
+                ", files=" + files +
+                '}';
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.oceanprotocol.squid.core.sla.handlers.ServiceAgreementHandler;
 import com.oceanprotocol.squid.models.DDO;
 import com.oceanprotocol.squid.models.asset.AssetMetadata;
+import com.oceanprotocol.squid.models.service.AgreementStatus;
 import com.oceanprotocol.squid.models.service.ProviderConfig;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
@@ -11,8 +12,12 @@ import org.apache.commons.io.IOUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.math.BigInteger;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -62,4 +67,19 @@ public class AgreementsApiIT {
         assertTrue(oceanAPI.getAgreementsAPI().create(ddo.getDid(), agreementId, 3, oceanAPI.getMainAccount().address));
         oceanAPI.getAgreementsAPI().status(agreementId);
     }
+
+    @Test
+    public void statuses() throws Exception {
+        DDO ddo = oceanAPI.getAssetsAPI().create(metadataBase, providerConfig);
+        String agreementId = ServiceAgreementHandler.generateSlaId();
+        String otherAgreementId = ServiceAgreementHandler.generateSlaId();
+        assertTrue(oceanAPI.getAgreementsAPI().create(ddo.getDid(), agreementId, 3, oceanAPI.getMainAccount().address));
+        assertTrue(oceanAPI.getAgreementsAPI().create(ddo.getDid(), otherAgreementId, 3, oceanAPI.getMainAccount().address));
+
+        Map<String, AgreementStatus> statuses = oceanAPI.getAgreementsAPI().statuses(Arrays.asList(agreementId, otherAgreementId));
+        assertEquals(2, statuses.size());
+        assertEquals(oceanAPI.getAgreementsAPI().status(agreementId).conditions.get(0).conditions,
+                statuses.get(agreementId).conditions.get(0).conditions);
+        assertEquals(BigInteger.ONE, statuses.get(otherAgreementId).conditions.get(0).conditions.get("lockReward"));
+    }
 }
@@ -15,7 +15,9 @@ import com.oceanprotocol.squid.manager.ManagerHelper;
 import com.oceanprotocol.squid.models.Balance;
 import com.oceanprotocol.squid.models.DDO;
 import com.oceanprotocol.squid.models.DID;
+import com.oceanprotocol.squid.models.DIDResolution;
 import com.oceanprotocol.squid.models.asset.AssetMetadata;
+import com.oceanprotocol.squid.models.asset.ConsumeResult;
 import com.oceanprotocol.squid.models.asset.OrderResult;
 import com.oceanprotocol.squid.models.service.types.ComputingService;
 import com.oceanprotocol.squid.models.service.ProviderConfig;
@@ -30,6 +32,7 @@ import org.junit.Test;
 
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
@@ -145,6 +148,27 @@ public class AssetsApiIT {
 
     }
 
+    @Test
+    public void resolveAll() throws Exception {
+
+        metadataBase.attributes.main.dateCreated = new Date();
+        DDO ddo1 = oceanAPI.getAssetsAPI().create(metadataBase, providerConfig);
+        DDO ddo2 = oceanAPI.getAssetsAPI().create(metadataBase, providerConfig);
+        DID unknownDid = DID.builder();
+
+        List<DIDResolution> resolutions = oceanAPI.getAssetsAPI().resolveAll(
+                Arrays.asList(new DID(ddo2.id), unknownDid, new DID(ddo1.id)));
+
+        assertEquals(3, resolutions.size());
+        assertTrue(resolutions.get(0).isResolved());
+        assertEquals(ddo2.id, resolutions.get(0).getDdo().id);
+        assertFalse(resolutions.get(1).isResolved());
+        assertEquals(unknownDid, resolutions.get(1).getDid());
+        assertNotNull(resolutions.get(1).getError());
+        assertTrue(resolutions.get(2).isResolved());
+        assertEquals(ddo1.id, resolutions.get(2).getDdo().id);
+    }
+
     @Test
     public void createComputingService() throws Exception {
 
@@ -269,6 +293,32 @@ public class AssetsApiIT {
     }
 
 
+    @Test
+    public void consumeStream() throws Exception {
+
+        metadataBase.attributes.main.dateCreated = new Date();
+        DDO ddo = oceanAPI.getAssetsAPI().create(metadataBase, providerConfig);
+        DID did = new DID(ddo.id);
+
+        oceanAPIConsumer.getAccountsAPI().requestTokens(BigInteger.TEN);
+
+        Flowable<OrderResult> response = oceanAPIConsumer.getAssetsAPI().order(did, Service.DEFAULT_ACCESS_INDEX);
+        OrderResult orderResult = response.blockingFirst();
+        assertEquals(true, orderResult.isAccessGranted());
+
+        long bytes = oceanAPIConsumer.getAssetsAPI().consumeStream(
+                orderResult.getServiceAgreementId(),
+                did,
+                Service.DEFAULT_ACCESS_INDEX,
+                0)
+                .map(ByteBuffer::remaining)
+                .reduce(0L, (total, chunk) -> total + chunk)
+                .blockingGet();
+
+        assertTrue(bytes > 0);
+    }
+
+
     @Test
     public void owner() throws Exception {
         metadataBase.attributes.main.dateCreated = new Date();
@@ -335,6 +385,33 @@ public class AssetsApiIT {
 
     }
 
+    @Test
+    public void consumeParallel() throws Exception {
+
+        providerConfig.setSecretStoreEndpoint(config.getString("secretstore.url"));
+        String basePath = config.getString("consume.basePath");
+        AssetMetadata metadata = DDO.fromJSON(new TypeReference<AssetMetadata>() {
+        }, METADATA_JSON_CONTENT);
+        metadata.attributes.main.dateCreated = new Date();
+        DDO ddo = oceanAPI.getAssetsAPI().create(metadata, providerConfig);
+        DID did = new DID(ddo.id);
+
+        oceanAPIConsumer.getAccountsAPI().requestTokens(BigInteger.TEN);
+        Flowable<OrderResult> response = oceanAPIConsumer.getAssetsAPI().order(did, Service.DEFAULT_ACCESS_INDEX);
+
+        OrderResult orderResult = response.blockingFirst();
+        assertEquals(true, orderResult.isAccessGranted());
+
+        ConsumeResult result = oceanAPIConsumer.getAssetsAPI().consumeParallel(
+                orderResult.getServiceAgreementId(),
+                did,
+                Service.DEFAULT_ACCESS_INDEX, basePath, 4);
+        assertTrue(result.isSuccessful());
+        assertEquals(metadata.attributes.main.files.size(), result.getFiles().size());
+
+        assertSame(result, oceanAPIConsumer.getAssetsAPI().retryConsume(result, 4));
+    }
+
 //    @Test
 //    public void validate() throws Exception {
 //        AssetMetadata metadata = DDO.fromJSON(new TypeReference<AssetMetadata>() {
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.cache;
+
+import com.oceanprotocol.squid.models.service.AgreementStatus;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.oceanprotocol.squid.core.cache.AgreementStateCache.*;
+import static org.junit.Assert.*;
+
+public class AgreementStateCacheTest {
+
+    private static final List<String> ACCESS_CONDITIONS = Arrays.asList(LOCK_REWARD, ACCESS_SECRET_STORE, ESCROW_REWARD);
+    private static final BigInteger FULFILLED = BigInteger.valueOf(2);
+
+    private AtomicLong now;
+    private AgreementStateCache cache;
+
+    @Before
+    public void setUp() {
+        now = new AtomicLong(1000);
+        cache = new AgreementStateCache(10, 60, now::get);
+        cache.setListening(true);
+    }
+
+    private static AgreementStatus status(String agreementId, long lockReward, long access, long escrow) {
+        AgreementStatus status = new AgreementStatus();
+        status.agreementId = agreementId;
+        AgreementStatus.ConditionStatusMap conditions = new AgreementStatus.ConditionStatusMap();
+        conditions.conditions.put(LOCK_REWARD, BigInteger.valueOf(lockReward));
+        conditions.conditions.put(ACCESS_SECRET_STORE, BigInteger.valueOf(access));
+        conditions.conditions.put(ESCROW_REWARD, BigInteger.valueOf(escrow));
+        status.conditions.add(conditions);
+        return status;
+    }
+
+    @Test
+    public void updatedWithEvents() {
+        assertNull(cache.get("0xaa01"));
+
+        cache.onAgreementCreated("0xAA01", ACCESS_CONDITIONS);
+        AgreementStatus status = cache.get("aa01");
+        assertEquals(BigInteger.ONE, status.conditions.get(0).conditions.get(LOCK_REWARD));
+        assertEquals(BigInteger.ONE, status.conditions.get(0).conditions.get(ACCESS_SECRET_STORE));
+
+        cache.onConditionFulfilled("0xaa01", LOCK_REWARD);
+        cache.onConditionFulfilled("0xaa01", ACCESS_SECRET_STORE);
+        status = cache.get("aa01");
+        assertEquals(FULFILLED, status.conditions.get(0).conditions.get(LOCK_REWARD));
+        assertEquals(FULFILLED, status.conditions.get(0).conditions.get(ACCESS_SECRET_STORE));
+        assertEquals(BigInteger.ONE, status.conditions.get(0).conditions.get(ESCROW_REWARD));
+
+        // The status returned is a copy
+        status.conditions.get(0).conditions.clear();
+        assertEquals(3, cache.get("aa01").conditions.get(0).conditions.size());
+
+        cache.onConditionFulfilled("0xaa01", ESCROW_REWARD);
+        assertNull(cache.get("aa01"));
+    }
+
+    @Test
+    public void statusReadFromTheChain() {
+        cache.put(status("aa01", 1, 1, 1));
+        cache.onConditionFulfilled("aa01", LOCK_REWARD);
+
+        // A status read before the event doesn't overwrite it
+        cache.put(status("aa01", 1, 1, 1));
+        assertEquals(FULFILLED, cache.get("aa01").conditions.get(0).conditions.get(LOCK_REWARD));
+
+        cache.onConditionFulfilled("aa01", ESCROW_REWARD);
+        cache.put(status("aa01", 2, 1, 1));
+        assertNull(cache.get("aa01"));
+
+        // The final status expires after the ttl
+        cache.put(status("aa01", 2, 3, 2));
+        assertEquals(BigInteger.valueOf(3), cache.get("aa01").conditions.get(0).conditions.get(ACCESS_SECRET_STORE));
+        now.addAndGet(60_000);
+        assertNull(cache.get("aa01"));
+    }
+
+    @Test
+    public void statusNotFinalExpires() {
+        cache.onAgreementCreated("aa01", ACCESS_CONDITIONS);
+        cache.put(status("aa02", 1, 1, 1));
+        now.addAndGet(59_000);
+        assertNotNull(cache.get("aa01"));
+        assertNotNull(cache.get("aa02"));
+
+        // The events of the agreements could have been missed, so they are read again from the chain
+        now.addAndGet(1_000);
+        assertNull(cache.get("aa01"));
+        assertNull(cache.get("aa02"));
+    }
+
+    @Test
+    public void clearedWhenNotListening() {
+        cache.onAgreementCreated("aa01", ACCESS_CONDITIONS);
+        cache.setListening(false);
+
+        assertNull(cache.get("aa01"));
+        cache.put(status("aa01", 1, 1, 1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void maxSize() {
+        for (int i = 0; i < 20; i++)
+            cache.onAgreementCreated("a" + i, ACCESS_CONDITIONS);
+
+        assertEquals(10, cache.size());
+        assertNull(cache.get("a0"));
+        assertNotNull(cache.get("a19"));
+    }
+
+}
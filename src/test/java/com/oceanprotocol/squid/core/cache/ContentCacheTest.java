@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.cache;
+
+import com.oceanprotocol.squid.models.DID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ContentCacheTest {
+
+    private Path directory;
+    private Path files;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("content-cache");
+        files = Files.createTempDirectory("consumed");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path path : new Path[]{directory, files}) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private Path file(String name, int size) throws IOException {
+        return Files.write(files.resolve(name), new byte[size]);
+    }
+
+    @Test
+    public void keys() throws Exception {
+        DID did = DID.builder();
+
+        assertNull(ContentCache.key(null));
+        assertNull(ContentCache.key(did, 0, " "));
+        assertEquals(ContentCache.key("0xABCD"), ContentCache.key("0xabcd "));
+        assertNotEquals(ContentCache.key(did, 0, "0xabcd"), ContentCache.key(did, 1, "0xabcd"));
+        assertNotEquals(ContentCache.key(did, 0, "0xabcd"), ContentCache.key(DID.builder(), 0, "0xabcd"));
+    }
+
+    @Test
+    public void copyCachedFile() throws Exception {
+        for (boolean linkFiles : new boolean[]{true, false}) {
+            ContentCache cache = ContentCache.getInstance(directory, 1000).setLinkFiles(linkFiles);
+            String key = ContentCache.key("checksum-" + linkFiles);
+            Path destination = files.resolve("copy-" + linkFiles);
+
+            assertFalse(cache.copyTo(key, destination));
+            assertFalse(Files.exists(destination));
+
+            Path source = Files.write(files.resolve("source-" + linkFiles), "Ocean Protocol".getBytes());
+            cache.put(key, source);
+
+            assertTrue(cache.copyTo(key, destination));
+            assertEquals("Ocean Protocol", new String(Files.readAllBytes(destination)));
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void destinationWithoutParent() throws Exception {
+        for (boolean linkFiles : new boolean[]{true, false}) {
+            ContentCache cache = ContentCache.getInstance(directory, 1000).setLinkFiles(linkFiles);
+            String key = ContentCache.key("checksum-" + linkFiles);
+            cache.put(key, file("source-" + linkFiles, 10));
+            int size = cache.size();
+
+            Path destination = files.resolve("missing-" + linkFiles).resolve("copy");
+            try {
+                cache.copyTo(key, destination);
+                fail("NoSuchFileException expected");
+            } catch (NoSuchFileException e) {
+                assertEquals(size, cache.size());
+            }
+
+            Files.createDirectories(destination.getParent());
+            assertTrue(cache.copyTo(key, destination));
+            assertEquals(10, Files.size(destination));
+        }
+    }
+
+    @Test
+    public void storedFileModifiedInPlace() throws Exception {
+        ContentCache cache = ContentCache.getInstance(directory, 1000).setLinkFiles(true);
+        String key = ContentCache.key("checksum");
+        Path source = Files.write(files.resolve("source"), "Ocean Protocol".getBytes());
+        cache.put(key, source);
+
+        // The consumed file is downloaded again in the same path
+        Files.write(source, "Ocean".getBytes());
+
+        Path destination = files.resolve("copy");
+        assertTrue(cache.copyTo(key, destination, 14));
+        assertEquals("Ocean Protocol", new String(Files.readAllBytes(destination)));
+    }
+
+    @Test
+    public void cachedFileWithAnotherSize() throws Exception {
+        ContentCache cache = ContentCache.getInstance(directory, 1000);
+        cache.put("first", file("first", 100));
+        cache.put("second", file("second", 100));
+
+        assertFalse(cache.copyTo("first", files.resolve("copy"), 200));
+        assertFalse(Files.exists(directory.resolve("first")));
+
+        Files.write(directory.resolve("second"), new byte[50]);
+        assertFalse(cache.copyTo("second", files.resolve("copy")));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalSize());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        ContentCache cache = ContentCache.getInstance(directory, 250).setLinkFiles(false);
+
+        cache.put("first", file("first", 100));
+        cache.put("second", file("second", 100));
+        assertTrue(cache.copyTo("first", files.resolve("copy")));
+
+        cache.put("third", file("third", 100));
+        assertEquals(2, cache.size());
+        assertEquals(200, cache.getTotalSize());
+        assertFalse(Files.exists(directory.resolve("second")));
+        assertFalse(cache.copyTo("second", files.resolve("copy")));
+        assertTrue(cache.copyTo("first", files.resolve("copy")));
+        assertTrue(cache.copyTo("third", files.resolve("copy")));
+    }
+
+    @Test
+    public void fileBiggerThanCache() throws Exception {
+        ContentCache cache = ContentCache.getInstance(directory, 50);
+
+        cache.put("big", file("big", 100));
+        assertEquals(0, cache.size());
+        assertFalse(cache.copyTo("big", files.resolve("copy")));
+    }
+
+    @Test
+    public void loadCachedFiles() throws Exception {
+        ContentCache cache = ContentCache.getInstance(directory, 1000);
+        cache.put("first", file("first", 100));
+        cache.put("second", file("second", 200));
+        // Left by an interrupted put
+        Files.write(directory.resolve("third.1234.tmp"), new byte[10]);
+
+        ContentCache reloaded = ContentCache.getInstance(directory, 1000);
+        assertEquals(2, reloaded.size());
+        assertEquals(300, reloaded.getTotalSize());
+        assertFalse(Files.exists(directory.resolve("third.1234.tmp")));
+        assertTrue(reloaded.copyTo("second", files.resolve("copy")));
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.cache;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.keeper.contracts.DIDRegistry;
+import com.oceanprotocol.squid.models.DDO;
+import com.oceanprotocol.squid.models.DID;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.processors.PublishProcessor;
+import org.junit.Test;
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.admin.Admin;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DDOCacheTest {
+
+    private static DDO ddo(DID did) throws Exception {
+        DDO ddo = new DDO();
+        ddo.didSetter(did.getDid());
+        return ddo;
+    }
+
+    @Test
+    public void getCachedDDO() throws Exception {
+        DDOCache cache = new DDOCache(10, 60);
+        DID did = DID.builder();
+        DDO ddo = ddo(did);
+
+        assertNull(cache.get(did));
+        cache.put(did, ddo);
+        assertEquals(did.getDid(), cache.get(did).id);
+        assertEquals(did.getDid(), cache.get(new DID(did.getDid())).id);
+    }
+
+    @Test
+    public void cachedDDOCantBeModified() throws Exception {
+        DDOCache cache = new DDOCache(10, 60);
+        DID did = DID.builder();
+        DDO ddo = ddo(did);
+
+        cache.put(did, ddo);
+        ddo.id = DID.builder().getDid();
+
+        DDO cached = cache.get(did);
+        assertNotSame(ddo, cached);
+        assertEquals(did.getDid(), cached.id);
+
+        cached.id = DID.builder().getDid();
+        assertNotSame(cached, cache.get(did));
+        assertEquals(did.getDid(), cache.get(did).id);
+    }
+
+    @Test
+    public void expireAfterTtl() throws Exception {
+        AtomicLong now = new AtomicLong(0);
+        DDOCache cache = new DDOCache(10, 60, now::get);
+        DID did = DID.builder();
+
+        cache.put(did, ddo(did));
+        now.set(59_999);
+        assertNotNull(cache.get(did));
+
+        now.set(60_000);
+        assertNull(cache.get(did));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        DDOCache cache = new DDOCache(2, 60);
+        DID first = DID.builder();
+        DID second = DID.builder();
+        DID third = DID.builder();
+
+        cache.put(first, ddo(first));
+        cache.put(second, ddo(second));
+        cache.get(first);
+        cache.put(third, ddo(third));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        DDOCache cache = new DDOCache(10, 60);
+        DID did = DID.builder();
+        DID other = DID.builder();
+
+        cache.put(did, ddo(did));
+        cache.put(other, ddo(other));
+
+        cache.invalidate(DID.getFromHash(did.getHash().toUpperCase()));
+        assertNull(cache.get(did));
+        assertNotNull(cache.get(other));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void invalidateOnAttributeRegistered() throws Exception {
+        DDOCache cache = new DDOCache(10, 60);
+        DID did = DID.builder();
+        DID other = DID.builder();
+
+        PublishProcessor<Log> events = PublishProcessor.create();
+        Admin web3 = mock(Admin.class);
+        when(web3.ethLogFlowable(any(EthFilter.class))).thenReturn(events);
+        KeeperService keeperService = mock(KeeperService.class);
+        when(keeperService.getWeb3()).thenReturn(web3);
+        DIDRegistry didRegistry = mock(DIDRegistry.class);
+        when(didRegistry.getContractAddress()).thenReturn("0x00bd138abd70e2f00903268f3db08f2d25677c9e");
+
+        Disposable listener = cache.listenForUpdates(keeperService, didRegistry);
+        cache.put(did, ddo(did));
+        cache.put(other, ddo(other));
+
+        Log eventLog = new Log();
+        eventLog.setTopics(Arrays.asList(
+                EventEncoder.encode(DIDRegistry.DIDATTRIBUTEREGISTERED_EVENT),
+                "0x" + did.getHash().toUpperCase()));
+        events.onNext(eventLog);
+
+        assertNull(cache.get(did));
+        assertNotNull(cache.get(other));
+        listener.dispose();
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.cache;
+
+import com.oceanprotocol.squid.exceptions.DDOException;
+import com.oceanprotocol.squid.models.aquarius.SearchQuery;
+import com.oceanprotocol.squid.models.aquarius.SearchResult;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SearchResultCacheTest {
+
+    @Test
+    public void cacheResults() throws Exception {
+        SearchResultCache cache = new SearchResultCache(60, 1000, System::currentTimeMillis, result -> 10);
+        AtomicInteger loads = new AtomicInteger();
+        SearchResult searchResult = new SearchResult();
+
+        String key = SearchResultCache.key("weather", 10, 1);
+        assertSame(searchResult, cache.get(key, () -> { loads.incrementAndGet(); return searchResult; }));
+        assertSame(searchResult, cache.get(key, () -> { loads.incrementAndGet(); return new SearchResult(); }));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void expireAfterTtl() throws Exception {
+        AtomicLong now = new AtomicLong(0);
+        SearchResultCache cache = new SearchResultCache(60, 1000, now::get, result -> 10);
+        String key = SearchResultCache.key("weather", 10, 1);
+
+        SearchResult first = cache.get(key, SearchResult::new);
+        now.set(60_000);
+        SearchResult second = cache.get(key, SearchResult::new);
+
+        assertNotSame(first, second);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void evictByWeight() throws Exception {
+        SearchResultCache cache = new SearchResultCache(60, 25, System::currentTimeMillis, result -> 10);
+
+        cache.get("a", SearchResult::new);
+        cache.get("b", SearchResult::new);
+        cache.get("a", SearchResult::new);
+        cache.get("c", SearchResult::new);
+
+        assertEquals(2, cache.size());
+        assertEquals(20, cache.getWeight());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.get("a", SearchResult::new);
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void singleRequestPerKey() throws Exception {
+        SearchResultCache cache = new SearchResultCache(60, 1000, System::currentTimeMillis, result -> 10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        SearchResultCache.Loader slowLoader = () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new DDOException("Interrupted", e);
+            }
+            return new SearchResult();
+        };
+
+        SearchResult[] results = new SearchResult[2];
+        Thread first = new Thread(() -> {
+            try {
+                results[0] = cache.get("key", slowLoader);
+            } catch (DDOException e) {
+                fail(e.getMessage());
+            }
+        });
+        first.start();
+        loading.await();
+
+        Thread second = new Thread(() -> {
+            try {
+                results[1] = cache.get("key", slowLoader);
+            } catch (DDOException e) {
+                fail(e.getMessage());
+            }
+        });
+        second.start();
+        Thread.sleep(100);
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals(1, loads.get());
+        assertSame(results[0], results[1]);
+    }
+
+    @Test
+    public void failuresAreNotCached() throws Exception {
+        SearchResultCache cache = new SearchResultCache(60, 1000, System::currentTimeMillis, result -> 10);
+
+        try {
+            cache.get("key", () -> { throw new DDOException("Aquarius down"); });
+            fail("Expected DDOException");
+        } catch (DDOException e) {
+            assertEquals("Aquarius down", e.getMessage());
+        }
+
+        assertNotNull(cache.get("key", SearchResult::new));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void queryKeyIsCanonical() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("text", "weather");
+        params.put("type", "dataset");
+        Map<String, Object> sameParams = new LinkedHashMap<>();
+        sameParams.put("type", "dataset");
+        sameParams.put("text", "weather");
+
+        assertEquals(SearchResultCache.key(new SearchQuery(params, 10, 1, 1)),
+                SearchResultCache.key(new SearchQuery(sameParams, 10, 1, 1)));
+        assertNotEquals(SearchResultCache.key(new SearchQuery(params, 10, 1, 1)),
+                SearchResultCache.key(new SearchQuery(params, 10, 2, 1)));
+    }
+
+}
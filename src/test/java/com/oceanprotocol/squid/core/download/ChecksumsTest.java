@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class ChecksumsTest {
+
+    private static final String CONTENT = "Ocean Protocol";
+    private static final String MD5 = "65602547f1ff1bf42b390566bc733d46";
+
+    @Test
+    public void algorithm() {
+        assertEquals("MD5", Checksums.getAlgorithm("md5", null));
+        assertEquals("SHA-256", Checksums.getAlgorithm("SHA256", null));
+        assertEquals("SHA-256", Checksums.getAlgorithm(null, "0x" + "a".repeat(64)));
+        assertEquals("MD5", Checksums.getAlgorithm(null, MD5));
+        assertEquals("SHA-256", Checksums.getAlgorithm(null, "sha256:" + "a".repeat(64)));
+        assertNull(Checksums.getAlgorithm("crc32", MD5));
+        assertNull(Checksums.getMessageDigest(null, null));
+    }
+
+    @Test
+    public void verify() throws Exception {
+        Path file = Files.createTempFile("checksum", ".txt");
+        Files.write(file, CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        Checksums.verify(file, MD5.toUpperCase(), "MD5");
+        Checksums.verify(file, "0x" + MD5, null);
+        Checksums.verify(file, "md5:" + MD5, null);
+        // Unknown checksums are not verified
+        Checksums.verify(file, "1234", "crc32");
+
+        try {
+            Checksums.verify(file, "00000000000000000000000000000000", "MD5");
+            fail("The checksum shouldn't match");
+        } catch (ChecksumMismatchException e) {
+            assertTrue(e.getMessage().contains(file.toString()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DownloadProgressTest {
+
+    private static final String AGREEMENT_ID = "0xabcdef";
+
+    @Test
+    public void mergeRanges() throws Exception {
+        Path directory = Files.createTempDirectory("progress");
+        DownloadProgress progress = DownloadProgress.getInstance(directory.resolve("file.bin"), AGREEMENT_ID, 0, 100);
+
+        progress.markCompleted(10, 20);
+        progress.markCompleted(30, 40);
+        progress.markCompleted(20, 30);
+        progress.markCompleted(90, 100);
+
+        List<long[]> missing = progress.getMissingRanges();
+        assertEquals(2, missing.size());
+        assertArrayEquals(new long[]{0, 9}, missing.get(0));
+        assertArrayEquals(new long[]{40, 89}, missing.get(1));
+        assertEquals(40, progress.getCompletedBytes());
+        assertFalse(progress.isCompleted());
+
+        progress.markCompleted(0, 100);
+        assertTrue(progress.isCompleted());
+        assertEquals(100, progress.getCompletedBytes());
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        Path directory = Files.createTempDirectory("progress");
+        Path destination = Files.createFile(directory.resolve("file.bin"));
+
+        DownloadProgress progress = DownloadProgress.getInstance(destination, AGREEMENT_ID, 1, 1000);
+        progress.markCompleted(0, 250);
+        progress.markCompleted(500, 600);
+        progress.save();
+        assertTrue(Files.exists(progress.getProgressFile()));
+
+        DownloadProgress loaded = DownloadProgress.getInstance(destination, AGREEMENT_ID, 1, 1000);
+        assertEquals(350, loaded.getCompletedBytes());
+        assertEquals(2, loaded.getMissingRanges().size());
+
+        // The progress of another file or agreement is ignored
+        assertEquals(0, DownloadProgress.getInstance(destination, AGREEMENT_ID, 2, 1000).getCompletedBytes());
+        assertEquals(0, DownloadProgress.getInstance(destination, "0x01", 1, 1000).getCompletedBytes());
+        assertEquals(0, DownloadProgress.getInstance(destination, AGREEMENT_ID, 1, 2000).getCompletedBytes());
+
+        loaded.delete();
+        assertFalse(Files.exists(progress.getProgressFile()));
+        assertEquals(0, DownloadProgress.getInstance(destination, AGREEMENT_ID, 1, 1000).getCompletedBytes());
+    }
+
+    @Test
+    public void ignoredWithoutDestination() throws Exception {
+        Path directory = Files.createTempDirectory("progress");
+        Path destination = directory.resolve("file.bin");
+
+        DownloadProgress progress = DownloadProgress.getInstance(destination, AGREEMENT_ID, 1, 1000);
+        progress.markCompleted(0, 500);
+        progress.save();
+
+        assertEquals(0, DownloadProgress.getInstance(destination, AGREEMENT_ID, 1, 1000).getCompletedBytes());
+    }
+
+    @Test
+    public void saveSnapshotTakenBeforeTheSync() throws Exception {
+        Path directory = Files.createTempDirectory("progress");
+        Path destination = Files.createFile(directory.resolve("file.bin"));
+
+        DownloadProgress progress = DownloadProgress.getInstance(destination, AGREEMENT_ID, 1, 1000);
+        progress.markCompleted(0, 250);
+        DownloadProgress.Snapshot snapshot = progress.snapshot();
+
+        // Another worker completes a range after the snapshot, before its data is synced
+        progress.markCompleted(250, 500);
+        progress.save(snapshot);
+
+        DownloadProgress loaded = DownloadProgress.getInstance(destination, AGREEMENT_ID, 1, 1000);
+        assertEquals(250, loaded.getCompletedBytes());
+        assertArrayEquals(new long[]{250, 999}, loaded.getMissingRanges().get(0));
+    }
+
+}
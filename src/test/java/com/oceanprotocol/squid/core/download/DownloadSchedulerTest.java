@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class DownloadSchedulerTest {
+
+    private static void awaitWaiting(DownloadScheduler scheduler, int waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getWaiting() != waiting) {
+            assertTrue("Timeout waiting for " + waiting + " downloads queued", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static Thread download(DownloadScheduler scheduler, String endpoint, String queue, List<String> started) {
+        Thread thread = new Thread(() -> {
+            try (DownloadScheduler.Permit permit = scheduler.acquire(endpoint, queue)) {
+                started.add(queue + "@" + endpoint);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void globalLimit() throws Exception {
+        DownloadScheduler scheduler = DownloadScheduler.getInstance(2, 0, 0);
+
+        DownloadScheduler.Permit first = scheduler.acquire("brizo:8030", "0x01");
+        DownloadScheduler.Permit second = scheduler.acquire("other:8030", "0x02");
+        assertEquals(2, scheduler.getActive());
+
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        Thread waiting = download(scheduler, "brizo:8030", "0x03", started);
+        awaitWaiting(scheduler, 1);
+        assertTrue(started.isEmpty());
+
+        first.close();
+        // Closing twice doesn't release other downloads
+        first.close();
+        waiting.join(5000);
+        assertEquals(Collections.singletonList("0x03@brizo:8030"), started);
+        assertEquals(1, scheduler.getActive());
+
+        second.close();
+        assertEquals(0, scheduler.getActive());
+    }
+
+    @Test
+    public void endpointLimit() throws Exception {
+        DownloadScheduler scheduler = DownloadScheduler.getInstance(10, 1, 0);
+        DownloadScheduler.Permit busy = scheduler.acquire("brizo:8030", "0x01");
+
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        Thread sameEndpoint = download(scheduler, "brizo:8030", "0x02", started);
+        awaitWaiting(scheduler, 1);
+
+        // Other endpoints are not blocked by the busy one
+        Thread otherEndpoint = download(scheduler, "other:8030", "0x02", started);
+        otherEndpoint.join(5000);
+        assertEquals(Collections.singletonList("0x02@other:8030"), started);
+
+        busy.close();
+        sameEndpoint.join(5000);
+        assertEquals(Arrays.asList("0x02@other:8030", "0x02@brizo:8030"), started);
+    }
+
+    @Test
+    public void agreementsServedInTurns() throws Exception {
+        DownloadScheduler scheduler = DownloadScheduler.getInstance(1, 0, 0);
+        DownloadScheduler.Permit running = scheduler.acquire("brizo:8030", "0xaa");
+
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        int waiting = 0;
+        for (String queue : new String[]{"0xaa", "0xaa", "0xaa", "0xbb", "0xcc"}) {
+            threads.add(download(scheduler, "brizo:8030", queue, started));
+            awaitWaiting(scheduler, ++waiting);
+        }
+
+        running.close();
+        for (Thread thread : threads)
+            thread.join(5000);
+
+        assertEquals(Arrays.asList("0xaa@brizo:8030", "0xbb@brizo:8030", "0xcc@brizo:8030", "0xaa@brizo:8030", "0xaa@brizo:8030"), started);
+    }
+
+    @Test
+    public void interruptedWhileWaiting() throws Exception {
+        DownloadScheduler scheduler = DownloadScheduler.getInstance(1, 0, 0);
+        DownloadScheduler.Permit running = scheduler.acquire("brizo:8030", "0x01");
+
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        Thread waiting = download(scheduler, "brizo:8030", "0x02", started);
+        awaitWaiting(scheduler, 1);
+
+        waiting.interrupt();
+        waiting.join(5000);
+        assertEquals(0, scheduler.getWaiting());
+
+        running.close();
+        assertEquals(0, scheduler.getActive());
+        assertTrue(started.isEmpty());
+    }
+
+    @Test
+    public void releasedAtEndOfBody() throws Exception {
+        DownloadScheduler scheduler = DownloadScheduler.getInstance(1, 0, 0);
+        DownloadScheduler.Permit permit = scheduler.acquire("brizo:8030", "0x01");
+
+        InputStream body = permit.wrap(new ByteArrayInputStream(new byte[100]));
+        assertEquals(100, body.read(new byte[200]));
+        assertEquals(1, scheduler.getActive());
+        assertEquals(-1, body.read(new byte[200]));
+        assertEquals(0, scheduler.getActive());
+    }
+
+    @Test
+    public void tokenBucket() {
+        AtomicLong now = new AtomicLong(0);
+        TokenBucket bucket = new TokenBucket(1000, now::get);
+
+        // A full second of tokens is available at the start
+        assertEquals(0, bucket.reserve(1000));
+        assertEquals(500_000_000L, bucket.reserve(500));
+
+        now.set(1_500_000_000L);
+        assertEquals(0, bucket.reserve(1000));
+        assertEquals(1_000_000_000L, bucket.reserve(1000));
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import com.oceanprotocol.squid.external.PooledHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FileChannelDownloaderTest {
+
+    private static final byte[] CONTENT = new byte[300_001];
+
+    private static HttpServer server;
+    private static PooledHttpClient httpClient;
+    private static String baseUrl;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        new Random(7).nextBytes(CONTENT);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/file", exchange -> {
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(CONTENT);
+            }
+        });
+        server.createContext("/chunked", exchange -> {
+            // A length of 0 sends the body chunked, without Content-Length
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(CONTENT);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        httpClient = new PooledHttpClient(4, PooledHttpClient.DEFAULT_IDLE_TIMEOUT);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadWithLength() throws Exception {
+        Path destination = Files.createTempFile("channel", ".bin");
+
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(baseUrl + "/file")) {
+            long transferred = FileChannelDownloader.getInstance()
+                    .setBufferSize(16 * 1024)
+                    .download(response, destination, CONTENT.length);
+            assertEquals(CONTENT.length, transferred);
+        }
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination));
+        Files.delete(destination);
+    }
+
+    @Test
+    public void downloadWithoutLength() throws Exception {
+        Path destination = Files.createTempFile("channel", ".bin");
+        Files.write(destination, new byte[CONTENT.length * 2]);
+
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(baseUrl + "/chunked")) {
+            FileChannelDownloader.getInstance().download(response, destination, -1);
+        }
+
+        // The previous content of the file is replaced
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination));
+        Files.delete(destination);
+    }
+
+    @Test
+    public void downloadVerified() throws Exception {
+        Path destination = Files.createTempFile("channel", ".bin");
+        String checksum = Numeric.toHexStringNoPrefix(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(baseUrl + "/chunked")) {
+            FileChannelDownloader.getInstance()
+                    .verify("sha256:" + checksum, null)
+                    .download(response, destination, CONTENT.length);
+        }
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination));
+        Files.delete(destination);
+    }
+
+    @Test(expected = ChecksumMismatchException.class)
+    public void checksumMismatch() throws Exception {
+        Path destination = Files.createTempFile("channel", ".bin");
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(baseUrl + "/file")) {
+            FileChannelDownloader.getInstance()
+                    .verify("efb2c764274b745f5fc37f97c6b0e761", "MD5")
+                    .download(response, destination, CONTENT.length);
+        } finally {
+            Files.delete(destination);
+        }
+    }
+
+    @Test(expected = ChecksumMismatchException.class)
+    public void lengthMismatch() throws Exception {
+        Path destination = Files.createTempFile("channel", ".bin");
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(baseUrl + "/file")) {
+            // The Content-Length received doesn't match the length declared, so nothing is downloaded
+            FileChannelDownloader.getInstance()
+                    .verify(null, null)
+                    .download(response, destination, CONTENT.length - 1);
+        } finally {
+            Files.delete(destination);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void errorStatus() throws Exception {
+        Path destination = Files.createTempFile("channel", ".bin");
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(baseUrl + "/missing")) {
+            FileChannelDownloader.getInstance().download(response, destination, -1);
+        } finally {
+            Files.delete(destination);
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import com.oceanprotocol.squid.external.PooledHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FlowableDownloaderTest {
+
+    private static final byte[] CONTENT = new byte[200_003];
+    private static final CountDownLatch endlessClosed = new CountDownLatch(1);
+
+    private static HttpServer server;
+    private static PooledHttpClient httpClient;
+    private static String baseUrl;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        new Random(11).nextBytes(CONTENT);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/file", exchange -> {
+            exchange.sendResponseHeaders(200, CONTENT.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(CONTENT);
+            }
+        });
+        server.createContext("/endless", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                while (true) {
+                    outputStream.write(CONTENT);
+                    outputStream.flush();
+                }
+            } catch (IOException e) {
+                // The client closed the connection
+                endlessClosed.countDown();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        httpClient = new PooledHttpClient(4, PooledHttpClient.DEFAULT_IDLE_TIMEOUT);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private static byte[] concat(List<ByteBuffer> chunks) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (ByteBuffer chunk : chunks)
+            outputStream.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void download() throws Exception {
+        List<ByteBuffer> chunks = FlowableDownloader.getInstance()
+                .setChunkSize(16 * 1024)
+                .download(() -> httpClient.openGet(baseUrl + "/file"), "file", CONTENT.length)
+                .toList()
+                .blockingGet();
+
+        assertTrue(chunks.size() >= CONTENT.length / (16 * 1024));
+        for (ByteBuffer chunk : chunks)
+            assertTrue(chunk.remaining() <= 16 * 1024);
+        assertArrayEquals(CONTENT, concat(chunks));
+    }
+
+    @Test
+    public void chunksOnlyReadWhenRequested() throws Exception {
+        TestSubscriber<ByteBuffer> subscriber = FlowableDownloader.getInstance()
+                .setChunkSize(1024)
+                .download(() -> httpClient.openGet(baseUrl + "/endless"), "endless", -1)
+                .test(0);
+
+        subscriber.request(2);
+        subscriber.awaitCount(2);
+        Thread.sleep(200);
+        subscriber.assertValueCount(2);
+        subscriber.assertNotComplete();
+
+        // The connection is closed instead of reading the rest of the body
+        subscriber.cancel();
+        assertTrue(endlessClosed.await(10, TimeUnit.SECONDS));
+        subscriber.assertNoErrors();
+    }
+
+    @Test
+    public void verifyContent() throws Exception {
+        FlowableDownloader.getInstance()
+                .verify(null, null)
+                .download(() -> httpClient.openGet(baseUrl + "/file"), "file", CONTENT.length)
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertComplete();
+
+        FlowableDownloader.getInstance()
+                .verify("efb2c764274b745f5fc37f97c6b0e761", "MD5")
+                .download(() -> httpClient.openGet(baseUrl + "/file"), "file", CONTENT.length)
+                .test()
+                .await()
+                .assertError(ChecksumMismatchException.class);
+    }
+
+    @Test
+    public void errorStatus() throws Exception {
+        FlowableDownloader.getInstance()
+                .download(() -> httpClient.openGet(baseUrl + "/missing"), "missing", -1)
+                .test()
+                .await()
+                .assertError(IOException.class)
+                .assertNoValues();
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import com.oceanprotocol.squid.external.PooledHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SegmentedDownloaderTest {
+
+    private static final byte[] CONTENT = new byte[100_003];
+    private static final AtomicInteger rangeRequests = new AtomicInteger();
+
+    private static HttpServer server;
+    private static PooledHttpClient httpClient;
+    private static String baseUrl;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        new Random(42).nextBytes(CONTENT);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ranges", exchange -> serve(exchange, true));
+        server.createContext("/whole", exchange -> serve(exchange, false));
+        server.start();
+
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        httpClient = new PooledHttpClient(8, PooledHttpClient.DEFAULT_IDLE_TIMEOUT);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private static void serve(HttpExchange exchange, boolean supportsRanges) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int start = 0;
+        int end = CONTENT.length - 1;
+        int status = 200;
+
+        if (supportsRanges && range != null) {
+            String[] bytes = range.replace("bytes=", "").split("-");
+            start = Integer.parseInt(bytes[0]);
+            if (bytes.length > 1)
+                end = Math.min(end, Integer.parseInt(bytes[1]));
+            status = 206;
+            rangeRequests.incrementAndGet();
+        }
+
+        exchange.sendResponseHeaders(status, end - start + 1);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(CONTENT, start, end - start + 1);
+        }
+    }
+
+    private static SegmentedDownloader.RangeFetcher fetcher(String path) {
+        return (start, end) -> httpClient.openGet(baseUrl + path,
+                Collections.singletonMap("Range", "bytes=" + start + "-" + end));
+    }
+
+    @Test
+    public void segmentsFor() {
+        SegmentedDownloader downloader = SegmentedDownloader.getInstance().setSegments(4).setMinSegmentSize(1000);
+
+        assertEquals(1, downloader.getSegmentsFor(-1));
+        assertEquals(1, downloader.getSegmentsFor(999));
+        assertEquals(2, downloader.getSegmentsFor(1001));
+        assertEquals(4, downloader.getSegmentsFor(1_000_000));
+    }
+
+    @Test
+    public void downloadInSegments() throws Exception {
+        Path destination = Files.createTempFile("segmented", ".bin");
+        int before = rangeRequests.get();
+
+        SegmentedDownloader.getInstance()
+                .setSegments(4)
+                .setMinSegmentSize(10_000)
+                .download(fetcher("/ranges"), CONTENT.length, destination);
+
+        assertEquals(4, rangeRequests.get() - before);
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination));
+        Files.delete(destination);
+    }
+
+    @Test
+    public void resumeDownload() throws Exception {
+        Path destination = Files.createTempFile("segmented", ".bin");
+
+        // The first half of the file was downloaded before
+        int half = CONTENT.length / 2;
+        Files.write(destination, Arrays.copyOf(CONTENT, half));
+        DownloadProgress previous = DownloadProgress.getInstance(destination, "0x01", 0, CONTENT.length);
+        previous.markCompleted(0, half);
+        previous.save();
+
+        DownloadProgress progress = DownloadProgress.getInstance(destination, "0x01", 0, CONTENT.length);
+        assertEquals(half, progress.getCompletedBytes());
+
+        int before = rangeRequests.get();
+        SegmentedDownloader.getInstance()
+                .setSegments(4)
+                .setMinSegmentSize(10_000)
+                .download(fetcher("/ranges"), CONTENT.length, destination, progress);
+
+        assertEquals(4, rangeRequests.get() - before);
+        assertTrue(progress.isCompleted());
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination));
+
+        Checksums.verify(destination, Numeric.toHexStringNoPrefix(MessageDigest.getInstance("MD5").digest(CONTENT)), "MD5");
+
+        progress.delete();
+        Files.delete(destination);
+    }
+
+    @Test
+    public void progressSavedOnFailure() throws Exception {
+        Path destination = Files.createTempFile("segmented", ".bin");
+        DownloadProgress progress = DownloadProgress.getInstance(destination, "0x02", 0, CONTENT.length + 50_000);
+
+        try {
+            SegmentedDownloader.getInstance()
+                    .setSegments(1)
+                    .download(fetcher("/ranges"), CONTENT.length + 50_000, destination, progress);
+            fail("The download should fail");
+        } catch (IOException e) {
+            // Only the bytes received are recorded
+            DownloadProgress saved = DownloadProgress.getInstance(destination, "0x02", 0, CONTENT.length + 50_000);
+            assertEquals(CONTENT.length, saved.getCompletedBytes());
+            assertEquals(1, saved.getMissingRanges().size());
+        } finally {
+            progress.delete();
+            Files.delete(destination);
+        }
+    }
+
+    @Test(expected = RangeNotSupportedException.class)
+    public void rangesNotSupported() throws Exception {
+        Path destination = Files.createTempFile("segmented", ".bin");
+        try {
+            SegmentedDownloader.getInstance()
+                    .setSegments(4)
+                    .setMinSegmentSize(10_000)
+                    .download(fetcher("/whole"), CONTENT.length, destination);
+        } finally {
+            Files.delete(destination);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void incompleteDownload() throws Exception {
+        Path destination = Files.createTempFile("segmented", ".bin");
+        try {
+            SegmentedDownloader.getInstance()
+                    .setSegments(2)
+                    .setMinSegmentSize(10_000)
+                    .download(fetcher("/ranges"), CONTENT.length + 50_000, destination);
+        } finally {
+            Files.delete(destination);
+        }
+    }
+
+}
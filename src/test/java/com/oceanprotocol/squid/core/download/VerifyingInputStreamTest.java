@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.download;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class VerifyingInputStreamTest {
+
+    private static final byte[] CONTENT = "Ocean Protocol".getBytes(StandardCharsets.UTF_8);
+    private static final String MD5 = "65602547f1ff1bf42b390566bc733d46";
+
+    private static void readAll(InputStream inputStream) throws Exception {
+        byte[] buffer = new byte[4];
+        while (inputStream.read(buffer, 0, buffer.length) != -1) {
+        }
+    }
+
+    @Test
+    public void verified() throws Exception {
+        VerifyingInputStream inputStream = new VerifyingInputStream(new ByteArrayInputStream(CONTENT),
+                "test", CONTENT.length, "md5:" + MD5, null);
+        readAll(inputStream);
+        assertEquals(CONTENT.length, inputStream.getCount());
+    }
+
+    @Test
+    public void unknownLength() throws Exception {
+        VerifyingInputStream inputStream = new VerifyingInputStream(new ByteArrayInputStream(CONTENT),
+                "test", -1, MD5, "MD5");
+        assertEquals(2, inputStream.skip(2));
+        readAll(inputStream);
+        assertEquals(CONTENT.length, inputStream.getCount());
+    }
+
+    @Test(expected = ChecksumMismatchException.class)
+    public void checksumMismatch() throws Exception {
+        readAll(new VerifyingInputStream(new ByteArrayInputStream(CONTENT),
+                "test", CONTENT.length, "efb2c764274b745f5fc37f97c6b0e761", "MD5"));
+    }
+
+    @Test
+    public void longerThanDeclared() throws Exception {
+        VerifyingInputStream inputStream = new VerifyingInputStream(new ByteArrayInputStream(CONTENT),
+                "test", 5, null, null);
+        try {
+            readAll(inputStream);
+            fail("The stream should fail");
+        } catch (ChecksumMismatchException e) {
+            // Fails before reading the whole content
+            assertTrue(inputStream.getCount() < CONTENT.length);
+        }
+    }
+
+    @Test(expected = ChecksumMismatchException.class)
+    public void shorterThanDeclared() throws Exception {
+        readAll(new VerifyingInputStream(new ByteArrayInputStream(CONTENT),
+                "test", CONTENT.length + 1, null, null));
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.events;
+
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AgreementEventHubTest {
+
+    private static final BigInteger CURRENT_BLOCK = BigInteger.valueOf(100);
+
+    private static AgreementEventHub.AgreementEvent event(String agreementId, long blockNumber) {
+        return new AgreementEventHub.AgreementEvent(agreementId, BigInteger.valueOf(blockNumber));
+    }
+
+    private static void awaitSubscribers(PublishProcessor<?> events) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!events.hasSubscribers() && System.currentTimeMillis() < deadline)
+            Thread.yield();
+    }
+
+    @Test
+    public void dispatchToTheListenersOfTheAgreement() {
+        PublishProcessor<AgreementEventHub.AgreementEvent> events = PublishProcessor.create();
+        AtomicInteger subscriptions = new AtomicInteger();
+        AgreementEventHub hub = AgreementEventHub.getInstance("AgreementCreated",
+                fromBlock -> events.doOnSubscribe(s -> subscriptions.incrementAndGet()), () -> CURRENT_BLOCK);
+
+        TestSubscriber<String> first = hub.listen("0xAA01").test();
+        TestSubscriber<String> second = hub.listen("aa01").test();
+        TestSubscriber<String> other = hub.listen("bb02").test();
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(2, hub.getListeners());
+
+        events.onNext(event("cc03", 100));
+        events.onNext(event("aa01", 101));
+
+        first.assertValue("aa01").assertComplete();
+        second.assertValue("aa01").assertComplete();
+        other.assertNoValues().assertNotComplete();
+        assertEquals(1, hub.getListeners());
+
+        other.cancel();
+        assertEquals(0, hub.getListeners());
+        hub.stop();
+    }
+
+    @Test
+    public void eventReceivedBeforeSubscribing() {
+        PublishProcessor<AgreementEventHub.AgreementEvent> events = PublishProcessor.create();
+        AgreementEventHub hub = AgreementEventHub.getInstance("Fulfilled", fromBlock -> events, () -> CURRENT_BLOCK);
+
+        Flowable<String> listener = hub.listen("aa01");
+        events.onNext(event("aa01", 100));
+
+        listener.test().assertValue("aa01").assertComplete();
+        assertEquals(0, hub.getListeners());
+        hub.stop();
+    }
+
+    @Test
+    public void subscribeAgainAfterAnError() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        PublishProcessor<AgreementEventHub.AgreementEvent> events = PublishProcessor.create();
+        AgreementEventHub hub = AgreementEventHub.getInstance("Fulfilled", fromBlock ->
+                subscriptions.incrementAndGet() == 1 ? Flowable.error(new Exception("filter not found")) : events,
+                () -> CURRENT_BLOCK);
+
+        TestSubscriber<String> listener = hub.listen("aa01").test();
+        listener.assertNoErrors();
+
+        awaitSubscribers(events);
+        events.onNext(event("aa01", 100));
+        listener.assertValue("aa01").assertComplete();
+        assertEquals(2, subscriptions.get());
+        hub.stop();
+    }
+
+    @Test
+    public void subscribeAgainFromTheLastBlockSeen() {
+        List<BigInteger> fromBlocks = new ArrayList<>();
+        PublishProcessor<AgreementEventHub.AgreementEvent> first = PublishProcessor.create();
+        PublishProcessor<AgreementEventHub.AgreementEvent> second = PublishProcessor.create();
+        AgreementEventHub hub = AgreementEventHub.getInstance("Fulfilled", fromBlock -> {
+            fromBlocks.add(fromBlock);
+            return fromBlocks.size() == 1 ? first : second;
+        }, () -> CURRENT_BLOCK);
+
+        TestSubscriber<String> received = hub.listen("aa01").test();
+        TestSubscriber<String> inTheGap = hub.listen("bb02").test();
+        first.onNext(event("cc03", 105));
+        first.onNext(event("aa01", 107));
+        first.onError(new Exception("filter not found"));
+
+        // The events emitted while it's subscribed again are replayed from the last block seen
+        awaitSubscribers(second);
+        second.onNext(event("aa01", 107));
+        second.onNext(event("bb02", 109));
+
+        assertEquals(CURRENT_BLOCK, fromBlocks.get(0));
+        assertEquals(BigInteger.valueOf(107), fromBlocks.get(1));
+        received.assertValue("aa01").assertComplete();
+        inTheGap.assertValue("bb02").assertComplete();
+        assertEquals(BigInteger.valueOf(109), hub.getLastBlock());
+        hub.stop();
+    }
+
+}
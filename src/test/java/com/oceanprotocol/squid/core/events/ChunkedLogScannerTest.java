@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.events;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.squid.exceptions.EthereumException;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.admin.Admin;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ChunkedLogScannerTest {
+
+    private static final String CONTRACT_ADDRESS = "0x" + "cc".repeat(20);
+
+    private KeeperService keeperService;
+    private long head;
+    private List<Long> logBlocks;
+    private long maxWindow;
+    private List<long[]> windows;
+
+    @Before
+    public void setUp() throws Exception {
+        head = 999;
+        logBlocks = new ArrayList<>();
+        maxWindow = Long.MAX_VALUE;
+        windows = Collections.synchronizedList(new ArrayList<>());
+
+        Admin web3 = mock(Admin.class);
+        doAnswer(invocation -> {
+            EthBlockNumber response = new EthBlockNumber();
+            response.setResult(Numeric.encodeQuantity(BigInteger.valueOf(head)));
+            return request(response);
+        }).when(web3).ethBlockNumber();
+        doAnswer(invocation -> request(getLogs(invocation.getArgument(0)))).when(web3).ethGetLogs(any());
+
+        keeperService = mock(KeeperService.class);
+        when(keeperService.getWeb3()).thenReturn(web3);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Response<?>> Request<?, T> request(T response) throws Exception {
+        Request<?, T> request = mock(Request.class);
+        when(request.send()).thenReturn(response);
+        return request;
+    }
+
+    /**
+     * Node that rejects the windows bigger than maxWindow
+     */
+    private EthLog getLogs(EthFilter filter) {
+        long from = ((DefaultBlockParameterNumber) filter.getFromBlock()).getBlockNumber().longValue();
+        long to = ((DefaultBlockParameterNumber) filter.getToBlock()).getBlockNumber().longValue();
+        windows.add(new long[]{from, to});
+
+        EthLog ethLog = new EthLog();
+        if (to - from + 1 > maxWindow) {
+            ethLog.setError(new Response.Error(-32005, "query returned more than 10000 results"));
+            return ethLog;
+        }
+
+        List<EthLog.LogResult> logs = new ArrayList<>();
+        for (long block : logBlocks) {
+            if (block >= from && block <= to)
+                logs.add(new EthLog.LogObject(false, "0x0", "0x0", "0x0", "0x0", Numeric.encodeQuantity(BigInteger.valueOf(block)),
+                        CONTRACT_ADDRESS, "0x", null, Collections.emptyList()));
+        }
+        ethLog.setResult(logs);
+        return ethLog;
+    }
+
+    private List<Long> scan(ChunkedLogScanner scanner) {
+        return scanner.scan(CONTRACT_ADDRESS, filter -> {
+        })
+                .map(log -> log.getBlockNumber().longValue())
+                .toList()
+                .blockingGet();
+    }
+
+    private List<Long> windowSizes() {
+        return windows.stream().map(window -> window[1] - window[0] + 1).collect(Collectors.toList());
+    }
+
+    /**
+     * The windows that were not rejected cover all the blocks once, in order
+     */
+    private void assertContiguous() {
+        long next = 0;
+        for (long[] window : windows) {
+            if (window[1] - window[0] + 1 > maxWindow)
+                continue;
+            assertEquals(next, window[0]);
+            next = window[1] + 1;
+        }
+        assertEquals(head + 1, next);
+    }
+
+    @Test
+    public void windowHalvedWhenTheQueryIsRejected() {
+        maxWindow = 100;
+        for (long block = 0; block <= head; block += 50)
+            logBlocks.add(block);
+
+        List<Long> blocks = scan(ChunkedLogScanner.getInstance(keeperService).setInitialRange(1000).setMaxRange(1000));
+
+        assertEquals(logBlocks, blocks);
+        assertEquals(Long.valueOf(1000), windowSizes().get(0));
+        assertEquals(Long.valueOf(500), windowSizes().get(1));
+        assertEquals(Long.valueOf(250), windowSizes().get(2));
+        assertEquals(Long.valueOf(125), windowSizes().get(3));
+        assertEquals(Long.valueOf(62), windowSizes().get(4));
+        assertContiguous();
+    }
+
+    @Test
+    public void windowHalvedWhenThereAreTooManyLogs() {
+        for (long block = 0; block < 100; block++)
+            logBlocks.add(block);
+
+        List<Long> blocks = scan(ChunkedLogScanner.getInstance(keeperService).setInitialRange(80).setTargetResults(10));
+
+        assertEquals(logBlocks, blocks);
+        assertEquals(List.of(80L, 40L, 20L), windowSizes().subList(0, 3));
+        assertContiguous();
+    }
+
+    @Test
+    public void windowDoubledWhenTheLogsAreSparse() {
+        head = 299;
+        logBlocks.add(5L);
+
+        List<Long> blocks = scan(ChunkedLogScanner.getInstance(keeperService).setInitialRange(10).setMaxRange(80));
+
+        assertEquals(Collections.singletonList(5L), blocks);
+        assertEquals(List.of(10L, 20L, 40L, 80L, 80L, 70L), windowSizes());
+        assertContiguous();
+    }
+
+    @Test
+    public void scanEndsAtTheLatestBlock() {
+        head = 0;
+        logBlocks.add(0L);
+        assertEquals(Collections.singletonList(0L), scan(ChunkedLogScanner.getInstance(keeperService)));
+        assertEquals(1, windows.size());
+
+        windows.clear();
+        head = 12345;
+        logBlocks.add(12345L);
+        logBlocks.add(12346L);
+
+        // The logs mined after the scan started are not included
+        assertEquals(List.of(0L, 12345L), scan(ChunkedLogScanner.getInstance(keeperService).setInitialRange(5000)));
+        assertEquals(12345, windows.get(windows.size() - 1)[1]);
+        assertContiguous();
+    }
+
+    @Test
+    public void scanFailsWhenTheMinimumWindowIsRejected() {
+        maxWindow = 0;
+
+        ChunkedLogScanner scanner = ChunkedLogScanner.getInstance(keeperService).setInitialRange(16);
+        scanner.scan(CONTRACT_ADDRESS, filter -> {
+        })
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertError(EthereumException.class)
+                .assertNoValues();
+
+        assertEquals(List.of(16L, 8L, 4L, 2L, 1L), windowSizes());
+    }
+
+}
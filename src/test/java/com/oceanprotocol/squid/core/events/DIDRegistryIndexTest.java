@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.events;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.keeper.contracts.DIDRegistry;
+import com.oceanprotocol.squid.models.DID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Keys;
+import org.web3j.protocol.admin.Admin;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DIDRegistryIndexTest {
+
+    private static final String CONTRACT_ADDRESS = "0x" + "cc".repeat(20);
+    private static final String OWNER = Keys.toChecksumAddress("0x" + "aa".repeat(20));
+    private static final String NEW_OWNER = Keys.toChecksumAddress("0x" + "bb".repeat(20));
+
+    private Path directory;
+    private Path indexFile;
+    private KeeperService keeperService;
+    private DIDRegistry didRegistry;
+
+    private long head;
+    private List<EthLog.LogObject> chain;
+    private List<long[]> requestedRanges;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("did-index");
+        indexFile = directory.resolve("index.json");
+        head = 0;
+        chain = new ArrayList<>();
+        requestedRanges = new ArrayList<>();
+
+        didRegistry = mock(DIDRegistry.class);
+        when(didRegistry.getContractAddress()).thenReturn(CONTRACT_ADDRESS);
+
+        Admin web3 = mock(Admin.class);
+        doAnswer(invocation -> request(() -> {
+            EthBlockNumber response = new EthBlockNumber();
+            response.setResult(Numeric.encodeQuantity(BigInteger.valueOf(head)));
+            return response;
+        })).when(web3).ethBlockNumber();
+        doAnswer(invocation -> request(() -> getLogs(invocation.getArgument(0)))).when(web3).ethGetLogs(any());
+
+        keeperService = mock(KeeperService.class);
+        when(keeperService.getWeb3()).thenReturn(web3);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(indexFile);
+        Files.deleteIfExists(directory);
+    }
+
+    private interface Response<T> {
+        T get() throws IOException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends org.web3j.protocol.core.Response<?>> Request<?, T> request(Response<T> response) throws IOException {
+        Request<?, T> request = mock(Request.class);
+        when(request.send()).thenAnswer(invocation -> response.get());
+        return request;
+    }
+
+    private EthLog getLogs(EthFilter filter) {
+        long from = ((DefaultBlockParameterNumber) filter.getFromBlock()).getBlockNumber().longValue();
+        long to = ((DefaultBlockParameterNumber) filter.getToBlock()).getBlockNumber().longValue();
+        requestedRanges.add(new long[]{from, to});
+
+        EthLog ethLog = new EthLog();
+        ethLog.setResult(chain.stream()
+                .filter(log -> log.getBlockNumber().longValue() >= from && log.getBlockNumber().longValue() <= to)
+                .collect(Collectors.toList()));
+        return ethLog;
+    }
+
+    private void register(long block, DID did, String owner, String checksum, String url) {
+        String data = FunctionEncoder.encodeConstructor(Arrays.asList(
+                new Utf8String(url), new Address(owner), new Uint256(BigInteger.valueOf(block))));
+        List<String> topics = Arrays.asList(
+                EventEncoder.encode(DIDRegistry.DIDATTRIBUTEREGISTERED_EVENT),
+                "0x" + did.getHash(),
+                Numeric.toHexStringWithPrefixZeroPadded(Numeric.toBigInt(owner), 64),
+                checksum);
+        chain.add(new EthLog.LogObject(false, "0x0", "0x0", "0x0", "0x0",
+                Numeric.encodeQuantity(BigInteger.valueOf(block)), CONTRACT_ADDRESS, data, null, topics));
+        head = Math.max(head, block);
+    }
+
+    private DIDRegistryIndex index() {
+        return DIDRegistryIndex.getInstance(keeperService, didRegistry, indexFile).setBlockRange(10);
+    }
+
+    @Test
+    public void persistAndLoad() throws Exception {
+        DID first = DID.builder();
+        DID second = DID.builder();
+        register(3, first, OWNER, "0x01", "http://aquarius/first");
+        register(12, second, OWNER, "0x02", "http://aquarius/second");
+        head = 15;
+
+        DIDRegistryIndex index = index();
+        assertFalse(index.isSynced());
+        index.sync();
+        assertTrue(index.isSynced());
+        assertEquals(BigInteger.valueOf(15), index.getLastBlock());
+
+        // The new instance is loaded from the file without reading the chain
+        int requests = requestedRanges.size();
+        DIDRegistryIndex loaded = index();
+        assertEquals(requests, requestedRanges.size());
+        assertEquals(BigInteger.valueOf(15), loaded.getLastBlock());
+        assertEquals("http://aquarius/first", loaded.getUrl(first));
+        assertEquals("0x02", loaded.getChecksum(second));
+        assertEquals(BigInteger.valueOf(12), loaded.getAttribute(second).blockNumber);
+        assertEquals(Arrays.asList(first.getDid(), second.getDid()),
+                loaded.getOwnerAssets(OWNER).stream().map(DID::getDid).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void syncFromTheSavedCursor() throws Exception {
+        DID first = DID.builder();
+        register(5, first, OWNER, "0x01", "http://aquarius/first");
+        head = 25;
+        index().sync();
+
+        DID second = DID.builder();
+        register(31, second, OWNER, "0x02", "http://aquarius/second");
+        head = 40;
+        requestedRanges.clear();
+
+        DIDRegistryIndex resumed = index();
+        resumed.sync();
+
+        // Only the blocks mined after the last block indexed are requested
+        assertEquals(26, requestedRanges.get(0)[0]);
+        assertEquals(40, requestedRanges.get(requestedRanges.size() - 1)[1]);
+        assertEquals(2, requestedRanges.size());
+        assertEquals("http://aquarius/first", resumed.getUrl(first));
+        assertEquals("http://aquarius/second", resumed.getUrl(second));
+        assertEquals(BigInteger.valueOf(40), resumed.getLastBlock());
+
+        // Nothing is requested when there are no new blocks
+        requestedRanges.clear();
+        resumed.sync();
+        assertTrue(requestedRanges.isEmpty());
+    }
+
+    @Test
+    public void ownerChange() throws Exception {
+        DID did = DID.builder();
+        register(2, did, OWNER, "0x01", "http://aquarius/first");
+        register(8, did, NEW_OWNER, "0x01", "http://aquarius/first");
+
+        DIDRegistryIndex index = index();
+        index.sync();
+
+        assertEquals(Collections.emptyList(), index.getOwnerAssets(OWNER));
+        assertEquals(Collections.singletonList(did.getDid()),
+                index.getOwnerAssets(NEW_OWNER.toLowerCase()).stream().map(DID::getDid).collect(Collectors.toList()));
+        assertEquals(NEW_OWNER, index().getAttribute(did).owner);
+    }
+
+    @Test
+    public void attributeUpdate() throws Exception {
+        DID did = DID.builder();
+        register(4, did, OWNER, "0x01", "http://aquarius/first");
+
+        DIDRegistryIndex index = index();
+        index.sync();
+        assertEquals("http://aquarius/first", index.getUrl(did));
+
+        register(17, did, OWNER, "0x02", "http://aquarius/updated");
+        index.sync();
+
+        assertEquals("http://aquarius/updated", index.getUrl(did));
+        assertEquals("0x02", index.getChecksum(did));
+        assertEquals(1, index.getOwnerAssets(OWNER).size());
+        assertEquals("http://aquarius/updated", index().getUrl(did));
+    }
+
+    @Test
+    public void indexOfAnotherContractIgnored() throws Exception {
+        DID did = DID.builder();
+        register(4, did, OWNER, "0x01", "http://aquarius/first");
+        index().sync();
+
+        when(didRegistry.getContractAddress()).thenReturn("0x" + "dd".repeat(20));
+        DIDRegistryIndex index = index();
+        assertNull(index.getLastBlock());
+        assertNull(index.getAttribute(did));
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.orders;
+
+import io.reactivex.Completable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OrderJournalTest {
+
+    private static final String DID = "did:op:0bc278fee025464f8012b811d1bce8e22094d0984e4e49139df5d5ff7a028bdf";
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempDirectory("order-journal").resolve("orders.log");
+    }
+
+    @Test
+    public void recoverOpenOrders() throws Exception {
+        OrderJournal journal = new OrderJournal(file, 10, OrderJournal.DEFAULT_COMPACT_SIZE);
+        journal.record("a1", DID, 1, OrderState.STARTED);
+        journal.record("a2", DID, 1, OrderState.STARTED);
+        journal.record("a3", DID, 2, OrderState.STARTED);
+        journal.record("a1", DID, 1, OrderState.AGREEMENT_CREATED);
+        journal.record("a2", DID, 1, OrderState.FAILED);
+        Completable synced = journal.record("a1", DID, 1, OrderState.LOCK_REWARD_FULFILLED);
+
+        assertTrue(synced.blockingAwait(5, TimeUnit.SECONDS));
+        assertEquals(2, journal.getOpenOrders().size());
+        journal.close();
+
+        OrderJournal recovered = OrderJournal.getInstance(file);
+        List<OrderJournal.Entry> openOrders = recovered.getOpenOrders();
+        assertEquals(2, openOrders.size());
+        assertEquals("a1", openOrders.get(0).agreementId);
+        assertEquals(OrderState.LOCK_REWARD_FULFILLED, openOrders.get(0).state);
+        assertEquals(DID, openOrders.get(0).did);
+        assertEquals("a3", openOrders.get(1).agreementId);
+        assertEquals(2, openOrders.get(1).serviceIndex);
+        recovered.close();
+    }
+
+    @Test
+    public void incompleteLastLine() throws Exception {
+        OrderJournal journal = OrderJournal.getInstance(file);
+        journal.record("a1", DID, 1, OrderState.STARTED);
+        journal.close();
+
+        Files.write(file, "{\"agreementId\":\"a2\",\"did\":\"did:op:".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        OrderJournal recovered = OrderJournal.getInstance(file);
+        assertEquals(1, recovered.getOpenOrders().size());
+        assertEquals("a1", recovered.getOpenOrders().get(0).agreementId);
+        recovered.close();
+    }
+
+    @Test
+    public void compaction() throws Exception {
+        OrderJournal journal = new OrderJournal(file, 10, 4096);
+        for (int i = 0; i < 100; i++) {
+            journal.record("a" + i, DID, 1, OrderState.STARTED);
+            journal.record("a" + i, DID, 1, OrderState.COMPLETED);
+        }
+        journal.record("open", DID, 1, OrderState.REFUND_PENDING).blockingAwait();
+        journal.close();
+
+        assertTrue(Files.size(file) < 4096);
+
+        OrderJournal recovered = OrderJournal.getInstance(file);
+        assertEquals(1, recovered.getOpenOrders().size());
+        assertEquals(OrderState.REFUND_PENDING, recovered.getOpenOrders().get(0).state);
+        recovered.close();
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.tx;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExponentialBackoffTest {
+
+    @Test
+    public void delaysGrowUpToTheMaximum() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 1000, 10);
+
+        long[] expected = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 0; attempt < expected.length; attempt++) {
+            for (int i = 0; i < 50; i++) {
+                long delay = backoff.getDelay(attempt);
+                assertTrue(delay <= expected[attempt]);
+                assertTrue(delay >= expected[attempt] / 2);
+            }
+        }
+
+        assertEquals(1000, backoff.getDelay(1000), 500);
+    }
+
+    @Test
+    public void maxAttempts() {
+        ExponentialBackoff backoff = new ExponentialBackoff(100, 1000, 3);
+
+        assertTrue(backoff.canRetry(0));
+        assertTrue(backoff.canRetry(1));
+        assertFalse(backoff.canRetry(2));
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.tx;
+
+import io.reactivex.Flowable;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.SignedRawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.tx.ChainId;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class NonceTrackingTransactionManagerTest {
+
+    private static final Credentials CREDENTIALS =
+            Credentials.create("0x8b4e2d0b3b1f4f1d6b0a3c6e1f9d2c7a5e4b3a2918d7c6b5a4f3e2d1c0b9a8f7");
+    private static final BigInteger GAS = BigInteger.valueOf(21000);
+    private static final String TO = "0x00bd138abd70e2f00903268f3db08f2d25677c9e";
+
+    private FakeNode node;
+    private NonceTrackingTransactionManager txManager;
+
+    /**
+     * Node that accepts every nonce not used yet and not lower than the transaction count of the account
+     */
+    private static class FakeNode implements Web3jService {
+
+        final Set<Long> used = new HashSet<>();
+        final Map<String, Long> nonces = new HashMap<>();
+        final AtomicInteger countRequests = new AtomicInteger();
+        final AtomicInteger sendRequests = new AtomicInteger();
+        String sendError;
+        String lastTransaction;
+
+        synchronized long count() {
+            long count = 0;
+            while (used.contains(count))
+                count++;
+            return count;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+            if (request.getMethod().equals("eth_getTransactionCount")) {
+                countRequests.incrementAndGet();
+                EthGetTransactionCount response = new EthGetTransactionCount();
+                response.setResult(Numeric.encodeQuantity(BigInteger.valueOf(count())));
+                return (T) response;
+            }
+
+            sendRequests.incrementAndGet();
+            EthSendTransaction response = new EthSendTransaction();
+            String signedTransaction = (String) request.getParams().get(0);
+            lastTransaction = signedTransaction;
+            long nonce = TransactionDecoder.decode(signedTransaction).getNonce().longValue();
+            if (sendError != null)
+                response.setError(new Response.Error(-32000, sendError));
+            else if (nonce < count() || used.contains(nonce))
+                response.setError(new Response.Error(-32000, "nonce too low"));
+            else {
+                used.add(nonce);
+                response.setResult(Hash.sha3(signedTransaction));
+                nonces.put(response.getTransactionHash(), nonce);
+            }
+            return (T) response;
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        node = new FakeNode();
+        txManager = NonceTrackingTransactionManager.getInstance(Web3j.build(node), CREDENTIALS, 1, 10);
+    }
+
+    private EthSendTransaction send() throws IOException {
+        return txManager.sendTransaction(GAS, GAS, TO, "0x", BigInteger.ZERO);
+    }
+
+    @Test
+    public void concurrentTransactions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<EthSendTransaction>> responses = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            responses.add(executor.submit(this::send));
+
+        for (Future<EthSendTransaction> response : responses)
+            assertFalse(response.get(10, TimeUnit.SECONDS).hasError());
+        executor.shutdown();
+
+        assertEquals(50, node.count());
+        assertEquals(50, node.sendRequests.get());
+        assertEquals(50, txManager.getPendingTransactions().size());
+        // The count of the account is only read once (pending and latest)
+        assertEquals(2, node.countRequests.get());
+    }
+
+    @Test
+    public void resyncWhenNonceRejected() throws Exception {
+        assertFalse(send().hasError());
+
+        // Another process sends two transactions from the same account
+        synchronized (node) {
+            node.used.add(1L);
+            node.used.add(2L);
+        }
+
+        EthSendTransaction response = send();
+        assertFalse(response.hasError());
+        assertEquals(3L, (long) node.nonces.get(response.getTransactionHash()));
+        assertEquals(3, node.sendRequests.get());
+        assertEquals(4, node.countRequests.get());
+    }
+
+    @Test
+    public void otherErrorsNotRetried() throws Exception {
+        node.sendError = "insufficient funds for gas * price + value";
+        EthSendTransaction response = send();
+        assertTrue(response.hasError());
+        assertEquals(1, node.sendRequests.get());
+        assertTrue(txManager.getPendingTransactions().isEmpty());
+
+        // The nonce not used doesn't leave a gap
+        node.sendError = null;
+        response = send();
+        assertFalse(response.hasError());
+        assertEquals(0L, (long) node.nonces.get(response.getTransactionHash()));
+    }
+
+    @Test
+    public void signedWithTheChainId() throws Exception {
+        txManager = NonceTrackingTransactionManager.getInstance(Web3j.build(node), CREDENTIALS, ChainId.KOVAN, 1, 10);
+        assertFalse(send().hasError());
+
+        SignedRawTransaction transaction = (SignedRawTransaction) TransactionDecoder.decode(node.lastTransaction);
+        assertEquals(Integer.valueOf(ChainId.KOVAN), transaction.getChainId());
+        assertEquals(CREDENTIALS.getAddress(), transaction.getFrom());
+
+        try {
+            NonceTrackingTransactionManager.getInstance(Web3j.build(node), CREDENTIALS, 8995, 1, 10);
+            fail("Chain id not supported by the signer");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("8995"));
+        }
+    }
+
+}
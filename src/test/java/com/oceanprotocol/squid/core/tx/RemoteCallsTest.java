@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.tx;
+
+import io.reactivex.Single;
+import org.junit.Test;
+import org.web3j.protocol.core.RemoteCall;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RemoteCallsTest {
+
+    @Test
+    public void sentOnSubscribe() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Single<BigInteger> single = RemoteCalls.toSingle(new RemoteCall<>(() -> {
+            calls.incrementAndGet();
+            return BigInteger.TEN;
+        }));
+
+        assertEquals(0, calls.get());
+        assertEquals(BigInteger.TEN, single.blockingGet());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void errorUnwrapped() throws Exception {
+        RemoteCalls.toSingle(new RemoteCall<BigInteger>(() -> {
+            throw new IOException("node unavailable");
+        }))
+                .test()
+                .await()
+                .assertError(IOException.class);
+    }
+
+    @Test
+    public void statusOk() {
+        TransactionReceipt receipt = new TransactionReceipt();
+        receipt.setStatus("0x1");
+        assertTrue(RemoteCalls.isStatusOk(receipt));
+
+        receipt.setStatus("0x0");
+        assertFalse(RemoteCalls.isStatusOk(receipt));
+    }
+
+}
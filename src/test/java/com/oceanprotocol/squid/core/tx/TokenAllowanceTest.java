@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.core.tx;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.SingleSubject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TokenAllowanceTest {
+
+    private static final BigInteger PRICE = BigInteger.TEN;
+
+    private BigInteger onChainAllowance;
+    private AtomicInteger reads;
+    private List<BigInteger> approvals;
+
+    @Before
+    public void setUp() {
+        onChainAllowance = BigInteger.ZERO;
+        reads = new AtomicInteger();
+        approvals = new ArrayList<>();
+    }
+
+    private TokenAllowance tokenAllowance(long approvalChunk) {
+        return new TokenAllowance(
+                () -> Single.fromCallable(() -> {
+                    reads.incrementAndGet();
+                    return onChainAllowance;
+                }),
+                value -> Single.fromCallable(() -> {
+                    approvals.add(value);
+                    onChainAllowance = value;
+                    return true;
+                }),
+                BigInteger.valueOf(approvalChunk));
+    }
+
+    @Test
+    public void approvalInChunks() {
+        TokenAllowance tokenAllowance = tokenAllowance(35);
+
+        for (int i = 0; i < 7; i++) {
+            tokenAllowance.reserve(PRICE).blockingAwait();
+            tokenAllowance.consumed(PRICE);
+        }
+
+        // The allowance is read once, and approved again when the tokens left are not enough
+        assertEquals(1, reads.get());
+        assertEquals(3, approvals.size());
+        assertEquals(BigInteger.valueOf(35), approvals.get(0));
+        assertEquals(BigInteger.valueOf(25), tokenAllowance.getAvailable());
+        assertEquals(BigInteger.ZERO, tokenAllowance.getReserved());
+    }
+
+    @Test
+    public void allowanceLeftOnChain() {
+        onChainAllowance = BigInteger.valueOf(25);
+        TokenAllowance tokenAllowance = tokenAllowance(0);
+
+        tokenAllowance.reserve(PRICE).blockingAwait();
+        tokenAllowance.reserve(PRICE).blockingAwait();
+        assertTrue(approvals.isEmpty());
+
+        // The approval includes the tokens reserved by the transfers not mined yet
+        tokenAllowance.reserve(PRICE).blockingAwait();
+        assertEquals(1, approvals.size());
+        assertEquals(BigInteger.valueOf(30), approvals.get(0));
+        assertEquals(BigInteger.ZERO, tokenAllowance.getAvailable());
+        assertEquals(BigInteger.valueOf(30), tokenAllowance.getReserved());
+
+        tokenAllowance.release(PRICE);
+        assertEquals(PRICE, tokenAllowance.getAvailable());
+        tokenAllowance.reserve(PRICE).blockingAwait();
+        assertEquals(1, approvals.size());
+    }
+
+    @Test
+    public void concurrentReservationsShareTheApproval() {
+        SingleSubject<Boolean> approval = SingleSubject.create();
+        AtomicInteger approvalsSent = new AtomicInteger();
+        TokenAllowance tokenAllowance = new TokenAllowance(
+                () -> Single.just(BigInteger.ZERO),
+                value -> {
+                    approvalsSent.incrementAndGet();
+                    return approval;
+                },
+                BigInteger.valueOf(100));
+
+        List<Completable> reservations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Completable reservation = tokenAllowance.reserve(PRICE).cache();
+            reservation.subscribe();
+            reservations.add(reservation);
+        }
+        assertEquals(1, approvalsSent.get());
+
+        approval.onSuccess(true);
+        reservations.forEach(Completable::blockingAwait);
+        assertEquals(1, approvalsSent.get());
+        assertEquals(BigInteger.valueOf(50), tokenAllowance.getAvailable());
+        assertEquals(BigInteger.valueOf(50), tokenAllowance.getReserved());
+    }
+
+    @Test
+    public void allowanceReadAgainAfterAnError() {
+        TokenAllowance tokenAllowance = new TokenAllowance(
+                () -> Single.fromCallable(() -> {
+                    reads.incrementAndGet();
+                    return onChainAllowance;
+                }),
+                value -> Single.error(new Exception("approval failed")),
+                BigInteger.valueOf(100));
+
+        assertNotNull(tokenAllowance.reserve(PRICE).blockingGet());
+        assertNull(tokenAllowance.getAvailable());
+
+        onChainAllowance = BigInteger.valueOf(100);
+        assertNull(tokenAllowance.reserve(PRICE).blockingGet());
+        assertEquals(2, reads.get());
+        assertEquals(BigInteger.valueOf(90), tokenAllowance.getAvailable());
+    }
+
+    @Test
+    public void reservationSettledOnceWhenDisposedAfterSuccess() {
+        onChainAllowance = BigInteger.valueOf(100);
+        TokenAllowance tokenAllowance = tokenAllowance(0);
+        TokenAllowance.Reservation other = tokenAllowance.newReservation(PRICE);
+        other.reserve().blockingAwait();
+
+        // The order flow switches to the next step after the fulfill and is disposed when it finishes
+        TokenAllowance.Reservation reservation = tokenAllowance.newReservation(PRICE);
+        Disposable order = reservation.reserve()
+                .andThen(Single.just(true))
+                .doOnSuccess(fulfilled -> reservation.consumed())
+                .doOnError(throwable -> reservation.release(false))
+                .doOnDispose(() -> reservation.release(true))
+                .flatMapPublisher(fulfilled -> Flowable.never())
+                .subscribe();
+        order.dispose();
+
+        assertTrue(reservation.isSettled());
+        assertEquals(PRICE, tokenAllowance.getReserved());
+        assertEquals(BigInteger.valueOf(80), tokenAllowance.getAvailable());
+
+        // The next approval keeps the tokens reserved by the transfer not mined yet
+        tokenAllowance.reserve(BigInteger.valueOf(90)).blockingAwait();
+        assertEquals(BigInteger.valueOf(100), approvals.get(0));
+    }
+
+    @Test
+    public void reservationReleasedWhenDisposedBeforeSuccess() {
+        onChainAllowance = BigInteger.valueOf(100);
+        TokenAllowance tokenAllowance = tokenAllowance(0);
+
+        TokenAllowance.Reservation reservation = tokenAllowance.newReservation(PRICE);
+        Disposable order = reservation.reserve()
+                .andThen(Single.<Boolean>never())
+                .doOnSuccess(fulfilled -> reservation.consumed())
+                .doOnDispose(() -> reservation.release(true))
+                .subscribe();
+        assertEquals(PRICE, tokenAllowance.getReserved());
+        order.dispose();
+
+        // It's unknown if the transfer was executed, so the allowance is read again
+        assertEquals(BigInteger.ZERO, tokenAllowance.getReserved());
+        assertNull(tokenAllowance.getAvailable());
+        reservation.consumed();
+        assertEquals(BigInteger.ZERO, tokenAllowance.getReserved());
+    }
+
+}
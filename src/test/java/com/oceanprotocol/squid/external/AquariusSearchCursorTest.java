@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.external;
+
+import com.oceanprotocol.squid.exceptions.DDOException;
+import com.oceanprotocol.squid.models.DDO;
+import com.oceanprotocol.squid.models.aquarius.SearchResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class AquariusSearchCursorTest {
+
+    private static final int RESULTS_PER_PAGE = 3;
+
+    private List<Integer> fetched;
+    private AtomicInteger inFlight;
+    private AtomicInteger maxInFlight;
+
+    @Before
+    public void setUp() {
+        fetched = Collections.synchronizedList(new ArrayList<>());
+        inFlight = new AtomicInteger();
+        maxInFlight = new AtomicInteger();
+    }
+
+    /**
+     * Fetcher of a search with some pages, where the first pages take longer to be received than the next ones
+     */
+    private AquariusSearchCursor.PageFetcher pages(int totalPages) {
+        return page -> {
+            fetched.add(page);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                sleep(5L * Math.max(1, 8 - page));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+
+            List<DDO> results = new ArrayList<>();
+            for (int i = 0; i < RESULTS_PER_PAGE; i++) {
+                DDO ddo = new DDO();
+                ddo.id = page + "-" + i;
+                results.add(ddo);
+            }
+            return new SearchResult(results, page, totalPages, totalPages * RESULTS_PER_PAGE);
+        };
+    }
+
+    private static void sleep(long millis) throws DDOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new DDOException("Interrupted", e);
+        }
+    }
+
+    private static List<String> ids(List<DDO> ddos) {
+        return ddos.stream().map(ddo -> ddo.id).collect(Collectors.toList());
+    }
+
+    @Test
+    public void pagesInOrderWithPrefetch() {
+        List<DDO> results = new AquariusSearchCursor(pages(6), 1, 3)
+                .results()
+                .toList()
+                .blockingGet();
+
+        List<String> expected = new ArrayList<>();
+        for (int page = 1; page <= 6; page++)
+            for (int i = 0; i < RESULTS_PER_PAGE; i++)
+                expected.add(page + "-" + i);
+
+        assertEquals(expected, ids(results));
+        // The following pages are requested at the same time, up to the prefetch depth
+        assertTrue(maxInFlight.get() > 1);
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void stopAtTheLastPage() {
+        List<Integer> pages = new AquariusSearchCursor(pages(4), 2, 2)
+                .pages()
+                .map(searchResult -> searchResult.page)
+                .toList()
+                .blockingGet();
+
+        assertEquals(List.of(2, 3, 4), pages);
+        assertEquals(3, fetched.size());
+    }
+
+    @Test
+    public void singlePage() {
+        List<DDO> results = new AquariusSearchCursor(pages(1), 1, 2).results().toList().blockingGet();
+
+        assertEquals(RESULTS_PER_PAGE, results.size());
+        assertEquals(List.of(1), fetched);
+    }
+
+    @Test
+    public void cancelStopsRequestingPages() throws Exception {
+        List<DDO> results = new AquariusSearchCursor(pages(100), 1, 2)
+                .results()
+                .take(RESULTS_PER_PAGE + 1)
+                .toList()
+                .blockingGet();
+        assertEquals(List.of("1-0", "1-1", "1-2", "2-0"), ids(results));
+
+        // Only the pages prefetched when the subscription was cancelled are requested
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertTrue(fetched.size() <= 4);
+        assertFalse(fetched.contains(10));
+    }
+
+    @Test
+    public void errorOfAPage() {
+        AquariusSearchCursor.PageFetcher fetcher = pages(5);
+        new AquariusSearchCursor(page -> {
+            if (page == 3) {
+                // Received after the previous page
+                sleep(200);
+                throw new DDOException("Unable to search for DDO's");
+            }
+            return fetcher.fetch(page);
+        }, 1, 2)
+                .results()
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValueCount(2 * RESULTS_PER_PAGE)
+                .assertError(DDOException.class);
+    }
+
+}
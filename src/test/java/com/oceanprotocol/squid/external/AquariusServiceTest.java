@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.external;
+
+import com.oceanprotocol.squid.exceptions.DDOException;
+import com.oceanprotocol.squid.models.DDO;
+import com.oceanprotocol.squid.models.aquarius.SearchQuery;
+import com.oceanprotocol.squid.models.aquarius.SearchResult;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class AquariusServiceTest {
+
+    private static final String DDO_JSON = "{\"@context\":\"https://w3id.org/did/v1\",\"id\":\"did:op:%s\"}";
+
+    private HttpServer server;
+
+    @After
+    public void tearDown() {
+        AquariusService.closeAll();
+        AquariusService.setConnectionPoolConfig(PooledHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE, PooledHttpClient.DEFAULT_IDLE_TIMEOUT);
+        if (server != null)
+            server.stop(0);
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String page(int page, int totalPages, String... ids) {
+        String results = Arrays.stream(ids).map(id -> String.format(DDO_JSON, id)).collect(Collectors.joining(","));
+        return "{\"page\":" + page + ",\"total_pages\":" + totalPages + ",\"total_results\":" + (totalPages * ids.length)
+                + ",\"results\":[" + results + "]}";
+    }
+
+    /**
+     * Starts an Aquarius that answers every request with the body given
+     */
+    private String startServer(String response) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Test
+    public void emptyResults() throws Exception {
+        SearchResult searchResult = AquariusService.parseSearchResult(
+                body("{\"page\":1,\"total_pages\":0,\"total_results\":0,\"results\":[]}"), null);
+
+        assertEquals(1, searchResult.page);
+        assertEquals(0, searchResult.total_pages);
+        assertEquals(0, searchResult.total_results);
+        assertTrue(searchResult.results.isEmpty());
+
+        assertTrue(AquariusService.parseSearchResult(body("{}"), null).results.isEmpty());
+    }
+
+    @Test
+    public void unknownFieldsSkipped() throws Exception {
+        SearchResult searchResult = AquariusService.parseSearchResult(body("{\"query\":{\"text\":[\"weather\"],\"nested\":[1,{\"a\":2}]},"
+                + "\"PAGE\":2,\"results\":[" + String.format(DDO_JSON, "01") + "],\"took\":12,\"total_pages\":3}"), null);
+
+        assertEquals(2, searchResult.page);
+        assertEquals(3, searchResult.total_pages);
+        assertEquals(1, searchResult.results.size());
+        assertEquals("did:op:01", searchResult.results.get(0).id);
+    }
+
+    @Test
+    public void resultsPassedToTheConsumer() throws Exception {
+        List<String> consumed = new ArrayList<>();
+        SearchResult searchResult = AquariusService.parseSearchResult(body(page(1, 1, "01", "02", "03")),
+                ddo -> consumed.add(ddo.id));
+
+        assertEquals(List.of("did:op:01", "did:op:02", "did:op:03"), consumed);
+        assertTrue(searchResult.results.isEmpty());
+        assertEquals(3, searchResult.total_results);
+    }
+
+    @Test
+    public void truncatedBody() {
+        String json = page(1, 1, "01", "02");
+        for (String truncated : new String[]{"", json.substring(0, json.length() / 2), json.substring(0, json.length() - 2)}) {
+            List<String> consumed = new ArrayList<>();
+            try {
+                AquariusService.parseSearchResult(body(truncated), ddo -> consumed.add(ddo.id));
+                fail("Truncated body parsed: " + truncated);
+            } catch (IOException e) {
+                assertTrue(consumed.size() <= 2);
+            }
+        }
+    }
+
+    @Test
+    public void searchWithConsumer() throws Exception {
+        AquariusService aquarius = AquariusService.getInstance(startServer(page(1, 1, "01", "02")));
+
+        List<DDO> consumed = new ArrayList<>();
+        SearchResult searchResult = aquarius.searchDDO(
+                new SearchQuery(Map.of("text", List.of("weather")), 10, 1, 1), consumed::add);
+
+        assertEquals(2, consumed.size());
+        assertEquals(1, searchResult.total_pages);
+    }
+
+    @Test
+    public void searchWithTruncatedResponse() throws Exception {
+        String json = page(1, 1, "01", "02");
+        AquariusService aquarius = AquariusService.getInstance(startServer(json.substring(0, json.length() - 5)));
+
+        try {
+            aquarius.searchDDO("weather", 10, 1);
+            fail("Truncated response parsed");
+        } catch (DDOException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void instanceReusedPerUrl() {
+        AquariusService aquarius = AquariusService.getInstance("http://localhost:5000");
+
+        assertSame(aquarius, AquariusService.getInstance("http://localhost:5000/"));
+        assertNotSame(aquarius, AquariusService.getInstance("http://localhost:5001"));
+        assertEquals("http://localhost:5000/api/v1/aquarius/assets/ddo", aquarius.getDdoEndpoint());
+
+        AquariusService.closeAll();
+        assertNotSame(aquarius, AquariusService.getInstance("http://localhost:5000"));
+    }
+
+    @Test
+    public void poolConfigAppliedToExistingInstances() {
+        AquariusService existing = AquariusService.getInstance("http://localhost:5000");
+        assertEquals(PooledHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE, existing.getHttpClient().getMaxConnectionsPerRoute());
+
+        AquariusService.setConnectionPoolConfig(4, 1000);
+        AquariusService created = AquariusService.getInstance("http://localhost:5001");
+
+        for (AquariusService aquarius : List.of(existing, created)) {
+            assertEquals(4, aquarius.getHttpClient().getMaxConnectionsPerRoute());
+            assertEquals(1000, aquarius.getHttpClient().getIdleTimeout());
+        }
+    }
+
+}
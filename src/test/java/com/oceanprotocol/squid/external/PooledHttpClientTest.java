@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.external;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PooledHttpClientTest {
+
+    private static final String BODY = "{\"message\":\"Ocean Protocol\"}";
+
+    private HttpServer server;
+    private String url;
+    private PooledHttpClient httpClient;
+    private Set<Integer> clientPorts;
+
+    @Before
+    public void setUp() throws Exception {
+        clientPorts = ConcurrentHashMap.newKeySet();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/redirect", exchange -> {
+            exchange.getResponseHeaders().add("Location", "ftp://localhost/file");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/";
+
+        // A single connection, so a request waits until the previous response is closed
+        httpClient = new PooledHttpClient(1, PooledHttpClient.DEFAULT_IDLE_TIMEOUT);
+    }
+
+    @After
+    public void tearDown() {
+        httpClient.close();
+        server.stop(0);
+    }
+
+    private CompletableFuture<PooledHttpClient.StreamResponse> openGet() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return httpClient.openGet(url);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void closeReleasesTheConnection() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            PooledHttpClient.StreamResponse response = openGet().get(5, TimeUnit.SECONDS);
+
+            response.addCloseListener(closed::incrementAndGet);
+            assertEquals(200, response.getStatusCode());
+            // The body is not read, closing the response must release the connection anyway
+            response.close();
+            response.close();
+        }
+
+        assertEquals(3, closed.get());
+    }
+
+    @Test
+    public void bodyRead() throws Exception {
+        try (PooledHttpClient.StreamResponse response = httpClient.openGet(url)) {
+            assertEquals(BODY, response.readBodyAsString());
+        }
+        assertEquals(BODY, httpClient.get(url).getBody());
+    }
+
+    @Test
+    public void connectionReused() throws Exception {
+        httpClient.setConnectionPoolConfig(4, PooledHttpClient.DEFAULT_IDLE_TIMEOUT);
+        for (int i = 0; i < 5; i++)
+            assertEquals(BODY, httpClient.get(url).getBody());
+
+        // The requests made one after the other use the same keep-alive connection
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void poolResizedWhileInUse() throws Exception {
+        PooledHttpClient.StreamResponse first = openGet().get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<PooledHttpClient.StreamResponse> waiting = openGet();
+        try {
+            waiting.get(500, TimeUnit.MILLISECONDS);
+            fail("A second connection was opened with a pool of 1");
+        } catch (TimeoutException e) {
+            // The only connection is used by the first response
+        }
+
+        httpClient.setConnectionPoolConfig(2, 1000);
+        assertEquals(2, httpClient.getMaxConnectionsPerRoute());
+        assertEquals(1000, httpClient.getIdleTimeout());
+
+        // The new size is used by the following requests, while the first response is still open
+        try (PooledHttpClient.StreamResponse second = openGet().get(5, TimeUnit.SECONDS)) {
+            assertEquals(BODY, second.readBodyAsString());
+        }
+        first.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+        assertEquals(2, clientPorts.size());
+    }
+
+    @Test
+    public void connectionReleasedOnRuntimeException() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<PooledHttpClient.StreamResponse> redirected = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return httpClient.openGet(url + "redirect");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            try {
+                redirected.get(5, TimeUnit.SECONDS).close();
+                fail("Redirected to an unsupported protocol");
+            } catch (ExecutionException e) {
+                // The only connection of the pool must be released anyway
+                assertFalse(e.getCause() instanceof UncheckedIOException);
+            }
+        }
+
+        try (PooledHttpClient.StreamResponse response = openGet().get(5, TimeUnit.SECONDS)) {
+            assertEquals(BODY, response.readBodyAsString());
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.manager;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.keeper.contracts.AccessSecretStoreCondition;
+import com.oceanprotocol.keeper.contracts.AgreementStoreManager;
+import com.oceanprotocol.keeper.contracts.ComputeExecutionCondition;
+import com.oceanprotocol.keeper.contracts.ConditionStoreManager;
+import com.oceanprotocol.keeper.contracts.EscrowReward;
+import com.oceanprotocol.keeper.contracts.LockRewardCondition;
+import com.oceanprotocol.squid.exceptions.ServiceException;
+import com.oceanprotocol.squid.external.AquariusService;
+import com.oceanprotocol.squid.models.DID;
+import com.oceanprotocol.squid.models.service.AgreementStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.crypto.Keys;
+import org.web3j.protocol.admin.Admin;
+import org.web3j.protocol.core.RemoteCall;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.tuples.generated.Tuple6;
+import org.web3j.tuples.generated.Tuple7;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AgreementsManagerTest {
+
+    private static final String FIRST = "0x" + "01".repeat(32);
+    private static final String SECOND = "0x" + "02".repeat(32);
+    private static final String FAILING = "0x" + "03".repeat(32);
+    private static final String THIRD = "0x" + "04".repeat(32);
+
+    private static final String LOCK_REWARD_ADDRESS = Keys.toChecksumAddress("0x" + "aa".repeat(20));
+    private static final String ACCESS_ADDRESS = Keys.toChecksumAddress("0x" + "bb".repeat(20));
+    private static final String COMPUTE_ADDRESS = Keys.toChecksumAddress("0x" + "cc".repeat(20));
+    private static final String CONSUMER_ADDRESS = "0x" + "dd".repeat(20);
+
+    private AgreementsManager agreementsManager;
+    private Admin web3;
+    private Map<String, AtomicInteger> reads;
+
+    @Before
+    public void setUp() {
+        web3 = mock(Admin.class);
+        KeeperService keeperService = mock(KeeperService.class);
+        when(keeperService.getWeb3()).thenReturn(web3);
+        agreementsManager = AgreementsManager.getInstance(keeperService, mock(AquariusService.class));
+        reads = new ConcurrentHashMap<>();
+
+        LockRewardCondition lockRewardCondition = mock(LockRewardCondition.class);
+        when(lockRewardCondition.getContractAddress()).thenReturn(LOCK_REWARD_ADDRESS);
+        AccessSecretStoreCondition accessCondition = mock(AccessSecretStoreCondition.class);
+        when(accessCondition.getContractAddress()).thenReturn(ACCESS_ADDRESS);
+        agreementsManager.setLockRewardCondition(lockRewardCondition);
+        agreementsManager.setAccessSecretStoreCondition(accessCondition);
+        agreementsManager.setEscrowReward(mock(EscrowReward.class));
+        ComputeExecutionCondition computeCondition = mock(ComputeExecutionCondition.class);
+        when(computeCondition.getContractAddress()).thenReturn(COMPUTE_ADDRESS);
+        agreementsManager.setComputeExecutionCondition(computeCondition);
+    }
+
+    private static <T> RemoteCall<T> call(CompletableFuture<T> future) {
+        @SuppressWarnings("unchecked")
+        RemoteCall<T> remoteCall = mock(RemoteCall.class);
+        when(remoteCall.sendAsync()).thenReturn(future);
+        return remoteCall;
+    }
+
+    /**
+     * Every agreement has one condition, with the same id as the agreement.
+     * The first agreement is returned after the others, and the failing one is not found
+     */
+    private AgreementStoreManager agreementStore() throws Exception {
+        AgreementStoreManager agreementStore = mock(AgreementStoreManager.class);
+        when(agreementStore.getAgreement(any())).thenAnswer(invocation -> {
+            String agreementId = Numeric.toHexString(invocation.getArgument(0));
+            reads.computeIfAbsent(agreementId, k -> new AtomicInteger()).incrementAndGet();
+            if (agreementId.equals(FAILING))
+                return call(CompletableFuture.failedFuture(new Exception("agreement not found")));
+
+            byte[] conditionId = Numeric.hexStringToByteArray(agreementId);
+            Tuple6<byte[], String, String, List<byte[]>, String, BigInteger> agreement =
+                    new Tuple6<>(new byte[32], "", "", Collections.singletonList(conditionId), "", BigInteger.ONE);
+            return call(agreementId.equals(FIRST)
+                    ? CompletableFuture.supplyAsync(() -> agreement, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS))
+                    : CompletableFuture.completedFuture(agreement));
+        });
+        return agreementStore;
+    }
+
+    /**
+     * Every condition is a lockReward condition in the state given
+     */
+    private ConditionStoreManager conditionStore(BigInteger state) {
+        ConditionStoreManager conditionStore = mock(ConditionStoreManager.class);
+        when(conditionStore.getCondition(any())).thenAnswer(invocation -> call(CompletableFuture.completedFuture(
+                new Tuple7<>(LOCK_REWARD_ADDRESS.toLowerCase(), state, BigInteger.ZERO, BigInteger.ZERO,
+                        BigInteger.ZERO, "", BigInteger.ZERO))));
+        return conditionStore;
+    }
+
+    @Test
+    public void statusesInOrderWithoutDuplicates() throws Exception {
+        agreementsManager.setAgreementStoreManagerContract(agreementStore());
+        agreementsManager.setConditionStoreManagerContract(conditionStore(BigInteger.TWO));
+
+        Map<String, AgreementStatus> statuses =
+                agreementsManager.getStatuses(Arrays.asList(FIRST, SECOND, FAILING, FIRST, THIRD));
+
+        // The agreement that can't be read is left out, and the rest keep the order given
+        assertEquals(Arrays.asList(FIRST, SECOND, THIRD), Arrays.asList(statuses.keySet().toArray()));
+        assertEquals(BigInteger.TWO, statuses.get(FIRST).conditions.get(0).conditions.get("lockReward"));
+        assertEquals(1, reads.get(FIRST).get());
+        assertEquals(1, reads.get(FAILING).get());
+    }
+
+    @Test
+    public void statusesOfAPinnedBlock() throws Exception {
+        BigInteger blockNumber = BigInteger.valueOf(1234);
+        AgreementStoreManager latestAgreements = agreementStore();
+        ConditionStoreManager latestConditions = conditionStore(BigInteger.TWO);
+        agreementsManager.setAgreementStoreManagerContract(latestAgreements);
+        agreementsManager.setConditionStoreManagerContract(latestConditions);
+
+        AgreementsManager pinnedManager = spy(agreementsManager);
+        doReturn(agreementStore()).when(pinnedManager).loadAgreementStoreManager(blockNumber);
+        doReturn(conditionStore(BigInteger.ONE)).when(pinnedManager).loadConditionStoreManager(blockNumber);
+
+        Map<String, AgreementStatus> statuses = pinnedManager.getStatuses(Arrays.asList(SECOND, FIRST), blockNumber);
+
+        assertEquals(Arrays.asList(SECOND, FIRST), Arrays.asList(statuses.keySet().toArray()));
+        assertEquals(BigInteger.ONE, statuses.get(SECOND).conditions.get(0).conditions.get("lockReward"));
+        verify(latestAgreements, never()).getAgreement(any());
+        verify(latestConditions, never()).getCondition(any());
+    }
+
+    private interface Logs {
+        List<DID> get() throws IOException;
+    }
+
+    /**
+     * The fulfilled events of the access and the compute conditions, where the did is the third topic
+     */
+    @SuppressWarnings("unchecked")
+    private void fulfilledEvents(Logs accessLogs, Logs computeLogs) {
+        doAnswer(invocation -> {
+            EthFilter filter = invocation.getArgument(0);
+            Logs logs = filter.getAddress().contains(ACCESS_ADDRESS) ? accessLogs : computeLogs;
+
+            Request<?, EthLog> request = mock(Request.class);
+            when(request.send()).thenAnswer(send -> {
+                EthLog ethLog = new EthLog();
+                ethLog.setResult(logs.get().stream()
+                        .map(did -> new EthLog.LogObject(false, "0x0", "0x0", "0x0", "0x0", "0x1", filter.getAddress().get(0),
+                                "0x", null, Arrays.asList("0x0", "0x0", "0x" + did.getHash(), "0x0")))
+                        .collect(Collectors.toList()));
+                return ethLog;
+            });
+            return request;
+        }).when(web3).ethGetLogs(any());
+    }
+
+    @Test
+    public void consumerAssetsInOrderWithoutDuplicates() throws Exception {
+        DID first = DID.builder();
+        DID second = DID.builder();
+        DID third = DID.builder();
+        fulfilledEvents(() -> {
+            // The access assets are received after the compute ones
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return Arrays.asList(first, second, first);
+        }, () -> Arrays.asList(third, second));
+
+        AtomicInteger queries = new AtomicInteger();
+        Executor executor = command -> {
+            queries.incrementAndGet();
+            new Thread(command).start();
+        };
+        List<DID> assets = agreementsManager.setQueryExecutor(executor).getConsumerAssets(CONSUMER_ADDRESS);
+
+        assertEquals(Arrays.asList(first.getDid(), second.getDid(), third.getDid()),
+                assets.stream().map(DID::getDid).collect(Collectors.toList()));
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void consumerAssetsLookupFailure() throws Exception {
+        DID did = DID.builder();
+        fulfilledEvents(() -> Collections.singletonList(did), () -> {
+            throw new IOException("connection refused");
+        });
+
+        List<Runnable> queries = new ArrayList<>();
+        agreementsManager.setQueryExecutor(command -> {
+            queries.add(command);
+            command.run();
+        });
+        try {
+            agreementsManager.getConsumerAssets(CONSUMER_ADDRESS);
+            fail("The assets were returned without the compute agreements");
+        } catch (ServiceException e) {
+            assertTrue(e.getMessage().contains(CONSUMER_ADDRESS));
+        }
+        assertEquals(2, queries.size());
+    }
+
+}
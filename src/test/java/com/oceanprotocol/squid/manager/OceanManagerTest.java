@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.manager;
+
+import com.oceanprotocol.common.web3.KeeperService;
+import com.oceanprotocol.squid.core.cache.SearchResultCache;
+import com.oceanprotocol.squid.core.events.DIDRegistryIndex;
+import com.oceanprotocol.squid.exceptions.DDOException;
+import com.oceanprotocol.squid.external.AquariusService;
+import com.oceanprotocol.squid.models.DDO;
+import com.oceanprotocol.squid.models.DID;
+import com.oceanprotocol.squid.models.DIDResolution;
+import com.oceanprotocol.squid.models.aquarius.SearchResult;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OceanManagerTest {
+
+    private static final String DDO_URL = "http://localhost:5000/api/v1/aquarius/assets/ddo/";
+
+    @After
+    public void tearDown() {
+        AquariusService.closeAll();
+    }
+
+    @Test
+    public void registeredAssetInvalidatesSearchResults() throws Exception {
+        AquariusService aquarius = mock(AquariusService.class);
+        DDO ddo = new DDO();
+        when(aquarius.createDDO(ddo)).thenReturn(ddo);
+
+        SearchResultCache searchResultCache = SearchResultCache.getInstance(60, SearchResultCache.DEFAULT_MAX_WEIGHT);
+        searchResultCache.get(SearchResultCache.key("weather", 10, 1), SearchResult::new);
+        assertEquals(1, searchResultCache.size());
+
+        OceanManager oceanManager = OceanManager.getInstance(mock(KeeperService.class), aquarius);
+        oceanManager.setSearchResultCache(searchResultCache);
+
+        // registerAsset stores the DDO of the new asset with storeDDO
+        assertSame(ddo, oceanManager.storeDDO(ddo));
+        verify(aquarius).createDDO(ddo);
+        assertEquals(0, searchResultCache.size());
+    }
+
+    @Test
+    public void resolveDIDsKeepsTheOrderAndCapsTheParallelism() throws Exception {
+        List<DID> dids = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+            dids.add(DID.builder());
+        DID failing = dids.get(5);
+        // the same DID twice is fetched only once
+        dids.add(dids.get(0));
+
+        DIDRegistryIndex didRegistryIndex = mock(DIDRegistryIndex.class);
+        when(didRegistryIndex.isSynced()).thenReturn(true);
+        when(didRegistryIndex.getUrl(any(DID.class))).thenAnswer(invocation -> DDO_URL + invocation.getArgument(0).toString());
+
+        OceanManager oceanManager = spy(OceanManager.getInstance(mock(KeeperService.class), mock(AquariusService.class)));
+        oceanManager.setDIDRegistryIndex(didRegistryIndex);
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger fetches = new AtomicInteger();
+        doAnswer(invocation -> {
+            String didUrl = invocation.getArgument(1);
+            fetches.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            if (didUrl.endsWith(failing.toString()))
+                throw new DDOException("Unable to retrieve DDO " + didUrl);
+            DDO ddo = new DDO();
+            ddo.id = didUrl.substring(DDO_URL.length());
+            return ddo;
+        }).when(oceanManager).getDDO(any(AquariusService.class), anyString());
+
+        List<DIDResolution> resolutions = oceanManager.resolveDIDs(dids, 3);
+
+        assertEquals(dids.size(), resolutions.size());
+        for (int i = 0; i < dids.size(); i++) {
+            DIDResolution resolution = resolutions.get(i);
+            assertSame(dids.get(i), resolution.getDid());
+            if (dids.get(i) == failing) {
+                assertFalse(resolution.isResolved());
+                assertTrue(resolution.getError() instanceof DDOException);
+            } else {
+                assertTrue(resolution.isResolved());
+                assertEquals(dids.get(i).toString(), resolution.getDdo().id);
+            }
+        }
+        assertEquals(12, fetches.get());
+        assertTrue(maxInFlight.get() > 1);
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Ocean Protocol Foundation
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.oceanprotocol.squid.models.asset;
+
+import com.oceanprotocol.squid.exceptions.ConsumeServiceException;
+import com.oceanprotocol.squid.models.DID;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class ConsumeResultTest {
+
+    private static final DID DID_1 = new DID();
+
+    @Test
+    public void failedIndexes() {
+        ConsumeResult result = new ConsumeResult("0x01", DID_1, 1, "/tmp", Arrays.asList(
+                ConsumeResult.FileResult.downloaded(0, "/tmp/a"),
+                ConsumeResult.FileResult.failed(1, "/tmp/b", new ConsumeServiceException("timeout")),
+                ConsumeResult.FileResult.failed(2, "/tmp/c", new ConsumeServiceException("not found"))));
+
+        assertFalse(result.isSuccessful());
+        assertEquals(2, result.getFailedFiles().size());
+        assertEquals(new TreeSet<>(Arrays.asList(1, 2)), result.getFailedIndexes());
+    }
+
+    @Test
+    public void mergeRetry() {
+        ConsumeResult result = new ConsumeResult("0x01", DID_1, 1, "/tmp", Arrays.asList(
+                ConsumeResult.FileResult.downloaded(0, "/tmp/a"),
+                ConsumeResult.FileResult.failed(1, "/tmp/b", new ConsumeServiceException("timeout")),
+                ConsumeResult.FileResult.failed(2, "/tmp/c", new ConsumeServiceException("not found"))));
+
+        ConsumeResult retry = new ConsumeResult("0x01", DID_1, 1, "/tmp", Arrays.asList(
+                ConsumeResult.FileResult.downloaded(1, "/tmp/b"),
+                ConsumeResult.FileResult.failed(2, "/tmp/c", new ConsumeServiceException("not found"))));
+
+        ConsumeResult merged = result.merge(retry);
+        assertEquals(3, merged.getFiles().size());
+        assertTrue(merged.getFiles().get(1).isDownloaded());
+        Set<Integer> failed = merged.getFailedIndexes();
+        assertEquals(Collections.singleton(2), failed);
+
+        ConsumeResult completed = merged.merge(new ConsumeResult("0x01", DID_1, 1, "/tmp",
+                Collections.singletonList(ConsumeResult.FileResult.downloaded(2, "/tmp/c"))));
+        assertTrue(completed.isSuccessful());
+    }
+}